@@ -18,6 +18,8 @@
  */
 package org.apache.felix.cm.impl;
 
+import java.io.File;
+import java.io.IOException;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
@@ -27,6 +29,7 @@ import java.util.List;
 
 import org.apache.felix.cm.PersistenceManager;
 import org.apache.felix.cm.file.FilePersistenceManager;
+import org.apache.felix.cm.impl.persistence.JournalPersistenceManager;
 import org.apache.felix.cm.impl.persistence.MemoryPersistenceManager;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
@@ -87,6 +90,37 @@ public class Activator implements BundleActivator
      */
     public static final String CM_CONFIG_PLUGINS = "felix.cm.config.plugins";
 
+    /**
+     * The name of the framework context property defining additional
+     * configuration properties to index for
+     * {@link org.osgi.service.cm.ConfigurationAdmin#listConfigurations(String)}
+     * (value is "felix.cm.index"). The value is a comma separated list of
+     * property names. The <code>service.pid</code>,
+     * <code>service.factoryPid</code> and <code>service.bundleLocation</code>
+     * properties are always indexed.
+     *
+     * @see #start(BundleContext)
+     */
+    public static final String CM_CONFIG_INDEX = "felix.cm.index";
+
+    /**
+     * The name of the framework context property defining the number of
+     * threads delivering configuration updates to managed services and
+     * managed service factories (value is "felix.cm.update.threads").
+     * Updates for the same PID are always delivered in order, updates for
+     * different PIDs are delivered concurrently if this is larger than 1.
+     * The default is 1.
+     */
+    public static final String CM_UPDATE_THREADS = "felix.cm.update.threads";
+
+    /**
+     * The name of the framework context property defining the location of
+     * the file of the journal persistence manager (value is
+     * "felix.cm.journal"). If this property is not set the
+     * <code>config.journal</code> file in the bundle data area is used.
+     */
+    public static final String CM_CONFIG_JOURNAL = "felix.cm.journal";
+
     private volatile DependencyTracker tracker;
 
     // the service registration of the default file persistence manager
@@ -95,6 +129,9 @@ public class Activator implements BundleActivator
     // the service registration of the memory persistence manager
     private volatile ServiceRegistration<PersistenceManager> memorypmRegistration;
 
+    // the service registration of the journal persistence manager
+    private volatile ServiceRegistration<PersistenceManager> journalpmRegistration;
+
     @Override
     public void start( final BundleContext bundleContext ) throws BundleException
     {
@@ -107,11 +144,15 @@ public class Activator implements BundleActivator
         // register memory persistence manager
         registerMemoryPersistenceManager(bundleContext);
 
+        // register journal persistence manager
+        registerJournalPersistenceManager(bundleContext);
+
         try
         {
             this.tracker = new DependencyTracker(bundleContext, defaultFactory,
                     getConfiguredPersistenceManager(bundleContext),
-                    getConfiguredConfigurationPlugins(bundleContext));
+                    getConfiguredConfigurationPlugins(bundleContext),
+                    getConfiguredIndexedProperties(bundleContext));
         }
         catch ( InvalidSyntaxException iae )
         {
@@ -148,6 +189,21 @@ public class Activator implements BundleActivator
         return configuredPlugins;
     }
 
+    private String[] getConfiguredIndexedProperties(final BundleContext bundleContext) {
+        final String configuredIndex = bundleContext.getProperty(CM_CONFIG_INDEX);
+        if (configuredIndex == null) {
+            return null;
+        }
+        final List<String> values = new ArrayList<>();
+        for (final String name : configuredIndex.split(",")) {
+            final String v = name.trim();
+            if (!v.isEmpty()) {
+                values.add(v);
+            }
+        }
+        return values.isEmpty() ? null : values.toArray(new String[values.size()]);
+    }
+
     @Override
     public void stop( final BundleContext bundleContext )
     {
@@ -161,9 +217,10 @@ public class Activator implements BundleActivator
             this.tracker = null;
         }
 
-        // shutdown the file and memory persistence manager and unregister
+        // shutdown the file, memory and journal persistence manager and unregister
         this.unregisterFilePersistenceManager();
         this.unregisterMemoryPersistenceManager();
+        this.unregisterJournalPersistenceManager();
     }
 
     private ServiceFactory<PersistenceManager> registerFilePersistenceManager(final BundleContext bundleContext)
@@ -209,6 +266,57 @@ public class Activator implements BundleActivator
         memorypmRegistration = bundleContext.registerService(PersistenceManager.class, mpm, props);
     }
 
+    private void registerJournalPersistenceManager(final BundleContext bundleContext) {
+        final Dictionary<String, Object> props = new Hashtable<>();
+        props.put(Constants.SERVICE_DESCRIPTION, "Platform Journal Persistence Manager");
+        props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+        props.put(PersistenceManager.PROPERTY_NAME, JournalPersistenceManager.PERSISTENCE_MANAGER_NAME);
+
+        final ServiceFactory<PersistenceManager> factory = new ServiceFactory<PersistenceManager>()
+        {
+
+            // shared by all bundles getting the service, closed when the last one ungets it
+            private JournalPersistenceManager jpm;
+
+            private int users;
+
+            @Override
+            public synchronized PersistenceManager getService(Bundle bundle,
+                    ServiceRegistration<PersistenceManager> registration) {
+                if (jpm == null) {
+                    final String location = bundleContext.getProperty(CM_CONFIG_JOURNAL);
+                    final File file = location != null ? new File(location)
+                            : bundleContext.getDataFile(JournalPersistenceManager.DEFAULT_JOURNAL_FILE);
+                    if (file == null) {
+                        Log.logger.log(LogService.LOG_ERROR,
+                                "Cannot create the journal persistence manager: no file system support", (Throwable) null);
+                        return null;
+                    }
+                    try {
+                        jpm = new JournalPersistenceManager(file);
+                    } catch (final IOException ioe) {
+                        Log.logger.log(LogService.LOG_ERROR, "Cannot open configuration journal " + file, ioe);
+                        return null;
+                    }
+                }
+
+                users++;
+                return jpm;
+            }
+
+            @Override
+            public synchronized void ungetService(Bundle bundle, ServiceRegistration<PersistenceManager> registration,
+                    PersistenceManager service) {
+                if (jpm != null && --users == 0) {
+                    jpm.close();
+                    jpm = null;
+                }
+            }
+
+        };
+        journalpmRegistration = bundleContext.registerService(PersistenceManager.class, factory, props);
+    }
+
     private void unregisterFilePersistenceManager()
     {
         if ( this.filepmRegistration != null )
@@ -225,6 +333,13 @@ public class Activator implements BundleActivator
         }
     }
 
+    private void unregisterJournalPersistenceManager() {
+        if (this.journalpmRegistration != null) {
+            this.journalpmRegistration.unregister();
+            this.journalpmRegistration = null;
+        }
+    }
+
     public static String getLocation(final Bundle bundle)
     {
         if (System.getSecurityManager() != null)
@@ -244,4 +359,3 @@ public class Activator implements BundleActivator
         }
     }
 }
-
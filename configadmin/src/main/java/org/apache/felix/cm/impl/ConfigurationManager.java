@@ -171,7 +171,7 @@ public class ConfigurationManager implements BundleListener
         // initialize the asynchonous updater thread
         ThreadGroup tg = new ThreadGroup( "Configuration Admin Service" );
         tg.setDaemon( true );
-        this.updateThread = new UpdateThread( tg, "CM Configuration Updater" );
+        this.updateThread = new UpdateThread( tg, "CM Configuration Updater", getUpdateThreads() );
         this.eventThread = new UpdateThread( tg, "CM Event Dispatcher" );
 
         // register as bundle and service listener
@@ -212,6 +212,26 @@ public class ConfigurationManager implements BundleListener
     }
 
 
+    // the number of threads delivering configuration updates, 1 by default
+    private int getUpdateThreads()
+    {
+        final String value = bundleContext.getProperty( Activator.CM_UPDATE_THREADS );
+        if ( value != null )
+        {
+            try
+            {
+                return Math.max( 1, Integer.parseInt( value.trim() ) );
+            }
+            catch ( NumberFormatException nfe )
+            {
+                Log.logger.log( LogService.LOG_WARNING, "Ignoring invalid value {0} for {1}", new Object[]
+                        { value, Activator.CM_UPDATE_THREADS } );
+            }
+        }
+        return 1;
+    }
+
+
     public void stop( )
     {
 
@@ -1051,6 +1071,16 @@ public class ConfigurationManager implements BundleListener
     }
 
 
+    /**
+     * Returns the key ordering the update tasks of the given service, so that
+     * a service registered with several PIDs is never updated concurrently.
+     */
+    static String getServiceKey( final ServiceReference<?> sr )
+    {
+        return "service.id=" + sr.getProperty( Constants.SERVICE_ID );
+    }
+
+
     // ---------- inner classes
 
     /**
@@ -1059,7 +1089,7 @@ public class ConfigurationManager implements BundleListener
      * ManagedService is registered with multiple PIDs an instance of this
      * class is used for each registered PID.
      */
-    public class ManagedServiceUpdate implements Runnable
+    public class ManagedServiceUpdate implements UpdateThread.KeyedTask
     {
         public final List<String> pids = new ArrayList<>();
 
@@ -1133,6 +1163,21 @@ public class ConfigurationManager implements BundleListener
             managedServiceTracker.provideConfiguration( sr, configPid, null, properties, revision, this.configs );
         }
 
+        @Override
+        public Collection<String> getKeys()
+        {
+            final List<String> keys = new ArrayList<>( this.pids );
+            keys.add( getServiceKey( this.sr ) );
+            return keys;
+        }
+
+
+        @Override
+        public boolean supersedes( final Runnable task )
+        {
+            return false;
+        }
+
         @Override
         public String toString()
         {
@@ -1147,7 +1192,7 @@ public class ConfigurationManager implements BundleListener
      * multiple PIDs an instance of this class is used for each registered
      * PID.
      */
-    public class ManagedServiceFactoryUpdate implements Runnable
+    public class ManagedServiceFactoryUpdate implements UpdateThread.KeyedTask
     {
         private final String[] factoryPids;
 
@@ -1271,6 +1316,22 @@ public class ConfigurationManager implements BundleListener
         }
 
 
+        @Override
+        public Collection<String> getKeys()
+        {
+            final List<String> keys = new ArrayList<>( Arrays.asList( this.factoryPids ) );
+            keys.add( getServiceKey( this.sr ) );
+            return keys;
+        }
+
+
+        @Override
+        public boolean supersedes( final Runnable task )
+        {
+            return false;
+        }
+
+
         @Override
         public String toString()
         {
@@ -1278,13 +1339,14 @@ public class ConfigurationManager implements BundleListener
         }
     }
 
-    public abstract class ConfigurationProvider<T> implements Runnable
+    public abstract class ConfigurationProvider<T> implements UpdateThread.KeyedTask
     {
 
         protected final ConfigurationImpl config;
         protected final long revision;
         protected final Dictionary<String, ?> properties;
         private BaseTracker<T> helper;
+        private final List<String> keys = new ArrayList<>();
 
 
         protected ConfigurationProvider( final ConfigurationImpl config )
@@ -1295,6 +1357,20 @@ public class ConfigurationManager implements BundleListener
                 this.revision = config.getRevision();
                 this.properties = config.getProperties( true );
             }
+
+            // order with all tasks for the services of the (factory) PID and
+            // with all tasks for the services it is provided to, which may
+            // be registered with other PIDs; there are no services while
+            // the trackers are not open
+            final TargetedPID servicePid = getTargetedServicePid();
+            this.keys.add( servicePid.getServicePid() );
+            if ( this.getHelper() != null )
+            {
+                for ( final ServiceReference<?> sr : this.getHelper().getServices( servicePid ) )
+                {
+                    this.keys.add( getServiceKey( sr ) );
+                }
+            }
         }
 
 
@@ -1309,6 +1385,20 @@ public class ConfigurationManager implements BundleListener
         }
 
 
+        @Override
+        public Collection<String> getKeys()
+        {
+            return this.keys;
+        }
+
+
+        @Override
+        public boolean supersedes( final Runnable task )
+        {
+            return false;
+        }
+
+
         protected BaseTracker<T> getHelper()
         {
             if ( this.helper == null )
@@ -1440,6 +1530,22 @@ public class ConfigurationManager implements BundleListener
         }
 
 
+        /**
+         * A queued update of the same configuration to an older revision
+         * need not be delivered anymore.
+         */
+        @Override
+        public boolean supersedes( final Runnable task )
+        {
+            if ( task instanceof UpdateConfiguration )
+            {
+                final UpdateConfiguration other = ( UpdateConfiguration ) task;
+                return other.config.getPid().equals( this.config.getPid() ) && other.revision <= this.revision;
+            }
+            return false;
+        }
+
+
         @Override
         public String toString()
         {
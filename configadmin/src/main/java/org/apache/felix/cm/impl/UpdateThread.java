@@ -22,8 +22,17 @@ import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 import org.osgi.service.log.LogService;
 
@@ -31,72 +40,148 @@ import org.osgi.service.log.LogService;
 /**
  * The <code>UpdateThread</code> is the thread used to update managed services
  * and managed service factories as well as to send configuration events.
+ * <p>
+ * Tasks are run by one or more worker threads. Tasks implementing
+ * {@link KeyedTask} are only ordered with respect to tasks sharing one of
+ * their keys, so with more than one worker thread tasks for different
+ * services may run concurrently. A keyed task which {@link KeyedTask#supersedes(Runnable)
+ * supersedes} the last task queued for its keys replaces that task. Other
+ * tasks are run after all previously scheduled tasks and before all tasks
+ * scheduled later.
+ * <p>
+ * With a single worker thread tasks are run in the order they are scheduled.
  */
-public class UpdateThread implements Runnable
+public class UpdateThread
 {
 
-    // the thread group into which the worker thread will be placed
+    /**
+     * A task which only has to be ordered with respect to the tasks sharing
+     * one of its keys.
+     */
+    public interface KeyedTask extends Runnable
+    {
+        /**
+         * Returns the keys of this task, typically the PIDs and the service
+         * id of the updated service.
+         */
+        Collection<String> getKeys();
+
+        /**
+         * Returns <code>true</code> if running this task makes running the
+         * given task, which is queued with the same keys right before this
+         * task, unnecessary.
+         */
+        boolean supersedes( Runnable task );
+    }
+
+    // the key ordering non-keyed tasks with respect to all other tasks
+    private static final String BARRIER = UpdateThread.class.getName() + ".barrier";
+
+    // the thread group into which the worker threads will be placed
     private final ThreadGroup workerThreadGroup;
 
-    // the thread's base name
+    // the threads' base name
     private final String workerBaseName;
 
-    // the queue of Runnable instances  to be run
-    private final BlockingDeque<Runnable> updateTasks = new LinkedBlockingDeque<>();
-
-    // the actual thread
-    private volatile Thread worker;
+    // the number of worker threads
+    private final int workerCount;
 
     // the access control context
     private final AccessControlContext acc;
 
+    // the lock guarding the queues below
+    private final Object lock = new Object();
+
+    // the queued and running tasks per key
+    private final Map<String, LinkedList<Entry>> queues = new HashMap<>();
+
+    // the tasks at the head of all their queues, in scheduling order
+    private final PriorityQueue<Entry> ready = new PriorityQueue<>( 11, new Comparator<Entry>()
+    {
+        @Override
+        public int compare( final Entry e1, final Entry e2 )
+        {
+            return Long.compare( e1.sequence, e2.sequence );
+        }
+    } );
+
+    // the actual threads
+    private final List<Thread> workers = new ArrayList<>();
+
+    // the sequence number of the next scheduled task
+    private long sequence;
+
+    // set when terminating, no more tasks are run
+    private boolean terminated;
+
+    // the number of tasks replaced by a superseding task
+    private long coalesced;
+
     public UpdateThread( final ThreadGroup tg, final String name )
+    {
+        this( tg, name, 1 );
+    }
+
+    public UpdateThread( final ThreadGroup tg, final String name, final int threads )
     {
         this.workerThreadGroup = tg;
         this.workerBaseName = name;
+        this.workerCount = Math.max( 1, threads );
         this.acc = AccessController.getContext();
     }
 
 
-    // waits on Runnable instances coming into the queue. As instances come
-    // in, this method calls the Runnable.run method, logs any exception
-    // happening and keeps on waiting for the next Runnable. If the Runnable
-    // taken from the queue is this thread instance itself, the thread
-    // terminates.
-    @Override
-    public void run()
+    // waits on tasks becoming ready. As tasks become ready, this method calls
+    // the Runnable.run method, logs any exception happening and keeps on
+    // waiting for the next task. When this instance is terminated, the
+    // thread terminates.
+    private void work( final String name )
     {
-        try
+        for ( ;; )
         {
-            Runnable task;
-            // return if the task is this thread itself
-            while ((task = updateTasks.take()) != this)
+            final Entry entry;
+            synchronized ( lock )
             {
-                // otherwise execute the task, log any issues
-                try
-                {
-                    // set the thread name indicating the current task
-                    Thread.currentThread().setName( workerBaseName + " (" + task + ")" );
-
-                    Log.logger.log( LogService.LOG_DEBUG, "Running task {0}", new Object[]
-                        { task } );
-
-                    run0(task);
-                }
-                catch ( Throwable t )
+                while ( !terminated && ready.isEmpty() )
                 {
-                    Log.logger.log( LogService.LOG_ERROR, "Unexpected problem executing task", t );
+                    try
+                    {
+                        lock.wait();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        // don't care
+                    }
                 }
-                finally
+                if ( terminated )
                 {
-                    // reset the thread name to "idle"
-                    Thread.currentThread().setName( workerBaseName );
+                    return;
                 }
+                entry = ready.poll();
+                entry.running = true;
+            }
+
+            final Runnable task = entry.task;
+            try
+            {
+                // set the thread name indicating the current task
+                Thread.currentThread().setName( name + " (" + task + ")" );
+
+                Log.logger.log( LogService.LOG_DEBUG, "Running task {0}", new Object[]
+                    { task } );
+
+                run0(task);
+            }
+            catch ( Throwable t )
+            {
+                Log.logger.log( LogService.LOG_ERROR, "Unexpected problem executing task", t );
+            }
+            finally
+            {
+                // reset the thread name to "idle"
+                Thread.currentThread().setName( name );
+                done( entry );
             }
-        }
-        catch (InterruptedException e)
-        {
-            // don't care
         }
     }
 
@@ -125,30 +210,45 @@ public class UpdateThread implements Runnable
 
     /**
      * Starts processing the queued tasks. This method does nothing if the
-     * worker has already been started.
+     * workers have already been started.
      */
     synchronized void start()
     {
-        if ( this.worker == null )
+        if ( this.workers.isEmpty() )
         {
-            Thread workerThread = new Thread( workerThreadGroup, this, workerBaseName );
-            workerThread.setDaemon( true );
-            workerThread.start();
-            this.worker = workerThread;
+            synchronized ( lock )
+            {
+                this.terminated = false;
+            }
+            for ( int i = 0; i < workerCount; i++ )
+            {
+                final String name = workerCount == 1 ? workerBaseName : workerBaseName + " #" + ( i + 1 );
+                Thread workerThread = new Thread( workerThreadGroup, new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        work( name );
+                    }
+                }, name );
+                workerThread.setDaemon( true );
+                workerThread.start();
+                this.workers.add( workerThread );
+            }
         }
     }
 
 
     /**
-     * Terminates the worker thread and waits for the thread to have processed
-     * all outstanding events up to and including the termination job. All
+     * Terminates the worker threads and waits for the threads to have
+     * finished the tasks they are currently running. Queued tasks and all
      * jobs {@link #schedule(Runnable) scheduled} after termination has been
      * initiated will not be processed any more. This method does nothing if
-     * the worker thread is not currently active.
+     * the worker threads are not currently active.
      * <p>
-     * If the worker thread does not terminate within 5 seconds it is killed
+     * If the worker threads do not terminate within 5 seconds they are killed
      * by calling the (deprecated) <code>Thread.stop()</code> method. It may
-     * be that the worker thread may be blocked by a deadlock (it should not,
+     * be that a worker thread may be blocked by a deadlock (it should not,
      * though). In this case hope is that <code>Thread.stop()</code> will be
      * able to released that deadlock at the expense of one or more tasks to
      * not be executed any longer.... In any case an ERROR message is logged
@@ -156,30 +256,41 @@ public class UpdateThread implements Runnable
      */
     synchronized void terminate()
     {
-        if ( this.worker != null )
+        if ( !this.workers.isEmpty() )
         {
-            Thread workerThread = this.worker;
-            this.worker = null;
-
-            updateTasks.offerFirst( this );
-
-            // wait for all updates to terminate (<= 10 seconds !)
-            try
-            {
-                workerThread.join( 5000 );
-            }
-            catch ( InterruptedException ie )
+            synchronized ( lock )
             {
-                // don't really care
+                terminated = true;
+                queues.clear();
+                ready.clear();
+                lock.notifyAll();
             }
 
-            if ( workerThread.isAlive() )
+            // wait for all updates to terminate (<= 5 seconds !)
+            final long deadline = System.currentTimeMillis() + 5000;
+            for ( final Thread workerThread : this.workers )
             {
-                Log.logger.log( LogService.LOG_ERROR,
-                    "Worker thread {0} did not terminate within 5 seconds; trying to kill", new Object[]
-                        { workerBaseName } );
-                workerThread.stop();
+                try
+                {
+                    workerThread.join( Math.max( 1, deadline - System.currentTimeMillis() ) );
+                }
+                catch ( InterruptedException ie )
+                {
+                    // don't really care
+                }
+
+                if ( workerThread.isAlive() )
+                {
+                    Log.logger.log( LogService.LOG_ERROR,
+                        "Worker thread {0} did not terminate within 5 seconds; trying to kill", new Object[]
+                            { workerThread.getName() } );
+                    workerThread.stop();
+                }
             }
+            this.workers.clear();
+
+            Log.logger.log( LogService.LOG_DEBUG, "{0} terminated, {1} tasks coalesced", new Object[]
+                { workerBaseName, coalesced } );
         }
     }
 
@@ -190,7 +301,159 @@ public class UpdateThread implements Runnable
         Log.logger.log( LogService.LOG_DEBUG, "Scheduling task {0}", new Object[]
             { update } );
 
-        // append to the task queue
-        updateTasks.offer( update );
+        synchronized ( lock )
+        {
+            if ( terminated )
+            {
+                return;
+            }
+
+            final String[] keys = getKeys( update );
+            if ( update instanceof KeyedTask && coalesce( ( KeyedTask ) update, keys ) )
+            {
+                Log.logger.log( LogService.LOG_DEBUG, "Task {0} replaces queued task", new Object[]
+                    { update } );
+                return;
+            }
+
+            final Entry entry = new Entry( update, keys, sequence++ );
+            boolean head = true;
+            for ( final String key : keys )
+            {
+                LinkedList<Entry> queue = queues.get( key );
+                if ( queue == null )
+                {
+                    queue = new LinkedList<>();
+                    queues.put( key, queue );
+                }
+                head &= queue.isEmpty();
+                queue.add( entry );
+            }
+            if ( head )
+            {
+                ready.add( entry );
+                lock.notify();
+            }
+        }
+    }
+
+
+    // called with the lock held
+    private String[] getKeys( final Runnable task )
+    {
+        final Set<String> keys = new LinkedHashSet<>();
+        if ( task instanceof KeyedTask )
+        {
+            keys.addAll( ( ( KeyedTask ) task ).getKeys() );
+            // wait for a pending non-keyed task
+            if ( queues.containsKey( BARRIER ) )
+            {
+                keys.add( BARRIER );
+            }
+        }
+        else
+        {
+            // wait for all pending tasks and have the later tasks wait
+            keys.addAll( queues.keySet() );
+            keys.add( BARRIER );
+        }
+        return keys.toArray( new String[keys.size()] );
+    }
+
+
+    // called with the lock held; replaces the last queued task with the same
+    // keys if the given task supersedes it
+    private boolean coalesce( final KeyedTask task, final String[] keys )
+    {
+        if ( keys.length == 0 )
+        {
+            return false;
+        }
+        final LinkedList<Entry> queue = queues.get( keys[0] );
+        if ( queue == null || queue.isEmpty() )
+        {
+            return false;
+        }
+        final Entry last = queue.getLast();
+        if ( last.running || !Arrays.equals( last.keys, keys ) || !task.supersedes( last.task ) )
+        {
+            return false;
+        }
+        for ( final String key : keys )
+        {
+            if ( queues.get( key ).getLast() != last )
+            {
+                return false;
+            }
+        }
+        last.task = task;
+        coalesced++;
+        return true;
+    }
+
+
+    // removes the finished entry from its queues and makes the next entries
+    // ready which are at the head of all their queues
+    private void done( final Entry entry )
+    {
+        synchronized ( lock )
+        {
+            if ( terminated )
+            {
+                return;
+            }
+            for ( final String key : entry.keys )
+            {
+                final LinkedList<Entry> queue = queues.get( key );
+                queue.removeFirst();
+                if ( queue.isEmpty() )
+                {
+                    queues.remove( key );
+                }
+                else
+                {
+                    final Entry next = queue.getFirst();
+                    if ( isHead( next ) )
+                    {
+                        ready.add( next );
+                        lock.notify();
+                    }
+                }
+            }
+        }
+    }
+
+
+    // called with the lock held
+    private boolean isHead( final Entry entry )
+    {
+        for ( final String key : entry.keys )
+        {
+            if ( queues.get( key ).getFirst() != entry )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static final class Entry
+    {
+        // the task, replaced if a superseding task is scheduled
+        Runnable task;
+
+        final String[] keys;
+
+        final long sequence;
+
+        boolean running;
+
+        Entry( final Runnable task, final String[] keys, final long sequence )
+        {
+            this.task = task;
+            this.keys = keys;
+            this.sequence = sequence;
+        }
     }
 }
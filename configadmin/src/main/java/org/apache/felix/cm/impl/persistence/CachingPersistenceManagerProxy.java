@@ -28,6 +28,7 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
@@ -46,6 +47,13 @@ import org.osgi.service.cm.ConfigurationAdmin;
  * underlying actual {@link PersistenceManager} implementation. All API calls
  * are also (or primarily) routed through a local cache of dictionaries indexed
  * by the <code>service.pid</code>.
+ * <p>
+ * Once all dictionaries have been loaded, secondary indexes on the
+ * <code>service.factoryPid</code> and <code>service.bundleLocation</code>
+ * properties, and optionally on further configured properties, are maintained
+ * so that {@link #getDictionaries(SimpleFilter)} only has to test the
+ * dictionaries selected by equality conditions on indexed properties instead
+ * of all dictionaries.
  */
 public class CachingPersistenceManagerProxy implements ExtPersistenceManager
 {
@@ -66,16 +74,48 @@ public class CachingPersistenceManagerProxy implements ExtPersistenceManager
      */
     private volatile boolean fullyLoaded;
 
+    /**
+     * Secondary indexes of the cached dictionaries, keyed by the lower case
+     * property name. Always contains the indexes for the factory PID and
+     * the bundle location.
+     */
+    private final Map<String, PropertyIndex> indexes = new HashMap<>();
+
     /** Factory configuration cache. */
-    private final Map<String, Set<String>> factoryConfigCache = new HashMap<>();
+    private final PropertyIndex factoryConfigCache = new PropertyIndex();
 
     /**
      * Creates a new caching layer for the given actual {@link PersistenceManager}.
      * @param pm The actual {@link PersistenceManager}
      */
     public CachingPersistenceManagerProxy( final PersistenceManager pm )
+    {
+        this( pm, null );
+    }
+
+    /**
+     * Creates a new caching layer for the given actual {@link PersistenceManager}
+     * additionally indexing the given properties.
+     * @param pm The actual {@link PersistenceManager}
+     * @param indexedProperties The names of additional properties to index,
+     *            may be <code>null</code>
+     */
+    public CachingPersistenceManagerProxy( final PersistenceManager pm, final String[] indexedProperties )
     {
         this.pm = pm;
+        this.indexes.put( ConfigurationAdmin.SERVICE_FACTORYPID.toLowerCase( Locale.ENGLISH ), factoryConfigCache );
+        this.indexes.put( ConfigurationAdmin.SERVICE_BUNDLELOCATION.toLowerCase( Locale.ENGLISH ), new PropertyIndex() );
+        if ( indexedProperties != null )
+        {
+            for ( final String name : indexedProperties )
+            {
+                final String key = name.toLowerCase( Locale.ENGLISH );
+                if ( !key.equals( Constants.SERVICE_PID.toLowerCase( Locale.ENGLISH ) ) && !indexes.containsKey( key ) )
+                {
+                    indexes.put( key, new PropertyIndex() );
+                }
+            }
+        }
     }
 
     @Override
@@ -99,19 +139,7 @@ public class CachingPersistenceManagerProxy implements ExtPersistenceManager
             final Dictionary props = cache.remove( pid );
             if ( props != null )
             {
-                final String factoryPid = (String)props.get(ConfigurationAdmin.SERVICE_FACTORYPID);
-                if ( factoryPid != null )
-                {
-                    final Set<String> factoryPids = this.factoryConfigCache.get(factoryPid);
-                    if ( factoryPids != null )
-                    {
-                        factoryPids.remove(pid);
-                        if ( factoryPids.isEmpty() )
-                        {
-                            this.factoryConfigCache.remove(factoryPid);
-                        }
-                    }
-                }
+                this.unindex( pid, props );
             }
             pm.delete(pid);
         }
@@ -170,20 +198,85 @@ public class CachingPersistenceManagerProxy implements ExtPersistenceManager
             {
                 dict = new CaseInsensitiveDictionary(props);
                 cache.put( pid, dict );
-                final String factoryPid = (String)props.get(ConfigurationAdmin.SERVICE_FACTORYPID);
-                if ( factoryPid != null )
+                this.index( pid, dict );
+            }
+        }
+        return dict;
+    }
+
+    private void index( final String pid, final Dictionary props )
+    {
+        for ( final Map.Entry<String, PropertyIndex> entry : indexes.entrySet() )
+        {
+            entry.getValue().add( pid, props.get( entry.getKey() ) );
+        }
+    }
+
+    private void unindex( final String pid, final Dictionary props )
+    {
+        for ( final Map.Entry<String, PropertyIndex> entry : indexes.entrySet() )
+        {
+            entry.getValue().remove( pid, props.get( entry.getKey() ) );
+        }
+    }
+
+    /**
+     * Returns the PIDs of the cached dictionaries which may match the filter
+     * or <code>null</code> if the filter cannot be answered from the indexes
+     * and all dictionaries have to be tested.
+     */
+    private Collection<String> candidates( final SimpleFilter filter )
+    {
+        switch ( filter.getOperation() )
+        {
+            case SimpleFilter.EQ:
+                if ( filter.getValue() instanceof String )
                 {
-                    Set<String> factoryPids = this.factoryConfigCache.get(factoryPid);
-                    if ( factoryPids == null )
+                    final String name = filter.getName().toLowerCase( Locale.ENGLISH );
+                    final String value = (String) filter.getValue();
+                    if ( name.equals( Constants.SERVICE_PID.toLowerCase( Locale.ENGLISH ) ) )
+                    {
+                        return cache.containsKey( value ) ? Collections.singleton( value )
+                            : Collections.<String> emptySet();
+                    }
+                    final PropertyIndex index = indexes.get( name );
+                    if ( index != null )
                     {
-                        factoryPids = new HashSet<>();
-                        this.factoryConfigCache.put(factoryPid, factoryPids);
+                        return index.candidates( value );
                     }
-                    factoryPids.add(pid);
                 }
-            }
+                return null;
+
+            case SimpleFilter.AND:
+                // the most selective indexed condition wins
+                Collection<String> smallest = null;
+                for ( final Object sub : (List<?>) filter.getValue() )
+                {
+                    final Collection<String> pids = candidates( (SimpleFilter) sub );
+                    if ( pids != null && ( smallest == null || pids.size() < smallest.size() ) )
+                    {
+                        smallest = pids;
+                    }
+                }
+                return smallest;
+
+            case SimpleFilter.OR:
+                // all alternatives must be indexed
+                final Set<String> union = new HashSet<>();
+                for ( final Object sub : (List<?>) filter.getValue() )
+                {
+                    final Collection<String> pids = candidates( (SimpleFilter) sub );
+                    if ( pids == null )
+                    {
+                        return null;
+                    }
+                    union.addAll( pids );
+                }
+                return union;
+
+            default:
+                return null;
         }
-        return dict;
     }
 
     @Override
@@ -212,9 +305,25 @@ public class CachingPersistenceManagerProxy implements ExtPersistenceManager
                 }
             }
 
+            // select the candidates from the indexes, if possible
+            Collection<CaseInsensitiveDictionary> dicts = cache.values();
+            final Collection<String> pids = filter == null ? null : candidates( filter );
+            if ( pids != null )
+            {
+                dicts = new ArrayList<>( pids.size() );
+                for ( final String pid : pids )
+                {
+                    final CaseInsensitiveDictionary d = cache.get( pid );
+                    if ( d != null )
+                    {
+                        dicts.add( d );
+                    }
+                }
+            }
+
             // Deep copy the configuration to avoid any threading issue
             final List<Dictionary> configs = new ArrayList<>();
-            for (final Dictionary d : cache.values())
+            for (final Dictionary d : dicts)
             {
                 if ( d.get( Constants.SERVICE_PID ) != null && ( filter == null || filter.matches( d ) ) )
                 {
@@ -289,7 +398,11 @@ public class CachingPersistenceManagerProxy implements ExtPersistenceManager
         {
             lock.lock();
             pm.store( pid, properties );
-            this.cache.remove(pid);
+            final Dictionary old = this.cache.remove(pid);
+            if ( old != null )
+            {
+                this.unindex( pid, old );
+            }
             this.cache(properties);
         }
         finally
@@ -341,4 +454,105 @@ public class CachingPersistenceManagerProxy implements ExtPersistenceManager
         }
         return pids;
     }
+
+    /**
+     * Index of the values of a single property. String values, also as
+     * elements of arrays and collections, are indexed by value. Dictionaries
+     * with other values are always returned as candidates, because the
+     * filter may match them after type coercion.
+     */
+    private static final class PropertyIndex
+    {
+        private final Map<String, Set<String>> pidsByValue = new HashMap<>();
+
+        private final Set<String> otherPids = new HashSet<>();
+
+        void add( final String pid, final Object value )
+        {
+            if ( value instanceof String )
+            {
+                Set<String> pids = pidsByValue.get( value );
+                if ( pids == null )
+                {
+                    pids = new HashSet<>();
+                    pidsByValue.put( (String) value, pids );
+                }
+                pids.add( pid );
+            }
+            else if ( value instanceof String[] )
+            {
+                for ( final String v : (String[]) value )
+                {
+                    add( pid, v );
+                }
+            }
+            else if ( value instanceof Collection )
+            {
+                for ( final Object v : (Collection<?>) value )
+                {
+                    add( pid, v );
+                }
+            }
+            else if ( value != null )
+            {
+                otherPids.add( pid );
+            }
+        }
+
+        void remove( final String pid, final Object value )
+        {
+            if ( value instanceof String )
+            {
+                final Set<String> pids = pidsByValue.get( value );
+                if ( pids != null )
+                {
+                    pids.remove( pid );
+                    if ( pids.isEmpty() )
+                    {
+                        pidsByValue.remove( value );
+                    }
+                }
+            }
+            else if ( value instanceof String[] )
+            {
+                for ( final String v : (String[]) value )
+                {
+                    remove( pid, v );
+                }
+            }
+            else if ( value instanceof Collection )
+            {
+                for ( final Object v : (Collection<?>) value )
+                {
+                    remove( pid, v );
+                }
+            }
+            else if ( value != null )
+            {
+                otherPids.remove( pid );
+            }
+        }
+
+        /** Returns the PIDs having exactly the given string value */
+        Set<String> get( final String value )
+        {
+            return pidsByValue.get( value );
+        }
+
+        /** Returns the PIDs which may have a value equal to the given value */
+        Collection<String> candidates( final String value )
+        {
+            final Set<String> pids = pidsByValue.get( value );
+            if ( otherPids.isEmpty() )
+            {
+                return pids == null ? Collections.<String> emptySet() : pids;
+            }
+            final Set<String> result = new HashSet<>( otherPids );
+            if ( pids != null )
+            {
+                result.addAll( pids );
+            }
+            return result;
+        }
+    }
 }
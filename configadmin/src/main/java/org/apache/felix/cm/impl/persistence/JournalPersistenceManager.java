@@ -0,0 +1,722 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.cm.impl.persistence;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.apache.felix.cm.PersistenceManager;
+import org.apache.felix.cm.file.ConfigurationHandler;
+import org.apache.felix.cm.impl.Log;
+import org.osgi.service.log.LogService;
+
+
+/**
+ * The <code>JournalPersistenceManager</code> stores all configurations in a
+ * single append-only file.
+ * <p>
+ * Each {@link #store(String, Dictionary)} and {@link #delete(String)} appends
+ * a record to the file; an in-memory index maps each PID to the position of
+ * its latest record. Concurrent calls are group committed: the records queued
+ * while a batch is written and forced to disk are written and forced together
+ * by the next caller, so many concurrent updates cost few disk syncs.
+ * <p>
+ * Once more than half of the file is taken by outdated records, a
+ * background thread compacts the file by copying the current records into
+ * a new file, which then replaces the journal. The thread is only kept while
+ * compactions are running.
+ * <p>
+ * A record consists of the length and CRC32 checksum of its body, the body
+ * being the record type, the PID and, for stored configurations, the
+ * dictionary in the format of the {@link ConfigurationHandler}. A torn or
+ * corrupt record at the end of the file, as left by a crash while writing,
+ * is discarded when the file is opened.
+ */
+public class JournalPersistenceManager implements PersistenceManager
+{
+
+    /**
+     * The name of this persistence manager when registered in the service
+     * registry (value is "journal").
+     */
+    public static final String PERSISTENCE_MANAGER_NAME = "journal";
+
+    /**
+     * The default name of the journal file in the bundle data area
+     * (value is "config.journal").
+     */
+    public static final String DEFAULT_JOURNAL_FILE = "config.journal";
+
+    // the first bytes of a journal file
+    private static final int MAGIC = 0x464a4331;
+
+    private static final int HEADER_LENGTH = 4;
+
+    // length and CRC of a record body
+    private static final int RECORD_HEADER_LENGTH = 8;
+
+    private static final byte RECORD_STORE = 1;
+
+    private static final byte RECORD_DELETE = 2;
+
+    // the journal is not compacted below this size
+    private static final long COMPACT_MIN_SIZE = 1024 * 1024;
+
+    private final File file;
+
+    // guards the index, the pending records and the counters below
+    private final Object lock = new Object();
+
+    // held while appending to or swapping the file, only one writer at a time
+    private final Object writeLock = new Object();
+
+    // held shared to access the channel, exclusively to replace it
+    private final ReadWriteLock channelLock = new ReentrantReadWriteLock();
+
+    // the PIDs mapped to the position and length of their latest record
+    private final Map<String, long[]> index = new HashMap<>();
+
+    // the records waiting to be written by the next batch
+    private final List<Record> pending = new ArrayList<>();
+
+    private FileChannel channel;
+
+    // the end of the valid records, guarded by writeLock
+    private long end;
+
+    // the total length of the records in the index
+    private long liveBytes;
+
+    private long appendSequence;
+
+    private long committedSequence;
+
+    private boolean compacting;
+
+    private boolean closed;
+
+    // runs the compactions, one at a time
+    private final ThreadPoolExecutor compactor = new ThreadPoolExecutor( 1, 1, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( final Runnable r )
+            {
+                final Thread t = new Thread( r, "CM Configuration Journal Compactor" );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+
+
+    /**
+     * Opens the given journal file, creating it if it does not exist yet.
+     *
+     * @throws IOException If the file cannot be opened or is not a journal
+     */
+    public JournalPersistenceManager( final File file ) throws IOException
+    {
+        this.file = file;
+        this.compactor.allowCoreThreadTimeOut( true );
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if ( parent != null && !parent.isDirectory() && !parent.mkdirs() )
+        {
+            throw new IOException( "Cannot create directory " + parent );
+        }
+
+        this.channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE );
+        try
+        {
+            final long size = channel.size();
+            if ( size < HEADER_LENGTH )
+            {
+                final ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH );
+                header.putInt( MAGIC ).flip();
+                channel.truncate( 0 );
+                writeFully( channel, header, 0 );
+                channel.force( true );
+                this.end = HEADER_LENGTH;
+            }
+            else
+            {
+                final ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH );
+                readFully( channel, header, 0 );
+                if ( header.getInt( 0 ) != MAGIC )
+                {
+                    throw new IOException( file + " is not a configuration journal" );
+                }
+                this.end = replay( channel, HEADER_LENGTH, size, index );
+                if ( this.end < size )
+                {
+                    Log.logger.log( LogService.LOG_WARNING,
+                        "Discarding {0} bytes of incomplete records at the end of configuration journal {1}",
+                        new Object[] { size - this.end, file } );
+                    channel.truncate( this.end );
+                    channel.force( true );
+                }
+            }
+            this.liveBytes = sum( index );
+        }
+        catch ( final IOException ioe )
+        {
+            channel.close();
+            throw ioe;
+        }
+    }
+
+
+    /**
+     * Closes the journal file. Further calls to store or delete fail.
+     */
+    public void close()
+    {
+        synchronized ( writeLock )
+        {
+            synchronized ( lock )
+            {
+                closed = true;
+            }
+            compactor.shutdown();
+            try
+            {
+                channel.close();
+            }
+            catch ( final IOException ioe )
+            {
+                Log.logger.log( LogService.LOG_WARNING, "Failed closing configuration journal " + file, ioe );
+            }
+        }
+    }
+
+
+    @Override
+    public boolean exists( final String pid )
+    {
+        synchronized ( lock )
+        {
+            return index.containsKey( pid );
+        }
+    }
+
+
+    @Override
+    public Dictionary load( final String pid ) throws IOException
+    {
+        channelLock.readLock().lock();
+        try
+        {
+            final long[] entry;
+            synchronized ( lock )
+            {
+                entry = index.get( pid );
+            }
+            return entry == null ? null : readDictionary( entry );
+        }
+        finally
+        {
+            channelLock.readLock().unlock();
+        }
+    }
+
+
+    @Override
+    public Enumeration getDictionaries() throws IOException
+    {
+        channelLock.readLock().lock();
+        try
+        {
+            final List<long[]> entries;
+            synchronized ( lock )
+            {
+                entries = new ArrayList<>( index.values() );
+            }
+            final List<Dictionary> dictionaries = new ArrayList<>( entries.size() );
+            for ( final long[] entry : entries )
+            {
+                dictionaries.add( readDictionary( entry ) );
+            }
+            return Collections.enumeration( dictionaries );
+        }
+        finally
+        {
+            channelLock.readLock().unlock();
+        }
+    }
+
+
+    @Override
+    public void store( final String pid, final Dictionary properties ) throws IOException
+    {
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        ConfigurationHandler.write( payload, properties );
+        commit( new Record( RECORD_STORE, pid, payload.toByteArray() ) );
+    }
+
+
+    @Override
+    public void delete( final String pid ) throws IOException
+    {
+        commit( new Record( RECORD_DELETE, pid, new byte[0] ) );
+    }
+
+
+    // queues the record and returns once it is written and forced to disk,
+    // either by this thread or by another one having written a batch
+    private void commit( final Record record ) throws IOException
+    {
+        synchronized ( lock )
+        {
+            if ( closed )
+            {
+                throw new IOException( "Configuration journal " + file + " is closed" );
+            }
+            record.sequence = ++appendSequence;
+            pending.add( record );
+        }
+
+        synchronized ( writeLock )
+        {
+            final List<Record> batch;
+            synchronized ( lock )
+            {
+                if ( committedSequence >= record.sequence )
+                {
+                    // written by the batch of another thread
+                    if ( record.failure != null )
+                    {
+                        throw record.failure;
+                    }
+                    return;
+                }
+                batch = new ArrayList<>( pending );
+                pending.clear();
+            }
+
+            IOException failure = null;
+            long position = end;
+            channelLock.readLock().lock();
+            try
+            {
+                if ( !channel.isOpen() )
+                {
+                    throw new IOException( "Configuration journal " + file + " is closed" );
+                }
+                final ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+                for ( int i = 0; i < buffers.length; i++ )
+                {
+                    final Record r = batch.get( i );
+                    r.position = position;
+                    buffers[i] = r.encode();
+                    position += buffers[i].remaining();
+                }
+                channel.position( end );
+                for ( final ByteBuffer buffer : buffers )
+                {
+                    while ( buffer.hasRemaining() )
+                    {
+                        channel.write( buffer );
+                    }
+                }
+                channel.force( false );
+                end = position;
+            }
+            catch ( final IOException ioe )
+            {
+                failure = ioe;
+                try
+                {
+                    // drop a partially written batch
+                    channel.truncate( end );
+                }
+                catch ( final IOException ignore )
+                {
+                    // the incomplete records are discarded when the journal is opened again
+                }
+            }
+            finally
+            {
+                channelLock.readLock().unlock();
+            }
+
+            synchronized ( lock )
+            {
+                for ( final Record r : batch )
+                {
+                    if ( failure == null )
+                    {
+                        liveBytes += apply( index, r.type, r.pid, r.position, r.length() );
+                    }
+                    else
+                    {
+                        r.failure = failure;
+                    }
+                }
+                committedSequence = batch.get( batch.size() - 1 ).sequence;
+            }
+
+            if ( record.failure != null )
+            {
+                throw record.failure;
+            }
+        }
+
+        scheduleCompaction();
+    }
+
+
+    private void scheduleCompaction()
+    {
+        synchronized ( lock )
+        {
+            if ( compacting || closed || end < COMPACT_MIN_SIZE || liveBytes * 2 > end )
+            {
+                return;
+            }
+            compacting = true;
+        }
+
+        final Runnable compaction = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    compact();
+                }
+                catch ( final IOException ioe )
+                {
+                    Log.logger.log( LogService.LOG_ERROR, "Failed compacting configuration journal " + file, ioe );
+                }
+                finally
+                {
+                    synchronized ( lock )
+                    {
+                        compacting = false;
+                    }
+                }
+            }
+        };
+        try
+        {
+            compactor.execute( compaction );
+        }
+        catch ( final RejectedExecutionException ree )
+        {
+            // closed in the meantime
+            synchronized ( lock )
+            {
+                compacting = false;
+            }
+        }
+    }
+
+
+    /**
+     * Copies the current records to a new file and replaces the journal
+     * with it. Records appended while copying are copied and replayed when
+     * replacing the journal.
+     */
+    void compact() throws IOException
+    {
+        final File tmp = new File( file.getPath() + ".tmp" );
+        final Map<String, long[]> snapshot;
+        final long snapshotEnd;
+        synchronized ( writeLock )
+        {
+            synchronized ( lock )
+            {
+                if ( closed )
+                {
+                    return;
+                }
+                snapshot = new HashMap<>( index );
+            }
+            snapshotEnd = end;
+        }
+
+        final FileChannel out = FileChannel.open( tmp.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE );
+        try
+        {
+            final ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH );
+            header.putInt( MAGIC ).flip();
+            writeFully( out, header, 0 );
+
+            // copy the records current at the time of the snapshot
+            final Map<String, long[]> newIndex = new HashMap<>();
+            long position = HEADER_LENGTH;
+            channelLock.readLock().lock();
+            try
+            {
+                for ( final Map.Entry<String, long[]> entry : snapshot.entrySet() )
+                {
+                    final long[] location = entry.getValue();
+                    final ByteBuffer buffer = ByteBuffer.allocate( ( int ) location[1] );
+                    readFully( channel, buffer, location[0] );
+                    buffer.flip();
+                    writeFully( out, buffer, position );
+                    newIndex.put( entry.getKey(), new long[] { position, location[1] } );
+                    position += location[1];
+                }
+            }
+            finally
+            {
+                channelLock.readLock().unlock();
+            }
+
+            synchronized ( writeLock )
+            {
+                channelLock.writeLock().lock();
+                try
+                {
+                    synchronized ( lock )
+                    {
+                        if ( closed )
+                        {
+                            return;
+                        }
+                    }
+
+                    // copy the records appended in the meantime
+                    final long tail = end - snapshotEnd;
+                    long copied = 0;
+                    while ( copied < tail )
+                    {
+                        copied += channel.transferTo( snapshotEnd + copied, tail - copied, out.position( position + copied ) );
+                    }
+                    replay( out, position, position + tail, newIndex );
+                    out.force( true );
+                    out.close();
+
+                    channel.close();
+                    try
+                    {
+                        Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE );
+                    }
+                    finally
+                    {
+                        // reopen the compacted journal or, if it could not replace
+                        // the journal, the unchanged one the index still refers to
+                        channel = FileChannel.open( file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE );
+                    }
+
+                    synchronized ( lock )
+                    {
+                        Log.logger.log( LogService.LOG_DEBUG, "Compacted configuration journal {0} from {1} to {2} bytes",
+                            new Object[] { file, end, position + tail } );
+                        index.clear();
+                        index.putAll( newIndex );
+                        liveBytes = sum( index );
+                        end = position + tail;
+                    }
+                }
+                finally
+                {
+                    channelLock.writeLock().unlock();
+                }
+            }
+        }
+        finally
+        {
+            if ( out.isOpen() )
+            {
+                out.close();
+            }
+            tmp.delete();
+        }
+    }
+
+
+    // reads the records from the given position up to the given size into
+    // the index and returns the end of the last complete and valid record
+    private static long replay( final FileChannel channel, long position, final long size,
+        final Map<String, long[]> index ) throws IOException
+    {
+        final ByteBuffer header = ByteBuffer.allocate( RECORD_HEADER_LENGTH );
+        final CRC32 crc = new CRC32();
+        while ( position + RECORD_HEADER_LENGTH <= size )
+        {
+            header.clear();
+            readFully( channel, header, position );
+            final int length = header.getInt( 0 );
+            if ( length <= 0 || position + RECORD_HEADER_LENGTH + length > size )
+            {
+                break;
+            }
+            final byte[] body = new byte[length];
+            readFully( channel, ByteBuffer.wrap( body ), position + RECORD_HEADER_LENGTH );
+            crc.reset();
+            crc.update( body, 0, length );
+            if ( ( int ) crc.getValue() != header.getInt( 4 ) )
+            {
+                break;
+            }
+
+            final DataInputStream in = new DataInputStream( new ByteArrayInputStream( body ) );
+            final byte type = in.readByte();
+            final String pid = in.readUTF();
+            apply( index, type, pid, position, RECORD_HEADER_LENGTH + length );
+            position += RECORD_HEADER_LENGTH + length;
+        }
+        return position;
+    }
+
+
+    // applies the record to the index and returns the change of the live bytes
+    private static long apply( final Map<String, long[]> index, final byte type, final String pid,
+        final long position, final long length )
+    {
+        final long[] previous;
+        if ( type == RECORD_STORE )
+        {
+            previous = index.put( pid, new long[] { position, length } );
+        }
+        else
+        {
+            previous = index.remove( pid );
+        }
+        return ( type == RECORD_STORE ? length : 0 ) - ( previous == null ? 0 : previous[1] );
+    }
+
+
+    private static long sum( final Map<String, long[]> index )
+    {
+        long sum = 0;
+        for ( final long[] entry : index.values() )
+        {
+            sum += entry[1];
+        }
+        return sum;
+    }
+
+
+    // called with the channel read lock held
+    private Dictionary readDictionary( final long[] entry ) throws IOException
+    {
+        final byte[] record = new byte[( int ) entry[1]];
+        readFully( channel, ByteBuffer.wrap( record ), entry[0] );
+        final DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream( record, RECORD_HEADER_LENGTH, record.length - RECORD_HEADER_LENGTH ) );
+        in.readByte();
+        in.readUTF();
+        return ConfigurationHandler.read( in );
+    }
+
+
+    private static void readFully( final FileChannel channel, final ByteBuffer buffer, long position )
+        throws IOException
+    {
+        while ( buffer.hasRemaining() )
+        {
+            final int read = channel.read( buffer, position );
+            if ( read < 0 )
+            {
+                throw new IOException( "Unexpected end of configuration journal" );
+            }
+            position += read;
+        }
+    }
+
+
+    private static void writeFully( final FileChannel channel, final ByteBuffer buffer, long position )
+        throws IOException
+    {
+        while ( buffer.hasRemaining() )
+        {
+            position += channel.write( buffer, position );
+        }
+    }
+
+
+    private static final class Record
+    {
+        final byte type;
+
+        final String pid;
+
+        final byte[] payload;
+
+        long sequence;
+
+        long position;
+
+        private byte[] body;
+
+        IOException failure;
+
+        Record( final byte type, final String pid, final byte[] payload )
+        {
+            this.type = type;
+            this.pid = pid;
+            this.payload = payload;
+        }
+
+        ByteBuffer encode() throws IOException
+        {
+            if ( body == null )
+            {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream( payload.length + pid.length() + 8 );
+                final DataOutputStream out = new DataOutputStream( bytes );
+                out.writeByte( type );
+                out.writeUTF( pid );
+                out.write( payload );
+                out.flush();
+                body = bytes.toByteArray();
+            }
+            final CRC32 crc = new CRC32();
+            crc.update( body, 0, body.length );
+            final ByteBuffer buffer = ByteBuffer.allocate( RECORD_HEADER_LENGTH + body.length );
+            buffer.putInt( body.length ).putInt( ( int ) crc.getValue() ).put( body ).flip();
+            return buffer;
+        }
+
+        long length()
+        {
+            return RECORD_HEADER_LENGTH + body.length;
+        }
+    }
+}
@@ -453,6 +453,23 @@ public class ConfigurationManagerTest
         assertEquals(0, pm.getStored().size());
     }
 
+    @Test
+    public void test_updatesOfOneServiceShareKey() throws Exception
+    {
+        ConfigurationManager configMgr = new ConfigurationManager(new PersistenceManagerProxy(new MockPersistenceManager()), null);
+
+        final ServiceReference sr = Mockito.mock( ServiceReference.class );
+        Mockito.when( sr.getProperty( Constants.SERVICE_ID ) ).thenReturn( 42L );
+
+        final UpdateThread.KeyedTask first = configMgr.new ManagedServiceUpdate( new String[] { "a" }, sr, null );
+        final UpdateThread.KeyedTask second = configMgr.new ManagedServiceUpdate( new String[] { "b" }, sr, null );
+
+        assertTrue( first.getKeys().contains( "a" ) );
+        assertTrue( second.getKeys().contains( "b" ) );
+        assertTrue( first.getKeys().contains( ConfigurationManager.getServiceKey( sr ) ) );
+        assertTrue( second.getKeys().contains( ConfigurationManager.getServiceKey( sr ) ) );
+    }
+
     @Test
     public void test_namedFactoryConfigurationCleanup() throws Exception {
         MockNotCachablePersistenceManager pm = new MockNotCachablePersistenceManager();
@@ -19,11 +19,16 @@
 package org.apache.felix.cm.impl;
 
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 
@@ -50,4 +55,119 @@ public class UpdateThreadTest
             updateThread.terminate();
         }
     }
+
+    @Test
+    public void testSameKeyInOrderOtherKeysConcurrently() throws Exception {
+        final UpdateThread updateThread = new UpdateThread(null, "name", 4);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(1);
+        updateThread.start();
+        try {
+            // a slow task for pid a must not delay pid b
+            updateThread.schedule(new Task("a", "a1", order) {
+                @Override
+                public void run() {
+                    try {
+                        blocked.await(1L, TimeUnit.MINUTES);
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                    super.run();
+                }
+            });
+            updateThread.schedule(new Task("a", "a2", order));
+            updateThread.schedule(new Task("b", "b1", order) {
+                @Override
+                public void run() {
+                    super.run();
+                    blocked.countDown();
+                }
+            });
+            updateThread.schedule(new Task("a", "a3", order) {
+                @Override
+                public void run() {
+                    super.run();
+                    done.countDown();
+                }
+            });
+            assertTrue(done.await(1L, TimeUnit.MINUTES));
+            assertEquals("b1", order.get(0));
+            assertEquals(4, order.size());
+            assertEquals(order.indexOf("a1") + 1, order.indexOf("a2"));
+            assertEquals(order.indexOf("a2") + 1, order.indexOf("a3"));
+        } finally {
+            updateThread.terminate();
+        }
+    }
+
+    @Test
+    public void testSupersededTaskNotRun() throws Exception {
+        final UpdateThread updateThread = new UpdateThread(null, "name", 2);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(1);
+
+        // queue before starting, the later updates replace the earlier ones
+        updateThread.schedule(new Task("a", "a1", order, true));
+        updateThread.schedule(new Task("a", "a2", order, true));
+        updateThread.schedule(new Task("b", "b1", order, true));
+        updateThread.schedule(new Task("a", "a3", order, true));
+        updateThread.schedule(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        updateThread.start();
+        try {
+            assertTrue(done.await(1L, TimeUnit.MINUTES));
+            assertEquals(2, order.size());
+            assertTrue(order.contains("a3"));
+            assertTrue(order.contains("b1"));
+        } finally {
+            updateThread.terminate();
+        }
+    }
+
+    private static class Task implements UpdateThread.KeyedTask {
+
+        private final String key;
+
+        private final String name;
+
+        private final List<String> order;
+
+        private final boolean coalesce;
+
+        Task(final String key, final String name, final List<String> order) {
+            this(key, name, order, false);
+        }
+
+        Task(final String key, final String name, final List<String> order, final boolean coalesce) {
+            this.key = key;
+            this.name = name;
+            this.order = order;
+            this.coalesce = coalesce;
+        }
+
+        @Override
+        public void run() {
+            order.add(name);
+        }
+
+        @Override
+        public Collection<String> getKeys() {
+            return Collections.singleton(key);
+        }
+
+        @Override
+        public boolean supersedes(final Runnable task) {
+            return coalesce && task instanceof Task && ((Task) task).key.equals(key);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
 }
@@ -178,4 +178,63 @@ public class CachingPersistenceManagerProxyTest
         assertTrue(pids.contains("new_pid_for_newf1"));
         assertTrue(pids.contains("new_pid_for_newf2"));
     }
-}
\ No newline at end of file
+
+    @Test public void testListByIndexedProperties() throws Exception
+    {
+        final CachingPersistenceManagerProxy cpm = new CachingPersistenceManagerProxy(this.createAndPopulatePersistenceManager());
+
+        assertEquals(3, cpm.getDictionaries(SimpleFilter.parse("(service.factoryPid=" + FACTORY_PID_A + ")")).size());
+        assertEquals(1, cpm.getDictionaries(SimpleFilter.parse("(SERVICE.PID=" + PID_B + ")")).size());
+        assertEquals(0, cpm.getDictionaries(SimpleFilter.parse("(service.pid=unknown)")).size());
+        assertEquals(5, cpm.getDictionaries(SimpleFilter.parse("(|(service.factoryPid=" + FACTORY_PID_A + ")(service.factoryPid=" + FACTORY_PID_B + "))")).size());
+
+        // the remaining conditions are still evaluated
+        assertEquals(1, cpm.getDictionaries(SimpleFilter.parse("(&(service.factoryPid=" + FACTORY_PID_A + ")(value=" + PREFIX + FA_PID_B + "))")).size());
+        assertEquals(0, cpm.getDictionaries(SimpleFilter.parse("(&(service.factoryPid=" + FACTORY_PID_A + ")(value=" + PREFIX + PID_A + "))")).size());
+        assertEquals(6, cpm.getDictionaries(SimpleFilter.parse("(|(service.factoryPid=" + FACTORY_PID_A + ")(value=" + PREFIX + "foo*))")).size());
+    }
+
+    @Test public void testLocationIndexFollowsStoreAndDelete() throws Exception
+    {
+        final CachingPersistenceManagerProxy cpm = new CachingPersistenceManagerProxy(this.createAndPopulatePersistenceManager());
+        final SimpleFilter locationA = SimpleFilter.parse("(service.bundleLocation=location.a)");
+        final SimpleFilter locationB = SimpleFilter.parse("(service.bundleLocation=location.b)");
+        assertTrue(cpm.getDictionaries(locationA).isEmpty());
+
+        final Dictionary<String, Object> dict = createConfiguration(PID_A, null);
+        dict.put(ConfigurationAdmin.SERVICE_BUNDLELOCATION, "location.a");
+        cpm.store(PID_A, dict);
+        assertEquals(1, cpm.getDictionaries(locationA).size());
+
+        dict.put(ConfigurationAdmin.SERVICE_BUNDLELOCATION, "location.b");
+        cpm.store(PID_A, dict);
+        assertTrue(cpm.getDictionaries(locationA).isEmpty());
+        assertEquals(1, cpm.getDictionaries(locationB).size());
+
+        cpm.delete(PID_A);
+        assertTrue(cpm.getDictionaries(locationB).isEmpty());
+    }
+
+    @Test public void testConfiguredIndex() throws Exception
+    {
+        final CachingPersistenceManagerProxy cpm = new CachingPersistenceManagerProxy(this.createAndPopulatePersistenceManager(),
+            new String[] {"port"});
+
+        Dictionary<String, Object> dict = createConfiguration("p.string", null);
+        dict.put("port", "80");
+        cpm.store("p.string", dict);
+        dict = createConfiguration("p.integer", null);
+        dict.put("Port", 80);
+        cpm.store("p.integer", dict);
+        dict = createConfiguration("p.array", null);
+        dict.put("port", new String[] {"8080", "80"});
+        cpm.store("p.array", dict);
+        dict = createConfiguration("p.other", null);
+        dict.put("port", "8080");
+        cpm.store("p.other", dict);
+
+        assertEquals(3, cpm.getDictionaries(SimpleFilter.parse("(port=80)")).size());
+        assertEquals(2, cpm.getDictionaries(SimpleFilter.parse("(port=8080)")).size());
+        assertTrue(cpm.getDictionaries(SimpleFilter.parse("(port=443)")).isEmpty());
+    }
+}
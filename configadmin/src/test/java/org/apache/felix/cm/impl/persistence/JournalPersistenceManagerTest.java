@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.cm.impl.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Constants;
+
+
+public class JournalPersistenceManagerTest
+{
+    private File dir;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        dir = Files.createTempDirectory( "cm-journal" ).toFile();
+        file = new File( dir, JournalPersistenceManager.DEFAULT_JOURNAL_FILE );
+    }
+
+    @After
+    public void tearDown()
+    {
+        for ( final File f : dir.listFiles() )
+        {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private Dictionary<String, Object> createConfiguration( final String pid, final Object value )
+    {
+        final Dictionary<String, Object> dict = new Hashtable<>();
+        dict.put( Constants.SERVICE_PID, pid );
+        dict.put( "value", value );
+        return dict;
+    }
+
+    @Test
+    public void testStoreLoadDelete() throws IOException
+    {
+        JournalPersistenceManager pm = new JournalPersistenceManager( file );
+        pm.store( "a", createConfiguration( "a", "1" ) );
+        pm.store( "b", createConfiguration( "b", new String[] { "x", "y" } ) );
+        pm.store( "a", createConfiguration( "a", "2" ) );
+        pm.delete( "b" );
+
+        assertTrue( pm.exists( "a" ) );
+        assertFalse( pm.exists( "b" ) );
+        assertEquals( "2", pm.load( "a" ).get( "value" ) );
+        assertNull( pm.load( "b" ) );
+        pm.close();
+
+        pm = new JournalPersistenceManager( file );
+        assertEquals( "2", pm.load( "a" ).get( "value" ) );
+        assertFalse( pm.exists( "b" ) );
+        final List<?> dictionaries = Collections.list( pm.getDictionaries() );
+        assertEquals( 1, dictionaries.size() );
+        pm.close();
+    }
+
+    @Test
+    public void testTruncatedRecordDiscarded() throws IOException
+    {
+        JournalPersistenceManager pm = new JournalPersistenceManager( file );
+        pm.store( "a", createConfiguration( "a", "1" ) );
+        pm.store( "b", createConfiguration( "b", "1" ) );
+        pm.close();
+
+        try ( RandomAccessFile raf = new RandomAccessFile( file, "rw" ) )
+        {
+            raf.setLength( raf.length() - 3 );
+        }
+
+        pm = new JournalPersistenceManager( file );
+        assertTrue( pm.exists( "a" ) );
+        assertFalse( pm.exists( "b" ) );
+
+        // appending after the discarded record
+        pm.store( "c", createConfiguration( "c", "1" ) );
+        pm.close();
+
+        pm = new JournalPersistenceManager( file );
+        assertTrue( pm.exists( "a" ) );
+        assertEquals( "1", pm.load( "c" ).get( "value" ) );
+        pm.close();
+    }
+
+    @Test
+    public void testConcurrentStores() throws Exception
+    {
+        final JournalPersistenceManager pm = new JournalPersistenceManager( file );
+        final int threads = 8;
+        final int stores = 50;
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread[] workers = new Thread[threads];
+        for ( int t = 0; t < threads; t++ )
+        {
+            final int thread = t;
+            workers[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for ( int i = 0; i < stores; i++ )
+                        {
+                            final String pid = "pid." + thread + "." + ( i % 10 );
+                            pm.store( pid, createConfiguration( pid, String.valueOf( i ) ) );
+                        }
+                    }
+                    catch ( final Throwable e )
+                    {
+                        failure.set( e );
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        start.countDown();
+        for ( final Thread worker : workers )
+        {
+            worker.join();
+        }
+        assertNull( failure.get() );
+        pm.close();
+
+        final JournalPersistenceManager reopened = new JournalPersistenceManager( file );
+        assertEquals( threads * 10, Collections.list( reopened.getDictionaries() ).size() );
+        for ( int t = 0; t < threads; t++ )
+        {
+            for ( int i = 0; i < 10; i++ )
+            {
+                final Dictionary<?, ?> dict = reopened.load( "pid." + t + "." + i );
+                assertNotNull( dict );
+                assertEquals( String.valueOf( stores - 10 + i ), dict.get( "value" ) );
+            }
+        }
+        reopened.close();
+    }
+
+    @Test
+    public void testCompact() throws IOException
+    {
+        JournalPersistenceManager pm = new JournalPersistenceManager( file );
+        for ( int i = 0; i < 100; i++ )
+        {
+            pm.store( "a", createConfiguration( "a", String.valueOf( i ) ) );
+            pm.store( "b" + i, createConfiguration( "b" + i, "b" ) );
+            pm.delete( "b" + i );
+        }
+        pm.store( "c", createConfiguration( "c", "c" ) );
+        final long size = file.length();
+
+        pm.compact();
+        assertTrue( file.length() < size / 10 );
+        assertEquals( "99", pm.load( "a" ).get( "value" ) );
+
+        pm.store( "d", createConfiguration( "d", "d" ) );
+        pm.close();
+
+        pm = new JournalPersistenceManager( file );
+        assertEquals( 3, Collections.list( pm.getDictionaries() ).size() );
+        assertEquals( "99", pm.load( "a" ).get( "value" ) );
+        assertEquals( "c", pm.load( "c" ).get( "value" ) );
+        assertEquals( "d", pm.load( "d" ).get( "value" ) );
+        assertFalse( pm.exists( "b0" ) );
+        pm.close();
+    }
+}
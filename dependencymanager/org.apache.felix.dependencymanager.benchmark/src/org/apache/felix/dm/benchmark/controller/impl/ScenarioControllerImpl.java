@@ -20,15 +20,21 @@ package org.apache.felix.dm.benchmark.controller.impl;
 
 import static java.lang.System.out;
 import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toList;
 import static org.apache.felix.dm.benchmark.scenario.Artist.ALBUMS;
 import static org.apache.felix.dm.benchmark.scenario.Artist.ARTISTS;
 import static org.apache.felix.dm.benchmark.scenario.Artist.TRACKS;
 import static org.apache.felix.dm.benchmark.scenario.Helper.debug;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
@@ -36,7 +42,9 @@ import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
@@ -51,6 +59,9 @@ import org.osgi.framework.BundleContext;
 
 /**
  * The controller which perform microbenchmarks on some scenario bundles.
+ * The same scenario is implemented with Dependency Manager (serial and parallel), Declarative Services
+ * and iPOJO; for each scenario bundle, the activation and deactivation times, the service events fired,
+ * and the bytes allocated are measured, and the results are written in a JSON file for trend tracking.
  * 
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
@@ -60,8 +71,20 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      */
     final List<String> TESTS = Arrays.asList(
         "org.apache.felix.dependencymanager.benchmark.dependencymanager",
-        "org.apache.felix.dependencymanager.benchmark.dependencymanager.parallel"
+        "org.apache.felix.dependencymanager.benchmark.dependencymanager.parallel",
+        "org.apache.felix.dependencymanager.benchmark.scr",
+        "org.apache.felix.dependencymanager.benchmark.ipojo"
     );
+
+    /**
+     * Number of components created by each scenario bundle.
+     */
+    final static int COMPONENTS = ARTISTS + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS)));
+
+    /**
+     * Framework property giving the file where the JSON results are written.
+     */
+    final static String OUTPUT = "benchmark.output";
     
     /**
      * Our injected bundle context, used to lookup the bundles to benchmark.
@@ -78,6 +101,11 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      * attribute is true.
      */
     private volatile boolean m_doProcessingInStartStop;
+
+    /**
+     * Number of service events fired for the Artist/Album/Track services.
+     */
+    private final AtomicLong m_serviceEvents = new AtomicLong();
         
     /**
      * Our component is starting: we'll first stop all bundles participating in the benchmark, then we'll 
@@ -96,7 +124,7 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
         // wait a bit in order to let the gogo banner be displayed before we start the bench.
         Unchecked.run(() -> Thread.sleep(500)); 
         
-        out.println("Starting benchmarks (each tested bundle will add/remove " + (ARTISTS + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS)))) 
+        out.println("Starting benchmarks (each tested bundle will add/remove " + COMPONENTS
            + " components during bundle activation).");
        
         // Stop all tested bundles.
@@ -107,16 +135,26 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
         
         // Register our controller service
         m_bctx.registerService(ScenarioController.class.getName(), this, null);
+
+        // Count the service events fired for the scenario services.
+        Unchecked.run(() -> m_bctx.addServiceListener(event -> m_serviceEvents.incrementAndGet(), 
+            Stream.of(Artist.class, Album.class, Track.class)
+                .map(c -> "(objectClass=" + c.getName() + ")")
+                .collect(joining("", "(|", ")"))));
         
+        List<ScenarioResult> results = new ArrayList<>();
+
         // Start/stop several times the tested bundles. (no processing done in components start methods).
         m_doProcessingInStartStop = false;
         out.println("\n\t[Starting benchmarks with no processing done in components start methods]");
-        startStopScenarioBundles(TESTS, 50);
+        startStopScenarioBundles(TESTS, 50, results);
        
         // Start/stop several times the tested bundles (processing is done in components start methods).
         m_doProcessingInStartStop = true;
         out.println("\n\t[Starting benchmarks with processing done in components start methods]");
-        startStopScenarioBundles(TESTS, 5);
+        startStopScenarioBundles(TESTS, 5, results);
+
+        writeResults(results);
     }
 
     @Override
@@ -166,16 +204,24 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
             
     // ------------------- Private methods -----------------------------------------------------
         
-    private void startStopScenarioBundles(List<String> tests, int iterations) {
+    private void startStopScenarioBundles(List<String> tests, int iterations, List<ScenarioResult> results) {
         forEachScenarioBundle(tests, bundle -> {
             out.print("\nBenchmarking bundle: " + bundle.getSymbolicName() + " ");            
-            List<Long> sortedResults = LongStream.range(0, iterations)
+            ScenarioResult result = new ScenarioResult(bundle.getSymbolicName(), m_doProcessingInStartStop, COMPONENTS);
+            LongStream.range(0, iterations)
                 .peek(i -> out.print("."))
-                .map(n -> durationOf(() -> start(bundle)))
-                .peek(n -> stop(bundle))
-                .sorted().boxed().collect(toList());
+                .forEach(i -> {
+                    long events = m_serviceEvents.get();
+                    long allocated = allocatedBytes();
+                    long startDuration = durationOf(() -> start(bundle));
+                    long stopDuration = durationOf(() -> stop(bundle));
+                    result.add(startDuration, stopDuration, m_serviceEvents.get() - events, 
+                        allocated < 0 ? -1 : allocatedBytes() - allocated);
+                });
             out.println();
-            displaySortedResults(sortedResults);
+            displaySortedResults("results", result.getStartDurations());
+            displaySortedResults("stop results", result.getStopDurations());
+            results.add(result);
             Unchecked.run(() -> Thread.sleep(500));
         });               
     }
@@ -184,17 +230,47 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      * Displays meaningful values in the sorted results (first=fastest, midle=average, last entry=slowest)
      * @param sortedResults
      */
-    private void displaySortedResults(List<Long> sortedResults) {
+    private void displaySortedResults(String label, List<Long> sortedResults) {
         // We don't display an average of the duration times; Instead, we sort the results,
         // and we display the significant results (the first entry is the fastest, the middle entry is the
         // average, the last entry is the slowest ...)
-        out.printf("-> results in nanos: [%s]%n",  
-            Stream.of(0f, 24.99f, 49.99f, 74.99f, 99.99f)
-                .mapToInt(perc -> (int) (perc * sortedResults.size() / 100))
-                .mapToObj(sortedResults::get)
+        out.printf("-> %s in nanos: [%s]%n", label,
+            IntStream.range(0, ScenarioResult.PERCENTILES.length)
+                .mapToObj(i -> ScenarioResult.percentile(sortedResults, ScenarioResult.PERCENTILES[i]))
                 .map(this::formatNano)
                 .collect(joining(" | ")));
     }
+
+    /**
+     * Writes the results of all scenario bundles in the JSON file given by the "benchmark.output"
+     * framework property (benchmark-results.json by default).
+     */
+    private void writeResults(List<ScenarioResult> results) {
+        String output = Optional.ofNullable(m_bctx.getProperty(OUTPUT)).orElse("benchmark-results.json");
+        String json = ScenarioResult.toJson(results, Instant.now().toString(), System.getProperty("java.version"));
+        Unchecked.run(() -> Files.write(Paths.get(output), json.getBytes(StandardCharsets.UTF_8)));
+        out.println("\nResults written to " + Paths.get(output).toAbsolutePath());
+    }
+
+    /**
+     * Returns the bytes allocated so far by all live threads, or -1 if the JVM can't measure it.
+     */
+    private static long allocatedBytes() {
+        try {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+                if (allocations.isThreadAllocatedMemoryEnabled()) {
+                    return LongStream.of(allocations.getThreadAllocatedBytes(threads.getAllThreadIds()))
+                        .filter(bytes -> bytes > 0)
+                        .sum();
+                }
+            }
+        } catch (NoClassDefFoundError e) {
+            // com.sun.management is not available
+        }
+        return -1;
+    }
     
     /**
      * Displays a nanosecond value using thousands separator. 
@@ -246,8 +322,7 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      */
     void start(Bundle b) {
         try {
-            m_startLatch = new CountDownLatch(ARTISTS
-                + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS))));
+            m_startLatch = new CountDownLatch(COMPONENTS);
             
             debug(() -> "starting bundle " + b.getSymbolicName());
             b.start();
@@ -274,8 +349,7 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      */
     void stop(Bundle b) {
         try {
-            m_stopLatch = new CountDownLatch(ARTISTS
-                + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS))));
+            m_stopLatch = new CountDownLatch(COMPONENTS);
                         
             debug(() -> "stopping bundle " + b.getSymbolicName());
             b.stop();
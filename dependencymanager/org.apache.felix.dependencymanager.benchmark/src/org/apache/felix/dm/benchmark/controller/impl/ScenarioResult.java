@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.benchmark.controller.impl;
+
+import static java.util.stream.Collectors.joining;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The measurements done on a scenario bundle: one entry per start/stop iteration.
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+class ScenarioResult {
+    /**
+     * Percentiles reported for each measurement (first=fastest, middle=average, last=slowest).
+     */
+    final static float[] PERCENTILES = { 0f, 24.99f, 49.99f, 74.99f, 99.99f };
+    final static String[] PERCENTILE_NAMES = { "min", "p25", "p50", "p75", "max" };
+
+    private final String m_bundle;
+    private final boolean m_processing;
+    private final int m_components;
+    private final List<Long> m_startDurations = new ArrayList<>();
+    private final List<Long> m_stopDurations = new ArrayList<>();
+    private final List<Long> m_serviceEvents = new ArrayList<>();
+    private final List<Long> m_allocatedBytes = new ArrayList<>();
+
+    ScenarioResult(String bundle, boolean processing, int components) {
+        m_bundle = bundle;
+        m_processing = processing;
+        m_components = components;
+    }
+
+    /**
+     * Records one start/stop iteration.
+     * @param allocatedBytes the bytes allocated during the iteration, or -1 if not supported by the JVM
+     */
+    void add(long startDuration, long stopDuration, long serviceEvents, long allocatedBytes) {
+        m_startDurations.add(startDuration);
+        m_stopDurations.add(stopDuration);
+        m_serviceEvents.add(serviceEvents);
+        m_allocatedBytes.add(allocatedBytes);
+    }
+
+    List<Long> getStartDurations() {
+        return sorted(m_startDurations);
+    }
+
+    List<Long> getStopDurations() {
+        return sorted(m_stopDurations);
+    }
+
+    /**
+     * Returns the value at the given percentile of a sorted list.
+     */
+    static long percentile(List<Long> sorted, float perc) {
+        return sorted.get((int) (perc * sorted.size() / 100));
+    }
+
+    /**
+     * Returns this result as a JSON object, the median is used for the derived rates.
+     */
+    String toJson() {
+        long start = percentile(getStartDurations(), 49.99f);
+        long stop = percentile(getStopDurations(), 49.99f);
+        long events = percentile(sorted(m_serviceEvents), 49.99f);
+        long allocated = percentile(sorted(m_allocatedBytes), 49.99f);
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"bundle\":\"").append(m_bundle).append("\"");
+        json.append(",\"processing\":").append(m_processing);
+        json.append(",\"components\":").append(m_components);
+        json.append(",\"iterations\":").append(m_startDurations.size());
+        json.append(",\"startNanos\":").append(percentiles(getStartDurations()));
+        json.append(",\"stopNanos\":").append(percentiles(getStopDurations()));
+        json.append(",\"activationsPerSecond\":").append(perSecond(m_components, start));
+        json.append(",\"deactivationsPerSecond\":").append(perSecond(m_components, stop));
+        json.append(",\"serviceEvents\":").append(events);
+        json.append(",\"nanosPerServiceEvent\":").append(events > 0 ? (start + stop) / events : 0);
+        json.append(",\"allocatedBytes\":").append(allocated);
+        json.append(",\"allocatedBytesPerSecond\":").append(allocated < 0 ? -1 : perSecond(allocated, start + stop));
+        return json.append("}").toString();
+    }
+
+    private static String percentiles(List<Long> sorted) {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            json.append(i == 0 ? "" : ",").append("\"").append(PERCENTILE_NAMES[i]).append("\":")
+                .append(percentile(sorted, PERCENTILES[i]));
+        }
+        return json.append("}").toString();
+    }
+
+    private static long perSecond(long count, long nanos) {
+        return nanos > 0 ? (long) (count * 1_000_000_000d / nanos) : 0;
+    }
+
+    private static List<Long> sorted(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Returns the given results as a JSON document.
+     */
+    static String toJson(List<ScenarioResult> results, String timestamp, String javaVersion) {
+        return "{\"timestamp\":\"" + timestamp + "\",\"java\":\"" + javaVersion + "\",\"results\":["
+            + results.stream().map(ScenarioResult::toJson).collect(joining(",\n  ", "\n  ", "\n")) + "]}\n";
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.benchmark.ipojo;
+
+import static org.apache.felix.dm.benchmark.scenario.Artist.ALBUMS;
+import static org.apache.felix.dm.benchmark.scenario.Artist.ARTISTS;
+import static org.apache.felix.dm.benchmark.scenario.Artist.TRACKS;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.apache.felix.dm.benchmark.controller.ScenarioController;
+import org.apache.felix.dm.benchmark.scenario.Helper;
+import org.apache.felix.ipojo.ComponentInstance;
+import org.apache.felix.ipojo.Factory;
+import org.apache.felix.ipojo.annotations.Component;
+import org.apache.felix.ipojo.annotations.Instantiate;
+import org.apache.felix.ipojo.annotations.Invalidate;
+import org.apache.felix.ipojo.annotations.Requires;
+import org.apache.felix.ipojo.annotations.Validate;
+
+/**
+ * Scenario based on iPOJO: creates the same Artists/Albums/Tracks graph as the
+ * Dependency Manager scenario, using the iPOJO factories of this bundle.
+ * 
+ * iPOJO aggregate dependencies become valid as soon as one service matches, so each Artist
+ * is created after its Albums, and each Album after its Tracks.
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+@Component(immediate = true)
+@Instantiate
+public class IpojoBenchmark {
+    @Requires
+    ScenarioController m_controller;
+
+    @Requires(filter = "(factory.name=" + IpojoArtist.FACTORY + ")")
+    Factory m_artists;
+
+    @Requires(filter = "(factory.name=" + IpojoAlbum.FACTORY + ")")
+    Factory m_albums;
+
+    @Requires(filter = "(factory.name=" + IpojoTrack.FACTORY + ")")
+    Factory m_tracks;
+
+    final List<ComponentInstance> m_instances = new ArrayList<>();
+
+    @Validate
+    void start() {
+        Helper.debug(() -> "IpojoBenchmark.start");
+        for (int i = 0; i < ARTISTS; i++) {
+            List<String> albums = new ArrayList<>();
+            for (int j = 0; j < ALBUMS; j++) {
+                List<String> tracks = new ArrayList<>();
+                for (int k = 0; k < TRACKS; k++) {
+                    String id = String.valueOf(Helper.generateId());
+                    Hashtable<String, Object> conf = new Hashtable<>();
+                    conf.put("id", id);
+                    m_instances.add(create(m_tracks, conf));
+                    tracks.add(id);
+                }
+                String id = String.valueOf(Helper.generateId());
+                Hashtable<String, Object> conf = new Hashtable<>();
+                conf.put("id", id);
+                conf.put("requires.filters", new String[] { "tracks", Helper.idFilter(tracks) });
+                m_instances.add(create(m_albums, conf));
+                albums.add(id);
+            }
+            Hashtable<String, Object> conf = new Hashtable<>();
+            conf.put("requires.filters", new String[] { "albums", Helper.idFilter(albums) });
+            m_instances.add(create(m_artists, conf));
+        }
+    }
+
+    @Invalidate
+    void stop() {
+        // dispose each artist before its albums, and each album before its tracks
+        for (int i = m_instances.size() - 1; i >= 0; i--) {
+            m_instances.get(i).dispose();
+        }
+        m_instances.clear();
+    }
+
+    private ComponentInstance create(Factory factory, Hashtable<String, Object> conf) {
+        try {
+            return factory.createComponentInstance(conf);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not create instance of " + factory.getName(), e);
+        }
+    }
+}
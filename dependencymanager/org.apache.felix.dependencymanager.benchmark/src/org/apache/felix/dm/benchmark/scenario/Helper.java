@@ -18,6 +18,9 @@
  */
 package org.apache.felix.dm.benchmark.scenario;
 
+import static java.util.stream.Collectors.joining;
+
+import java.util.Collection;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
@@ -66,4 +69,12 @@ public class Helper {
     public static long generateId() {
         return m_idGenerator.incrementAndGet();
     }
+
+    /**
+     * Returns a filter matching the services having one of the given "id" service properties.
+     * Used by the component models where a single aggregate dependency is bound to several services.
+     */
+    public static String idFilter(Collection<String> ids) {
+        return ids.stream().map(id -> "(id=" + id + ")").collect(joining("", "(|", ")"));
+    }
 }
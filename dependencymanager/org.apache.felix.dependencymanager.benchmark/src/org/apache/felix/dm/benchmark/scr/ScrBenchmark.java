@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.benchmark.scr;
+
+import static org.apache.felix.dm.benchmark.scenario.Artist.ALBUMS;
+import static org.apache.felix.dm.benchmark.scenario.Artist.ARTISTS;
+import static org.apache.felix.dm.benchmark.scenario.Artist.TRACKS;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.apache.felix.dm.benchmark.controller.ScenarioController;
+import org.apache.felix.dm.benchmark.scenario.Helper;
+import org.osgi.service.component.ComponentFactory;
+import org.osgi.service.component.ComponentInstance;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+
+/**
+ * Scenario based on Declarative Services: creates the same Artists/Albums/Tracks graph as the
+ * Dependency Manager scenario, using the SCR component factories of this bundle.
+ * 
+ * SCR factory instances can only be created once their references are satisfied, so each Artist
+ * is created after its Albums, and each Album after its Tracks.
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+@Component
+public class ScrBenchmark {
+    @Reference
+    ScenarioController m_controller;
+
+    @Reference(target = "(component.factory=" + ScrArtist.FACTORY + ")")
+    ComponentFactory m_artists;
+
+    @Reference(target = "(component.factory=" + ScrAlbum.FACTORY + ")")
+    ComponentFactory m_albums;
+
+    @Reference(target = "(component.factory=" + ScrTrack.FACTORY + ")")
+    ComponentFactory m_tracks;
+
+    final List<ComponentInstance> m_instances = new ArrayList<>();
+
+    @Activate
+    void start() {
+        Helper.debug(() -> "ScrBenchmark.start");
+        for (int i = 0; i < ARTISTS; i++) {
+            List<String> albums = new ArrayList<>();
+            for (int j = 0; j < ALBUMS; j++) {
+                List<String> tracks = new ArrayList<>();
+                for (int k = 0; k < TRACKS; k++) {
+                    String id = String.valueOf(Helper.generateId());
+                    Hashtable<String, Object> props = new Hashtable<>();
+                    props.put("id", id);
+                    m_instances.add(m_tracks.newInstance(props));
+                    tracks.add(id);
+                }
+                String id = String.valueOf(Helper.generateId());
+                Hashtable<String, Object> props = new Hashtable<>();
+                props.put("id", id);
+                props.put("tracks.target", Helper.idFilter(tracks));
+                props.put("tracks.cardinality.minimum", TRACKS);
+                m_instances.add(m_albums.newInstance(props));
+                albums.add(id);
+            }
+            Hashtable<String, Object> props = new Hashtable<>();
+            props.put("albums.target", Helper.idFilter(albums));
+            props.put("albums.cardinality.minimum", ALBUMS);
+            m_instances.add(m_artists.newInstance(props));
+        }
+    }
+
+    @Deactivate
+    void stop() {
+        // dispose each artist before its albums, and each album before its tracks
+        for (int i = m_instances.size() - 1; i >= 0; i--) {
+            m_instances.get(i).dispose();
+        }
+        m_instances.clear();
+    }
+}
@@ -18,24 +18,31 @@
  */
 package org.apache.felix.dm.impl;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 import org.apache.felix.dm.DependencyManager;
 import org.osgi.service.cm.ConfigurationException;
 
 /**
- * Utility methods for invoking callbacks. Lookups of callbacks are accellerated by using a LRU cache.
+ * Utility methods for invoking callbacks. Lookups of callbacks are accellerated by using a per class callback table,
+ * which can be read without locking, and callbacks are invoked using method handles instead of reflection.
  * 
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
@@ -45,7 +52,10 @@ public class InvocationUtil {
 	 */
     private static final Class<?>[] VOID = new Class[] {};
     
-    private static final Map<Key, Method> m_methodCache;
+    /**
+     * Maximum number of callbacks cached for a given class.
+     */
+    private static final int m_methodCacheSize;
     static {
         int size = 4096;
         try {
@@ -55,9 +65,22 @@ public class InvocationUtil {
             }
         }
         catch (Exception e) {}
-        m_methodCache = new LRUMap(Math.max(size, 64));
+        m_methodCacheSize = Math.max(size, 64);
     }
     
+    /**
+     * The callbacks declared by each class, by name and signature. The tables are attached to the classes
+     * themselves, so they don't prevent classes of uninstalled bundles from being garbage collected. The
+     * classes only hold them softly, so they are kept across garbage collections but don't prevent this bundle
+     * from being garbage collected either.
+     */
+    private static final ClassValue<AtomicReference<Reference<Map<Key, Callback>>>> m_callbacks = new ClassValue<AtomicReference<Reference<Map<Key, Callback>>>>() {
+        @Override
+        protected AtomicReference<Reference<Map<Key, Callback>>> computeValue(Class<?> type) {
+            return new AtomicReference<>();
+        }
+    };
+    
     /**
      * Interface internally used to handle a ConfigurationAdmin update synchronously, in a component executor queue.
      */
@@ -149,12 +172,10 @@ public class InvocationUtil {
             clazz = object.getClass();
         }
         
-        Method m = null;
         for (int i = 0; i < signatures.length; i++) {
-            Class<?>[] signature = signatures[i];
-            m = getDeclaredMethod(clazz, name, signature, isSuper);
-            if (m != null) {
-                return m.invoke(object, parameters[i]);
+            Callback callback = getCallback(clazz, name, signatures[i], isSuper);
+            if (callback.m_method != null) {
+                return callback.invoke(object, parameters[i]);
             }
         }
         throw new NoSuchMethodException(name);
@@ -218,16 +239,14 @@ public class InvocationUtil {
             clazz = object.getClass();
         }
         
-        Method m = null;
         for (int i = 0; i < signatures.length; i++) {
-            Class<?>[] signature = signatures[i];
-            m = getDeclaredMethod(clazz, name, signature, isSuper);
-            if (m != null) {
+            Callback callback = getCallback(clazz, name, signatures[i], isSuper);
+            if (callback.m_method != null) {
             	Object[] params = new Object[paramsSupplier[i].length];
             	for (int j = 0; j < params.length; j ++) {
             		params[j] = paramsSupplier[i][j].get();            		
             	}
-                return m.invoke(object, params);
+                return callback.invoke(object, params);
             }
         }
         throw new NoSuchMethodException(name);
@@ -320,15 +339,13 @@ public class InvocationUtil {
             throw new IllegalArgumentException("Class cannot be null");
         }
                 
-        Method m = null;
         for (int i = 0; i < signatures.length; i++) {
-            Class<?>[] signature = signatures[i];
-            m = getDeclaredMethod(clazz, name, signature, isSuper);
+            Method m = getCallback(clazz, name, signatures[i], isSuper).m_method;
             if (m != null) {
-            	break;
+            	return m;
             }
         }
-        return m;
+        return null;
     }
 
     public static ComponentInstance createInstance(Class<?> clazz, CallbackTypeDef ctorArgs) throws Exception {    			
@@ -383,21 +400,27 @@ public class InvocationUtil {
     	throw new InstantiationException("No suitable constructor found for class " + clazz.getName());    	
     }
     
-    private static Method getDeclaredMethod(Class<?> clazz, String name, Class<?>[] signature, boolean isSuper) {
-        // first check our cache
-        Key key = new Key(clazz, name, signature);
-        Method m = null;
-        synchronized (m_methodCache) {
-            m = (Method) m_methodCache.get(key);
-            if (m != null) {
-                return m;
-            }
-            else if (m_methodCache.containsKey(key)) {
-                // the key is in our cache, it just happens to have a null value
-                return null;
-            }
+    private static Map<Key, Callback> getCallbacks(Class<?> clazz) {
+        AtomicReference<Reference<Map<Key, Callback>>> holder = m_callbacks.get(clazz);
+        Reference<Map<Key, Callback>> ref = holder.get();
+        Map<Key, Callback> callbacks = ref != null ? ref.get() : null;
+        if (callbacks == null) {
+            callbacks = new ConcurrentHashMap<>();
+            holder.set(new SoftReference<>(callbacks));
+        }
+        return callbacks;
+    }
+    
+    private static Callback getCallback(Class<?> clazz, String name, Class<?>[] signature, boolean isSuper) {
+        // first check the callback table of the class
+        Map<Key, Callback> callbacks = getCallbacks(clazz);
+        Key key = new Key(name, signature);
+        Callback callback = callbacks.get(key);
+        if (callback != null) {
+            return callback;
         }
         // then do a lookup
+        Method m = null;
         try {
             m = clazz.getDeclaredMethod(name, signature);
             if (!(isSuper && Modifier.isPrivate(m.getModifiers()))) {
@@ -406,68 +429,112 @@ public class InvocationUtil {
         }
         catch (NoSuchMethodException e) {
         }
-        synchronized (m_methodCache) {
-            m_methodCache.put(key, m);
+        callback = m != null ? new Callback(m) : Callback.NOT_FOUND;
+        if (callbacks.size() < m_methodCacheSize) {
+            Callback existing = callbacks.putIfAbsent(key, callback);
+            if (existing != null) {
+                return existing;
+            }
         }
-        return m;
+        return callback;
     }
     
     public static class Key {
-        private final Class<?> m_clazz;
         private final String m_name;
         private final Class<?>[] m_signature;
+        private final int m_hashCode;
 
-        public Key(Class<?> clazz, String name, Class<?>[] signature) {
-            m_clazz = clazz;
+        public Key(String name, Class<?>[] signature) {
             m_name = name;
             m_signature = signature;
+            m_hashCode = 31 * name.hashCode() + Arrays.hashCode(signature);
         }
 
         public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + ((m_clazz == null) ? 0 : m_clazz.hashCode());
-            result = prime * result + ((m_name == null) ? 0 : m_name.hashCode());
-            result = prime * result + Arrays.hashCode(m_signature);
-            return result;
+            return m_hashCode;
         }
 
         public boolean equals(Object obj) {
             if (this == obj)
                 return true;
-            if (obj == null)
-                return false;
-            if (getClass() != obj.getClass())
+            if (!(obj instanceof Key))
                 return false;
             Key other = (Key) obj;
-            if (m_clazz == null) {
-                if (other.m_clazz != null)
-                    return false;
-            }
-            else if (!m_clazz.equals(other.m_clazz))
-                return false;
-            if (m_name == null) {
-                if (other.m_name != null)
-                    return false;
-            }
-            else if (!m_name.equals(other.m_name))
-                return false;
-            if (!Arrays.equals(m_signature, other.m_signature))
-                return false;
-            return true;
+            return m_name.equals(other.m_name) && Arrays.equals(m_signature, other.m_signature);
         }
     }
     
-    @SuppressWarnings("serial")
-    public static class LRUMap extends LinkedHashMap<Key, Method> {
-        private final int m_size;
+    /**
+     * A callback method, with a method handle taking the instance and the parameters as an array.
+     */
+    private static final class Callback {
+        static final Callback NOT_FOUND = new Callback(null);
+        
+        final Method m_method;
+        
+        /**
+         * The (Object, Object[])Object method handle, or null if the method can't be invoked with a method handle.
+         */
+        private final MethodHandle m_handle;
+        
+        /**
+         * The parameter types, primitive types being boxed, used to check the parameters before invoking the method handle.
+         */
+        private final Class<?>[] m_types;
+        private final boolean[] m_primitives;
+        
+        Callback(Method method) {
+            m_method = method;
+            MethodHandle handle = null;
+            Class<?>[] types = method != null ? method.getParameterTypes() : new Class<?>[0];
+            m_primitives = new boolean[types.length];
+            for (int i = 0; i < types.length; i++) {
+                m_primitives[i] = types[i].isPrimitive();
+                types[i] = MethodType.methodType(types[i]).wrap().returnType();
+            }
+            m_types = types;
+            if (method != null) {
+                try {
+                    handle = MethodHandles.lookup().unreflect(method);
+                    if (Modifier.isStatic(method.getModifiers())) {
+                        handle = MethodHandles.dropArguments(handle, 0, Object.class);
+                    }
+                    handle = handle.asType(MethodType.genericMethodType(types.length + 1)).asSpreader(Object[].class, types.length);
+                }
+                catch (IllegalAccessException e) {
+                    // not accessible (private method of a super class), the method will be invoked using reflection
+                    handle = null;
+                }
+            }
+            m_handle = handle;
+        }
         
-        public LRUMap(int size) {
-            m_size = size;
+        Object invoke(Object instance, Object[] params) throws IllegalAccessException, InvocationTargetException {
+            if (m_handle == null || !accepts(instance, params)) {
+                // let reflection report the access or argument error
+                return m_method.invoke(instance, params);
+            }
+            try {
+                return (Object) m_handle.invokeExact(instance, params);
+            }
+            catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
         }
         
-        protected boolean removeEldestEntry(java.util.Map.Entry<Key, Method> eldest) {
-            return size() > m_size;
+        private boolean accepts(Object instance, Object[] params) {
+            if (params.length != m_types.length) {
+                return false;
+            }
+            if (!Modifier.isStatic(m_method.getModifiers()) && !m_method.getDeclaringClass().isInstance(instance)) {
+                return false;
+            }
+            for (int i = 0; i < params.length; i++) {
+                if (params[i] == null ? m_primitives[i] : !m_types[i].isInstance(params[i])) {
+                    return false;
+                }
+            }
+            return true;
         }
     }
     
@@ -19,21 +19,37 @@
 package org.apache.felix.dm.impl.index;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.felix.dm.FilterIndex;
+import org.apache.felix.dm.impl.index.multiproperty.MultiPropertyFilterIndex;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceListener;
 
 /**
+ * Dispatches the service lookups and the service events to the filter indices.
+ * 
+ * Whether a multi property filter index is applicable only depends on the shape of a filter, or on the property
+ * keys of a service, so the filter indices to consider are looked up by shape instead of asking every index.
+ * The other filter indices are always asked, in the order they have been added.
+ * 
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
 public class ServiceRegistryCache implements ServiceListener/*, CommandProvider*/ {
+    /**
+     * Maximum number of shapes for which the candidate filter indices are kept.
+     */
+    private final static int MAX_SHAPES = 1024;
+    
 	private final List<FilterIndex> m_filterIndexList = new CopyOnWriteArrayList<>();
+    /**
+     * Candidate filter indices, by filter shape and by service property keys. Replaced when indices are added or removed.
+     */
+    private volatile Candidates m_candidates = new Candidates();
     private final BundleContext m_context;
     private final FilterIndexBundleContext m_filterIndexBundleContext;
 	private final Map<BundleContext, BundleContextInterceptor> m_bundleContextInterceptorMap = new HashMap<>();
@@ -55,12 +71,14 @@ public class ServiceRegistryCache implements ServiceListener/*, CommandProvider*
     
     public void addFilterIndex(FilterIndex index) {
         m_filterIndexList.add(index);
+        m_candidates = new Candidates();
         index.open(m_filterIndexBundleContext);
     }
     
     public void removeFilterIndex(FilterIndex index) {
         index.close();
         m_filterIndexList.remove(index);
+        m_candidates = new Candidates();
     }
     
     public int getSize() {
@@ -96,10 +114,19 @@ public class ServiceRegistryCache implements ServiceListener/*, CommandProvider*
     }
 
     public FilterIndex hasFilterIndexFor(String clazz, String filter) {
-        Iterator<FilterIndex> iterator = m_filterIndexList.iterator();
-        while (iterator.hasNext()) {
-            FilterIndex filterIndex = iterator.next();
-            if (filterIndex.isApplicable(clazz, filter)) {
+        // read the candidates before the list, so candidates computed from a stale list are never cached
+        Candidates candidates = m_candidates;
+        String shape = MultiPropertyFilterIndex.getFilterShape(clazz, filter);
+        FilterIndex[] filterIndices = candidates.m_byFilterShape.get(shape);
+        if (filterIndices == null) {
+            filterIndices = m_filterIndexList.stream()
+                .filter(filterIndex -> !(filterIndex instanceof MultiPropertyFilterIndex) || filterIndex.isApplicable(clazz, filter))
+                .toArray(FilterIndex[]::new);
+            candidates.put(candidates.m_byFilterShape, shape, filterIndices);
+        }
+        for (FilterIndex filterIndex : filterIndices) {
+            // the multi property filter indices left are applicable
+            if (filterIndex instanceof MultiPropertyFilterIndex || filterIndex.isApplicable(clazz, filter)) {
                 return filterIndex;
             }
         }
@@ -107,9 +134,17 @@ public class ServiceRegistryCache implements ServiceListener/*, CommandProvider*
     }
 
     public void serviceChangedForFilterIndices(ServiceEvent event) {
-        Iterator<FilterIndex> iterator = m_filterIndexList.iterator();
-        while (iterator.hasNext()) {
-            FilterIndex filterIndex = iterator.next();
+        Candidates candidates = m_candidates;
+        List<String> shape = MultiPropertyFilterIndex.getReferenceShape(event.getServiceReference());
+        FilterIndex[] filterIndices = candidates.m_byReferenceShape.get(shape);
+        if (filterIndices == null) {
+            filterIndices = m_filterIndexList.stream()
+                .filter(filterIndex -> !(filterIndex instanceof MultiPropertyFilterIndex) 
+                    || ((MultiPropertyFilterIndex) filterIndex).isApplicable(event.getServiceReference()))
+                .toArray(FilterIndex[]::new);
+            candidates.put(candidates.m_byReferenceShape, shape, filterIndices);
+        }
+        for (FilterIndex filterIndex : filterIndices) {
             filterIndex.serviceChanged(event);
         }
     }
@@ -126,4 +161,19 @@ public class ServiceRegistryCache implements ServiceListener/*, CommandProvider*
 	public List<FilterIndex> getFilterIndices() {
 		return m_filterIndexList;
 	}
+	
+    /**
+     * The filter indices to consider for a filter shape, or for the property keys of a service.
+     */
+    private static class Candidates {
+        final Map<String, FilterIndex[]> m_byFilterShape = new ConcurrentHashMap<>();
+        final Map<List<String>, FilterIndex[]> m_byReferenceShape = new ConcurrentHashMap<>();
+        
+        <K> void put(Map<K, FilterIndex[]> map, K shape, FilterIndex[] filterIndices) {
+            // filters having unique shapes are not expected, but stop caching if they show up
+            if (map.size() < MAX_SHAPES) {
+                map.put(shape, filterIndices);
+            }
+        }
+    }
 }
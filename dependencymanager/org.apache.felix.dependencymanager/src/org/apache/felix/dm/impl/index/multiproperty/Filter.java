@@ -29,6 +29,11 @@ import java.util.TreeSet;
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
 public class Filter {
+	/**
+	 * The delimiters of the tokens of a filter string.
+	 */
+	static final String DELIMITERS = "(&|=)";
+
 	private boolean m_valid = true;
 	private Map<String, Property> m_properties = new HashMap<>();
 	private Set<String> m_propertyKeys = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
@@ -39,7 +44,7 @@ public class Filter {
 	// Sample valid filter string (&(objectClass=OBJECTCLASS)(&(model=MODEL)(concept=CONCEPT)(role=ROLE)(!(context=*))))
 	public static Filter parse(String filterString) {
 		Filter filter = new Filter();
-		StringTokenizer tokenizer = new StringTokenizer(filterString, "(&|=)", true);
+		StringTokenizer tokenizer = new StringTokenizer(filterString, DELIMITERS, true);
 		
 		String token = null;
 		String prevToken = null;
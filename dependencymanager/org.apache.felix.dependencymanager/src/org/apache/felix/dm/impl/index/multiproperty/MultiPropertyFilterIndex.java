@@ -19,6 +19,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.StringTokenizer;
 import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -106,6 +107,46 @@ public class MultiPropertyFilterIndex implements FilterIndex, ServiceTrackerCust
 		return true;
 	}
 
+	/**
+	 * Returns the shape of a class and filter combination: the tokens of the filter, where the property values
+	 * are replaced by a placeholder. Only the property keys, the negations and the wildcards of a filter are
+	 * used to determine if a multi property filter index is applicable, so two combinations having the same
+	 * shape are either applicable or not applicable for any multi property filter index.
+	 */
+	public static String getFilterShape(String clazz, String filterString) {
+		StringBuilder shape = new StringBuilder(clazz != null && !clazz.isEmpty() ? "+" : "-");
+		if (filterString == null) {
+			return shape.toString();
+		}
+		StringTokenizer tokenizer = new StringTokenizer(filterString, Filter.DELIMITERS, true);
+		String token = tokenizer.hasMoreTokens() ? tokenizer.nextToken() : null;
+		while (token != null) {
+			String next = tokenizer.hasMoreTokens() ? tokenizer.nextToken() : null;
+			if (Filter.DELIMITERS.contains(token) || token.equals("!") || token.equals("*") || "=".equals(next)) {
+				// delimiters, negations, wildcards and property keys are part of the shape
+				shape.append(token);
+			} else {
+				shape.append('?');
+			}
+			token = next;
+		}
+		return shape.toString();
+	}
+
+	/**
+	 * Returns the property keys of a service reference, in lower case and sorted. Only the property keys are
+	 * used to determine if a service reference is applicable for a multi property filter index, so two
+	 * references having the same shape are either applicable or not applicable for any multi property filter index.
+	 */
+	public static List<String> getReferenceShape(ServiceReference ref) {
+		String[] propertyKeys = ref.getPropertyKeys();
+		TreeSet<String> shape = new TreeSet<>();
+		for (int i = 0; i < propertyKeys.length; i++) {
+			shape.add(propertyKeys[i].toLowerCase());
+		}
+		return new ArrayList<>(shape);
+	}
+
 	private void parseConfig(String configString) {
 		String[] propertyConfigs = configString.split(",");
 		for (int i = 0; i < propertyConfigs.length; i++) {
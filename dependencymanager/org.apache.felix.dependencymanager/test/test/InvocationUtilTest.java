@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+import org.apache.felix.dm.impl.InvocationUtil;
+import org.junit.Test;
+
+public class InvocationUtilTest {
+	private static final Class<?>[][] SIGNATURES = { { String.class, Integer.class }, { Object.class }, {} };
+
+	public static class Base {
+		String m_called;
+
+		private void removed(Object service) {
+			m_called = "removed(Object)";
+		}
+	}
+
+	public static class OtherBase {
+		private void removed(Object service) {
+		}
+	}
+
+	public static class OtherCallbacks extends OtherBase {
+	}
+
+	public static class Callbacks extends Base {
+		void added(String name, Integer rank) {
+			m_called = "added(" + name + "," + rank + ")";
+		}
+
+		void added(Object service) {
+			m_called = "added(Object)";
+		}
+
+		int changed(int value) {
+			return value + 1;
+		}
+
+		void failed() {
+			throw new IllegalStateException("failed");
+		}
+
+		static String create() {
+			return "static";
+		}
+	}
+
+	@Test
+	public void invokeFirstMatchingSignature() throws Exception {
+		Callbacks callbacks = new Callbacks();
+		InvocationUtil.invokeMethod(callbacks, Callbacks.class, "added", SIGNATURES, new Object[][] { { "foo", 1 }, { "foo" }, {} }, false);
+		assertEquals("added(foo,1)", callbacks.m_called);
+
+		InvocationUtil.invokeMethod(callbacks, Callbacks.class, "added", SIGNATURES, new Object[][] { { "foo", null }, { "foo" }, {} }, false);
+		assertEquals("added(foo,null)", callbacks.m_called);
+	}
+
+	@Test
+	public void invokeWithSuppliers() throws Exception {
+		Callbacks callbacks = new Callbacks();
+		Supplier<?>[][] params = { { () -> "bar", () -> 2 }, { () -> "bar" }, {} };
+		InvocationUtil.invokeMethod(callbacks, Callbacks.class, "added", SIGNATURES, params, false);
+		assertEquals("added(bar,2)", callbacks.m_called);
+	}
+
+	@Test
+	public void invokeWithPrimitivesAndStatics() throws Exception {
+		Callbacks callbacks = new Callbacks();
+		assertEquals(2, InvocationUtil.invokeMethod(callbacks, Callbacks.class, "changed", new Class<?>[][] { { int.class } }, new Object[][] { { 1 } }, false));
+		assertEquals("static", InvocationUtil.invokeMethod(callbacks, Callbacks.class, "create", new Class<?>[][] { {} }, new Object[][] { {} }, false));
+		try {
+			InvocationUtil.invokeMethod(callbacks, Callbacks.class, "changed", new Class<?>[][] { { int.class } }, new Object[][] { { null } }, false);
+			fail("null can't be passed as a primitive parameter");
+		}
+		catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void exceptionsAreWrapped() throws Exception {
+		try {
+			InvocationUtil.invokeMethod(new Callbacks(), Callbacks.class, "failed", SIGNATURES, new Object[][] { {}, {}, {} }, false);
+			fail("callback exception should have been propagated");
+		}
+		catch (InvocationTargetException e) {
+			assertEquals("failed", e.getTargetException().getMessage());
+		}
+	}
+
+	@Test
+	public void privateMethodsOfSuperClasses() throws Exception {
+		Callbacks callbacks = new Callbacks();
+		InvocationUtil.invokeMethod(callbacks, Base.class, "removed", SIGNATURES, new Object[][] { { "foo", 1 }, { "foo" }, {} }, false);
+		assertEquals("removed(Object)", callbacks.m_called);
+
+		try {
+			InvocationUtil.invokeMethod(new OtherCallbacks(), OtherBase.class, "removed", SIGNATURES, new Object[][] { { "foo", 1 }, { "foo" }, {} }, true);
+			fail("private super class callbacks are not accessible");
+		}
+		catch (IllegalAccessException e) {
+		}
+	}
+
+	@Test
+	public void callbacksAreKeptAcrossGarbageCollections() throws Exception {
+		Method method = InvocationUtil.getCallbackMethod(new Callbacks(), "added", SIGNATURES);
+		System.gc();
+		// the same callback, with its method handle, is found in the table of the class
+		assertSame(method, InvocationUtil.getCallbackMethod(new Callbacks(), "added", SIGNATURES));
+	}
+
+	@Test
+	public void missingCallbacks() throws Exception {
+		assertNull(InvocationUtil.getCallbackMethod(new Callbacks(), "missing", SIGNATURES));
+		assertNotNull(InvocationUtil.getCallbackMethod(new Callbacks(), "added", SIGNATURES));
+		assertSame(InvocationUtil.getCallbackMethod(new Callbacks(), "added", SIGNATURES), InvocationUtil.getCallbackMethod(new Callbacks(), "added", SIGNATURES));
+		try {
+			InvocationUtil.invokeMethod(new Callbacks(), Callbacks.class, "missing", SIGNATURES, new Object[][] { {}, {}, {} }, false);
+			fail("missing callback should not be invoked");
+		}
+		catch (NoSuchMethodException e) {
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package test;
+
+import static org.apache.felix.dm.impl.index.multiproperty.MultiPropertyFilterIndex.getFilterShape;
+import static org.apache.felix.dm.impl.index.multiproperty.MultiPropertyFilterIndex.getReferenceShape;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.felix.dm.impl.index.multiproperty.MultiPropertyFilterIndex;
+import org.junit.Test;
+
+public class MultiPropertyFilterIndexShapeTest {
+
+	@Test
+	public void sameShapeForDifferentValues() {
+		MultiPropertyFilterIndex index = new MultiPropertyFilterIndex("objectClass,id");
+		String filter1 = "(&(objectClass=foo.Bar)(id=1))";
+		String filter2 = "(&(objectClass=foo.Baz)(id=2))";
+		assertEquals(getFilterShape(null, filter1), getFilterShape(null, filter2));
+		assertTrue(index.isApplicable(null, filter1));
+		assertTrue(index.isApplicable(null, filter2));
+
+		assertEquals(getFilterShape("foo.Bar", "(id=1)"), getFilterShape("foo.Baz", "(id=2)"));
+		assertTrue(index.isApplicable("foo.Bar", "(id=1)"));
+	}
+
+	@Test
+	public void differentShapeForDifferentKeys() {
+		MultiPropertyFilterIndex index = new MultiPropertyFilterIndex("objectClass,id");
+		assertNotEquals(getFilterShape(null, "(&(objectClass=foo.Bar)(id=1))"), getFilterShape(null, "(&(objectClass=foo.Bar)(name=1))"));
+		assertFalse(index.isApplicable(null, "(&(objectClass=foo.Bar)(name=1))"));
+
+		// with or without class
+		assertNotEquals(getFilterShape("foo.Bar", "(id=1)"), getFilterShape(null, "(id=1)"));
+		assertFalse(index.isApplicable(null, "(id=1)"));
+	}
+
+	@Test
+	public void wildcardsAndNegationsArePartOfTheShape() {
+		MultiPropertyFilterIndex index = new MultiPropertyFilterIndex("objectClass,!context");
+		String negated = "(&(objectClass=foo.Bar)(!(context=*)))";
+		String notNegated = "(&(objectClass=foo.Bar)(context=*))";
+		String value = "(&(objectClass=foo.Bar)(context=ctx))";
+		assertNotEquals(getFilterShape(null, negated), getFilterShape(null, notNegated));
+		assertNotEquals(getFilterShape(null, notNegated), getFilterShape(null, value));
+		assertTrue(index.isApplicable(null, negated));
+		assertFalse(index.isApplicable(null, notNegated));
+	}
+
+	@Test
+	public void referenceShape() {
+		TestReference ref1 = new TestReference();
+		ref1.addProperty("objectClass", "java.lang.String");
+		ref1.addProperty("id", "1");
+		TestReference ref2 = new TestReference();
+		ref2.addProperty("id", "2");
+		ref2.addProperty("objectclass", "java.lang.Integer");
+		TestReference ref3 = new TestReference();
+		ref3.addProperty("objectclass", "java.lang.String");
+		assertEquals(getReferenceShape(ref1), getReferenceShape(ref2));
+		assertNotEquals(getReferenceShape(ref1), getReferenceShape(ref3));
+	}
+}
@@ -39,7 +39,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarInputStream;
 import java.util.jar.Manifest;
 import java.util.regex.Pattern;
@@ -63,6 +71,7 @@ import org.osgi.framework.Version;
 import org.osgi.framework.startlevel.BundleStartLevel;
 import org.osgi.framework.startlevel.FrameworkStartLevel;
 import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.FrameworkWiring;
 
 /**
  * -DirectoryWatcher-
@@ -110,6 +119,10 @@ public class DirectoryWatcher extends Thread implements BundleListener
     public final static String FRAGMENT_SCOPE = "felix.fileinstall.fragmentRefreshScope";
     public final static String DISABLE_NIO2 = "felix.fileinstall.disableNio2";
     public final static String SUBDIR_MODE = "felix.fileinstall.subdir.mode";
+    public final static String DEBOUNCE = "felix.fileinstall.debounce";
+    public final static String VERIFY_INTERVAL = "felix.fileinstall.verify.interval";
+    public final static String SCAN_INDEX = "felix.fileinstall.scan.index";
+    public final static String INSTALL_THREADS = "felix.fileinstall.bundles.install.threads";
 
     public final static String SCOPE_NONE = "none";
     public final static String SCOPE_MANAGED = "managed";
@@ -139,6 +152,10 @@ public class DirectoryWatcher extends Thread implements BundleListener
     String fragmentScope;
     String optionalScope;
     boolean disableNio2;
+    long debounce;
+    long verifyInterval;
+    boolean scanIndex;
+    int installThreads;
     int frameworkStartLevel;
 
     // Map of all installed artifacts
@@ -188,13 +205,18 @@ public class DirectoryWatcher extends Thread implements BundleListener
         fragmentScope = properties.get(FRAGMENT_SCOPE);
         optionalScope = properties.get(OPTIONAL_SCOPE);
         disableNio2 = getBoolean(properties, DISABLE_NIO2, false);
+        debounce = getLong(properties, DEBOUNCE, 0); // by default, wait for stable checksums between scans
+        verifyInterval = getLong(properties, VERIFY_INTERVAL, 0); // by default, verify known files on each scan with changes
+        scanIndex = getBoolean(properties, SCAN_INDEX, false); // by default, checksum all files on the first scan
+        installThreads = getInt(properties, INSTALL_THREADS, 1); // by default, install and update bundles one by one
         this.context.addBundleListener(this);
 
         if (disableNio2) {
             scanner = new Scanner(watchedDirectory, filter, properties.get(SUBDIR_MODE));
         } else {
             try {
-                scanner = new WatcherScanner(context, watchedDirectory, filter, properties.get(SUBDIR_MODE));
+                scanner = new WatcherScanner(context, watchedDirectory, filter, properties.get(SUBDIR_MODE),
+                        debounce, verifyInterval, this);
             } catch (Throwable t) {
                 scanner = new Scanner(watchedDirectory, filter, properties.get(SUBDIR_MODE));
             }
@@ -317,7 +339,7 @@ public class DirectoryWatcher extends Thread implements BundleListener
                     }
                 }
                 synchronized (this) {
-                    wait(poll);
+                    wait(scanner.getNextScanDelay(poll));
                 }
             } catch (InterruptedException e) {
                 interrupt();
@@ -869,6 +891,10 @@ public class DirectoryWatcher extends Thread implements BundleListener
                 }
             }
         }
+        if (scanIndex) {
+            scanner.setIndexFile(context.getDataFile(
+                    "scan-" + Integer.toHexString(scanner.directory.getPath().hashCode()) + ".idx"));
+        }
         scanner.initialize(checksums);
     }
 
@@ -877,11 +903,120 @@ public class DirectoryWatcher extends Thread implements BundleListener
      * @param artifacts Collection of {@link Artifact}s to be installed
      * @return List of Bundles just installed
      */
-    private Collection<Bundle> install(Collection<Artifact> artifacts)
+    Collection<Bundle> install(Collection<Artifact> artifacts) throws InterruptedException
     {
         List<Bundle> bundles = new ArrayList<Bundle>();
+        if (artifacts.isEmpty()) {
+            return bundles;
+        }
+        // Look up the installed bundles once for the whole batch
+        ConcurrentMap<String, List<Bundle>> installed = new ConcurrentHashMap<String, List<Bundle>>();
+        for (Bundle b : context.getBundles()) {
+            if (b.getSymbolicName() != null) {
+                getBundles(installed, b.getSymbolicName()).add(b);
+            }
+        }
+        List<Artifact> parallel = new ArrayList<Artifact>();
         for (Artifact artifact : artifacts) {
-            Bundle bundle = install(artifact);
+            if (installThreads > 1 && !(artifact.getListener() instanceof ArtifactInstaller)) {
+                parallel.add(artifact);
+                continue;
+            }
+            Bundle bundle = install(artifact, installed);
+            if (bundle != null) {
+                bundles.add(bundle);
+            }
+        }
+        bundles.addAll(installOrUpdate(parallel, installed));
+        return bundles;
+    }
+
+    private static List<Bundle> getBundles(ConcurrentMap<String, List<Bundle>> installed, String symbolicName)
+    {
+        List<Bundle> bundles = installed.get(symbolicName);
+        if (bundles == null) {
+            bundles = new ArrayList<Bundle>();
+            List<Bundle> existing = installed.putIfAbsent(symbolicName, bundles);
+            if (existing != null) {
+                bundles = existing;
+            }
+        }
+        return bundles;
+    }
+
+    /**
+     * Installs or updates the given bundle artifacts on {@link #installThreads} threads.
+     * Artifacts with the same symbolic name are installed or updated one after the other:
+     * installs are serialized while looking up the installed bundles, updates are grouped
+     * by the symbolic name of the bundle being updated.
+     *
+     * @param artifacts the artifacts to install or update
+     * @param installed the installed bundles by symbolic name if installing, <code>null</code> if updating
+     * @return the bundles installed or updated, in the order of the artifacts
+     */
+    private List<Bundle> installOrUpdate(final List<Artifact> artifacts, final ConcurrentMap<String, List<Bundle>> installed)
+        throws InterruptedException
+    {
+        List<Bundle> bundles = new ArrayList<Bundle>();
+        if (artifacts.isEmpty()) {
+            return bundles;
+        }
+        List<List<Integer>> groups = new ArrayList<List<Integer>>();
+        Map<String, List<Integer>> groupsByName = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < artifacts.size(); i++) {
+            String sn = null;
+            if (installed == null) {
+                Bundle bundle = context.getBundle(artifacts.get(i).getBundleId());
+                sn = bundle != null ? bundle.getSymbolicName() : null;
+            }
+            List<Integer> group = sn != null ? groupsByName.get(sn) : null;
+            if (group == null) {
+                group = new ArrayList<Integer>();
+                groups.add(group);
+                if (sn != null) {
+                    groupsByName.put(sn, group);
+                }
+            }
+            group.add(i);
+        }
+        final AtomicInteger count = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(installThreads, groups.size()),
+            new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, getName() + "-installer-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        final Bundle[] results = new Bundle[artifacts.size()];
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final List<Integer> group : groups) {
+                futures.add(executor.submit(new Runnable()
+                {
+                    public void run()
+                    {
+                        for (int i : group) {
+                            Artifact artifact = artifacts.get(i);
+                            results[i] = installed != null ? install(artifact, installed) : update(artifact);
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    log(Logger.LOG_ERROR, "Failed to process artifact: "
+                            + artifacts.get(groups.get(i).get(0)).getPath(), e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (Bundle bundle : results) {
             if (bundle != null) {
                 bundles.add(bundle);
             }
@@ -912,15 +1047,21 @@ public class DirectoryWatcher extends Thread implements BundleListener
      * @param artifacts    Collection of {@link Artifact}s to be updated.
      * @return Collection of bundles that got updated
      */
-    private Collection<Bundle> update(Collection<Artifact> artifacts)
+    Collection<Bundle> update(Collection<Artifact> artifacts) throws InterruptedException
     {
         List<Bundle> bundles = new ArrayList<Bundle>();
+        List<Artifact> parallel = new ArrayList<Artifact>();
         for (Artifact artifact : artifacts) {
+            if (installThreads > 1 && !(artifact.getListener() instanceof ArtifactInstaller)) {
+                parallel.add(artifact);
+                continue;
+            }
             Bundle bundle = update(artifact);
             if (bundle != null) {
                 bundles.add(bundle);
             }
         }
+        bundles.addAll(installOrUpdate(parallel, null));
         return bundles;
     }
 
@@ -935,9 +1076,10 @@ public class DirectoryWatcher extends Thread implements BundleListener
      * then it always installs it.
      *
      * @param artifact the artifact to be installed
+     * @param installed the installed bundles by symbolic name
      * @return Bundle object that was installed
      */
-    private Bundle install(Artifact artifact)
+    private Bundle install(Artifact artifact, ConcurrentMap<String, List<Bundle>> installed)
     {
         File path = artifact.getPath();
         Bundle bundle = null;
@@ -952,7 +1094,7 @@ public class DirectoryWatcher extends Thread implements BundleListener
             // if the listener is an url transformer
             else if (artifact.getListener() instanceof ArtifactUrlTransformer)
             {
-                Artifact badArtifact = installationFailures.get(path);
+                Artifact badArtifact = getInstallationFailure(path);
                 if (badArtifact != null && badArtifact.getChecksum() == artifact.getChecksum())
                 {
                     return null; // Don't attempt to install it; nothing has changed.
@@ -960,13 +1102,13 @@ public class DirectoryWatcher extends Thread implements BundleListener
                 URL transformed = artifact.getTransformedUrl();
                 String location = transformed.toString();
                 BufferedInputStream in = new BufferedInputStream(transformed.openStream());
-                bundle = installOrUpdateBundle(location, in, artifact.getChecksum(), modified);
+                bundle = installOrUpdateBundle(location, in, artifact.getChecksum(), modified, installed);
                 artifact.setBundleId(bundle.getBundleId());
             }
             // if the listener is an artifact transformer
             else if (artifact.getListener() instanceof ArtifactTransformer)
             {
-                Artifact badArtifact = installationFailures.get(path);
+                Artifact badArtifact = getInstallationFailure(path);
                 if (badArtifact != null && badArtifact.getChecksum() == artifact.getChecksum())
                 {
                     return null; // Don't attempt to install it; nothing has changed.
@@ -974,10 +1116,13 @@ public class DirectoryWatcher extends Thread implements BundleListener
                 File transformed = artifact.getTransformed();
                 String location = path.toURI().normalize().toString();
                 BufferedInputStream in = new BufferedInputStream(new FileInputStream(transformed != null ? transformed : path));
-                bundle = installOrUpdateBundle(location, in, artifact.getChecksum(), modified);
+                bundle = installOrUpdateBundle(location, in, artifact.getChecksum(), modified, installed);
                 artifact.setBundleId(bundle.getBundleId());
             }
-            installationFailures.remove(path);
+            synchronized (installationFailures)
+            {
+                installationFailures.remove(path);
+            }
             setArtifact(path, artifact);
         }
         catch (Exception e)
@@ -987,13 +1132,25 @@ public class DirectoryWatcher extends Thread implements BundleListener
             // Add it our bad jars list, so that we don't
             // attempt to install it again and again until the underlying
             // jar has been modified.
-            installationFailures.put(path, artifact);
+            synchronized (installationFailures)
+            {
+                installationFailures.put(path, artifact);
+            }
         }
         return modified.get() ? bundle : null;
     }
 
+    private Artifact getInstallationFailure(File path)
+    {
+        synchronized (installationFailures)
+        {
+            return installationFailures.get(path);
+        }
+    }
+
     private Bundle installOrUpdateBundle(
-        String bundleLocation, BufferedInputStream is, long checksum, AtomicBoolean modified)
+        String bundleLocation, BufferedInputStream is, long checksum, AtomicBoolean modified,
+        ConcurrentMap<String, List<Bundle>> installed)
         throws IOException, BundleException
     {
         JarInputStream jar = null;
@@ -1009,9 +1166,13 @@ public class DirectoryWatcher extends Thread implements BundleListener
             String sn = m.getMainAttributes().getValue(Constants.BUNDLE_SYMBOLICNAME);
             String vStr = m.getMainAttributes().getValue(Constants.BUNDLE_VERSION);
             Version v = vStr == null ? Version.emptyVersion : Version.parseVersion(vStr);
-            Bundle[] bundles = context.getBundles();
-            for (Bundle b : bundles) {
-                if (b.getSymbolicName() != null && b.getSymbolicName().equals(sn)) {
+            // Bundles with the same symbolic name are installed one after the other
+            List<Bundle> bundles = sn != null ? getBundles(installed, sn) : new ArrayList<Bundle>();
+            synchronized (bundles) {
+                for (Bundle b : bundles) {
+                    if (b.getState() == Bundle.UNINSTALLED) {
+                        continue;
+                    }
                     vStr = b.getHeaders().get(Constants.BUNDLE_VERSION);
                     Version bv = vStr == null ? Version.emptyVersion : Version.parseVersion(vStr);
                     if (v.equals(bv)) {
@@ -1030,20 +1191,23 @@ public class DirectoryWatcher extends Thread implements BundleListener
                         return b;
                     }
                 }
-            }
-            is.reset();
-            Util.log(context, Logger.LOG_INFO, "Installing bundle " + sn
-                    + " / " + v, null);
-            Bundle b = context.installBundle(bundleLocation, is);
-            Util.storeChecksum(b, checksum, context);
-            modified.set(true);
+                is.reset();
+                Util.log(context, Logger.LOG_INFO, "Installing bundle " + sn
+                        + " / " + v, null);
+                Bundle b = context.installBundle(bundleLocation, is);
+                Util.storeChecksum(b, checksum, context);
+                modified.set(true);
+                if (sn != null && sn.equals(b.getSymbolicName())) {
+                    bundles.add(b);
+                }
 
-            // Set default start level at install time, the user can override it if he wants
-            if (startLevel != 0) {
-                b.adapt(BundleStartLevel.class).setStartLevel(startLevel);
-            }
+                // Set default start level at install time, the user can override it if he wants
+                if (startLevel != 0) {
+                    b.adapt(BundleStartLevel.class).setStartLevel(startLevel);
+                }
 
-            return b;
+                return b;
+            }
         }
         finally
         {
@@ -1228,6 +1392,7 @@ public class DirectoryWatcher extends Thread implements BundleListener
     {
         // Check if this is the consistent set of bundles which failed previously.
         boolean logFailures = !consistentlyFailingBundles.equals(bundles);
+        resolveBundles(bundles);
         for (Iterator<Bundle> b = bundles.iterator(); b.hasNext(); )
         {
             if (startBundle(b.next(), logFailures))
@@ -1237,6 +1402,31 @@ public class DirectoryWatcher extends Thread implements BundleListener
         }
     }
 
+    /**
+     * Resolves the bundles to be started together, so that starting them
+     * does not run the resolver once per bundle.
+     */
+    private void resolveBundles(Set<Bundle> bundles)
+    {
+        List<Bundle> unresolved = new ArrayList<Bundle>();
+        for (Bundle bundle : bundles)
+        {
+            if (bundle.getState() == Bundle.INSTALLED
+                    && frameworkStartLevel >= bundle.adapt(BundleStartLevel.class).getStartLevel())
+            {
+                unresolved.add(bundle);
+            }
+        }
+        if (unresolved.size() > 1)
+        {
+            FrameworkWiring wiring = systemBundle.adapt(FrameworkWiring.class);
+            if (wiring != null)
+            {
+                wiring.resolveBundles(unresolved);
+            }
+        }
+    }
+
      /**
       * Start a bundle, if the framework's startlevel allows it.
       * @param bundle the bundle to start.
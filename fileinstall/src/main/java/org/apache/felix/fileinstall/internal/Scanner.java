@@ -18,10 +18,18 @@
  */
 package org.apache.felix.fileinstall.internal;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -42,6 +50,14 @@ import java.util.zip.CRC32;
  * will wait until the checksum does not change anymore before reporting
  * the change on this file.  This allows to not report the change until
  * a big copy if complete for example.
+ *
+ * The checksums of the reported files can be persisted in an index file,
+ * so that after a restart files which did not change in the meantime are
+ * reported on the first scan instead of waiting for their checksum to be
+ * computed twice. The index also records the size and the last modification
+ * time of the files, so that the first scan reuses the persisted checksum of
+ * the files whose size and modification time did not change instead of
+ * computing it again.
  */
 public class Scanner implements Closeable {
 
@@ -59,6 +75,20 @@ public class Scanner implements Closeable {
     Map<File, Long> lastChecksums = new HashMap<File, Long>();
     Map<File, Long> storedChecksums = new HashMap<File, Long>();
 
+    // Size and last modification time of the reported files when their
+    // stored checksum was computed, for the index
+    Map<File, long[]> storedAttributes = new HashMap<File, long[]>();
+    // Checksum, size and last modification time of the files loaded from the
+    // index, used once by the first scan
+    Map<File, long[]> indexedFiles = new HashMap<File, long[]>();
+
+    // File used to persist the checksums of the reported files
+    File indexFile;
+
+    // First int of an index file, distinguishing it from the previous format
+    // which did not record the file attributes
+    static final int INDEX_MAGIC = 0x46494932;
+
     /**
      * Create a scanner for the specified directory
      *
@@ -112,6 +142,102 @@ public class Scanner implements Closeable {
         storedChecksums.putAll(checksums);
     }
 
+    /**
+     * Set the file persisting the checksums of the reported files and load
+     * the checksums persisted by a previous run.
+     * Files whose checksum did not change since are considered stable and
+     * are reported on the first scan.
+     *
+     * @param indexFile the index file, may be <code>null</code>
+     */
+    public void setIndexFile(File indexFile)
+    {
+        this.indexFile = indexFile;
+        if (indexFile == null || !indexFile.isFile())
+        {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile))))
+        {
+            if (in.readInt() != INDEX_MAGIC)
+            {
+                // Index of a previous version, all files will be checked twice
+                return;
+            }
+            int count = in.readInt();
+            Map<File, Long> checksums = new HashMap<File, Long>();
+            Map<File, long[]> files = new HashMap<File, long[]>();
+            for (int i = 0; i < count; i++)
+            {
+                File file = new File(in.readUTF());
+                long checksum = in.readLong();
+                long length = in.readLong();
+                long lastModified = in.readLong();
+                checksums.put(file, checksum);
+                if (length >= 0)
+                {
+                    files.put(file, new long[] { checksum, length, lastModified });
+                }
+            }
+            lastChecksums.putAll(checksums);
+            indexedFiles.putAll(files);
+        }
+        catch (IOException e)
+        {
+            // Ignore, all files will be checked twice
+        }
+    }
+
+    /**
+     * Persist the checksums of the reported files in the index file, if any.
+     */
+    void saveIndex()
+    {
+        if (indexFile == null)
+        {
+            return;
+        }
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+            {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(storedChecksums.size());
+                for (Map.Entry<File, Long> entry : storedChecksums.entrySet())
+                {
+                    long[] attributes = storedAttributes.get(entry.getKey());
+                    out.writeUTF(entry.getKey().getPath());
+                    out.writeLong(entry.getValue());
+                    out.writeLong(attributes != null ? attributes[0] : -1);
+                    out.writeLong(attributes != null ? attributes[1] : -1);
+                }
+            }
+            if (!tmp.renameTo(indexFile))
+            {
+                indexFile.delete();
+                tmp.renameTo(indexFile);
+            }
+        }
+        catch (IOException e)
+        {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds to wait before the next scan.
+     * Scanners reacting to file system events may ask for an earlier scan
+     * than the regular poll interval.
+     *
+     * @param poll the poll interval
+     * @return the time to wait, at most <code>poll</code>
+     */
+    public long getNextScanDelay(long poll)
+    {
+        return poll;
+    }
+
     /**
      * Report a set of new, modified or deleted files.
      * Modifications are checked against a computed checksum on some file
@@ -127,6 +253,10 @@ public class Scanner implements Closeable {
 
         File[] list = directory.listFiles();
         Set<File> files = processFiles(reportImmediately, list);
+        if (!files.isEmpty())
+        {
+            saveIndex();
+        }
         return new TreeSet<>(files);
     }
 
@@ -167,6 +297,7 @@ public class Scanner implements Closeable {
             // Remove no longer used checksums
             lastChecksums.remove(file);
             storedChecksums.remove(file);
+            storedAttributes.remove(file);
         }
         // Double check known files because modifications from externally mounted
         // file systems are not well handled by inotify in Linux.
@@ -210,25 +341,87 @@ public class Scanner implements Closeable {
     {
         if (file != null && storedChecksums.containsKey(file))
         {
+            long[] attributes = attributes(file);
             long newChecksum = checksum(file);
             storedChecksums.put(file, newChecksum);
+            putAttributes(file, attributes);
         }
     }
 
     void verifyChecksum(Set<File> files, File file, boolean reportImmediately) {
         long lastChecksum = lastChecksums.get(file) != null ? (Long) lastChecksums.get(file) : 0;
         long storedChecksum = storedChecksums.get(file) != null ? (Long) storedChecksums.get(file) : 0;
-        long newChecksum = checksum(file);
+        // Read the attributes before computing the checksum, so that a change
+        // in between is seen as a change of the attributes on the next start
+        long[] attributes = attributes(file);
+        long newChecksum = checksum(file, attributes);
         lastChecksums.put(file, newChecksum);
         // Only handle file when it does not change anymore and it has changed
         // since last reported
         if ((newChecksum == lastChecksum || reportImmediately) && newChecksum != storedChecksum)
         {
             storedChecksums.put(file, newChecksum);
+            putAttributes(file, attributes);
             files.add(file);
         }
     }
 
+    /**
+     * Compute the checksum of a file, or reuse the checksum persisted in the
+     * index if the size and the last modification time of the file did not
+     * change since. The index is only used once per file, by the first scan.
+     *
+     * @param file the file
+     * @param attributes the current attributes of the file, may be <code>null</code>
+     * @return the checksum
+     */
+    long checksum(File file, long[] attributes)
+    {
+        long[] indexed = indexedFiles.isEmpty() ? null : indexedFiles.remove(file);
+        if (indexed != null && attributes != null
+                && indexed[1] == attributes[0] && indexed[2] == attributes[1])
+        {
+            return indexed[0];
+        }
+        return checksum(file);
+    }
+
+    void putAttributes(File file, long[] attributes)
+    {
+        if (attributes != null)
+        {
+            storedAttributes.put(file, attributes);
+        }
+        else
+        {
+            storedAttributes.remove(file);
+        }
+    }
+
+    /**
+     * Read the size and the last modification time of a regular file.
+     *
+     * @param file the file
+     * @return the size and the last modification time, or <code>null</code>
+     *         if the file is not a regular file or cannot be read
+     */
+    static long[] attributes(File file)
+    {
+        try
+        {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            if (!attributes.isRegularFile())
+            {
+                return null;
+            }
+            return new long[] { attributes.size(), attributes.lastModifiedTime().toMillis() };
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
     /**
      * Compute a cheksum for the file or directory that consists of the name, length and the last modified date
      * for a file and its children in case of a directory
@@ -39,6 +39,7 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
@@ -157,73 +158,95 @@ public abstract class Watcher implements Closeable {
                            new FilteringFileVisitor());
     }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
     public void processEvents() {
         while (true) {
             WatchKey key = watcher.poll();
-            if (key == null) {
+            if (key == null || !processKey(key)) {
                 break;
             }
-            Path dir = keys.get(key);
-            if (dir == null) {
-                warn("Could not find key for %s", key);
-                continue;
-            }
+        }
+    }
 
-            for (WatchEvent<?> event : key.pollEvents()) {
-                WatchEvent.Kind kind = event.kind();
-                WatchEvent<Path> ev = (WatchEvent<Path>)event;
+    /**
+     * Waits for events up to the given timeout and processes all the
+     * pending events.
+     *
+     * @param timeout the maximum time to wait in milliseconds
+     * @return <code>true</code> if events have been processed
+     */
+    public boolean awaitEvents(long timeout) throws InterruptedException {
+        WatchKey key = watcher.poll(timeout, TimeUnit.MILLISECONDS);
+        if (key == null) {
+            return false;
+        }
+        if (processKey(key)) {
+            processEvents();
+        }
+        return true;
+    }
 
-                // Context for directory entry event is the file name of entry
-                Path name = ev.context();
-                Path child = null;
+    // returns false if no directory is watched anymore
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private boolean processKey(WatchKey key) {
+        Path dir = keys.get(key);
+        if (dir == null) {
+            warn("Could not find key for %s", key);
+            return true;
+        }
 
-                if(name!=null){
-                    child = dir.resolve(name);
-                }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind kind = event.kind();
+            WatchEvent<Path> ev = (WatchEvent<Path>)event;
 
-                debug("Processing event %s on path %s", kind, child);
+            // Context for directory entry event is the file name of entry
+            Path name = ev.context();
+            Path child = null;
 
-                if (kind == OVERFLOW) {
+            if(name!=null){
+                child = dir.resolve(name);
+            }
+
+            debug("Processing event %s on path %s", kind, child);
+
+            if (kind == OVERFLOW) {
 //                    rescan();
-                    continue;
-                }
+                continue;
+            }
+
+            try {
+                if (kind == ENTRY_CREATE) {
+                    if (Files.isDirectory(child)) {
 
-                try {
-                    if (kind == ENTRY_CREATE) {
-                        if (Files.isDirectory(child)) {
-
-                            // if directory is created, and watching recursively, then
-                            // register it and its sub-directories
-                            Files.walkFileTree(child, new FilteringFileVisitor());
-                        } else if (Files.isRegularFile(child)) {
-                            scan(child);
-                        }
-                    } else if (kind == ENTRY_MODIFY) {
-                        if (Files.isRegularFile(child)) {
-                            scan(child);
-                        }
-                    } else if (kind == ENTRY_DELETE) {
-                        unscan(child);
+                        // if directory is created, and watching recursively, then
+                        // register it and its sub-directories
+                        Files.walkFileTree(child, new FilteringFileVisitor());
+                    } else if (Files.isRegularFile(child)) {
+                        scan(child);
+                    }
+                } else if (kind == ENTRY_MODIFY) {
+                    if (Files.isRegularFile(child)) {
+                        scan(child);
                     }
-                } catch (IOException x) {
-                    // ignore to keep sample readbale
-                    x.printStackTrace();
+                } else if (kind == ENTRY_DELETE) {
+                    unscan(child);
                 }
+            } catch (IOException x) {
+                warn(x, "Error processing event %s on path %s", kind, child);
             }
+        }
 
-            // reset key and remove from set if directory no longer accessible
-            boolean valid = key.reset();
-            if (!valid) {
-                debug("Removing key %s and dir %s from keys", key, dir);
-                keys.remove(key);
+        // reset key and remove from set if directory no longer accessible
+        boolean valid = key.reset();
+        if (!valid) {
+            debug("Removing key %s and dir %s from keys", key, dir);
+            keys.remove(key);
 
-                // all directories are inaccessible
-                if (keys.isEmpty()) {
-                    break;
-                }
+            // all directories are inaccessible
+            if (keys.isEmpty()) {
+                return false;
             }
         }
+        return true;
     }
 
     private void scan(final Path file) throws IOException {
@@ -323,6 +346,11 @@ public abstract class Watcher implements Closeable {
 
     protected abstract void debug(String message, Object... args);
     protected abstract void warn(String message, Object... args);
+
+    protected void warn(Throwable throwable, String message, Object... args) {
+        warn(message, args);
+    }
+
     protected abstract void process(Path path);
     protected abstract void onRemove(Path path);
 }
@@ -20,22 +20,44 @@ package org.apache.felix.fileinstall.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.osgi.framework.BundleContext;
 
+/**
+ * A scanner reporting the files changed according to the events of a
+ * {@link java.nio.file.WatchService}, so that only changed files are
+ * checked instead of the whole directory.
+ *
+ * If a debounce time is set, events are received by a background thread
+ * which wakes up the given monitor, and a changed file is only reported once
+ * no event has been received for it during the debounce time.
+ * If a verification interval is set, the checksums of all known files are
+ * verified at most once per interval instead of on every scan with changes.
+ */
 public class WatcherScanner extends Scanner {
 
     BundleContext bundleContext;
     PathMatcher fileMatcher;
     Watcher watcher;
 
-    Set<File> changed = new HashSet<File>();
+    // The changed files mapped to the time of their last event
+    final Map<File, Long> changed = new HashMap<File, Long>();
+
+    final long debounce;
+    final long verifyInterval;
+    long lastVerify;
+
+    Thread eventThread;
+    volatile boolean closed;
 
     /**
      * Create a scanner for the specified directory and file filter
@@ -45,8 +67,27 @@ public class WatcherScanner extends Scanner {
      * @param subdirMode to use when scanning
      */
     public WatcherScanner(BundleContext bundleContext, File directory, String filterString, String subdirMode) throws IOException {
+        this(bundleContext, directory, filterString, subdirMode, 0, 0, null);
+    }
+
+    /**
+     * Create a scanner for the specified directory and file filter
+     *
+     * @param directory the directory to scan
+     * @param filterString a filter for file names
+     * @param subdirMode to use when scanning
+     * @param debounce the time in ms without events before a changed file is reported,
+     *                 or 0 to report files whose checksum did not change between two scans
+     * @param verifyInterval the minimum time in ms between verifications of all known files,
+     *                 or 0 to verify them on every scan with changes
+     * @param monitor the object notified when events are received if a debounce time is set
+     */
+    public WatcherScanner(BundleContext bundleContext, File directory, String filterString, String subdirMode,
+                          long debounce, long verifyInterval, final Object monitor) throws IOException {
         super(directory, filterString, subdirMode);
         this.bundleContext = bundleContext;
+        this.debounce = debounce;
+        this.verifyInterval = verifyInterval;
         if (filterString != null) {
             this.fileMatcher = FileSystems.getDefault().getPathMatcher("regex:" + filterString);
         } else {
@@ -57,12 +98,45 @@ public class WatcherScanner extends Scanner {
         this.watcher.setRootDirectory(this.directory);
         this.watcher.init();
         this.watcher.rescan();
+        this.lastVerify = System.currentTimeMillis();
+        if (debounce > 0 && monitor != null) {
+            eventThread = new Thread("fileinstall-events-" + directory.getName()) {
+                public void run() {
+                    processEvents(monitor);
+                }
+            };
+            eventThread.setDaemon(true);
+            eventThread.start();
+        }
+    }
+
+    // receives the events until the scanner is closed and wakes up the monitor
+    void processEvents(Object monitor) {
+        while (!closed) {
+            try {
+                if (watcher.awaitEvents(Long.MAX_VALUE) && !closed) {
+                    synchronized (monitor) {
+                        monitor.notifyAll();
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            } catch (RuntimeException e) {
+                Util.log(bundleContext, Util.Logger.LOG_WARNING, "Error processing file system events", e);
+            }
+        }
     }
 
     public Set<File> scan(boolean reportImmediately) {
-        watcher.processEvents();
+        if (eventThread == null) {
+            watcher.processEvents();
+        }
+        long now = System.currentTimeMillis();
+        boolean verify = verifyInterval > 0 && now - lastVerify >= verifyInterval;
         synchronized (changed) {
-            if (changed.isEmpty()) {
+            if (changed.isEmpty() && !verify) {
                 return new HashSet<File>();
             }
             Set<File> files = new HashSet<File>();
@@ -70,18 +144,29 @@ public class WatcherScanner extends Scanner {
             if (reportImmediately) {
                 removed.addAll(storedChecksums.keySet());
             }
-            for (Iterator<File> iterator = changed.iterator(); iterator.hasNext(); ) {
-                File file = iterator.next();
+            for (Iterator<Map.Entry<File, Long>> iterator = changed.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<File, Long> entry = iterator.next();
+                File file = entry.getKey();
+                if (!reportImmediately && debounce > 0 && now - entry.getValue() < debounce) {
+                    // Still being written, keep it for a later scan
+                    continue;
+                }
                 long lastChecksum = lastChecksums.get(file) != null ? (Long) lastChecksums.get(file) : 0;
                 long storedChecksum = storedChecksums.get(file) != null ? (Long) storedChecksums.get(file) : 0;
-                long newChecksum = checksum(file);
+                long[] attributes = attributes(file);
+                long newChecksum = checksum(file, attributes);
                 lastChecksums.put(file, newChecksum);
                 if (file.exists()) {
                     // Only handle file when it does not change anymore and it has changed since last reported
-                    if ((newChecksum == lastChecksum || reportImmediately)) {
+                    if ((newChecksum == lastChecksum || reportImmediately || debounce > 0)) {
                         if (newChecksum != storedChecksum) {
                             storedChecksums.put(file, newChecksum);
+                            putAttributes(file, attributes);
                             files.add(file);
+                            if (debounce > 0) {
+                                // No need to wait for a stable checksum on the next scan
+                                iterator.remove();
+                            }
                         } else {
                             iterator.remove();
                         }
@@ -101,19 +186,49 @@ public class WatcherScanner extends Scanner {
                 // Remove no longer used checksums
                 lastChecksums.remove(file);
                 storedChecksums.remove(file);
+                storedAttributes.remove(file);
                 changed.remove(file);
             }
             // Double check known files because modifications from externally mounted
             // file systems are not well handled by inotify in Linux.
-            for (File file : new HashSet<File>(storedChecksums.keySet())) {
-                verifyChecksum(files, file, false);
+            if (verifyInterval <= 0 || verify) {
+                for (File file : new HashSet<File>(storedChecksums.keySet())) {
+                    verifyChecksum(files, file, false);
+                    if (verifyInterval > 0 && !files.contains(file)
+                            && !lastChecksums.get(file).equals(storedChecksums.get(file))) {
+                        // Changed but not stable yet, check it again on the next scans
+                        changed.put(file, now);
+                    }
+                }
+                lastVerify = now;
+            }
+            if (!files.isEmpty()) {
+                saveIndex();
             }
             return files;
         }
     }
 
+    public long getNextScanDelay(long poll) {
+        if (eventThread == null) {
+            return poll;
+        }
+        long delay = poll;
+        long now = System.currentTimeMillis();
+        synchronized (changed) {
+            for (long time : changed.values()) {
+                delay = Math.min(delay, time + debounce - now);
+            }
+        }
+        return Math.max(delay, 1);
+    }
+
     public void close() throws IOException {
+        closed = true;
         watcher.close();
+        if (eventThread != null) {
+            eventThread.interrupt();
+        }
     }
 
     class ScannerWatcher extends Watcher {
@@ -140,7 +255,7 @@ public class WatcherScanner extends Scanner {
               // Otherwise we recurse by adding the file as-is.
             }
             synchronized (changed) {
-                changed.add(file);
+                changed.put(file, System.currentTimeMillis());
             }
         }
 
@@ -159,6 +274,11 @@ public class WatcherScanner extends Scanner {
             log(Util.Logger.LOG_WARNING, message, args);
         }
 
+        @Override
+        protected void warn(Throwable throwable, String message, Object... args) {
+            Util.log(bundleContext, Util.Logger.LOG_WARNING, String.format(message, args), throwable);
+        }
+
         protected void log(int level, String message, Object... args) {
             String msg = String.format(message, args);
             Util.log(bundleContext, level, msg, null);
@@ -20,15 +20,29 @@ package org.apache.felix.fileinstall.internal;
 
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 import junit.framework.TestCase;
 import org.apache.felix.fileinstall.ArtifactListener;
+import org.apache.felix.fileinstall.ArtifactTransformer;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.easymock.IMocksControl;
 import org.junit.Assert;
 import org.osgi.framework.Bundle;
@@ -448,4 +462,116 @@ public class DirectoryWatcherTest extends TestCase
         EasyMock.verify(mockBundleContext, mockBundle,mockServiceReference, mockArtifactListener);
     }
 
+    /**
+     * Test the {@link DirectoryWatcher#install(Collection)} and {@link DirectoryWatcher#update(Collection)}
+     * on several threads.
+     * Assert that all artifacts are processed and that bundles with the same symbolic name
+     * are never installed or updated concurrently.
+     */
+    public void testInstallAndUpdateOnSeveralThreads() throws Exception
+    {
+        final File dir = new File("target/install-threads");
+        dir.mkdirs();
+        final String[] names = { "a", "b", "a", "c" };
+        final Bundle[] bundles = new Bundle[names.length];
+        final Map<String, Integer> locations = new HashMap<String, Integer>();
+        final ConcurrentMap<String, AtomicInteger> running = new ConcurrentHashMap<String, AtomicInteger>();
+        final AtomicBoolean overlap = new AtomicBoolean();
+        final AtomicInteger processed = new AtomicInteger();
+        final ArtifactTransformer mockArtifactListener = EasyMock.createNiceMock(ArtifactTransformer.class);
+        List<Artifact> artifacts = new ArrayList<Artifact>();
+        for (int i = 0; i < names.length; i++)
+        {
+            final String name = names[i];
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().putValue(Constants.BUNDLE_SYMBOLICNAME, name);
+            manifest.getMainAttributes().putValue(Constants.BUNDLE_VERSION, "1.0." + i);
+            File jar = new File(dir, name + "-" + i + ".jar");
+            new JarOutputStream(new FileOutputStream(jar), manifest).close();
+            locations.put(jar.toURI().normalize().toString(), i);
+            running.putIfAbsent(name, new AtomicInteger());
+
+            Hashtable<String, String> headers = new Hashtable<String, String>();
+            headers.put(Constants.BUNDLE_VERSION, "1.0." + i);
+            bundles[i] = EasyMock.createNiceMock(Bundle.class);
+            EasyMock.expect(bundles[i].getBundleId()).andReturn((long) i + 1).anyTimes();
+            EasyMock.expect(bundles[i].getSymbolicName()).andReturn(name).anyTimes();
+            EasyMock.expect(bundles[i].getHeaders()).andReturn(headers).anyTimes();
+            bundles[i].update((InputStream) EasyMock.anyObject());
+            EasyMock.expectLastCall().andAnswer(new IAnswer<Object>()
+            {
+                public Object answer() throws Throwable
+                {
+                    process(name, running, overlap, processed);
+                    return null;
+                }
+            });
+            EasyMock.replay(bundles[i]);
+
+            Artifact artifact = new Artifact();
+            artifact.setPath(jar);
+            artifact.setListener(mockArtifactListener);
+            artifact.setChecksum(i);
+            artifacts.add(artifact);
+        }
+
+        mockBundleContext.addBundleListener((BundleListener) org.easymock.EasyMock.anyObject());
+        EasyMock.expect(mockBundleContext.getBundles()).andReturn(new Bundle[0]).anyTimes();
+        EasyMock.expect(mockBundleContext.getDataFile((String) EasyMock.anyObject())).andAnswer(new IAnswer<File>()
+        {
+            public File answer()
+            {
+                return new File(dir, (String) EasyMock.getCurrentArguments()[0]);
+            }
+        }).anyTimes();
+        EasyMock.expect(mockBundleContext.getBundle(EasyMock.anyLong())).andAnswer(new IAnswer<Bundle>()
+        {
+            public Bundle answer()
+            {
+                return bundles[(int) ((Long) EasyMock.getCurrentArguments()[0] - 1)];
+            }
+        }).anyTimes();
+        EasyMock.expect(mockBundleContext.installBundle((String) EasyMock.anyObject(), (InputStream) EasyMock.anyObject()))
+                .andAnswer(new IAnswer<Bundle>()
+        {
+            public Bundle answer() throws Throwable
+            {
+                int i = locations.get(EasyMock.getCurrentArguments()[0]);
+                process(names[i], running, overlap, processed);
+                return bundles[i];
+            }
+        }).anyTimes();
+        EasyMock.replay(mockBundleContext, mockBundle, mockArtifactListener, mockSysBundle, mockStartLevel);
+
+        props.put(DirectoryWatcher.INSTALL_THREADS, "4");
+        dw = new DirectoryWatcher(new FileInstall(), props, mockBundleContext)
+        {
+            boolean isFragment(Bundle bundle)
+            {
+                return true;
+            }
+        };
+
+        assertEquals(names.length, dw.install(artifacts).size());
+        assertEquals(names.length, processed.get());
+        assertFalse("bundles with the same symbolic name installed concurrently", overlap.get());
+
+        assertEquals(names.length, dw.update(artifacts).size());
+        assertEquals(2 * names.length, processed.get());
+        assertFalse("bundles with the same symbolic name updated concurrently", overlap.get());
+    }
+
+    private static void process(String name, ConcurrentMap<String, AtomicInteger> running,
+                                AtomicBoolean overlap, AtomicInteger processed) throws InterruptedException
+    {
+        if (running.get(name).incrementAndGet() > 1)
+        {
+            overlap.set(true);
+        }
+        Thread.sleep(50);
+        running.get(name).decrementAndGet();
+        processed.incrementAndGet();
+    }
+
 }
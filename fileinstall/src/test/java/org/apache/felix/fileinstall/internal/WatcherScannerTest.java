@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.fileinstall.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Set;
+
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.BundleContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class WatcherScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BundleContext context;
+
+    @Before
+    public void setUp() {
+        context = EasyMock.createNiceMock(BundleContext.class);
+        EasyMock.replay(context);
+    }
+
+    @Test
+    public void testIndexReportsUnchangedFilesOnFirstScan() throws Exception {
+        File dir = folder.newFolder("watched");
+        File index = new File(folder.getRoot(), "scan.idx");
+        write(new File(dir, "a.cfg"), "a");
+        write(new File(dir, "b.cfg"), "b");
+
+        Scanner scanner = new Scanner(dir);
+        scanner.setIndexFile(index);
+        assertEquals(2, scanner.scan(true).size());
+        assertTrue(index.isFile());
+
+        // Without an index, files are reported once their checksum is stable
+        Scanner noIndex = new Scanner(dir);
+        assertTrue(noIndex.scan(false).isEmpty());
+        assertEquals(2, noIndex.scan(false).size());
+
+        // With the index, unchanged files are reported on the first scan
+        write(new File(dir, "b.cfg"), "modified");
+        Scanner restarted = new Scanner(dir);
+        restarted.setIndexFile(index);
+        Set<File> files = restarted.scan(false);
+        assertEquals(1, files.size());
+        assertEquals("a.cfg", files.iterator().next().getName());
+        assertEquals(1, restarted.scan(false).size());
+    }
+
+    @Test
+    public void testIndexSkipsChecksumOfUnchangedFiles() throws Exception {
+        File dir = folder.newFolder("watched");
+        File index = new File(folder.getRoot(), "scan.idx");
+        File a = new File(dir, "a.cfg");
+        File b = new File(dir, "b.cfg");
+        write(a, "a");
+        write(b, "b");
+
+        Scanner scanner = new Scanner(dir);
+        scanner.setIndexFile(index);
+        assertEquals(2, scanner.scan(true).size());
+        // Persist marker checksums, reused only if the files are unchanged
+        scanner.storedChecksums.put(a, 42L);
+        scanner.storedChecksums.put(b, 43L);
+        scanner.saveIndex();
+
+        assertTrue(b.setLastModified(b.lastModified() - 10000));
+        Scanner restarted = new Scanner(dir);
+        restarted.setIndexFile(index);
+        assertEquals(2, restarted.scan(true).size());
+        assertEquals(42L, restarted.getChecksum(a));
+        assertEquals(Scanner.checksum(b), restarted.getChecksum(b));
+    }
+
+    @Test
+    public void testDebounce() throws Exception {
+        File dir = folder.newFolder("watched");
+        Object monitor = new Object();
+        WatcherScanner scanner = new WatcherScanner(context, dir, null, null, 300, 0, monitor);
+        try {
+            assertTrue(scanner.scan(true).isEmpty());
+
+            File file = new File(dir, "a.cfg");
+            synchronized (monitor) {
+                write(file, "a");
+                monitor.wait(10000);
+            }
+            // The event has been received but the file is reported once quiet
+            assertTrue(scanner.scan(false).isEmpty());
+            long delay = scanner.getNextScanDelay(10000);
+            assertTrue(delay > 0 && delay <= 300);
+
+            Thread.sleep(delay + 50);
+            Set<File> files = scanner.scan(false);
+            assertEquals(1, files.size());
+            assertEquals(file.getCanonicalFile(), files.iterator().next().getCanonicalFile());
+            assertEquals(10000, scanner.getNextScanDelay(10000));
+        } finally {
+            scanner.close();
+        }
+    }
+
+    @Test
+    public void testVerifyInterval() throws Exception {
+        File dir = folder.newFolder("watched");
+        File file = new File(dir, "a.cfg");
+        write(file, "a");
+        WatcherScanner scanner = new WatcherScanner(context, dir, null, null, 0, 60000, null);
+        try {
+            assertEquals(1, scanner.scan(true).size());
+            assertTrue(scanner.scan(false).isEmpty());
+
+            // A change not seen by the watcher is only found by the next verification
+            assertTrue(file.setLastModified(file.lastModified() - 10000));
+            scanner.watcher.processEvents();
+            synchronized (scanner.changed) {
+                scanner.changed.clear();
+            }
+            assertTrue(scanner.scan(false).isEmpty());
+            scanner.lastVerify -= 60000;
+            assertTrue(scanner.scan(false).isEmpty());
+            assertEquals(1, scanner.scan(false).size());
+        } finally {
+            scanner.close();
+        }
+    }
+
+    private void write(File file, String content) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes("UTF-8"));
+        }
+    }
+}
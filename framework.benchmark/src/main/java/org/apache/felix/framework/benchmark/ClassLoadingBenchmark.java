@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.framework.benchmark.exported.ExportedType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+/**
+ * Class and resource loading through the bundle class loader of a bundle
+ * importing a package from another bundle, i.e. the delegation done by
+ * <code>BundleWiringImpl</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassLoadingBenchmark
+{
+    private static final String EXPORTED_PACKAGE = ExportedType.class.getPackage().getName();
+    private static final String EXPORTED_CLASS = ExportedType.class.getName();
+    private static final String EXPORTED_RESOURCE = EXPORTED_CLASS.replace('.', '/') + ".class";
+
+    private EmbeddedFramework m_framework;
+    private ClassLoader m_importerLoader;
+    private ClassLoader m_exporterLoader;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        m_framework = new EmbeddedFramework();
+
+        Map<String, String> exporterHeaders = new HashMap<String, String>();
+        exporterHeaders.put(Constants.EXPORT_PACKAGE, EXPORTED_PACKAGE + ";version=1.0.0");
+        Bundle exporter = m_framework.install("benchmark.exporter", exporterHeaders, ExportedType.class);
+
+        Map<String, String> importerHeaders = new HashMap<String, String>();
+        importerHeaders.put(Constants.IMPORT_PACKAGE, EXPORTED_PACKAGE + ";version=\"[1.0,2.0)\"");
+        Bundle importer = m_framework.install("benchmark.importer", importerHeaders);
+
+        FrameworkWiring frameworkWiring = m_framework.getBundleContext().getBundle().adapt(FrameworkWiring.class);
+        if (!frameworkWiring.resolveBundles(Arrays.asList(exporter, importer)))
+        {
+            throw new IllegalStateException("Benchmark bundles could not be resolved");
+        }
+        m_importerLoader = importer.adapt(BundleWiring.class).getClassLoader();
+        m_exporterLoader = exporter.adapt(BundleWiring.class).getClassLoader();
+
+        // the class must come from the exporting bundle, not from the class path
+        if (m_importerLoader.loadClass(EXPORTED_CLASS).getClassLoader() != m_exporterLoader)
+        {
+            throw new IllegalStateException("Imported class not loaded by the exporting bundle");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        m_framework.stop();
+    }
+
+    @Benchmark
+    public Class<?> loadImportedClass() throws ClassNotFoundException
+    {
+        return m_importerLoader.loadClass(EXPORTED_CLASS);
+    }
+
+    @Benchmark
+    public Class<?> loadOwnClass() throws ClassNotFoundException
+    {
+        return m_exporterLoader.loadClass(EXPORTED_CLASS);
+    }
+
+    @Benchmark
+    public Class<?> loadJavaClass() throws ClassNotFoundException
+    {
+        return m_importerLoader.loadClass("java.util.ArrayList");
+    }
+
+    @Benchmark
+    public Object loadMissingClass()
+    {
+        try
+        {
+            return m_importerLoader.loadClass(EXPORTED_PACKAGE + ".Missing");
+        }
+        catch (ClassNotFoundException e)
+        {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public URL getImportedResource()
+    {
+        return m_importerLoader.getResource(EXPORTED_RESOURCE);
+    }
+
+    @Benchmark
+    public Object getImportedResources() throws Exception
+    {
+        return Collections.list(m_importerLoader.getResources(EXPORTED_RESOURCE));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.felix.framework.Felix;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+
+/**
+ * An embedded {@link Felix} instance using a temporary storage directory,
+ * as used by the benchmarks that need a running framework. Bundles are
+ * created on the fly, so no repository or network access is needed.
+ */
+class EmbeddedFramework
+{
+    private final File m_storage;
+    private final Felix m_felix;
+
+    EmbeddedFramework() throws IOException, BundleException
+    {
+        m_storage = Files.createTempDirectory("felix-benchmark").toFile();
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put(Constants.FRAMEWORK_STORAGE, m_storage.getAbsolutePath());
+        config.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        config.put("felix.log.level", "1");
+        m_felix = new Felix(config);
+        m_felix.start();
+    }
+
+    BundleContext getBundleContext()
+    {
+        return m_felix.getBundleContext();
+    }
+
+    /**
+     * Installs a bundle with the given manifest headers, containing the
+     * given classes of this module.
+     */
+    Bundle install(String symbolicName, Map<String, String> headers, Class<?>... classes)
+        throws IOException, BundleException
+    {
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue(Constants.BUNDLE_MANIFESTVERSION, "2");
+        attributes.putValue(Constants.BUNDLE_SYMBOLICNAME, symbolicName);
+        for (Map.Entry<String, String> header : headers.entrySet())
+        {
+            attributes.putValue(header.getKey(), header.getValue());
+        }
+
+        File jar = new File(m_storage, symbolicName + ".jar");
+        JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()), manifest);
+        try
+        {
+            for (Class<?> clazz : classes)
+            {
+                String entry = clazz.getName().replace('.', '/') + ".class";
+                out.putNextEntry(new JarEntry(entry));
+                out.write(read(clazz.getClassLoader().getResourceAsStream(entry)));
+                out.closeEntry();
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        return getBundleContext().installBundle(jar.toURI().toString());
+    }
+
+    void stop() throws BundleException, InterruptedException
+    {
+        m_felix.stop();
+        m_felix.waitForStop(10000);
+        delete(m_storage);
+    }
+
+    private static byte[] read(InputStream in) throws IOException
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer))
+            {
+                bytes.write(buffer, 0, n);
+            }
+            return bytes.toByteArray();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.framework.util.manifestparser.ManifestParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+
+/**
+ * Parsing of bundle manifests with large <code>Export-Package</code> and
+ * <code>Import-Package</code> headers, as generated by bnd for library
+ * bundles, into capabilities and requirements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ManifestParserBenchmark
+{
+    @Param({ "10", "200" })
+    public int packages;
+
+    private Map<String, Object> m_headers;
+
+    @Setup
+    public void setUp()
+    {
+        StringBuilder exports = new StringBuilder();
+        StringBuilder imports = new StringBuilder();
+        for (int i = 0; i < packages; i++)
+        {
+            if (i > 0)
+            {
+                exports.append(',');
+                imports.append(',');
+            }
+            exports.append("org.example.api.pkg").append(i)
+                .append(";version=\"1.").append(i % 10).append(".0\"")
+                .append(";uses:=\"org.example.api.pkg").append((i + 1) % packages)
+                .append(",org.example.spi.pkg").append(i).append("\"")
+                .append(";vendor=example");
+            imports.append("org.example.spi.pkg").append(i)
+                .append(";version=\"[1.").append(i % 10).append(",2)\"");
+            if (i % 5 == 0)
+            {
+                imports.append(";resolution:=optional");
+            }
+        }
+
+        m_headers = new HashMap<String, Object>();
+        m_headers.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+        m_headers.put(Constants.BUNDLE_SYMBOLICNAME, "org.example.library;singleton:=true");
+        m_headers.put(Constants.BUNDLE_VERSION, "1.2.3.qualifier");
+        m_headers.put(Constants.EXPORT_PACKAGE, exports.toString());
+        m_headers.put(Constants.IMPORT_PACKAGE, imports.toString());
+        m_headers.put(Constants.DYNAMICIMPORT_PACKAGE, "org.example.dynamic.*");
+        m_headers.put(Constants.REQUIRE_CAPABILITY, "osgi.ee;filter:=\"(&(osgi.ee=JavaSE)(version=1.8))\"");
+    }
+
+    @Benchmark
+    public ManifestParser parse() throws BundleException
+    {
+        return new ManifestParser(null, null, null, m_headers);
+    }
+}
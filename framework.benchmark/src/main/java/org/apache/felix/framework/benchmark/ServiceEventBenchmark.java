@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Synchronous delivery of service events by the framework's
+ * <code>EventDispatcher.fireServiceEvent</code> to a given number of service
+ * listeners, half of them with a filter not matching the service, the way
+ * most listeners of a busy framework are not interested in most events.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceEventBenchmark
+{
+    public interface Sample
+    {
+    }
+
+    static class SampleImpl implements Sample
+    {
+    }
+
+    @Param({ "1", "10", "100", "1000" })
+    public int listeners;
+
+    private EmbeddedFramework m_framework;
+    private BundleContext m_context;
+    private final List<ServiceListener> m_listeners = new ArrayList<ServiceListener>();
+    private ServiceRegistration<Sample> m_registration;
+    private Dictionary<String, Object> m_props;
+    // written by the listeners so event delivery cannot be optimized away
+    int m_events;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        m_framework = new EmbeddedFramework();
+        m_context = m_framework.getBundleContext();
+        for (int i = 0; i < listeners; i++)
+        {
+            ServiceListener listener = new ServiceListener()
+            {
+                public void serviceChanged(ServiceEvent event)
+                {
+                    m_events++;
+                }
+            };
+            m_listeners.add(listener);
+            if (i % 2 == 0)
+            {
+                m_context.addServiceListener(listener, "(objectClass=" + Sample.class.getName() + ")");
+            }
+            else
+            {
+                m_context.addServiceListener(listener, "(objectClass=org.example.Other" + i + ")");
+            }
+        }
+        m_props = new Hashtable<String, Object>();
+        m_props.put("counter", 0);
+        m_registration = m_context.registerService(Sample.class, new SampleImpl(), m_props);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        m_registration.unregister();
+        for (ServiceListener listener : m_listeners)
+        {
+            m_context.removeServiceListener(listener);
+        }
+        m_listeners.clear();
+        m_framework.stop();
+    }
+
+    /**
+     * Modifying the service properties fires a MODIFIED event to all
+     * listeners.
+     */
+    @Benchmark
+    public void fireModified()
+    {
+        m_registration.setProperties(m_props);
+    }
+
+    @Benchmark
+    public void fireRegisteredAndUnregistering()
+    {
+        m_context.registerService(Sample.class, new SampleImpl(), null).unregister();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Registration and lookup of services through the service registry, with
+ * a given number of services already registered under the same interface.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceRegistryBenchmark
+{
+    public interface Greeter
+    {
+        String greet();
+    }
+
+    static class GreeterImpl implements Greeter
+    {
+        public String greet()
+        {
+            return "hello";
+        }
+    }
+
+    @Param({ "10", "1000" })
+    public int services;
+
+    private EmbeddedFramework m_framework;
+    private BundleContext m_context;
+    private final List<ServiceRegistration<Greeter>> m_registrations = new ArrayList<ServiceRegistration<Greeter>>();
+    private final Greeter m_greeter = new GreeterImpl();
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        m_framework = new EmbeddedFramework();
+        m_context = m_framework.getBundleContext();
+        for (int i = 0; i < services; i++)
+        {
+            m_registrations.add(m_context.registerService(Greeter.class, m_greeter, properties(i)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        for (ServiceRegistration<Greeter> registration : m_registrations)
+        {
+            registration.unregister();
+        }
+        m_registrations.clear();
+        m_framework.stop();
+    }
+
+    private static Dictionary<String, Object> properties(int i)
+    {
+        Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put("name", "greeter" + i);
+        props.put("group", "group" + (i % 10));
+        props.put("rank", i);
+        return props;
+    }
+
+    @Benchmark
+    public ServiceRegistration<Greeter> registerUnregister()
+    {
+        ServiceRegistration<Greeter> registration = m_context.registerService(Greeter.class, m_greeter, properties(-1));
+        registration.unregister();
+        return registration;
+    }
+
+    @Benchmark
+    public ServiceReference<?>[] getServiceReferencesByClass() throws Exception
+    {
+        return m_context.getServiceReferences(Greeter.class.getName(), null);
+    }
+
+    @Benchmark
+    public ServiceReference<?>[] getServiceReferencesByEquality() throws Exception
+    {
+        return m_context.getServiceReferences(Greeter.class.getName(), "(name=greeter5)");
+    }
+
+    @Benchmark
+    public ServiceReference<?>[] getServiceReferencesByCompositeFilter() throws Exception
+    {
+        return m_context.getServiceReferences(Greeter.class.getName(), "(&(group=group3)(rank>=5))");
+    }
+
+    @Benchmark
+    public ServiceReference<?>[] getServiceReferencesByFilterOnly() throws Exception
+    {
+        return m_context.getServiceReferences((String) null, "(name=greeter5)");
+    }
+
+    @Benchmark
+    public ServiceReference<Greeter> getServiceReference()
+    {
+        return m_context.getServiceReference(Greeter.class);
+    }
+}
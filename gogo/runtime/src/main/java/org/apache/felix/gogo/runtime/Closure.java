@@ -51,6 +51,7 @@ public class Closure implements Function, Evaluate
 
     public static final String LOCATION = ".location";
     public static final String PIPE_EXCEPTION = "pipe-exception";
+    public static final String OBJECT_PIPE = ".ObjectPipe";
     private static final String DEFAULT_LOCK = ".defaultLock";
 
     private static final ThreadLocal<String> location = new ThreadLocal<>();
@@ -81,7 +82,7 @@ public class Closure implements Function, Evaluate
         {
             try
             {
-                this.program = new Parser(source).program();
+                this.program = session.parse(source);
             }
             catch (Exception e)
             {
@@ -259,23 +260,21 @@ public class Closure implements Function, Evaluate
                         ntoclose = toclose;
                         endOfPipe = true;
                     } else if (Token.eq("|", op)) {
-                        PipedInputStream pis = new PipedInputStream();
-                        PipedOutputStream pos = new PipedOutputStream(pis);
+                        Channel[] pipe = createPipe();
                         nstreams = streams.clone();
-                        nstreams[1] = Channels.newChannel(pos);
+                        nstreams[1] = pipe[1];
                         ntoclose = toclose.clone();
                         ntoclose[1] = true;
-                        streams[0] = Channels.newChannel(pis);
+                        streams[0] = pipe[0];
                         toclose[0] = true;
                         endOfPipe = false;
                     } else if (Token.eq("|&", op)) {
-                        PipedInputStream pis = new PipedInputStream();
-                        PipedOutputStream pos = new PipedOutputStream(pis);
+                        Channel[] pipe = createPipe();
                         nstreams = streams.clone();
-                        nstreams[1] = nstreams[2] = Channels.newChannel(pos);
+                        nstreams[1] = nstreams[2] = pipe[1];
                         ntoclose = toclose.clone();
                         ntoclose[1] = ntoclose[2] = true;
-                        streams[0] = Channels.newChannel(pis);
+                        streams[0] = pipe[0];
                         toclose[0] = true;
                         endOfPipe = false;
                     } else {
@@ -309,6 +308,20 @@ public class Closure implements Function, Evaluate
         return last == null ? null : last.result;
     }
 
+    // creates the read and write ends of a pipe between two pipeline stages:
+    // objects are passed as is if the session enables object pipes
+    private Channel[] createPipe() throws IOException
+    {
+        if (Boolean.TRUE.equals(session.get(OBJECT_PIPE)))
+        {
+            ObjectPipe pipe = new ObjectPipe(session);
+            return new Channel[] { pipe.source(), pipe.sink() };
+        }
+        PipedInputStream pis = new PipedInputStream();
+        PipedOutputStream pos = new PipedOutputStream(pis);
+        return new Channel[] { Channels.newChannel(pis), Channels.newChannel(pos) };
+    }
+
     private static class WritableByteChannelImpl extends AbstractInterruptibleChannel
             implements WritableByteChannel {
         private final WritableByteChannel out;
@@ -34,7 +34,11 @@ import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
 
+import org.apache.felix.gogo.runtime.Parser.Program;
 import org.apache.felix.service.command.*;
 import org.apache.felix.service.threadio.ThreadIO;
 import org.osgi.annotation.bundle.Capability;
@@ -46,6 +50,10 @@ import org.osgi.namespace.service.ServiceNamespace;
 )
 public class CommandProcessorImpl implements CommandProcessor
 {
+    private static final Logger log = Logger.getLogger(CommandProcessorImpl.class.getName());
+
+    private static final int MAX_PROGRAMS = 256;
+
     protected final Set<Converter> converters = new CopyOnWriteArraySet<>();
     protected final Set<CommandSessionListener> listeners = new CopyOnWriteArraySet<>();
     protected final ConcurrentMap<String, Map<Object, Integer>> commands = new ConcurrentHashMap<>();
@@ -53,6 +61,20 @@ public class CommandProcessorImpl implements CommandProcessor
     protected final ThreadIO threadIO;
     protected final WeakHashMap<CommandSession, Object> sessions = new WeakHashMap<>();
     protected boolean stopped;
+    private volatile boolean virtualThreads;
+
+    // parsed programs, keyed by source, shared by all sessions
+    private final Map<String, Program> programs = Collections.synchronizedMap(
+            new LinkedHashMap<String, Program>(16, 0.75f, true)
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Entry<String, Program> eldest)
+                {
+                    return size() > MAX_PROGRAMS;
+                }
+            });
 
     public CommandProcessorImpl()
     {
@@ -128,6 +150,35 @@ public class CommandProcessorImpl implements CommandProcessor
         converters.remove(c);
     }
 
+    /**
+     * Sets whether the jobs and pipeline stages of the sessions created
+     * afterwards run on virtual threads. Platform threads are used if the
+     * Java runtime does not support virtual threads.
+     */
+    public void setVirtualThreads(boolean virtualThreads)
+    {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public boolean isVirtualThreads()
+    {
+        return virtualThreads;
+    }
+
+    ExecutorService newExecutor()
+    {
+        if (virtualThreads)
+        {
+            ExecutorService executor = ThreadUtils.newVirtualThreadExecutor("session");
+            if (executor != null)
+            {
+                return executor;
+            }
+            log.warning("Virtual threads are not supported by this Java runtime, using platform threads");
+        }
+        return Executors.newCachedThreadPool(ThreadUtils.namedThreadFactory("session"));
+    }
+
     public void addListener(CommandSessionListener l)
     {
         listeners.add(l);
@@ -360,6 +411,25 @@ public class CommandProcessorImpl implements CommandProcessor
         return session.execute(buf);
     }
 
+    /**
+     * Parses the given source. Programs parsed from strings are immutable
+     * and cached, so that scripts evaluated repeatedly are parsed only once.
+     */
+    Program parse(CharSequence source)
+    {
+        if (!(source instanceof String))
+        {
+            return new Parser(source).program();
+        }
+        Program program = programs.get(source);
+        if (program == null)
+        {
+            program = new Parser(source).program();
+            programs.put((String) source, program);
+        }
+        return program;
+    }
+
     void beforeExecute(CommandSession session, CharSequence commandline)
     {
         for (CommandSessionListener l : listeners)
@@ -47,13 +47,13 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import org.apache.felix.service.command.Job;
 import org.apache.felix.service.command.Job.Status;
 import org.apache.felix.service.command.JobListener;
 import org.apache.felix.service.command.Process;
+import org.apache.felix.gogo.runtime.Parser.Program;
 import org.apache.felix.gogo.runtime.Pipe.Result;
 import org.apache.felix.service.command.CommandProcessor;
 import org.apache.felix.service.command.CommandSession;
@@ -91,7 +91,7 @@ public class CommandSessionImpl implements CommandSession, Converter
     protected CommandSessionImpl(CommandProcessorImpl shell, CommandSessionImpl parent)
     {
         this.currentDir = parent.currentDir;
-        this.executor = Executors.newCachedThreadPool(ThreadUtils.namedThreadFactory("session"));
+        this.executor = shell.newExecutor();
         this.processor = shell;
         this.channels = parent.channels;
         this.in = parent.in;
@@ -104,7 +104,7 @@ public class CommandSessionImpl implements CommandSession, Converter
     protected CommandSessionImpl(CommandProcessorImpl shell, InputStream in, OutputStream out, OutputStream err)
     {
         this.currentDir = Paths.get(System.getProperty("user.dir")).toAbsolutePath().normalize();
-        this.executor = Executors.newCachedThreadPool(ThreadUtils.namedThreadFactory("session"));
+        this.executor = shell.newExecutor();
         this.processor = shell;
         ReadableByteChannel inCh = Channels.newChannel(in);
         WritableByteChannel outCh = Channels.newChannel(out);
@@ -122,6 +122,11 @@ public class CommandSessionImpl implements CommandSession, Converter
         return processor.threadIO;
     }
 
+    Program parse(CharSequence source)
+    {
+        return processor.parse(source);
+    }
+
     public CommandProcessor processor()
     {
         return processor;
@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.gogo.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.felix.service.command.Converter;
+
+/**
+ * A pipe between two stages of a pipeline, carrying both the bytes written
+ * by the upstream stage and the objects it produces through a bounded queue.
+ *
+ * Objects are passed as is and only formatted if the downstream stage reads
+ * them as bytes, so that stages using {@link Pipe#writeObject(Object)} and
+ * {@link Pipe#readObject()} exchange them without any conversion. Text is
+ * encoded and decoded as UTF-8.
+ */
+class ObjectPipe
+{
+    static final int CAPACITY = 256;
+
+    private static final Object EOF = new Object();
+
+    private final CommandSessionImpl session;
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final Sink sink = new Sink();
+    private final Source source = new Source();
+
+    private volatile boolean sinkClosed;
+    private volatile boolean sourceClosed;
+
+    ObjectPipe(CommandSessionImpl session)
+    {
+        this.session = session;
+    }
+
+    Sink sink()
+    {
+        return sink;
+    }
+
+    Source source()
+    {
+        return source;
+    }
+
+    private void put(Object o) throws IOException
+    {
+        if (sourceClosed)
+        {
+            throw new IOException("Pipe closed");
+        }
+        try
+        {
+            queue.put(o);
+        }
+        catch (InterruptedException e)
+        {
+            throw (IOException) new InterruptedIOException().initCause(e);
+        }
+    }
+
+    private static class Bytes
+    {
+        final byte[] data;
+
+        Bytes(byte[] data)
+        {
+            this.data = data;
+        }
+    }
+
+    class Sink implements WritableByteChannel
+    {
+        @Override
+        public int write(ByteBuffer src) throws IOException
+        {
+            ensureOpen();
+            int n = src.remaining();
+            if (n > 0)
+            {
+                byte[] data = new byte[n];
+                src.get(data);
+                put(new Bytes(data));
+            }
+            return n;
+        }
+
+        void writeObject(Object o) throws IOException
+        {
+            ensureOpen();
+            if (o != null)
+            {
+                put(o);
+            }
+        }
+
+        private void ensureOpen() throws ClosedChannelException
+        {
+            if (sinkClosed)
+            {
+                throw new ClosedChannelException();
+            }
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return !sinkClosed;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (!sinkClosed)
+            {
+                sinkClosed = true;
+                if (!sourceClosed)
+                {
+                    put(EOF);
+                }
+            }
+        }
+    }
+
+    class Source implements ReadableByteChannel
+    {
+        private ByteBuffer pending;
+        private Object next;
+        private boolean eof;
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException
+        {
+            ensureOpen();
+            while (pending == null || !pending.hasRemaining())
+            {
+                Object o = take();
+                if (o == EOF)
+                {
+                    return -1;
+                }
+                pending = ByteBuffer.wrap(toBytes(o));
+            }
+            int n = Math.min(dst.remaining(), pending.remaining());
+            int limit = pending.limit();
+            pending.limit(pending.position() + n);
+            dst.put(pending);
+            pending.limit(limit);
+            return n;
+        }
+
+        /**
+         * Returns the next object written to the pipe, or <code>null</code>
+         * at the end of the input. Bytes are returned line by line as strings.
+         */
+        Object readObject() throws IOException
+        {
+            ensureOpen();
+            ByteArrayOutputStream line = null;
+            while (true)
+            {
+                if (pending != null && pending.hasRemaining())
+                {
+                    if (line == null)
+                    {
+                        line = new ByteArrayOutputStream();
+                    }
+                    while (pending.hasRemaining())
+                    {
+                        byte b = pending.get();
+                        if (b == '\n')
+                        {
+                            return toLine(line);
+                        }
+                        line.write(b);
+                    }
+                }
+                Object o = take();
+                if (o instanceof Bytes)
+                {
+                    pending = ByteBuffer.wrap(((Bytes) o).data);
+                }
+                else if (line != null && line.size() > 0)
+                {
+                    // return the unterminated line first
+                    next = o;
+                    return toLine(line);
+                }
+                else
+                {
+                    return o != EOF ? o : null;
+                }
+            }
+        }
+
+        private Object take() throws IOException
+        {
+            if (next != null)
+            {
+                Object o = next;
+                next = null;
+                return o;
+            }
+            if (eof)
+            {
+                return EOF;
+            }
+            try
+            {
+                Object o = queue.take();
+                eof = o == EOF;
+                return o;
+            }
+            catch (InterruptedException e)
+            {
+                throw (IOException) new InterruptedIOException().initCause(e);
+            }
+        }
+
+        private byte[] toBytes(Object o) throws IOException
+        {
+            if (o instanceof Bytes)
+            {
+                return ((Bytes) o).data;
+            }
+            try
+            {
+                return (session.format(o, Converter.INSPECT) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+            }
+            catch (Exception e)
+            {
+                throw new IOException("Unable to format " + o, e);
+            }
+        }
+
+        private String toLine(ByteArrayOutputStream line)
+        {
+            String s = new String(line.toByteArray(), StandardCharsets.UTF_8);
+            return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+        }
+
+        private void ensureOpen() throws ClosedChannelException
+        {
+            if (sourceClosed)
+            {
+                throw new ClosedChannelException();
+            }
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return !sourceClosed;
+        }
+
+        @Override
+        public void close()
+        {
+            sourceClosed = true;
+            pending = null;
+            // unblock a writer waiting for room in the queue
+            queue.clear();
+        }
+    }
+}
@@ -18,10 +18,12 @@
  */
 package org.apache.felix.gogo.runtime;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.InterruptedIOException;
 import java.io.PrintStream;
 import java.net.URI;
@@ -125,6 +127,10 @@ public class Pipe implements Callable<Result>, Process
     PrintStream out;
     PrintStream err;
 
+    ObjectPipe.Source objectIn;
+    ObjectPipe.Sink objectOut;
+    BufferedReader reader;
+
     public Pipe(Closure closure, JobImpl job, Statement statement, Channel[] streams, boolean[] toclose, boolean endOfPipe)
     {
         this.closure = closure;
@@ -220,6 +226,38 @@ public class Pipe implements Callable<Result>, Process
         this.error = error;
     }
 
+    /**
+     * Reads the next object from the standard input of this pipe.
+     * If the previous stage of the pipeline is connected through an object
+     * pipe, the objects it wrote are returned as is, otherwise the input is
+     * read line by line.
+     *
+     * @return the next object, or <code>null</code> at the end of the input
+     */
+    public Object readObject() throws IOException {
+        if (objectIn != null) {
+            return objectIn.readObject();
+        }
+        if (reader == null) {
+            reader = new BufferedReader(new InputStreamReader(in));
+        }
+        return reader.readLine();
+    }
+
+    /**
+     * Writes an object to the standard output of this pipe.
+     * If the next stage of the pipeline is connected through an object pipe,
+     * the object is passed as is, otherwise it is formatted.
+     */
+    public void writeObject(Object object) throws IOException {
+        if (objectOut != null) {
+            out.flush();
+            objectOut.writeObject(object);
+        } else if (object != null) {
+            out.println(closure.session().format(object, Converter.INSPECT));
+        }
+    }
+
     @Override
     public Result call() {
         Thread thread = Thread.currentThread();
@@ -378,6 +416,8 @@ public class Pipe implements Callable<Result>, Process
                 }
             }
 
+            objectIn = find(streams[0], ObjectPipe.Source.class);
+            objectOut = find(streams[1], ObjectPipe.Sink.class);
             for (int i = 0; i < streams.length; i++) {
                 streams[i] = wrap(streams[i]);
             }
@@ -423,7 +463,7 @@ public class Pipe implements Callable<Result>, Process
                 // We don't print the result if we're at the end of the pipe
                 if (result != null && !endOfPipe && !Boolean.FALSE.equals(closure.session().get(".FormatPipe")))
                 {
-                    out.println(closure.session().format(result, Converter.INSPECT));
+                    writeObject(result);
                 }
                 return new Result(result);
 
@@ -535,6 +575,16 @@ public class Pipe implements Callable<Result>, Process
         return null;
     }
 
+    // looks through the wrapping of inherited streams for an object pipe end
+    private <T extends Channel> T find(Channel channel, Class<T> type)
+    {
+        while (channel instanceof MultiChannel && ((MultiChannel) channel).channels.size() == 1)
+        {
+            channel = ((MultiChannel) channel).channels.get(0);
+        }
+        return type.isInstance(channel) ? type.cast(channel) : null;
+    }
+
     private Channel wrap(Channel channel)
     {
         if (channel == null)
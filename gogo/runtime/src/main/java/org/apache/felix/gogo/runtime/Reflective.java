@@ -19,6 +19,11 @@
 package org.apache.felix.gogo.runtime;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -35,6 +40,9 @@ import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.felix.service.command.CommandSession;
 import org.apache.felix.service.command.Parameter;
@@ -53,6 +61,31 @@ public final class Reflective
                 "finally", "long", "strictfp", "volatile", "const", "float", "native",
                 "super", "while"));
 
+    /**
+     * Maximum number of argument types remembered per method name and class.
+     */
+    private static final int MAX_RESOLVED = 64;
+
+    /**
+     * The methods of each class, looked up once per class. The class values
+     * only hold JDK types, the methods being softly referenced, so that the
+     * invoked classes do not pin this bundle once it is updated.
+     */
+    private static final ClassValue<AtomicReference<Reference<ClassMethods>>> METHODS =
+        new ClassValue<AtomicReference<Reference<ClassMethods>>>()
+        {
+            @Override
+            protected AtomicReference<Reference<ClassMethods>> computeValue(Class<?> type)
+            {
+                return new AtomicReference<>();
+            }
+        };
+
+    /**
+     * The type of the handles invoking the methods: the target, then the arguments.
+     */
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
     /**
      * invokes the named method on the given target using the supplied args,
      * which are converted if necessary.
@@ -78,28 +111,39 @@ public final class Reflective
             name = "_" + name;
         }
 
-        Set<Class<?>> publicClasses = new LinkedHashSet<>();
-        Set<Class<?>> nonPublicClasses = new LinkedHashSet<>();
-        getClassAndAncestors(publicClasses, nonPublicClasses, target.getClass());
-        List<Method> methods = new ArrayList<>();
-        for (Class<?> cl : publicClasses) {
-            Collections.addAll(methods, cl.getMethods());
-        }
-        for (Class<?> cl : nonPublicClasses) {
-            Collections.addAll(methods, cl.getMethods());
-        }
+        Candidates candidates = getMethods(target.getClass()).getCandidates(org, name, get, set, is);
 
         Method bestMethod = null;
         Object[] bestArgs = null;
         int lowestMatch = Integer.MAX_VALUE;
         ArrayList<Class<?>[]> possibleTypes = new ArrayList<>();
 
-        for (Method m : methods)
+        // A method matching the argument types without any conversion is
+        // the best match for any arguments of the same types
+        List<Class<?>> argTypes = candidates.cacheable ? getArgumentTypes(args) : null;
+        Method resolved = argTypes != null ? candidates.resolved.get(argTypes) : null;
+        if (resolved != null)
         {
-            String mname = m.getName().toLowerCase(Locale.ENGLISH);
-            if (mname.equals(name) || mname.equals(get) || mname.equals(set)
-                || mname.equals(is) || mname.equals(MAIN))
+            Class<?>[] types = resolved.getParameterTypes();
+            ArrayList<Object> xargs = new ArrayList<>(args);
+            if (resolved.getName().toLowerCase(Locale.ENGLISH).equals(MAIN))
+            {
+                xargs.add(0, org);
+            }
+            Object[] parms = new Object[types.length];
+            if (coerce(session, target, resolved, types, parms, xargs) == 0)
             {
+                lowestMatch = 0;
+                bestMethod = resolved;
+                bestArgs = parms;
+            }
+        }
+
+        if (bestMethod == null)
+        {
+            for (Method m : candidates.methods)
+            {
+                String mname = m.getName().toLowerCase(Locale.ENGLISH);
                 Class<?>[] types = m.getParameterTypes();
                 ArrayList<Object> xargs = new ArrayList<>(args);
 
@@ -133,22 +177,27 @@ public final class Reflective
             }
         }
 
+        if (bestMethod != null && bestMethod != resolved && lowestMatch == 0 && argTypes != null
+            && candidates.resolved.size() < MAX_RESOLVED)
+        {
+            candidates.resolved.putIfAbsent(argTypes, bestMethod);
+        }
+
         if (bestMethod != null)
         {
-            bestMethod.setAccessible(true);
+            MethodHandle handle = candidates.getHandle(bestMethod);
             try
             {
-                return bestMethod.invoke(target, bestArgs);
+                return (Object) handle.invokeExact(target, bestArgs);
             }
-            catch (InvocationTargetException e)
+            catch (Exception | Error e)
             {
-                Throwable cause = e.getCause();
-                if (cause instanceof Exception)
-                {
-                    throw (Exception) cause;
-                }
                 throw e;
             }
+            catch (Throwable t)
+            {
+                throw new InvocationTargetException(t);
+            }
         }
         else
         {
@@ -204,6 +253,24 @@ public final class Reflective
         }
     }
 
+    /**
+     * Returns the types of the given arguments, or <code>null</code> if an
+     * argument is a {@link Token}, whose conversion depends on its value.
+     */
+    private static List<Class<?>> getArgumentTypes(List<Object> args)
+    {
+        List<Class<?>> types = new ArrayList<>(args.size());
+        for (Object arg : args)
+        {
+            if (arg instanceof Token)
+            {
+                return null;
+            }
+            types.add(arg != null ? arg.getClass() : null);
+        }
+        return types;
+    }
+
     private static void getClassAndAncestors(Set<Class<?>> publicClasses, Set<Class<?>> nonPublicClasses, Class<?> aClass)
     {
         for (Class<?> itf : aClass.getInterfaces())
@@ -657,4 +724,134 @@ public final class Reflective
         return null;
     }
 
+    static ClassMethods getMethods(Class<?> type)
+    {
+        AtomicReference<Reference<ClassMethods>> holder = METHODS.get(type);
+        Reference<ClassMethods> ref = holder.get();
+        ClassMethods methods = ref != null ? ref.get() : null;
+        if (methods == null)
+        {
+            methods = new ClassMethods(type);
+            holder.set(new SoftReference<>(methods));
+        }
+        return methods;
+    }
+
+    /**
+     * Creates a handle invoking the given method with the target and an
+     * array of arguments, boxing the primitive types.
+     */
+    private static MethodHandle createHandle(Method method) throws IllegalAccessException
+    {
+        method.setAccessible(true);
+        MethodHandle handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+        handle = handle.asType(handle.type().generic());
+        if (Modifier.isStatic(method.getModifiers()))
+        {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        return handle.asSpreader(Object[].class, method.getParameterTypes().length).asType(INVOKER_TYPE);
+    }
+
+    /**
+     * The public methods of a class and of its ancestors, in the order in
+     * which they are tried, with the candidates looked up per command name.
+     */
+    private static final class ClassMethods
+    {
+        private final Method[] methods;
+        private final String[] names;
+        private final ConcurrentMap<String, Candidates> candidates = new ConcurrentHashMap<>();
+
+        ClassMethods(Class<?> type)
+        {
+            Set<Class<?>> publicClasses = new LinkedHashSet<>();
+            Set<Class<?>> nonPublicClasses = new LinkedHashSet<>();
+            getClassAndAncestors(publicClasses, nonPublicClasses, type);
+            List<Method> list = new ArrayList<>();
+            for (Class<?> cl : publicClasses) {
+                Collections.addAll(list, cl.getMethods());
+            }
+            for (Class<?> cl : nonPublicClasses) {
+                Collections.addAll(list, cl.getMethods());
+            }
+            methods = list.toArray(new Method[list.size()]);
+            names = new String[methods.length];
+            for (int i = 0; i < methods.length; i++)
+            {
+                names[i] = methods[i].getName().toLowerCase(Locale.ENGLISH);
+            }
+        }
+
+        Candidates getCandidates(String org, String name, String get, String set, String is)
+        {
+            Candidates c = candidates.get(org);
+            if (c == null)
+            {
+                List<Method> list = new ArrayList<>();
+                for (int i = 0; i < methods.length; i++)
+                {
+                    String mname = names[i];
+                    if (mname.equals(name) || mname.equals(get) || mname.equals(set)
+                        || mname.equals(is) || mname.equals(MAIN))
+                    {
+                        list.add(methods[i]);
+                    }
+                }
+                c = new Candidates(list.toArray(new Method[list.size()]));
+                Candidates prev = candidates.putIfAbsent(org, c);
+                if (prev != null)
+                {
+                    c = prev;
+                }
+            }
+            return c;
+        }
+    }
+
+    /**
+     * The methods which may be invoked for a command name on a class, and
+     * the method chosen without any conversion for the argument types seen.
+     */
+    private static final class Candidates
+    {
+        final Method[] methods;
+        // false if named parameters make the choice depend on argument values
+        final boolean cacheable;
+        final ConcurrentMap<List<Class<?>>, Method> resolved = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Method, MethodHandle> handles = new ConcurrentHashMap<>();
+
+        Candidates(Method[] methods)
+        {
+            this.methods = methods;
+            boolean parameters = false;
+            for (Method m : methods)
+            {
+                for (Annotation[] as : m.getParameterAnnotations())
+                {
+                    for (Annotation a : as)
+                    {
+                        parameters |= a instanceof Parameter;
+                    }
+                }
+            }
+            this.cacheable = !parameters;
+        }
+
+        MethodHandle getHandle(Method method) throws IllegalAccessException
+        {
+            MethodHandle handle = handles.get(method);
+            if (handle == null)
+            {
+                handle = createHandle(method);
+                MethodHandle prev = handles.putIfAbsent(method, handle);
+                if (prev != null)
+                {
+                    handle = prev;
+                }
+            }
+            return handle;
+        }
+    }
+
 }
@@ -16,6 +16,8 @@
  */
 package org.apache.felix.gogo.runtime;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -30,6 +32,46 @@ public class ThreadUtils {
         return new NamedThreadFactory(prefix);
     }
 
+    /**
+     * Constructs virtual threads with names <code>&lt;prefix&gt;-&lt;thread number&gt;</code>.
+     * The threads inherit the inheritable thread locals of their creator, so that they
+     * inherit the current ThreadIO streams.
+     * @param prefix prefix to be used for thread names created by this {@link ThreadFactory}
+     * @return ThreadFactory, or <code>null</code> if the Java runtime does not support virtual threads
+     */
+    public static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            // Thread.ofVirtual().name(prefix + "-", 1).inheritInheritableThreadLocals(true).factory()
+            // without requiring Java 21 to compile
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix + "-", 1L);
+            builder = builderClass.getMethod("inheritInheritableThreadLocals", boolean.class).invoke(builder, true);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            // not supported
+            return null;
+        }
+    }
+
+    /**
+     * Constructs an {@link ExecutorService} running each task in a new virtual thread.
+     * @param prefix prefix to be used for thread names
+     * @return ExecutorService, or <code>null</code> if the Java runtime does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadExecutor(String prefix) {
+        ThreadFactory factory = virtualThreadFactory(prefix);
+        if (factory == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     private static class NamedThreadFactory implements ThreadFactory {
 
         private static final AtomicInteger poolNumber = new AtomicInteger(1);
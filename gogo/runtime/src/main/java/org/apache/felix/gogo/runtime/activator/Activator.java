@@ -55,9 +55,16 @@ public class Activator implements BundleActivator
 
     public static final String CONTEXT = ".context";
 
+    /**
+     * Framework property enabling virtual threads for the jobs and
+     * pipeline stages of command sessions.
+     */
+    public static final String VIRTUAL_THREADS = "gogo.runtime.virtual.threads";
+
     protected ServiceRegistration<?> newProcessor(ThreadIO tio, BundleContext context)
     {
         processor = new CommandProcessorImpl(tio);
+        processor.setVirtualThreads(Boolean.parseBoolean(context.getProperty(VIRTUAL_THREADS)));
         try
         {
             processor.addListener(new EventAdminListener(context));
@@ -68,7 +68,81 @@ public class ReflectiveTest {
                 Collections.<Object>singletonList(conv));
     }
 
+    @Test
+    public void testRepeatedInvocationWithDifferentArgumentTypes() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals("string", invoke("over", Arrays.<Object>asList("a")));
+            assertEquals("long", invoke("over", Arrays.<Object>asList(1L)));
+            assertEquals("list", invoke("over", Arrays.<Object>asList(Arrays.asList(1, 2))));
+            assertEquals("none", invoke("over", Collections.emptyList()));
+            assertEquals("string", invoke("over", Arrays.<Object>asList(new StringBuilder("a"))));
+        }
+    }
+
+    @Test
+    public void testStaticVoidAndPrimitiveMethods() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            assertEquals("static", invoke("stat", Collections.emptyList()));
+            assertEquals(3, invoke("length", Arrays.<Object>asList("abc")));
+            assertEquals(null, invoke("nothing", Collections.emptyList()));
+            assertEquals(Boolean.TRUE, invoke("bool", Collections.emptyList()));
+        }
+    }
+
+    @Test
+    public void testExceptionsAreNotWrapped() throws Exception {
+        try {
+            invoke("fail", Collections.emptyList());
+            Assert.fail("expected an exception");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testMethodsAreKeptAcrossGarbageCollections() throws Exception {
+        invoke("over", Collections.emptyList());
+        Object methods = Reflective.getMethods(Target.class);
+        System.gc();
+        Assert.assertSame(methods, Reflective.getMethods(Target.class));
+    }
+
     static class Target {
+        public static String stat() {
+            return "static";
+        }
+
+        public int length(String s) {
+            return s.length();
+        }
+
+        public void nothing() {
+        }
+
+        public boolean isBool() {
+            return true;
+        }
+
+        public void fail() {
+            throw new IllegalStateException("failed");
+        }
+
+        public String over() {
+            return "none";
+        }
+
+        public String over(String s) {
+            return "string";
+        }
+
+        public String over(long l) {
+            return "long";
+        }
+
+        public String over(List<?> l) {
+            return "list";
+        }
+
         public Object test1(CommandSession session, Object[] argv) {
             return argv;
         }
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -34,10 +35,13 @@ import org.apache.felix.gogo.runtime.Parser.Sequence;
 import org.apache.felix.gogo.runtime.Parser.Statement;
 import org.apache.felix.service.command.CommandSession;
 import org.apache.felix.service.command.Function;
+import org.junit.Assume;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 public class TestParser extends AbstractParserTest
@@ -508,6 +512,85 @@ public class TestParser extends AbstractParserTest
         return Process.Utils.current().isTty(fd);
     }
 
+    @Test
+    public void testObjectPipe() throws Exception
+    {
+        Context c = new Context();
+        c.addCommand("produce", this);
+        c.addCommand("consume", this);
+        c.addCommand("capture", this);
+        c.addCommand("echo", this);
+
+        assertEquals(Arrays.<Object>asList("0", "1", "2"), c.execute("produce 3 | consume"));
+
+        c.set(Closure.OBJECT_PIPE, true);
+        assertEquals(Arrays.<Object>asList(0L, 1L, 2L), c.execute("produce 3 | consume"));
+        assertEquals("012", c.execute("produce 3 | capture"));
+        assertEquals(Arrays.<Object>asList("abc"), c.execute("echo abc | consume"));
+        c.execute("myproduce = { produce $args }");
+        assertEquals(Arrays.<Object>asList(0L, 1L), c.execute("myproduce 2 | consume"));
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception
+    {
+        Assume.assumeNotNull(ThreadUtils.virtualThreadFactory("test"));
+
+        Context c = new Context();
+        c.addCommand("echoout", this);
+        c.addCommand("capture", this);
+        c.addCommand("produce", this);
+        c.addCommand("consume", this);
+        c.addCommand("isvirtual", this);
+        c.setVirtualThreads(true);
+
+        CommandSession session = c.createSession(System.in, System.out, System.err);
+        try
+        {
+            assertEquals("abc", session.execute("echoout abc | capture"));
+            assertEquals(Arrays.<Object>asList("0", "1"), session.execute("produce 2 | consume"));
+            assertEquals(true, session.execute("isvirtual"));
+            assertEquals(true, session.execute("echoout abc | isvirtual"));
+        }
+        finally
+        {
+            session.close();
+        }
+    }
+
+    @Test
+    public void testProgramCache() throws Exception
+    {
+        Context c = new Context();
+        assertSame(c.parse("echo a | grep b"), c.parse("echo a | grep b"));
+        assertNotSame(c.parse(new StringBuilder("echo a")), c.parse(new StringBuilder("echo a")));
+    }
+
+    public boolean isvirtual() throws Exception
+    {
+        // Thread.isVirtual() is only available on Java 21+
+        return (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+    }
+
+    public void produce(long count) throws IOException
+    {
+        for (long i = 0; i < count; i++)
+        {
+            Pipe.getCurrentPipe().writeObject(i);
+        }
+    }
+
+    public List<Object> consume() throws IOException
+    {
+        List<Object> objects = new ArrayList<>();
+        Object o;
+        while ((o = Pipe.getCurrentPipe().readObject()) != null)
+        {
+            objects.add(o);
+        }
+        return objects;
+    }
+
     void each(CommandSession session, Collection<Object> list, Function closure)
         throws Exception
     {
@@ -28,11 +28,14 @@ import java.util.stream.Stream;
 import org.apache.felix.hc.api.HealthCheck;
 import org.apache.felix.hc.api.execution.HealthCheckMetadata;
 import org.apache.felix.hc.api.execution.HealthCheckSelector;
+import org.apache.felix.hc.core.impl.executor.ExecutionLatencyHistogram;
+import org.apache.felix.hc.core.impl.executor.HealthCheckExecutorThreadPool;
 import org.apache.felix.hc.core.impl.util.HealthCheckFilter;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
 
 @Component(
         service = HealthCheckListCommand.class,
@@ -45,6 +48,9 @@ public class HealthCheckListCommand {
     
     private BundleContext bundleContext;
 
+    @Reference
+    HealthCheckExecutorThreadPool healthCheckExecutorThreadPool;
+
     @Activate
     protected final void activate(final BundleContext bundleContext) {
         this.bundleContext = bundleContext;
@@ -52,9 +58,12 @@ public class HealthCheckListCommand {
     public String list(String... params) {
 
         boolean isVerbose = false;
+        boolean showTimings = false;
         for (String param : params) {
             if("-v".equals(param)) {
                 isVerbose = true;
+            } else if("-t".equals(param)) {
+                showTimings = true;
             } else if("-h".equals(param)) {
                 return getHelpText();
             } else {
@@ -69,7 +78,19 @@ public class HealthCheckListCommand {
         ServiceReference<HealthCheck>[] hcRefs = hcFilter.getHealthCheckServiceReferences(selector);
         Stream<ServiceReference<HealthCheck>> hcRefsStream = Arrays.asList(hcRefs).stream();
         
-        if(isVerbose) {
+        if(showTimings) {
+
+            return hcRefsStream
+                    .map(ref -> { 
+                        HealthCheckMetadata metadata = new HealthCheckMetadata(ref);
+                        ExecutionLatencyHistogram histogram = healthCheckExecutorThreadPool.getLatencyHistogram(metadata.getServiceId());
+                        return String.join(" ", 
+                                rightPad(metadata.getTitle(), 60), 
+                                histogram != null ? histogram.toString() : "not executed yet");
+                    })
+                    .collect(Collectors.joining("\n"));
+
+        } else if(isVerbose) {
 
             return hcRefsStream
                     .map(ref -> { 
@@ -93,6 +114,6 @@ public class HealthCheckListCommand {
     }
 
     private String getHelpText() {
-        return "Usage: hc:list [-v]\n  -v verbose";
+        return "Usage: hc:list [-v] [-t]\n  -v verbose\n  -t execution times";
     }
 }
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The SF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.felix.hc.core.impl.executor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Limits the number of concurrently executing health checks per tag (bulkheads), so that slow checks of one kind cannot occupy all
+ * threads of the pool. Checks exceeding a limit wait in a queue without occupying a thread and are handed to the executor as soon as
+ * a check with the same tag finishes. */
+class ConcurrencyLimits {
+    private static final Logger LOG = LoggerFactory.getLogger(ConcurrencyLimits.class);
+
+    private final Executor executor;
+
+    private final Map<String, Bulkhead> bulkheadsByTag;
+
+    /** @param executor the executor to run the checks with
+     * @param limits the limits in format tag:limit */
+    ConcurrencyLimits(Executor executor, String[] limits) {
+        this.executor = executor;
+        Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+        if (limits != null) {
+            for (String limit : limits) {
+                int separatorPos = limit.lastIndexOf(':');
+                try {
+                    if (separatorPos <= 0) {
+                        throw new IllegalArgumentException("expected format tag:limit");
+                    }
+                    String tag = limit.substring(0, separatorPos).trim();
+                    int maxConcurrency = Integer.parseInt(limit.substring(separatorPos + 1).trim());
+                    if (maxConcurrency <= 0) {
+                        throw new IllegalArgumentException("limit must be greater than zero");
+                    }
+                    bulkheads.put(tag, new Bulkhead(tag, maxConcurrency));
+                } catch (IllegalArgumentException e) {
+                    LOG.warn("Ignoring invalid concurrency limit '{}': {}", limit, e.getMessage());
+                }
+            }
+        }
+        this.bulkheadsByTag = Collections.unmodifiableMap(bulkheads);
+    }
+
+    boolean isEmpty() {
+        return bulkheadsByTag.isEmpty();
+    }
+
+    /** Executes the job as soon as all limits of the given tags allow it. */
+    void execute(List<String> tags, Runnable job) {
+        List<Bulkhead> bulkheads = getBulkheads(tags);
+        if (bulkheads.isEmpty()) {
+            executor.execute(job);
+            return;
+        }
+        dispatch(new LimitedJob(job, bulkheads));
+    }
+
+    private List<Bulkhead> getBulkheads(List<String> tags) {
+        if (bulkheadsByTag.isEmpty() || tags == null || tags.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Bulkhead> bulkheads = new ArrayList<>();
+        for (Bulkhead bulkhead : bulkheadsByTag.values()) {
+            // configuration order is the order of acquisition
+            if (tags.contains(bulkhead.tag)) {
+                bulkheads.add(bulkhead);
+            }
+        }
+        return bulkheads;
+    }
+
+    private void dispatch(LimitedJob job) {
+        boolean acquired;
+        synchronized (this) {
+            acquired = tryAcquire(job);
+        }
+        if (acquired) {
+            executor.execute(job);
+        }
+    }
+
+    // takes a slot of every bulkhead of the job, or queues the job at the first bulkhead that is full
+    private boolean tryAcquire(LimitedJob job) {
+        for (Bulkhead bulkhead : job.bulkheads) {
+            if (bulkhead.running >= bulkhead.maxConcurrency) {
+                LOG.debug("Concurrency limit {} reached for tag {}, queuing {}", bulkhead.maxConcurrency, bulkhead.tag, job.job);
+                bulkhead.queue.add(job);
+                return false;
+            }
+        }
+        for (Bulkhead bulkhead : job.bulkheads) {
+            bulkhead.running++;
+        }
+        return true;
+    }
+
+    private void finished(LimitedJob job) {
+        List<LimitedJob> readyJobs = new ArrayList<>();
+        synchronized (this) {
+            for (Bulkhead bulkhead : job.bulkheads) {
+                bulkhead.running--;
+            }
+            for (Bulkhead bulkhead : job.bulkheads) {
+                // a waiting job that moves on to the queue of another full bulkhead must not keep the jobs behind it waiting
+                while (bulkhead.running < bulkhead.maxConcurrency && !bulkhead.queue.isEmpty()) {
+                    LimitedJob waitingJob = bulkhead.queue.poll();
+                    if (tryAcquire(waitingJob)) {
+                        readyJobs.add(waitingJob);
+                    }
+                }
+            }
+        }
+        for (LimitedJob readyJob : readyJobs) {
+            executor.execute(readyJob);
+        }
+    }
+
+    synchronized int getRunning(String tag) {
+        Bulkhead bulkhead = bulkheadsByTag.get(tag);
+        return bulkhead != null ? bulkhead.running : 0;
+    }
+
+    synchronized int getQueued(String tag) {
+        Bulkhead bulkhead = bulkheadsByTag.get(tag);
+        return bulkhead != null ? bulkhead.queue.size() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "[ConcurrencyLimits " + bulkheadsByTag.values() + "]";
+    }
+
+    private static final class Bulkhead {
+        final String tag;
+        final int maxConcurrency;
+        final Deque<LimitedJob> queue = new ArrayDeque<>();
+        int running;
+
+        Bulkhead(String tag, int maxConcurrency) {
+            this.tag = tag;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        @Override
+        public String toString() {
+            return tag + ":" + maxConcurrency;
+        }
+    }
+
+    private final class LimitedJob implements Runnable {
+        final Runnable job;
+        final List<Bulkhead> bulkheads;
+
+        LimitedJob(Runnable job, List<Bulkhead> bulkheads) {
+            this.job = job;
+            this.bulkheads = bulkheads;
+        }
+
+        @Override
+        public void run() {
+            try {
+                job.run();
+            } finally {
+                finished(this);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return job.toString();
+        }
+    }
+}
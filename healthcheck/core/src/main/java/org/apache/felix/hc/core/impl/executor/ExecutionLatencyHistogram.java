@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The SF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.felix.hc.core.impl.executor;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Histogram of the execution times of a health check. Uses fixed buckets so that recording is lock-free and takes constant time,
+ * percentiles are reported as the upper bound of the bucket they fall into. */
+public class ExecutionLatencyHistogram {
+
+    static final long[] BUCKET_UPPER_BOUNDS_MS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000,
+            Long.MAX_VALUE };
+
+    private final LongAdder[] counts = new LongAdder[BUCKET_UPPER_BOUNDS_MS.length];
+    private final LongAdder totalMs = new LongAdder();
+    private final LongAccumulator maxMs = new LongAccumulator(Math::max, 0);
+
+    public ExecutionLatencyHistogram() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long elapsedMs) {
+        long value = Math.max(0, elapsedMs);
+        int bucket = 0;
+        while (value > BUCKET_UPPER_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        counts[bucket].increment();
+        totalMs.add(value);
+        maxMs.accumulate(value);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucketCount : counts) {
+            count += bucketCount.sum();
+        }
+        return count;
+    }
+
+    public long getMeanMs() {
+        long count = getCount();
+        return count > 0 ? totalMs.sum() / count : 0;
+    }
+
+    public long getMaxMs() {
+        return maxMs.get();
+    }
+
+    /** @param percentile the percentile between 0 and 100
+     * @return the upper bound of the bucket the percentile falls into (at most the maximum recorded time) */
+    public long getPercentileMs(double percentile) {
+        long[] bucketCounts = getBucketCounts();
+        long count = 0;
+        for (long bucketCount : bucketCounts) {
+            count += bucketCount;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            seen += bucketCounts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(BUCKET_UPPER_BOUNDS_MS[i], getMaxMs());
+            }
+        }
+        return getMaxMs();
+    }
+
+    /** @return the number of executions per bucket, see {@link #BUCKET_UPPER_BOUNDS_MS} */
+    public long[] getBucketCounts() {
+        long[] bucketCounts = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            bucketCounts[i] = counts[i].sum();
+        }
+        return bucketCounts;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + getMeanMs() + "ms p50=" + getPercentileMs(50) + "ms p95=" + getPercentileMs(95)
+                + "ms p99=" + getPercentileMs(99) + "ms max=" + getMaxMs() + "ms";
+    }
+}
@@ -29,7 +29,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -37,6 +36,10 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.felix.hc.api.FormattingResultLog;
 import org.apache.felix.hc.api.HealthCheck;
@@ -88,7 +91,7 @@ public class HealthCheckExecutorImpl implements ExtendedHealthCheckExecutor, Ser
 
     private TempUnavailableGracePeriodEvaluator tempUnavailableGracePeriodEvaluator;
     
-    private final Map<HealthCheckMetadata, HealthCheckFuture> stillRunningFutures = new HashMap<HealthCheckMetadata, HealthCheckFuture>();
+    private final Map<HealthCheckMetadata, HealthCheckFuture> stillRunningFutures = new ConcurrentHashMap<>();
 
     @Reference
     private AsyncHealthCheckExecutor asyncHealthCheckExecutor;
@@ -160,6 +163,7 @@ public class HealthCheckExecutorImpl implements ExtendedHealthCheckExecutor, Ser
         if (event.getType() == ServiceEvent.UNREGISTERING) {
             final Long serviceId = (Long) event.getServiceReference().getProperty(Constants.SERVICE_ID);
             this.healthCheckResultCache.removeCachedResult(serviceId);
+            this.healthCheckExecutorThreadPool.removeLatencyHistogram(serviceId);
         }
     }
 
@@ -323,86 +327,66 @@ public class HealthCheckExecutorImpl implements ExtendedHealthCheckExecutor, Ser
     /** Create or reuse future for the list of health checks */
     private List<HealthCheckFuture> createOrReuseFutures(final List<HealthCheckMetadata> healthCheckDescriptors) {
         final List<HealthCheckFuture> futuresForResultOfThisCall = new LinkedList<HealthCheckFuture>();
-
-        synchronized (this.stillRunningFutures) {
-            for (final HealthCheckMetadata md : healthCheckDescriptors) {
-
-                futuresForResultOfThisCall.add(createOrReuseFuture(md));
-
-            }
+        for (final HealthCheckMetadata md : healthCheckDescriptors) {
+            futuresForResultOfThisCall.add(createOrReuseFuture(md));
         }
         return futuresForResultOfThisCall;
     }
 
-    /** Create or reuse future for the health check This method must be synchronized by the caller(!) on stillRunningFutures */
+    /** Create or reuse future for the health check, a check is never executed concurrently with itself */
     private HealthCheckFuture createOrReuseFuture(final HealthCheckMetadata metadata) {
         HealthCheckFuture future = this.stillRunningFutures.get(metadata);
         if (future != null) {
             logger.debug("Found a future that is still running for {}", metadata);
-        } else {
-            logger.debug("Creating future for {}", metadata);
-            future = new HealthCheckFuture(metadata, bundleContext, new HealthCheckFuture.Callback() {
-
-                @Override
-                public void finished(final HealthCheckExecutionResult result) {
-                    healthCheckResultCache.updateWith(result);
-                    asyncHealthCheckExecutor.updateWith(result);
-                    tempUnavailableGracePeriodEvaluator.updateTemporarilyUnavailableTimestampWith(result);
-                    synchronized (stillRunningFutures) {
-                        stillRunningFutures.remove(metadata);
-                    }
-                }
-            });
-            this.stillRunningFutures.put(metadata, future);
-
-            final HealthCheckFuture newFuture = future;
-
-            healthCheckExecutorThreadPool.execute(new Runnable() {
-                @Override
-                public void run() {
-                    newFuture.run();
-                    synchronized (stillRunningFutures) {
-                        // notify executor threads that newFuture is finished. Wrapping it in another runnable
-                        // ensures that newFuture.isDone() will return true (if e.g. done in callback above, there are
-                        // still a few lines of code until the future is really done and hence then the executor thread
-                        // is sometime notified a bit too early, still receives the result isDone()=false and then waits
-                        // for another 50ms, even though the future was about to be done one ms later)
-                        stillRunningFutures.notifyAll();
-                    }
-                }
-            });
+            return future;
         }
 
-        return future;
+        final HealthCheckFuture newFuture = new HealthCheckFuture(metadata, bundleContext, new HealthCheckFuture.Callback() {
+
+            @Override
+            public void finished(final HealthCheckExecutionResult result) {
+                healthCheckResultCache.updateWith(result);
+                asyncHealthCheckExecutor.updateWith(result);
+                tempUnavailableGracePeriodEvaluator.updateTemporarilyUnavailableTimestampWith(result);
+                healthCheckExecutorThreadPool.recordExecution(result);
+                stillRunningFutures.remove(metadata);
+            }
+        });
+        future = this.stillRunningFutures.putIfAbsent(metadata, newFuture);
+        if (future != null) {
+            logger.debug("Found a future that was created concurrently for {}", metadata);
+            return future;
+        }
+
+        logger.debug("Creating future for {}", metadata);
+        healthCheckExecutorThreadPool.execute(metadata, newFuture);
+        return newFuture;
     }
 
     /** Wait for the futures until the timeout is reached */
     private void waitForFuturesRespectingTimeout(final List<HealthCheckFuture> futuresForResultOfThisCall,
             HealthCheckExecutionOptions options) {
         
-        final long callExcutionStartTime = System.currentTimeMillis();
-        boolean allFuturesDone;
-
-        long effectiveTimeout = getEffectiveTimeout(options);
-
-        if (futuresForResultOfThisCall.isEmpty()) {
-            return; // nothing to wait for (usually because of cached results)
-        }
+        final long deadline = System.currentTimeMillis() + getEffectiveTimeout(options);
 
-        do {
+        for (final HealthCheckFuture healthCheckFuture : futuresForResultOfThisCall) {
+            // futures not done until the deadline are reported as timed out by collectResultFromFuture()
+            final long remainingMs = deadline - System.currentTimeMillis();
+            if (remainingMs <= 0) {
+                return;
+            }
             try {
-                synchronized (stillRunningFutures) {
-                    stillRunningFutures.wait(50); // wait for notifications of callbacks of HealthCheckFutures
-                }
+                healthCheckFuture.get(remainingMs, TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException e) {
+                return;
+            } catch (final ExecutionException e) {
+                // reported by collectResultFromFuture()
             } catch (final InterruptedException ie) {
                 logger.warn("Unexpected InterruptedException while waiting for healthCheckContributors", ie);
+                Thread.currentThread().interrupt();
+                return;
             }
-
-            allFuturesDone = true;
-            for (final HealthCheckFuture healthCheckFuture : futuresForResultOfThisCall) {
-                allFuturesDone &= healthCheckFuture.isDone();
-            }
-        } while (!allFuturesDone && (System.currentTimeMillis() - callExcutionStartTime) < effectiveTimeout);
+        }
     }
 
     /** Collect the results from all futures
@@ -17,6 +17,8 @@
  */
 package org.apache.felix.hc.core.impl.executor;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -26,6 +28,8 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.felix.hc.api.execution.HealthCheckExecutionResult;
+import org.apache.felix.hc.api.execution.HealthCheckMetadata;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -35,7 +39,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /** Creates a thread pool via standard java.util.concurrent package to be used for parallel execution of health checks in
- * HealthCheckExecutorImpl and AsyncHealthCheckExecutor */
+ * HealthCheckExecutorImpl and AsyncHealthCheckExecutor. Also applies the per tag concurrency limits and keeps the execution time
+ * histograms of the checks. */
 @Component(service = { HealthCheckExecutorThreadPool.class })
 @Designate(ocd = HealthCheckExecutorThreadPoolConfiguration.class)
 public class HealthCheckExecutorThreadPool {
@@ -45,14 +50,20 @@ public class HealthCheckExecutorThreadPool {
 
     private ScheduledThreadPoolExecutor executor;
 
+    private ConcurrencyLimits concurrencyLimits;
+
+    // Key: service id of the health check | Value: execution times
+    private final Map<Long, ExecutionLatencyHistogram> latencyHistograms = new ConcurrentHashMap<>();
+
     @Activate
     protected final void activate(final HealthCheckExecutorThreadPoolConfiguration configuration, final BundleContext bundleContext) {
 
         this.threadPoolSize = configuration.threadPoolSize();
 
         executor = new ScheduledThreadPoolExecutor(threadPoolSize, new HcThreadFactory(), new HcRejectedExecutionHandler());
+        concurrencyLimits = new ConcurrencyLimits(executor, configuration.concurrencyLimits());
 
-        LOG.info("Created HC Thread Pool: threadPoolSize={}", threadPoolSize);
+        LOG.info("Created HC Thread Pool: threadPoolSize={}, concurrencyLimits={}", threadPoolSize, concurrencyLimits);
 
     }
 
@@ -66,6 +77,29 @@ public class HealthCheckExecutorThreadPool {
         this.executor.execute(job);
     }
 
+    // Method called by HealthCheckExecutorImpl and AsyncTriggeredJob for a health check, respecting the concurrency limits of its tags
+    public void execute(final HealthCheckMetadata metadata, final Runnable job) {
+        this.concurrencyLimits.execute(metadata.getTags(), job);
+    }
+
+    // records the execution time of a finished health check
+    public void recordExecution(final HealthCheckExecutionResult result) {
+        if (result == null) {
+            return;
+        }
+        latencyHistograms.computeIfAbsent(result.getHealthCheckMetadata().getServiceId(), id -> new ExecutionLatencyHistogram())
+                .record(result.getElapsedTimeInMs());
+    }
+
+    /** @return the execution time histogram of the given check or null if it has not been executed yet */
+    public ExecutionLatencyHistogram getLatencyHistogram(final long serviceId) {
+        return latencyHistograms.get(serviceId);
+    }
+
+    public void removeLatencyHistogram(final long serviceId) {
+        latencyHistograms.remove(serviceId);
+    }
+
     // used for interval execution (asynchronous checks)
     public ScheduledFuture<?> scheduleAtFixedRate(final Runnable job, long intervalInSec) {
         ScheduledFuture<?> scheduleFuture = executor.scheduleAtFixedRate(job, 0, intervalInSec, TimeUnit.SECONDS);
@@ -28,4 +28,7 @@ import org.osgi.service.metatype.annotations.ObjectClassDefinition;
     @AttributeDefinition(name = "Thread Pool Size", description = "Number of threads to be used for parallel health check execution")
     int threadPoolSize() default THREAD_POOL_SIZE_DEFAULT;
 
+    @AttributeDefinition(name = "Concurrency Limits", description = "Maximum number of concurrently executing checks per tag in format tag:limit, e.g. jmx:2. Checks exceeding a limit wait without occupying a thread. A check never runs concurrently with itself. The limits apply to synchronous and change triggered checks, not to checks executed by interval or cron expression.")
+    String[] concurrencyLimits() default {};
+
 }
@@ -17,6 +17,8 @@
  */
 package org.apache.felix.hc.core.impl.executor.async;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -26,6 +28,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import org.apache.felix.hc.api.HealthCheck;
 import org.apache.felix.hc.api.Result;
@@ -39,6 +43,7 @@ import org.apache.felix.hc.core.impl.executor.HealthCheckFuture.Callback;
 import org.apache.felix.hc.core.impl.executor.HealthCheckResultCache;
 import org.apache.felix.hc.core.impl.scheduling.AsyncIntervalJob;
 import org.apache.felix.hc.core.impl.scheduling.AsyncJob;
+import org.apache.felix.hc.core.impl.scheduling.AsyncTriggeredJob;
 import org.apache.felix.hc.core.impl.scheduling.CronJobFactory;
 import org.apache.felix.hc.core.impl.util.HealthCheckFilter;
 import org.apache.felix.hc.core.impl.util.lang.StringUtils;
@@ -54,16 +59,34 @@ import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Runs health checks asynchronously, either via cron or via interval. */
+/** Runs health checks asynchronously, either via cron, via interval or triggered by changes of the services, bundles or configurations
+ * the check declares as its inputs. */
 @Component(service = AsyncHealthCheckExecutor.class, immediate = true)
 public class AsyncHealthCheckExecutor implements ServiceListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(AsyncHealthCheckExecutor.class);
 
+    /** Service property of health checks: the check is executed asynchronously whenever a service matching one of the given filters is
+     * registered, modified or unregistered. The value must be of type String or String array. */
+    public static final String PROP_ASYNC_TRIGGER_SERVICES = "hc.async.triggerServices";
+
+    /** Service property of health checks: the check is executed asynchronously whenever a bundle with one of the given symbolic names
+     * changes its state ({@code *} for any bundle). The value must be of type String or String array. */
+    public static final String PROP_ASYNC_TRIGGER_BUNDLES = "hc.async.triggerBundles";
+
+    /** Service property of health checks: the check is executed asynchronously whenever a configuration with one of the given PIDs or
+     * factory PIDs is updated or deleted ({@code *} for any configuration). The value must be of type String or String array. */
+    public static final String PROP_ASYNC_TRIGGER_CONFIGURATIONS = "hc.async.triggerConfigurations";
+
     private Map<HealthCheckMetadata, ExecutionResult> asyncResultsByDescriptor = new ConcurrentHashMap<>();
 
+    private final List<Consumer<HealthCheckExecutionResult>> resultListeners = new CopyOnWriteArrayList<>();
+
     private Map<HealthCheckMetadata, AsyncJob> registeredJobs = new HashMap<>();
 
+    // checks with triggers, determined once when they are scheduled
+    private final Set<HealthCheckMetadata> triggeredChecks = ConcurrentHashMap.newKeySet();
+
     private BundleContext bundleContext;
 
     @Reference
@@ -81,10 +104,8 @@ public class AsyncHealthCheckExecutor implements ServiceListener {
         final ServiceReference<?>[] healthCheckReferences = healthCheckFilter.getHealthCheckServiceReferences(HealthCheckSelector.empty(), false);
         for (ServiceReference<?> serviceReference : healthCheckReferences) {
             HealthCheckMetadata healthCheckMetadata = new HealthCheckMetadata(serviceReference);
-            if (isAsync(healthCheckMetadata)) {
-                if (scheduleHealthCheck(healthCheckMetadata)) {
-                    count++;
-                }
+            if (scheduleHealthCheck(healthCheckMetadata)) {
+                count++;
             }
         }
         LOG.debug("Scheduled {} jobs for asynchronous health checks during bundle startup", count);
@@ -131,10 +152,17 @@ public class AsyncHealthCheckExecutor implements ServiceListener {
     private boolean scheduleHealthCheck(HealthCheckMetadata descriptor) {
         try {
             AsyncJob healthCheckAsyncJob = null;
+            List<String> serviceTriggers = getTriggers(descriptor, PROP_ASYNC_TRIGGER_SERVICES);
+            List<String> bundleTriggers = getTriggers(descriptor, PROP_ASYNC_TRIGGER_BUNDLES);
+            List<String> configurationTriggers = getTriggers(descriptor, PROP_ASYNC_TRIGGER_CONFIGURATIONS);
             if (isAsyncCron(descriptor)) {
                 healthCheckAsyncJob = cronJobFactory.createAsyncCronJob(getAsyncJob(descriptor), "job-hc-" + descriptor.getTitle().replaceAll("\\s+","-"), "async-healthchecks", descriptor.getAsyncCronExpression());
             } else if (isAsyncInterval(descriptor)) {
                 healthCheckAsyncJob = new AsyncIntervalJob(getAsyncJob(descriptor), healthCheckExecutorThreadPool, descriptor.getAsyncIntervalInSec());
+            } else if (!serviceTriggers.isEmpty() || !bundleTriggers.isEmpty() || !configurationTriggers.isEmpty()) {
+                triggeredChecks.add(descriptor);
+                healthCheckAsyncJob = new AsyncTriggeredJob(getAsyncJob(descriptor), healthCheckExecutorThreadPool, descriptor,
+                        bundleContext, serviceTriggers, bundleTriggers, configurationTriggers);
             }
             if (healthCheckAsyncJob != null) {
                 healthCheckAsyncJob.schedule();
@@ -161,6 +189,7 @@ public class AsyncHealthCheckExecutor implements ServiceListener {
                     @Override
                     public void finished(HealthCheckExecutionResult result) {
                         updateWith(result);
+                        healthCheckExecutorThreadPool.recordExecution(result);
                     }
                 });
 
@@ -181,6 +210,7 @@ public class AsyncHealthCheckExecutor implements ServiceListener {
         // scheduled async checks are correctly unscheduled if they have
         // changed from async to sync.
 
+        triggeredChecks.remove(descriptor);
         AsyncJob job = registeredJobs.remove(descriptor);
         if (job != null) {
             return job.unschedule();
@@ -232,23 +262,70 @@ public class AsyncHealthCheckExecutor implements ServiceListener {
                                 "' is never executed because of misconfiguration."), 0L);
             }
 
-        } else {
+        } else if (isAsyncInterval(healthCheckMetadata)) {
             result = new ExecutionResult(healthCheckMetadata,
                     new Result(Result.Status.OK, "Async Health Check with interval '" + healthCheckMetadata.getAsyncIntervalInSec() + 
                             "' has not yet been executed."), 0L);
+        } else {
+            result = new ExecutionResult(healthCheckMetadata,
+                    new Result(Result.Status.OK, "Async Health Check triggered by changes has not yet been executed."), 0L);
         }
         return result;
     }
 
     public void updateWith(HealthCheckExecutionResult result) {
         if (isAsync(result.getHealthCheckMetadata())) {
-            asyncResultsByDescriptor.put(result.getHealthCheckMetadata(), (ExecutionResult) result);
+            ExecutionResult previous = asyncResultsByDescriptor.put(result.getHealthCheckMetadata(), (ExecutionResult) result);
             LOG.debug("Updated result for async hc {} with {}", result.getHealthCheckMetadata(), result);
+            if (previous == null || previous.getHealthCheckResult().getStatus() != result.getHealthCheckResult().getStatus()) {
+                for (Consumer<HealthCheckExecutionResult> resultListener : resultListeners) {
+                    try {
+                        resultListener.accept(result);
+                    } catch (RuntimeException e) {
+                        LOG.warn("Result listener {} failed for {}: {}", resultListener, result, e, e);
+                    }
+                }
+            }
         }
     }
 
+    /** Registers a listener that is notified whenever the status of an asynchronously executed health check changes. */
+    public void addResultListener(Consumer<HealthCheckExecutionResult> resultListener) {
+        resultListeners.add(resultListener);
+    }
+
+    public void removeResultListener(Consumer<HealthCheckExecutionResult> resultListener) {
+        resultListeners.remove(resultListener);
+    }
+
     private boolean isAsync(HealthCheckMetadata healthCheckMetadata) {
-        return isAsyncCron(healthCheckMetadata) || isAsyncInterval(healthCheckMetadata);
+        return isAsyncCron(healthCheckMetadata) || isAsyncInterval(healthCheckMetadata) || isAsyncTriggered(healthCheckMetadata);
+    }
+
+    private boolean isAsyncTriggered(HealthCheckMetadata healthCheckMetadata) {
+        return triggeredChecks.contains(healthCheckMetadata);
+    }
+
+    private List<String> getTriggers(HealthCheckMetadata healthCheckMetadata, String propertyName) {
+        ServiceReference<?> serviceReference = healthCheckMetadata.getServiceReference();
+        Object value = serviceReference != null ? serviceReference.getProperty(propertyName) : null;
+        Collection<?> values;
+        if (value instanceof String[]) {
+            values = Arrays.asList((String[]) value);
+        } else if (value instanceof Collection) {
+            values = (Collection<?>) value;
+        } else if (value != null) {
+            values = Arrays.asList(value);
+        } else {
+            return new ArrayList<>();
+        }
+        List<String> triggers = new ArrayList<>();
+        for (Object trigger : values) {
+            if (trigger != null && StringUtils.isNotBlank(trigger.toString())) {
+                triggers.add(trigger.toString().trim());
+            }
+        }
+        return triggers;
     }
 
     private boolean isAsyncCron(HealthCheckMetadata healthCheckMetadata) {
@@ -24,16 +24,20 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import org.apache.felix.hc.api.HealthCheck;
 import org.apache.felix.hc.api.condition.Healthy;
 import org.apache.felix.hc.api.condition.SystemReady;
 import org.apache.felix.hc.api.condition.Unhealthy;
 import org.apache.felix.hc.api.execution.HealthCheckExecutionResult;
+import org.apache.felix.hc.api.execution.HealthCheckMetadata;
 import org.apache.felix.hc.api.execution.HealthCheckSelector;
 import org.apache.felix.hc.core.impl.executor.CombinedExecutionResult;
 import org.apache.felix.hc.core.impl.executor.ExtendedHealthCheckExecutor;
 import org.apache.felix.hc.core.impl.executor.HealthCheckExecutorThreadPool;
+import org.apache.felix.hc.core.impl.executor.async.AsyncHealthCheckExecutor;
 import org.apache.felix.hc.core.impl.scheduling.AsyncIntervalJob;
 import org.apache.felix.hc.core.impl.scheduling.AsyncJob;
 import org.apache.felix.hc.core.impl.scheduling.CronJobFactory;
@@ -53,6 +57,9 @@ import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.osgi.service.event.EventAdmin;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
@@ -114,6 +121,9 @@ public class HealthCheckMonitor implements Runnable {
         @AttributeDefinition(name = "Resolve Tags (dynamic)", description = "In dynamic mode tags are resolved to a list of health checks that are monitored individually (this means events are sent/services are registered for name only, never for given tags). This mode allows to use '*' in tags to query for all health checks in system. It is also possible to query for all except certain tags by using '-', e.g. by configuring the values '*', '-tag1' and '-tag2' for tags.")
         boolean isDynamic() default false;
         
+        @AttributeDefinition(name = "Update on result changes", description = "If enabled, the health states are updated as soon as the status of a monitored asynchronous health check changes (e.g. of checks triggered by service, bundle or configuration changes), in addition to the regular execution via interval/cron expression.")
+        boolean updateOnResultChanges() default false;
+
         @AttributeDefinition
         String webconsole_configurationFactory_nameHint() default "Health Monitor for '{tags}'/'{names}', {intervalInSec}sec/{cronExpression}, Marker Service Healthy:{registerHealthyMarkerService} Unhealthy:{registerUnhealthyMarkerService}, Send Events {sendEvents}";
     }
@@ -133,6 +143,9 @@ public class HealthCheckMonitor implements Runnable {
     @Reference
     private EventAdmin eventAdmin;
 
+    // optional, result changes only update the monitor while the async executor is available
+    private AsyncHealthCheckExecutor asyncHealthCheckExecutor;
+
     // component state
     AsyncJob monitorJob = null;
     List<String> tags;
@@ -159,6 +172,9 @@ public class HealthCheckMonitor implements Runnable {
     private boolean isDynamic;
     private ServiceListener healthCheckServiceListener;
 
+    private Consumer<HealthCheckExecutionResult> resultListener;
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+
     @Activate
     protected final void activate(BundleContext bundleContext, Config config, ComponentContext componentContext) throws InvalidSyntaxException {
 
@@ -189,6 +205,14 @@ public class HealthCheckMonitor implements Runnable {
             throw new IllegalArgumentException("Either cronExpression or intervalInSec needs to be set");
         }
         monitorJob.schedule();
+        if (config.updateOnResultChanges()) {
+            synchronized (this) {
+                resultListener = this::resultChanged;
+                if (asyncHealthCheckExecutor != null) {
+                    asyncHealthCheckExecutor.addResultListener(resultListener);
+                }
+            }
+        }
         LOG.info("Monitor active for tags {} and names {} (isDynamic={})", this.tags, this.names, this.isDynamic);
     }
     
@@ -221,8 +245,31 @@ public class HealthCheckMonitor implements Runnable {
                 + cronExpression + "]";
     }
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    synchronized void bindAsyncHealthCheckExecutor(AsyncHealthCheckExecutor asyncHealthCheckExecutor) {
+        this.asyncHealthCheckExecutor = asyncHealthCheckExecutor;
+        if (resultListener != null) {
+            asyncHealthCheckExecutor.addResultListener(resultListener);
+        }
+    }
+
+    synchronized void unbindAsyncHealthCheckExecutor(AsyncHealthCheckExecutor asyncHealthCheckExecutor) {
+        if (resultListener != null) {
+            asyncHealthCheckExecutor.removeResultListener(resultListener);
+        }
+        if (this.asyncHealthCheckExecutor == asyncHealthCheckExecutor) {
+            this.asyncHealthCheckExecutor = null;
+        }
+    }
+
     @Deactivate
     protected final void deactivate() {
+        synchronized (this) {
+            if (resultListener != null && asyncHealthCheckExecutor != null) {
+                asyncHealthCheckExecutor.removeResultListener(resultListener);
+            }
+            resultListener = null;
+        }
         if(healthCheckServiceListener != null) {
             bundleContext.removeServiceListener(healthCheckServiceListener);
         }
@@ -278,6 +325,24 @@ public class HealthCheckMonitor implements Runnable {
         });
     }
 
+    // updates the health states if the changed result belongs to a monitored check, coalescing updates that are still pending
+    void resultChanged(HealthCheckExecutionResult result) {
+        if (isMonitored(result.getHealthCheckMetadata()) && updatePending.compareAndSet(false, true)) {
+            LOG.debug("Updating health states for tags {} and names {} after result change of {}", this.tags, this.names, result);
+            healthCheckExecutorThreadPool.execute(() -> {
+                updatePending.set(false);
+                run();
+            });
+        }
+    }
+
+    private boolean isMonitored(HealthCheckMetadata metadata) {
+        if (isDynamic) {
+            return healthStates.containsKey(metadata.getServiceId());
+        }
+        return names.contains(metadata.getName()) || metadata.getTags().stream().anyMatch(tags::contains);
+    }
+
     private void logResults() {
         
         for(HealthState healthState: healthStates.values()) {
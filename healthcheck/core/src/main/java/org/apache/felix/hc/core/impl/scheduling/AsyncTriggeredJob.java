@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The SF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.felix.hc.core.impl.scheduling;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.felix.hc.api.execution.HealthCheckMetadata;
+import org.apache.felix.hc.core.impl.executor.HealthCheckExecutorThreadPool;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.cm.ConfigurationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Runs health checks that declare their inputs (services, bundles, configurations) whenever one of these inputs changes. Changes that
+ * happen while an execution is pending are coalesced into that execution. Executions respect the concurrency limits of the tags of the
+ * check. */
+public class AsyncTriggeredJob extends AsyncJob {
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncTriggeredJob.class);
+
+    /** Matches any bundle symbolic name or configuration PID */
+    public static final String ANY = "*";
+
+    private final HealthCheckExecutorThreadPool healthCheckExecutorThreadPool;
+    private final HealthCheckMetadata healthCheckMetadata;
+    private final BundleContext bundleContext;
+    private final List<String> serviceFilters;
+    private final List<String> bundleSymbolicNames;
+    private final List<String> configurationPids;
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private volatile boolean scheduled;
+
+    private ServiceListener serviceListener;
+    private BundleListener bundleListener;
+    private ServiceRegistration<?> configurationListenerRegistration;
+
+    public AsyncTriggeredJob(Runnable runnable, HealthCheckExecutorThreadPool healthCheckExecutorThreadPool,
+            HealthCheckMetadata healthCheckMetadata, BundleContext bundleContext, List<String> serviceFilters,
+            List<String> bundleSymbolicNames, List<String> configurationPids) {
+        super(runnable);
+        this.healthCheckExecutorThreadPool = healthCheckExecutorThreadPool;
+        this.healthCheckMetadata = healthCheckMetadata;
+        this.bundleContext = bundleContext;
+        this.serviceFilters = serviceFilters;
+        this.bundleSymbolicNames = bundleSymbolicNames;
+        this.configurationPids = configurationPids;
+    }
+
+    @Override
+    public synchronized boolean schedule() {
+        try {
+            if (!serviceFilters.isEmpty()) {
+                serviceListener = new ServiceListener() {
+                    @Override
+                    public void serviceChanged(ServiceEvent event) {
+                        trigger("service event " + event.getType() + " for " + event.getServiceReference());
+                    }
+                };
+                bundleContext.addServiceListener(serviceListener, getServiceFilter());
+            }
+        } catch (InvalidSyntaxException e) {
+            LOG.warn("Invalid service filter {} for {}: {}", serviceFilters, runnable, e.getMessage());
+            return false;
+        }
+        if (!bundleSymbolicNames.isEmpty()) {
+            bundleListener = new BundleListener() {
+                @Override
+                public void bundleChanged(BundleEvent event) {
+                    String symbolicName = event.getBundle().getSymbolicName();
+                    if (bundleSymbolicNames.contains(ANY) || bundleSymbolicNames.contains(symbolicName)) {
+                        trigger("bundle event " + event.getType() + " for " + symbolicName);
+                    }
+                }
+            };
+            bundleContext.addBundleListener(bundleListener);
+        }
+        if (!configurationPids.isEmpty()) {
+            try {
+                configurationListenerRegistration = ConfigurationTrigger.register(this);
+            } catch (NoClassDefFoundError e) {
+                LOG.warn("Configuration Admin API is not available, configuration changes will not trigger {}", runnable);
+            }
+        }
+        scheduled = true;
+        LOG.info("Scheduled job {} for execution on changes of services {}, bundles {} and configurations {}", this, serviceFilters,
+                bundleSymbolicNames, configurationPids);
+
+        // initial execution
+        trigger("scheduling");
+        return true;
+    }
+
+    @Override
+    public synchronized boolean unschedule() {
+        if (!scheduled) {
+            LOG.debug("Triggered job for {} is not scheduled", runnable);
+            return false;
+        }
+        scheduled = false;
+        LOG.debug("Unscheduling triggered job for {}", runnable);
+        if (serviceListener != null) {
+            bundleContext.removeServiceListener(serviceListener);
+            serviceListener = null;
+        }
+        if (bundleListener != null) {
+            bundleContext.removeBundleListener(bundleListener);
+            bundleListener = null;
+        }
+        if (configurationListenerRegistration != null) {
+            try {
+                configurationListenerRegistration.unregister();
+            } catch (IllegalStateException e) {
+                // already unregistered
+            }
+            configurationListenerRegistration = null;
+        }
+        return true;
+    }
+
+    /** Executes the health check unless an execution is already pending. */
+    void trigger(String reason) {
+        if (!scheduled) {
+            return;
+        }
+        if (pending.compareAndSet(false, true)) {
+            LOG.debug("Triggering {} because of {}", runnable, reason);
+            healthCheckExecutorThreadPool.execute(healthCheckMetadata, new Runnable() {
+                @Override
+                public void run() {
+                    // changes from now on need another execution
+                    pending.set(false);
+                    if (scheduled) {
+                        runnable.run();
+                    }
+                }
+            });
+        } else {
+            LOG.debug("Execution of {} already pending, ignoring {}", runnable, reason);
+        }
+    }
+
+    private String getServiceFilter() {
+        if (serviceFilters.size() == 1) {
+            return serviceFilters.get(0);
+        }
+        StringBuilder filter = new StringBuilder("(|");
+        for (String serviceFilter : serviceFilters) {
+            filter.append(serviceFilter);
+        }
+        return filter.append(")").toString();
+    }
+
+    boolean isConfigurationTrigger(String pid, String factoryPid) {
+        return configurationPids.contains(ANY) || configurationPids.contains(pid)
+                || (factoryPid != null && configurationPids.contains(factoryPid));
+    }
+
+    @Override
+    public String toString() {
+        return "[Async triggered job for " + runnable + "]";
+    }
+
+    // separate class to only require the Configuration Admin API if configuration triggers are used
+    private static final class ConfigurationTrigger implements ConfigurationListener {
+
+        private final AsyncTriggeredJob job;
+
+        private ConfigurationTrigger(AsyncTriggeredJob job) {
+            this.job = job;
+        }
+
+        static ServiceRegistration<?> register(AsyncTriggeredJob job) {
+            Dictionary<String, Object> props = new Hashtable<>();
+            props.put("service.description", "Health check configuration trigger for " + job.runnable);
+            return job.bundleContext.registerService(ConfigurationListener.class, new ConfigurationTrigger(job), props);
+        }
+
+        @Override
+        public void configurationEvent(ConfigurationEvent event) {
+            if (job.isConfigurationTrigger(event.getPid(), event.getFactoryPid())) {
+                job.trigger("configuration event " + event.getType() + " for " + event.getPid());
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The SF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.felix.hc.core.impl.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.apache.felix.hc.api.execution.HealthCheckExecutionResult;
+import org.osgi.framework.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Streams health check results to http clients as server-sent events: the current results of the selected checks when the client
+ * connects, followed by an event for every status change of a selected asynchronous check.
+ *
+ * Events are queued per client and written by a writer thread of the stream, so that health check threads never block on slow clients.
+ * Clients that fall more than {@link #MAX_PENDING_EVENTS} events behind are disconnected. */
+class HealthCheckEventStream implements Consumer<HealthCheckExecutionResult> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HealthCheckEventStream.class);
+
+    static final String CONTENT_TYPE_EVENT_STREAM = "text/event-stream";
+    static final String EVENT_NAME = "healthcheck";
+
+    /** Maximum number of status change events queued for a client */
+    static final int MAX_PENDING_EVENTS = 100;
+
+    private final ResultJsonSerializer jsonSerializer;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong eventId = new AtomicLong();
+
+    private final ExecutorService writers;
+
+    HealthCheckEventStream(ResultJsonSerializer jsonSerializer) {
+        this.jsonSerializer = jsonSerializer;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.writers = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "hc-event-stream-writer-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /** Keeps the response open and sends the given results as initial events.
+     *
+     * @param filter the filter the checks have to match to be sent to the client
+     * @param currentResults the current results of the checks matching the filter */
+    void subscribe(final HttpServletRequest request, final HttpServletResponse response, final Filter filter,
+            final List<HealthCheckExecutionResult> currentResults, boolean includeDebug) throws IOException {
+        response.setContentType(CONTENT_TYPE_EVENT_STREAM);
+        response.setCharacterEncoding("UTF-8");
+
+        final AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        final Subscriber subscriber = new Subscriber(asyncContext, response.getWriter(), filter, includeDebug,
+                currentResults.size() + MAX_PENDING_EVENTS);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                subscribers.remove(subscriber);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                subscribers.remove(subscriber);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                subscribers.remove(subscriber);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+                // not used
+            }
+        });
+
+        for (HealthCheckExecutionResult result : currentResults) {
+            subscriber.send(result);
+        }
+        subscribers.add(subscriber);
+        subscriber.write();
+        LOG.debug("Client {} subscribed to health check events for {}", request.getRemoteAddr(), filter);
+    }
+
+    /** Called with the new result whenever the status of an asynchronous check changes. */
+    @Override
+    public void accept(HealthCheckExecutionResult result) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.filter == null || subscriber.filter.match(result.getHealthCheckMetadata().getServiceReference())) {
+                if (subscriber.send(result)) {
+                    subscriber.write();
+                } else {
+                    LOG.info("Disconnecting health check event stream client that is more than {} events behind", MAX_PENDING_EVENTS);
+                    subscriber.complete();
+                }
+            }
+        }
+    }
+
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /** Ends all event streams */
+    void close() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.complete();
+        }
+        subscribers.clear();
+        writers.shutdownNow();
+    }
+
+    private class Subscriber implements Runnable {
+        private final AsyncContext asyncContext;
+        private final PrintWriter writer;
+        private final Filter filter;
+        private final boolean includeDebug;
+        private final BlockingQueue<String> events;
+        private final AtomicBoolean writing = new AtomicBoolean();
+        private volatile boolean completed;
+
+        Subscriber(AsyncContext asyncContext, PrintWriter writer, Filter filter, boolean includeDebug, int capacity) {
+            this.asyncContext = asyncContext;
+            this.writer = writer;
+            this.filter = filter;
+            this.includeDebug = includeDebug;
+            this.events = new LinkedBlockingQueue<>(capacity);
+        }
+
+        /** Queues the event for the result, returns false if the client is too far behind */
+        boolean send(HealthCheckExecutionResult result) {
+            StringBuilder event = new StringBuilder();
+            event.append("event: ").append(EVENT_NAME).append('\n');
+            event.append("id: ").append(eventId.incrementAndGet()).append('\n');
+            event.append("data: ").append(jsonSerializer.serialize(result, includeDebug)).append("\n\n");
+            return events.offer(event.toString());
+        }
+
+        /** Writes the queued events on a writer thread unless they are already being written */
+        void write() {
+            if (!completed && writing.compareAndSet(false, true)) {
+                try {
+                    writers.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // the stream is closed
+                    writing.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                String event;
+                while (!completed && (event = events.poll()) != null) {
+                    writer.write(event);
+                    if (events.isEmpty()) {
+                        flush();
+                    }
+                }
+                writing.set(false);
+                // events queued after the queue was found empty but before writing was reset
+            } while (!completed && !events.isEmpty() && writing.compareAndSet(false, true));
+        }
+
+        private void flush() {
+            writer.flush();
+            if (writer.checkError()) {
+                // the client has gone away
+                LOG.debug("Health check event stream closed by client");
+                complete();
+            }
+        }
+
+        void complete() {
+            completed = true;
+            subscribers.remove(this);
+            events.clear();
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException e) {
+                // already completed
+            }
+        }
+    }
+}
@@ -19,12 +19,17 @@ package org.apache.felix.hc.core.impl.servlet;
 
 import static org.osgi.service.servlet.whiteboard.HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_SELECT;
 import static org.osgi.service.servlet.whiteboard.HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME;
+import static org.osgi.service.servlet.whiteboard.HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_ASYNC_SUPPORTED;
 import static org.osgi.service.servlet.whiteboard.HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
@@ -46,9 +51,13 @@ import org.apache.felix.hc.api.execution.HealthCheckExecutionResult;
 import org.apache.felix.hc.api.execution.HealthCheckExecutor;
 import org.apache.felix.hc.api.execution.HealthCheckSelector;
 import org.apache.felix.hc.core.impl.executor.CombinedExecutionResult;
+import org.apache.felix.hc.core.impl.executor.async.AsyncHealthCheckExecutor;
+import org.apache.felix.hc.core.impl.util.HealthCheckFilter;
 import org.apache.felix.hc.core.impl.util.lang.StringUtils;
 import org.osgi.dto.DTO;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -64,7 +73,7 @@ import org.slf4j.LoggerFactory;
  * Parameters:
  * <ul>
  * <li>tags: The health check tags to take into account
- * <li>format: html|json|jsonp|txt|verbose.txt
+ * <li>format: html|json|jsonp|txt|verbose.txt|events
  * <li>includeDebug: If true, debug messages from result log are included.
  * <li>callback: For jsonp, the JS callback function name (defaults to "processHealthCheckResults")
  * <li>httpStatus: health check status to http status mapping in format httpStatus=WARN:418,CRITICAL:503,HEALTH_CHECK_ERROR:500.
@@ -73,6 +82,12 @@ import org.slf4j.LoggerFactory;
  * For omitted health check status values the next best code will be used (e.g. for httpStatus=CRITICAL:503 a result WARN will return 200,
  * CRITICAL 503 and HEALTH_CHECK_ERROR also 503). By default all requests answer with an http status of 200.
  * <p>
+ * Response bodies are rendered once per selection and format and reused for as long as the executor returns the same results. They are
+ * sent with an ETag, requests with a matching If-None-Match header are answered with 304 (Not Modified) without a body.
+ * <p>
+ * The format events keeps the response open and streams the results of the selected checks as server-sent events, first the current
+ * results and then every status change of an asynchronously executed check.
+ * <p>
  * Useful in combination with load balancers. */
 @Component(configurationPolicy = ConfigurationPolicy.REQUIRE)
 @Designate(ocd = HealthCheckExecutorServletConfiguration.class, factory=true)
@@ -128,6 +143,7 @@ public class HealthCheckExecutorServlet extends HttpServlet {
     static final String FORMAT_JSONP = "jsonp";
     static final String FORMAT_TXT = "txt";
     static final String FORMAT_VERBOSE_TXT = "verbose.txt";
+    static final String FORMAT_EVENTS = "events";
 
     private static final String CONTENT_TYPE_HTML = "text/html";
     private static final String CONTENT_TYPE_TXT = "text/plain";
@@ -138,7 +154,12 @@ public class HealthCheckExecutorServlet extends HttpServlet {
     private static final String CACHE_CONTROL_KEY = "Cache-control";
     private static final String CACHE_CONTROL_VALUE = "no-cache";
     private static final String CORS_ORIGIN_HEADER_NAME = "Access-Control-Allow-Origin";
-    
+    private static final String ETAG_HEADER_NAME = "ETag";
+    private static final String IF_NONE_MATCH_HEADER_NAME = "If-None-Match";
+
+    // the number of rendered responses that are kept for reuse
+    static final int MAX_RENDERED_RESPONSES = 100;
+
     private String servletPath;
 
     private String corsAccessControlAllowOrigin;
@@ -155,6 +176,19 @@ public class HealthCheckExecutorServlet extends HttpServlet {
     private String[] allowedFormats;
     private boolean defaultCombineTagsWithOr;
     private boolean disableRequestConfiguration;
+
+    // Key: selection and format of the request | Value: response rendered for the last results
+    private final Map<String, RenderedResponse> renderedResponses = Collections.synchronizedMap(
+            new LinkedHashMap<String, RenderedResponse>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RenderedResponse> eldest) {
+                    return size() > MAX_RENDERED_RESPONSES;
+                }
+            });
+
+    private HealthCheckEventStream eventStream;
     
     @Reference
     HealthCheckExecutor healthCheckExecutor;
@@ -171,6 +205,9 @@ public class HealthCheckExecutorServlet extends HttpServlet {
     @Reference
     ResultTxtVerboseSerializer verboseTxtSerializer;
 
+    @Reference
+    AsyncHealthCheckExecutor asyncHealthCheckExecutor;
+
     @Activate
     protected final void activate(final HealthCheckExecutorServletConfiguration configuration, final BundleContext bundleContext) {
     	this.bundleContext = bundleContext;
@@ -223,6 +260,11 @@ public class HealthCheckExecutorServlet extends HttpServlet {
         if ( isFormatAllowed(FORMAT_VERBOSE_TXT) ) {
             servletsToRegister.put(this.servletPath.concat(".").concat(FORMAT_VERBOSE_TXT), new ProxyServlet(FORMAT_VERBOSE_TXT));
         }
+        if ( isFormatAllowed(FORMAT_EVENTS) ) {
+            servletsToRegister.put(this.servletPath.concat(".").concat(FORMAT_EVENTS), new ProxyServlet(FORMAT_EVENTS));
+            eventStream = new HealthCheckEventStream(jsonSerializer);
+            asyncHealthCheckExecutor.addResultListener(eventStream);
+        }
 
         for (final Map.Entry<String, HttpServlet> servlet : servletsToRegister.entrySet()) {
             try {
@@ -239,6 +281,12 @@ public class HealthCheckExecutorServlet extends HttpServlet {
 
     @Deactivate
     public void deactivate() {
+        if (eventStream != null) {
+            asyncHealthCheckExecutor.removeResultListener(eventStream);
+            eventStream.close();
+            eventStream = null;
+        }
+        renderedResponses.clear();
         for (final Entry<String, ServiceRegistration<Servlet>> entry : servletRegistrations.entrySet()) {
             try {
                 LOG.info("Unregistering HC Servlet {} from path {}", getClass().getSimpleName(), entry.getKey());
@@ -257,6 +305,8 @@ public class HealthCheckExecutorServlet extends HttpServlet {
     	    properties.put(HTTP_WHITEBOARD_CONTEXT_SELECT, "(".concat(HTTP_WHITEBOARD_CONTEXT_NAME).concat("=").concat(servletInfo.contextName).concat(")"));
         }
     	properties.put(HTTP_WHITEBOARD_SERVLET_PATTERN, servletInfo.servletPath);
+    	// required for the event stream
+    	properties.put(HTTP_WHITEBOARD_SERVLET_ASYNC_SUPPORTED, Boolean.TRUE);
 
     	final ServiceRegistration<Servlet> registration = bundleContext.registerService(Servlet.class, servletInfo.servlet, properties);
     	servletRegistrations.put(servletPath, registration);
@@ -330,8 +380,28 @@ public class HealthCheckExecutorServlet extends HttpServlet {
 
         List<HealthCheckExecutionResult> executionResults = this.healthCheckExecutor.execute(selector, executionOptions);
 
-        CombinedExecutionResult combinedExecutionResult = new CombinedExecutionResult(executionResults);
-        Result overallResult = combinedExecutionResult.getHealthCheckResult();
+        final boolean formatAllowed = this.isFormatAllowed(format);
+        final String jsonpCallback = formatAllowed && FORMAT_JSONP.equals(format)
+                ? StringUtils.defaultIfBlank(request.getParameter(PARAM_JSONP_CALLBACK.name), JSONP_CALLBACK_DEFAULT)
+                : null;
+
+        RenderedResponse renderedResponse = null;
+        Result overallResult;
+        if (formatAllowed && isRenderedFormat(format)) {
+            final String renderKey = format + "|" + selector + "|" + executionOptions.isCombineTagsWithOr() + "|" + includeDebug + "|"
+                    + jsonpCallback;
+            renderedResponse = renderedResponses.get(renderKey);
+            if (renderedResponse == null || !renderedResponse.isRenderedFrom(executionResults)) {
+                overallResult = new CombinedExecutionResult(executionResults).getHealthCheckResult();
+                renderedResponse = new RenderedResponse(executionResults, overallResult,
+                        render(format, overallResult, executionResults, jsonpCallback, includeDebug));
+                renderedResponses.put(renderKey, renderedResponse);
+            } else {
+                overallResult = renderedResponse.overallResult;
+            }
+        } else {
+            overallResult = new CombinedExecutionResult(executionResults).getHealthCheckResult();
+        }
 
         sendNoCacheHeaders(response);
         sendCorsHeaders(response);
@@ -340,18 +410,26 @@ public class HealthCheckExecutorServlet extends HttpServlet {
         response.setStatus(httpStatus);
 
         response.setHeader(STATUS_HEADER_NAME, overallResult.getStatus().toString());
-        
-        final boolean formatAllowed = this.isFormatAllowed(format);
 
-        if (formatAllowed && FORMAT_HTML.equals(format)) {
-            sendHtmlResponse(overallResult, executionResults, request, response, includeDebug);
-        } else if (formatAllowed && FORMAT_JSON.equals(format)) {
-            sendJsonResponse(overallResult, executionResults, null, response, includeDebug);
-        } else if (formatAllowed && FORMAT_JSONP.equals(format)) {
-            String jsonpCallback = StringUtils.defaultIfBlank(request.getParameter(PARAM_JSONP_CALLBACK.name), JSONP_CALLBACK_DEFAULT);
-            sendJsonResponse(overallResult, executionResults, jsonpCallback, response, includeDebug);
-        } else if (formatAllowed && format != null && format.endsWith(FORMAT_TXT)) {
-            sendTxtResponse(overallResult, response, FORMAT_VERBOSE_TXT.equals(format), executionResults, includeDebug);
+        if (renderedResponse != null) {
+            // the http status is part of the ETag as it is not part of the rendered body
+            final String eTag = "\"" + renderedResponse.bodyHash + "-" + httpStatus + "\"";
+            response.setHeader(ETAG_HEADER_NAME, eTag);
+            if (eTag.equals(request.getHeader(IF_NONE_MATCH_HEADER_NAME))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            response.setContentType(getContentType(format));
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write(renderedResponse.body);
+        } else if (formatAllowed && FORMAT_EVENTS.equals(format) && eventStream != null) {
+            Filter filter;
+            try {
+                filter = new HealthCheckFilter(bundleContext).createFilter(selector, executionOptions.isCombineTagsWithOr());
+            } catch (InvalidSyntaxException e) {
+                throw new ServletException("Invalid selection of health checks " + selector + ": " + e.getMessage(), e);
+            }
+            eventStream.subscribe(request, response, filter, executionResults, includeDebug);
         } else {
             response.setContentType("text/plain");
             response.getWriter().println("Invalid format " + format + " - supported formats: " + Arrays.toString(this.allowedFormats));
@@ -377,7 +455,7 @@ public class HealthCheckExecutorServlet extends HttpServlet {
 
     String[] splitFormat(final String pathInfo) {
         if ( pathInfo != null ) {
-            for (String format : new String[] { FORMAT_HTML, FORMAT_JSON, FORMAT_JSONP, FORMAT_VERBOSE_TXT, FORMAT_TXT }) {
+            for (String format : new String[] { FORMAT_HTML, FORMAT_JSON, FORMAT_JSONP, FORMAT_VERBOSE_TXT, FORMAT_TXT, FORMAT_EVENTS }) {
                 final String formatWithDot = ".".concat(format);
                 if (pathInfo.endsWith(formatWithDot)) {
                     return new String[] { pathInfo.substring(0, pathInfo.length() - formatWithDot.length()), format };
@@ -387,41 +465,35 @@ public class HealthCheckExecutorServlet extends HttpServlet {
         return new String[] { pathInfo, null };
     }
 
-    private void sendTxtResponse(final Result overallResult, final HttpServletResponse response, boolean verbose,
-            List<HealthCheckExecutionResult> executionResults, boolean includeDebug) throws IOException {
-        response.setContentType(CONTENT_TYPE_TXT);
-        response.setCharacterEncoding("UTF-8");
-        if (verbose) {
-            response.getWriter().write(verboseTxtSerializer.serialize(overallResult, executionResults, includeDebug));
-        } else {
-            response.getWriter().write(txtSerializer.serialize(overallResult));
-        }
+    private boolean isRenderedFormat(final String format) {
+        return FORMAT_HTML.equals(format) || FORMAT_JSON.equals(format) || FORMAT_JSONP.equals(format)
+                || FORMAT_TXT.equals(format) || FORMAT_VERBOSE_TXT.equals(format);
     }
 
-    private void sendJsonResponse(final Result overallResult, final List<HealthCheckExecutionResult> executionResults,
-            final String jsonpCallback,
-            final HttpServletResponse response, boolean includeDebug)
-            throws IOException {
-        if (StringUtils.isNotBlank(jsonpCallback)) {
-            response.setContentType(CONTENT_TYPE_JSONP);
+    private String getContentType(final String format) {
+        if (FORMAT_HTML.equals(format)) {
+            return CONTENT_TYPE_HTML;
+        } else if (FORMAT_JSON.equals(format)) {
+            return CONTENT_TYPE_JSON;
+        } else if (FORMAT_JSONP.equals(format)) {
+            return CONTENT_TYPE_JSONP;
         } else {
-            response.setContentType(CONTENT_TYPE_JSON);
+            return CONTENT_TYPE_TXT;
         }
-        response.setCharacterEncoding("UTF-8");
-
-        String resultJson = this.jsonSerializer.serialize(overallResult, executionResults, jsonpCallback, includeDebug);
-        PrintWriter writer = response.getWriter();
-        writer.append(resultJson);
     }
 
-    private void sendHtmlResponse(final Result overallResult, final List<HealthCheckExecutionResult> executionResults,
-            final HttpServletRequest request, final HttpServletResponse response, boolean includeDebug)
-            throws IOException {
-        response.setContentType(CONTENT_TYPE_HTML);
-        response.setCharacterEncoding("UTF-8");
-        
-        List<Param> allowedParameters = disableRequestConfiguration ? Arrays.asList(PARAM_FORMAT) : Arrays.asList(PARAM_LIST);
-        response.getWriter().append(this.htmlSerializer.serialize(overallResult, executionResults, allowedParameters, includeDebug));
+    private String render(final String format, final Result overallResult, final List<HealthCheckExecutionResult> executionResults,
+            final String jsonpCallback, boolean includeDebug) {
+        if (FORMAT_HTML.equals(format)) {
+            List<Param> allowedParameters = disableRequestConfiguration ? Arrays.asList(PARAM_FORMAT) : Arrays.asList(PARAM_LIST);
+            return this.htmlSerializer.serialize(overallResult, executionResults, allowedParameters, includeDebug);
+        } else if (FORMAT_JSON.equals(format) || FORMAT_JSONP.equals(format)) {
+            return this.jsonSerializer.serialize(overallResult, executionResults, jsonpCallback, includeDebug);
+        } else if (FORMAT_VERBOSE_TXT.equals(format)) {
+            return verboseTxtSerializer.serialize(overallResult, executionResults, includeDebug);
+        } else {
+            return txtSerializer.serialize(overallResult);
+        }
     }
 
     private void sendNoCacheHeaders(final HttpServletResponse response) {
@@ -480,6 +552,43 @@ public class HealthCheckExecutorServlet extends HttpServlet {
         }
     }
     
+    /** A response body rendered for a list of results, reused as long as the executor returns the same result instances. */
+    private static class RenderedResponse {
+        final List<HealthCheckExecutionResult> executionResults;
+        final Result overallResult;
+        final String body;
+        final String bodyHash;
+
+        RenderedResponse(List<HealthCheckExecutionResult> executionResults, Result overallResult, String body) {
+            this.executionResults = new ArrayList<>(executionResults);
+            this.overallResult = overallResult;
+            this.body = body != null ? body : "";
+            this.bodyHash = hash(this.body);
+        }
+
+        boolean isRenderedFrom(List<HealthCheckExecutionResult> results) {
+            if (results.size() != executionResults.size()) {
+                return false;
+            }
+            // results are immutable, new results are always new instances
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) != executionResults.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String hash(String body) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+            } catch (NoSuchAlgorithmException e) {
+                return Integer.toHexString(body.hashCode());
+            }
+        }
+    }
+
     private static class ServletInfoDTO extends DTO {
     	String contextName;
     	String servletPath;
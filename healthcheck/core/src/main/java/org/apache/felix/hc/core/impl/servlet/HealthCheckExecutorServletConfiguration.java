@@ -60,7 +60,8 @@ import org.osgi.service.metatype.annotations.Option;
             @Option(label = "JSON", value = HealthCheckExecutorServlet.FORMAT_JSON),
             @Option(label = "JSONP", value = HealthCheckExecutorServlet.FORMAT_JSONP),
             @Option(label = "TXT", value = HealthCheckExecutorServlet.FORMAT_TXT),
-            @Option(label = "VERBOSE TXT", value = HealthCheckExecutorServlet.FORMAT_VERBOSE_TXT)
+            @Option(label = "VERBOSE TXT", value = HealthCheckExecutorServlet.FORMAT_VERBOSE_TXT),
+            @Option(label = "EVENTS (server-sent events)", value = HealthCheckExecutorServlet.FORMAT_EVENTS)
         })
     String[] allowed_formats() default {
         HealthCheckExecutorServlet.FORMAT_HTML, 
@@ -72,6 +72,18 @@ public class ResultJsonSerializer {
 
     }
 
+    /** Serializes a single health check result (as used for the entries of the results array). */
+    public String serialize(final HealthCheckExecutionResult executionResult, boolean includeDebug) {
+        StringWriter writer = new StringWriter();
+        try {
+            writeResult(executionResult, includeDebug, new JSONWriter(writer));
+        } catch(IOException e) {
+            LOG.error("Could not serialise health check result: e="+e, e);
+            writer.write("{error:'"+e.getMessage()+"'}");
+        }
+        return writer.toString();
+    }
+
     private void writeResult(final HealthCheckExecutionResult healthCheckResult, boolean includeDebug, JSONWriter jsonWriter) throws IOException {
 
         jsonWriter.object()
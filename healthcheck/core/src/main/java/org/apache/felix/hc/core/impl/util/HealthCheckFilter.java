@@ -22,6 +22,7 @@ import static org.apache.felix.hc.api.execution.HealthCheckSelector.empty;
 import org.apache.felix.hc.api.HealthCheck;
 import org.apache.felix.hc.api.execution.HealthCheckSelector;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.slf4j.Logger;
@@ -77,6 +78,17 @@ public class HealthCheckFilter {
     }
 
 
+    /** Creates a filter matching the service references of the {@link HealthCheck} services selected by the given selector.
+     *
+     * @param selector the selector
+     * @param combineTagsWithOr whether tags are combined with OR
+     * @return the filter
+     * @throws InvalidSyntaxException if the selector results in an invalid filter */
+    public Filter createFilter(final HealthCheckSelector selector, boolean combineTagsWithOr) throws InvalidSyntaxException {
+        return bundleContext.createFilter(getServiceFilter(selector != null ? selector : empty(), combineTagsWithOr).toString());
+    }
+
+
     CharSequence getServiceFilter(HealthCheckSelector selector, boolean combineTagsWithOr) {
         // Build service filter
         final StringBuilder filterBuilder = new StringBuilder();
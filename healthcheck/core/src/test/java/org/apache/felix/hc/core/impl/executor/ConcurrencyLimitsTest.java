@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The SF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.felix.hc.core.impl.executor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ConcurrencyLimitsTest {
+
+    // collects the jobs handed to the executor instead of running them
+    private final List<Runnable> executed = new ArrayList<>();
+
+    @Test
+    public void testUnlimitedTagsAreExecutedDirectly() {
+        ConcurrencyLimits limits = new ConcurrencyLimits(executed::add, new String[] { "jmx:1" });
+
+        limits.execute(Arrays.asList("http"), () -> {});
+        limits.execute(Arrays.asList("http"), () -> {});
+        limits.execute(Collections.emptyList(), () -> {});
+
+        assertEquals(3, executed.size());
+        assertEquals(0, limits.getRunning("jmx"));
+    }
+
+    @Test
+    public void testLimitQueuesJobsUntilFinished() {
+        ConcurrencyLimits limits = new ConcurrencyLimits(executed::add, new String[] { "jmx:2" });
+
+        List<String> ran = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String name = "job" + i;
+            limits.execute(Arrays.asList("jmx", "other"), () -> ran.add(name));
+        }
+        assertEquals(2, executed.size());
+        assertEquals(2, limits.getRunning("jmx"));
+        assertEquals(3, limits.getQueued("jmx"));
+
+        // finishing a job hands the next queued job to the executor
+        executed.remove(0).run();
+        assertEquals(2, executed.size());
+        assertEquals(2, limits.getQueued("jmx"));
+
+        while (!executed.isEmpty()) {
+            executed.remove(0).run();
+        }
+        assertEquals(Arrays.asList("job0", "job1", "job2", "job3", "job4"), ran);
+        assertEquals(0, limits.getRunning("jmx"));
+        assertEquals(0, limits.getQueued("jmx"));
+    }
+
+    @Test
+    public void testAllLimitsOfTagsApply() {
+        ConcurrencyLimits limits = new ConcurrencyLimits(executed::add, new String[] { "a:2", "b:1" });
+
+        limits.execute(Arrays.asList("a", "b"), () -> {});
+        limits.execute(Arrays.asList("b"), () -> {});
+        limits.execute(Arrays.asList("a"), () -> {});
+
+        // second job waits for b, third job only needs a
+        assertEquals(2, executed.size());
+        assertEquals(1, limits.getQueued("b"));
+        assertEquals(2, limits.getRunning("a"));
+
+        executed.remove(0).run();
+        assertEquals(2, executed.size());
+        assertEquals(1, limits.getRunning("b"));
+        assertEquals(1, limits.getRunning("a"));
+    }
+
+    @Test
+    public void testJobWaitingForAnotherLimitDoesNotBlockQueue() {
+        ConcurrencyLimits limits = new ConcurrencyLimits(executed::add, new String[] { "a:1", "b:1" });
+
+        List<String> ran = new ArrayList<>();
+        limits.execute(Arrays.asList("b"), () -> ran.add("b"));
+        limits.execute(Arrays.asList("a"), () -> ran.add("a"));
+        limits.execute(Arrays.asList("a", "b"), () -> ran.add("ab"));
+        limits.execute(Arrays.asList("a"), () -> ran.add("a2"));
+        assertEquals(2, executed.size());
+        assertEquals(2, limits.getQueued("a"));
+
+        // the job needing a and b moves on to wait for b, the next job waiting for a runs
+        executed.remove(1).run();
+        assertEquals(2, executed.size());
+        assertEquals(1, limits.getRunning("a"));
+        assertEquals(0, limits.getQueued("a"));
+        assertEquals(1, limits.getQueued("b"));
+
+        while (!executed.isEmpty()) {
+            executed.remove(0).run();
+        }
+        assertEquals(Arrays.asList("a", "b", "a2", "ab"), ran);
+        assertEquals(0, limits.getRunning("a"));
+        assertEquals(0, limits.getRunning("b"));
+    }
+
+    @Test
+    public void testLimitIsReleasedOnException() {
+        ConcurrencyLimits limits = new ConcurrencyLimits(executed::add, new String[] { "jmx:1" });
+
+        limits.execute(Arrays.asList("jmx"), () -> { throw new IllegalStateException("failing check"); });
+        limits.execute(Arrays.asList("jmx"), () -> {});
+        assertEquals(1, executed.size());
+
+        try {
+            executed.remove(0).run();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, executed.size());
+        assertEquals(1, limits.getRunning("jmx"));
+    }
+
+    @Test
+    public void testInvalidLimitsAreIgnored() {
+        ConcurrencyLimits limits = new ConcurrencyLimits(executed::add, new String[] { "jmx", "http:x", "cpu:0", "disk:1" });
+
+        assertEquals("[ConcurrencyLimits [disk:1]]", limits.toString());
+    }
+}
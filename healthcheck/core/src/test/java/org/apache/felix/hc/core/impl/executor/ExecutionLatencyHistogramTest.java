@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The SF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.felix.hc.core.impl.executor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ExecutionLatencyHistogramTest {
+
+    @Test
+    public void testEmptyHistogram() {
+        ExecutionLatencyHistogram histogram = new ExecutionLatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanMs());
+        assertEquals(0, histogram.getPercentileMs(99));
+        assertEquals(0, histogram.getMaxMs());
+    }
+
+    @Test
+    public void testPercentiles() {
+        ExecutionLatencyHistogram histogram = new ExecutionLatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(3);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(150);
+        }
+        histogram.record(45000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(5, histogram.getPercentileMs(50));
+        assertEquals(5, histogram.getPercentileMs(90));
+        assertEquals(200, histogram.getPercentileMs(95));
+        assertEquals(200, histogram.getPercentileMs(99));
+        assertEquals(45000, histogram.getPercentileMs(100));
+        assertEquals(45000, histogram.getMaxMs());
+        assertEquals((90 * 3 + 9 * 150 + 45000) / 100, histogram.getMeanMs());
+    }
+
+    @Test
+    public void testBuckets() {
+        ExecutionLatencyHistogram histogram = new ExecutionLatencyHistogram();
+        histogram.record(-1);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(Long.MAX_VALUE);
+
+        long[] bucketCounts = histogram.getBucketCounts();
+        assertEquals(ExecutionLatencyHistogram.BUCKET_UPPER_BOUNDS_MS.length, bucketCounts.length);
+        assertEquals(2, bucketCounts[0]);
+        assertEquals(1, bucketCounts[1]);
+        assertEquals(1, bucketCounts[bucketCounts.length - 1]);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.hc.core.impl.executor.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.felix.hc.api.HealthCheck;
+import org.apache.felix.hc.api.Result;
+import org.apache.felix.hc.api.execution.HealthCheckExecutionResult;
+import org.apache.felix.hc.api.execution.HealthCheckMetadata;
+import org.apache.felix.hc.core.impl.executor.ExecutionResult;
+import org.apache.felix.hc.core.impl.executor.HealthCheckExecutorThreadPool;
+import org.apache.felix.hc.core.impl.executor.HealthCheckResultCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceReference;
+
+public class AsyncHealthCheckExecutorTest {
+
+    private AsyncHealthCheckExecutor asyncHealthCheckExecutor = new AsyncHealthCheckExecutor();
+
+    @Mock
+    private HealthCheckExecutorThreadPool healthCheckExecutorThreadPool;
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private Bundle bundle;
+
+    @Mock
+    private ServiceReference<HealthCheck> triggeredCheck;
+
+    @Mock
+    private ServiceReference<HealthCheck> syncCheck;
+
+    private final List<HealthCheckExecutionResult> notified = new ArrayList<>();
+
+    private final Consumer<HealthCheckExecutionResult> resultListener = new Consumer<HealthCheckExecutionResult>() {
+        @Override
+        public void accept(HealthCheckExecutionResult result) {
+            notified.add(result);
+        }
+    };
+
+    @Before
+    public void setup() throws Exception {
+        initMocks(this);
+        asyncHealthCheckExecutor.healthCheckExecutorThreadPool = healthCheckExecutorThreadPool;
+        when(bundleContext.getBundle()).thenReturn(bundle);
+
+        when(triggeredCheck.getProperty(Constants.SERVICE_ID)).thenReturn(1L);
+        when(triggeredCheck.getProperty(HealthCheck.NAME)).thenReturn("Triggered Check");
+        when(triggeredCheck.getProperty(AsyncHealthCheckExecutor.PROP_ASYNC_TRIGGER_BUNDLES)).thenReturn(new String[] { "org.example.input" });
+        when(triggeredCheck.isAssignableTo(any(Bundle.class), anyString())).thenReturn(true);
+
+        when(syncCheck.getProperty(Constants.SERVICE_ID)).thenReturn(2L);
+        when(syncCheck.getProperty(HealthCheck.NAME)).thenReturn("Sync Check");
+        when(syncCheck.isAssignableTo(any(Bundle.class), anyString())).thenReturn(true);
+
+        asyncHealthCheckExecutor.activate(bundleContext);
+        asyncHealthCheckExecutor.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, triggeredCheck));
+        asyncHealthCheckExecutor.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, syncCheck));
+        asyncHealthCheckExecutor.addResultListener(resultListener);
+    }
+
+    @Test
+    public void testTriggeredCheckIsScheduled() {
+        verify(bundleContext).addBundleListener(any(BundleListener.class));
+        verify(healthCheckExecutorThreadPool).execute(any(HealthCheckMetadata.class), any(Runnable.class));
+
+        List<HealthCheckMetadata> checks = new ArrayList<>();
+        checks.add(new HealthCheckMetadata(triggeredCheck));
+        checks.add(new HealthCheckMetadata(syncCheck));
+        List<HealthCheckExecutionResult> results = new ArrayList<>();
+        asyncHealthCheckExecutor.collectAsyncResults(checks, results, new HealthCheckResultCache());
+
+        // the sync check is left to be executed by the caller
+        assertEquals(1, checks.size());
+        assertEquals(2L, checks.get(0).getServiceId());
+        assertEquals(1, results.size());
+        assertEquals(Result.Status.OK, results.get(0).getHealthCheckResult().getStatus());
+    }
+
+    @Test
+    public void testResultListenersNotifiedOnStatusChanges() {
+        HealthCheckExecutionResult ok = result(triggeredCheck, Result.Status.OK);
+        asyncHealthCheckExecutor.updateWith(ok);
+        assertEquals(1, notified.size());
+        assertSame(ok, notified.get(0));
+
+        // same status, no notification
+        asyncHealthCheckExecutor.updateWith(result(triggeredCheck, Result.Status.OK));
+        assertEquals(1, notified.size());
+
+        HealthCheckExecutionResult critical = result(triggeredCheck, Result.Status.CRITICAL);
+        asyncHealthCheckExecutor.updateWith(critical);
+        assertEquals(2, notified.size());
+        assertSame(critical, notified.get(1));
+
+        asyncHealthCheckExecutor.removeResultListener(resultListener);
+        asyncHealthCheckExecutor.updateWith(result(triggeredCheck, Result.Status.OK));
+        assertEquals(2, notified.size());
+    }
+
+    @Test
+    public void testResultListenersNotNotifiedForSyncChecks() {
+        asyncHealthCheckExecutor.updateWith(result(syncCheck, Result.Status.CRITICAL));
+        assertTrue(notified.isEmpty());
+    }
+
+    @Test
+    public void testFailingResultListenerDoesNotStopNotifications() {
+        asyncHealthCheckExecutor.removeResultListener(resultListener);
+        asyncHealthCheckExecutor.addResultListener(new Consumer<HealthCheckExecutionResult>() {
+            @Override
+            public void accept(HealthCheckExecutionResult result) {
+                throw new IllegalStateException("failing listener");
+            }
+        });
+        asyncHealthCheckExecutor.addResultListener(resultListener);
+
+        asyncHealthCheckExecutor.updateWith(result(triggeredCheck, Result.Status.WARN));
+        assertEquals(1, notified.size());
+    }
+
+    @Test
+    public void testUnregisteredCheckIsNoLongerAsync() {
+        asyncHealthCheckExecutor.serviceChanged(new ServiceEvent(ServiceEvent.UNREGISTERING, triggeredCheck));
+        asyncHealthCheckExecutor.updateWith(result(triggeredCheck, Result.Status.OK));
+        assertTrue(notified.isEmpty());
+    }
+
+    private HealthCheckExecutionResult result(ServiceReference<HealthCheck> check, Result.Status status) {
+        return new ExecutionResult(new HealthCheckMetadata(check), new Result(status, "result " + status), 1L);
+    }
+}
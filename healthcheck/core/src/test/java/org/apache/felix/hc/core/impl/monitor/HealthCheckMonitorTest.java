@@ -26,11 +26,13 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.matches;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.lang.reflect.Method;
@@ -38,16 +40,19 @@ import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.apache.felix.hc.api.HealthCheck;
 import org.apache.felix.hc.api.Result;
 import org.apache.felix.hc.api.condition.Healthy;
 import org.apache.felix.hc.api.condition.Unhealthy;
+import org.apache.felix.hc.api.execution.HealthCheckExecutionResult;
 import org.apache.felix.hc.api.execution.HealthCheckMetadata;
 import org.apache.felix.hc.api.execution.HealthCheckSelector;
 import org.apache.felix.hc.core.impl.executor.ExecutionResult;
 import org.apache.felix.hc.core.impl.executor.ExtendedHealthCheckExecutor;
 import org.apache.felix.hc.core.impl.executor.HealthCheckExecutorThreadPool;
+import org.apache.felix.hc.core.impl.executor.async.AsyncHealthCheckExecutor;
 import org.apache.felix.hc.core.impl.scheduling.AsyncIntervalJob;
 import org.apache.felix.hc.core.impl.servlet.ResultTxtVerboseSerializer;
 import org.junit.Before;
@@ -453,6 +458,54 @@ public class HealthCheckMonitorTest {
 
     }
     
+    @Test
+    public void testResultChangedUpdatesHealthStates() throws InvalidSyntaxException {
+        AsyncHealthCheckExecutor asyncHealthCheckExecutor = mock(AsyncHealthCheckExecutor.class);
+        when(config.updateOnResultChanges()).thenReturn(true);
+        healthCheckMonitor.bindAsyncHealthCheckExecutor(asyncHealthCheckExecutor);
+        healthCheckMonitor.activate(bundleContext, config, componentContext);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<HealthCheckExecutionResult>> resultListener = ArgumentCaptor.forClass(Consumer.class);
+        verify(asyncHealthCheckExecutor).addResultListener(resultListener.capture());
+
+        setHcResult(Result.Status.OK);
+        when(healthCheckMetadata.getTags()).thenReturn(Arrays.asList(TEST_TAG));
+        ExecutionResult result = new ExecutionResult(healthCheckMetadata, new Result(Result.Status.CRITICAL, "changed"), 1);
+        resultListener.getValue().accept(result);
+        // coalesced with the pending update
+        resultListener.getValue().accept(result);
+
+        ArgumentCaptor<Runnable> update = ArgumentCaptor.forClass(Runnable.class);
+        verify(healthCheckExecutorThreadPool).execute(update.capture());
+        update.getValue().run();
+        verify(healthCheckExecutor).execute(HealthCheckSelector.tags(TEST_TAG));
+
+        // changes of checks that are not monitored are ignored
+        HealthCheckMetadata otherMetadata = mock(HealthCheckMetadata.class);
+        when(otherMetadata.getTags()).thenReturn(Arrays.asList("other-tag"));
+        resultListener.getValue().accept(new ExecutionResult(otherMetadata, new Result(Result.Status.CRITICAL, "other"), 1));
+        verify(healthCheckExecutorThreadPool, times(1)).execute(any(Runnable.class));
+
+        healthCheckMonitor.unbindAsyncHealthCheckExecutor(asyncHealthCheckExecutor);
+        verify(asyncHealthCheckExecutor).removeResultListener(resultListener.getValue());
+        healthCheckMonitor.deactivate();
+        verifyNoMoreInteractions(asyncHealthCheckExecutor);
+    }
+
+    @Test
+    public void testAsyncHealthCheckExecutorIsOptional() throws InvalidSyntaxException {
+        when(config.updateOnResultChanges()).thenReturn(true);
+        healthCheckMonitor.activate(bundleContext, config, componentContext);
+
+        AsyncHealthCheckExecutor asyncHealthCheckExecutor = mock(AsyncHealthCheckExecutor.class);
+        healthCheckMonitor.bindAsyncHealthCheckExecutor(asyncHealthCheckExecutor);
+        verify(asyncHealthCheckExecutor).addResultListener(any());
+
+        healthCheckMonitor.deactivate();
+        verify(asyncHealthCheckExecutor).removeResultListener(any());
+    }
+
     private void prepareLoggingTest(HealthCheckMonitor.ChangeType loggingChangeType) throws InvalidSyntaxException {
         when(config.sendEvents()).thenReturn(HealthCheckMonitor.ChangeType.NONE);
         when(config.logResults()).thenReturn(loggingChangeType);
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.hc.core.impl.scheduling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.felix.hc.api.execution.HealthCheckMetadata;
+import org.apache.felix.hc.core.impl.executor.HealthCheckExecutorThreadPool;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+public class AsyncTriggeredJobTest {
+
+    @Mock
+    private HealthCheckExecutorThreadPool healthCheckExecutorThreadPool;
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private Bundle bundle;
+
+    @Mock
+    private HealthCheckMetadata healthCheckMetadata;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private final Runnable check = new Runnable() {
+        @Override
+        public void run() {
+            executions.incrementAndGet();
+        }
+    };
+
+    private AsyncTriggeredJob job;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+        job = new AsyncTriggeredJob(check, healthCheckExecutorThreadPool, healthCheckMetadata, bundleContext,
+                Collections.<String> emptyList(), Arrays.asList("org.example.input"), Collections.<String> emptyList());
+    }
+
+    @Test
+    public void testTriggerRunsCheck() {
+        assertTrue(job.schedule());
+
+        ArgumentCaptor<BundleListener> listener = ArgumentCaptor.forClass(BundleListener.class);
+        verify(bundleContext).addBundleListener(listener.capture());
+
+        // initial execution
+        runScheduledExecutions(1);
+        assertEquals(1, executions.get());
+
+        // input bundle changes
+        when(bundle.getSymbolicName()).thenReturn("org.example.input");
+        listener.getValue().bundleChanged(new BundleEvent(BundleEvent.STARTED, bundle));
+        runScheduledExecutions(2);
+        assertEquals(2, executions.get());
+
+        // other bundles are ignored
+        when(bundle.getSymbolicName()).thenReturn("org.example.other");
+        listener.getValue().bundleChanged(new BundleEvent(BundleEvent.STARTED, bundle));
+        verify(healthCheckExecutorThreadPool, times(2)).execute(eq(healthCheckMetadata), any(Runnable.class));
+
+        assertTrue(job.unschedule());
+        verify(bundleContext).removeBundleListener(listener.getValue());
+        job.trigger("after unscheduling");
+        verify(healthCheckExecutorThreadPool, times(2)).execute(eq(healthCheckMetadata), any(Runnable.class));
+    }
+
+    @Test
+    public void testConcurrentTriggersAreCoalesced() throws Exception {
+        job.schedule();
+        verify(healthCheckExecutorThreadPool, times(1)).execute(eq(healthCheckMetadata), any(Runnable.class));
+
+        // triggers while the execution is pending don't schedule another execution
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService triggers = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 20; i++) {
+                final int n = i;
+                triggers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        job.trigger("change " + n);
+                    }
+                });
+            }
+            start.countDown();
+        } finally {
+            triggers.shutdown();
+            assertTrue(triggers.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        runScheduledExecutions(1);
+        assertEquals(1, executions.get());
+
+        // a change after the execution started needs another execution
+        job.trigger("change after execution");
+        runScheduledExecutions(2);
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void testNoExecutionBeforeScheduling() {
+        job.trigger("not scheduled");
+        verify(healthCheckExecutorThreadPool, never()).execute(eq(healthCheckMetadata), any(Runnable.class));
+    }
+
+    private void runScheduledExecutions(int expected) {
+        ArgumentCaptor<Runnable> execution = ArgumentCaptor.forClass(Runnable.class);
+        verify(healthCheckExecutorThreadPool, times(expected)).execute(eq(healthCheckMetadata), execution.capture());
+        List<Runnable> scheduled = execution.getAllValues();
+        scheduled.get(scheduled.size() - 1).run();
+    }
+}
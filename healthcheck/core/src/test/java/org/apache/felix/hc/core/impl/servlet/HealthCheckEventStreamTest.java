@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.hc.core.impl.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.apache.felix.hc.api.HealthCheck;
+import org.apache.felix.hc.api.Result;
+import org.apache.felix.hc.api.execution.HealthCheckExecutionResult;
+import org.apache.felix.hc.api.execution.HealthCheckMetadata;
+import org.apache.felix.hc.core.impl.executor.ExecutionResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.osgi.framework.Filter;
+import org.osgi.framework.ServiceReference;
+
+public class HealthCheckEventStreamTest {
+
+    @Mock
+    private ResultJsonSerializer jsonSerializer;
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    @Mock
+    private AsyncContext asyncContext;
+
+    @Mock
+    private Filter filter;
+
+    @Mock
+    private HealthCheckMetadata selectedMetadata;
+
+    @Mock
+    private HealthCheckMetadata otherMetadata;
+
+    @Mock
+    private ServiceReference<HealthCheck> selectedCheck;
+
+    @Mock
+    private ServiceReference<HealthCheck> otherCheck;
+
+    private HealthCheckEventStream eventStream;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+        eventStream = new HealthCheckEventStream(jsonSerializer);
+        when(request.startAsync()).thenReturn(asyncContext);
+        when(selectedMetadata.getServiceReference()).thenReturn(selectedCheck);
+        when(otherMetadata.getServiceReference()).thenReturn(otherCheck);
+        when(filter.match(selectedCheck)).thenReturn(true);
+        when(jsonSerializer.serialize(any(HealthCheckExecutionResult.class), anyBoolean())).thenAnswer(invocation -> {
+            HealthCheckExecutionResult result = invocation.getArgument(0);
+            return "{\"status\":\"" + result.getHealthCheckResult().getStatus() + "\"}";
+        });
+    }
+
+    @After
+    public void tearDown() {
+        eventStream.close();
+    }
+
+    @Test
+    public void testSubscribeSendsCurrentResults() throws Exception {
+        StringWriter output = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(output));
+
+        eventStream.subscribe(request, response, filter,
+                Arrays.asList(result(selectedMetadata, Result.Status.OK), result(selectedMetadata, Result.Status.WARN)), false);
+
+        verify(response).setContentType(HealthCheckEventStream.CONTENT_TYPE_EVENT_STREAM);
+        verify(asyncContext).setTimeout(0);
+        assertEquals(1, eventStream.getSubscriberCount());
+        awaitOutput(output, "event: healthcheck\nid: 1\ndata: {\"status\":\"OK\"}\n\n"
+                + "event: healthcheck\nid: 2\ndata: {\"status\":\"WARN\"}\n\n");
+    }
+
+    @Test
+    public void testStatusChangesOfSelectedChecksAreSent() throws Exception {
+        StringWriter output = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(output));
+        eventStream.subscribe(request, response, filter, Collections.<HealthCheckExecutionResult> emptyList(), false);
+
+        eventStream.accept(result(otherMetadata, Result.Status.CRITICAL));
+        eventStream.accept(result(selectedMetadata, Result.Status.CRITICAL));
+
+        awaitOutput(output, "event: healthcheck\nid: 1\ndata: {\"status\":\"CRITICAL\"}\n\n");
+    }
+
+    @Test
+    public void testUnsubscribeOnWriteError() throws Exception {
+        when(response.getWriter()).thenReturn(new PrintWriter(new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("client has gone away");
+            }
+
+            @Override
+            public void flush() throws IOException {
+                throw new IOException("client has gone away");
+            }
+
+            @Override
+            public void close() {
+            }
+        }));
+        eventStream.subscribe(request, response, filter, Collections.<HealthCheckExecutionResult> emptyList(), false);
+        assertEquals(1, eventStream.getSubscriberCount());
+
+        eventStream.accept(result(selectedMetadata, Result.Status.CRITICAL));
+
+        verify(asyncContext, timeout(5000)).complete();
+        assertEquals(0, eventStream.getSubscriberCount());
+    }
+
+    @Test
+    public void testSlowSubscriberIsDisconnected() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(response.getWriter()).thenReturn(new PrintWriter(new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        }));
+        eventStream.subscribe(request, response, filter, Collections.<HealthCheckExecutionResult> emptyList(), false);
+
+        try {
+            eventStream.accept(result(selectedMetadata, Result.Status.WARN));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+            // the writer is stalled, status changes are queued without blocking the caller
+            for (int i = 0; i < HealthCheckEventStream.MAX_PENDING_EVENTS; i++) {
+                eventStream.accept(result(selectedMetadata, i % 2 == 0 ? Result.Status.CRITICAL : Result.Status.OK));
+            }
+            assertEquals(1, eventStream.getSubscriberCount());
+
+            eventStream.accept(result(selectedMetadata, Result.Status.CRITICAL));
+            verify(asyncContext).complete();
+            assertEquals(0, eventStream.getSubscriberCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private HealthCheckExecutionResult result(HealthCheckMetadata metadata, Result.Status status) {
+        return new ExecutionResult(metadata, new Result(status, status.toString()), 1L);
+    }
+
+    private static void awaitOutput(StringWriter output, String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!expected.equals(output.toString()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, output.toString());
+    }
+}
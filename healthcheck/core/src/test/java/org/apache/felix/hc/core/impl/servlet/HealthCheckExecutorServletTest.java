@@ -23,6 +23,7 @@ import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -48,6 +49,7 @@ import org.apache.felix.hc.api.execution.HealthCheckSelector;
 import org.apache.felix.hc.core.impl.executor.ExecutionResult;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -228,6 +230,48 @@ public class HealthCheckExecutorServletTest {
 
     }
 
+    @Test
+    public void testDoGetReusesRenderedResponse() throws ServletException, IOException {
+
+        doReturn("/testTag.json").when(request).getPathInfo();
+        final List<HealthCheckExecutionResult> executionResults = getExecutionResults(Result.Status.OK);
+        doReturn(executionResults).when(healthCheckExecutor).execute(any(HealthCheckSelector.class), any(HealthCheckExecutionOptions.class));
+        doReturn("{}").when(jsonSerializer).serialize(any(Result.class), any(List.class), any(), eq(false));
+
+        healthCheckExecutorServlet.doGet(request, response);
+        healthCheckExecutorServlet.doGet(request, response);
+
+        verify(jsonSerializer, times(1)).serialize(any(Result.class), any(List.class), any(), eq(false));
+        verify(writer, times(2)).write("{}");
+
+        // new results are rendered again
+        doReturn(getExecutionResults(Result.Status.OK)).when(healthCheckExecutor).execute(any(HealthCheckSelector.class),
+                any(HealthCheckExecutionOptions.class));
+        healthCheckExecutorServlet.doGet(request, response);
+
+        verify(jsonSerializer, times(2)).serialize(any(Result.class), any(List.class), any(), eq(false));
+    }
+
+    @Test
+    public void testDoGetNotModified() throws ServletException, IOException {
+
+        doReturn("/testTag.txt").when(request).getPathInfo();
+        final List<HealthCheckExecutionResult> executionResults = getExecutionResults(Result.Status.OK);
+        doReturn(executionResults).when(healthCheckExecutor).execute(any(HealthCheckSelector.class), any(HealthCheckExecutionOptions.class));
+        doReturn("OK").when(txtSerializer).serialize(any(Result.class));
+
+        healthCheckExecutorServlet.doGet(request, response);
+
+        ArgumentCaptor<String> eTag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), eTag.capture());
+        doReturn(eTag.getValue()).when(request).getHeader("If-None-Match");
+
+        healthCheckExecutorServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(writer, times(1)).write("OK");
+    }
+
     private List<HealthCheckExecutionResult> getExecutionResults(Result.Status worstStatus) {
         List<HealthCheckExecutionResult> results = new ArrayList<HealthCheckExecutionResult>();
         results.add(new ExecutionResult(new HealthCheckMetadata(hcServiceRef), new Result(worstStatus, worstStatus.name()), 100));
@@ -69,4 +69,20 @@ public class ResultJsonSerializerTest {
         assertThat(json, containsString("\"messages\":[{\"status\":\"OK\",\"message\":\"test message\"}]"));
     }
 
+    @Test
+    public void testJsonSerialisationOfSingleResult() {
+
+        FormattingResultLog log = new FormattingResultLog();
+        log.warn("test warning");
+        log.debug("test debug");
+        HealthCheckMetadata hcMetadata = new HealthCheckMetadata(serviceReference);
+        HealthCheckExecutionResult executionResult = new ExecutionResult(hcMetadata, new Result(log), 100);
+
+        String json = resultJsonSerializer.serialize(executionResult, false);
+        assertThat(json, containsString("\"name\":\"Test\""));
+        assertThat(json, containsString("\"status\":\"WARN\""));
+        assertThat(json, containsString("\"messages\":[{\"status\":\"WARN\",\"message\":\"test warning\"}]"));
+        assertEquals(-1, json.indexOf('\n'));
+    }
+
 }
@@ -101,6 +101,14 @@ public @interface Requires {
      */
     boolean proxy() default true;
 
+    /**
+     * Set to true if the field is injected with a shared snapshot of the
+     * service objects instead of a copy tracked per thread during the
+     * method call. The snapshot is republished when the bound services
+     * change, so read the field once per method.
+     * Default: false
+     */
+    boolean snapshot() default false;
 
     /**
      * Set the time to wait before applying the 'no service available' action.
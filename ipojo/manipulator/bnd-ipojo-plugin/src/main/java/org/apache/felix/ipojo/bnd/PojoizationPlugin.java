@@ -28,11 +28,13 @@ import aQute.service.reporter.Reporter;
 import org.apache.felix.ipojo.manipulator.ManipulationVisitor;
 import org.apache.felix.ipojo.manipulator.Pojoization;
 import org.apache.felix.ipojo.manipulator.ResourceStore;
+import org.apache.felix.ipojo.manipulator.cache.DirectoryManipulationCache;
 import org.apache.felix.ipojo.manipulator.metadata.AnnotationMetadataProvider;
 import org.apache.felix.ipojo.manipulator.metadata.CacheableMetadataProvider;
 import org.apache.felix.ipojo.manipulator.metadata.CompositeMetadataProvider;
 import org.apache.felix.ipojo.manipulator.metadata.FileMetadataProvider;
 import org.apache.felix.ipojo.manipulator.util.Classpath;
+import org.apache.felix.ipojo.manipulator.util.Digests;
 import org.apache.felix.ipojo.manipulator.visitor.check.CheckFieldConsistencyVisitor;
 import org.apache.felix.ipojo.manipulator.visitor.writer.ManipulatedResourcesWriter;
 import org.apache.felix.ipojo.metadata.Element;
@@ -50,14 +52,24 @@ public class PojoizationPlugin implements Plugin, AnalyzerPlugin {
     private static final String PROPERTY_METADATA = "metadata";
     private static final String PROPERTY_USE_LOCAL_SCHEMAS = "use-local-schemas";
     private static final String PROPERTY_INCLUDE_EMBED_BUNDLES = "include-embed-bundles";
+    private static final String PROPERTY_THREADS = "threads";
+    private static final String PROPERTY_CACHE_DIRECTORY = "cache-directory";
 
     private static final String DEFAULT_METADATA = "META-INF/metadata.xml";
     private static final boolean DEFAULT_USE_LOCAL_SCHEMAS = false;
     private static final boolean DEFAULT_INCLUDE_EMBED_BUNDLES = false;
+    private static final int DEFAULT_THREADS = 1;
 
     private String m_metadata = DEFAULT_METADATA;
     private boolean m_useLocalSchemas = DEFAULT_USE_LOCAL_SCHEMAS;
     private boolean m_includeEmbedBundles = DEFAULT_INCLUDE_EMBED_BUNDLES;
+    private int m_threads = DEFAULT_THREADS;
+    private File m_cacheDirectory;
+
+    /**
+     * Fingerprint of the analyzer classpath, separating the cached manipulations.
+     */
+    private String m_classpathFingerprint;
 
     private Reporter m_reporter;
 
@@ -77,6 +89,17 @@ public class PojoizationPlugin implements Plugin, AnalyzerPlugin {
         if (configuration.containsKey(PROPERTY_INCLUDE_EMBED_BUNDLES)) {
             m_includeEmbedBundles = true;
         }
+
+        // Manipulate the classes concurrently ? 0 uses one thread per processor
+        if (configuration.containsKey(PROPERTY_THREADS)) {
+            int threads = Integer.parseInt(configuration.get(PROPERTY_THREADS).trim());
+            m_threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        }
+
+        // Keep the manipulated classes between builds ? The directory must be cleaned when the class hierarchy changes
+        if (configuration.containsKey(PROPERTY_CACHE_DIRECTORY)) {
+            m_cacheDirectory = new File(configuration.get(PROPERTY_CACHE_DIRECTORY));
+        }
     }
 
     public void setReporter(Reporter reporter) {
@@ -107,14 +130,17 @@ public class PojoizationPlugin implements Plugin, AnalyzerPlugin {
         Jar jar = analyzer.getJar();
 
         Set<String> paths = new LinkedHashSet<String>();
+        List<File> dependencies = new ArrayList<File>();
         if (jar != null && jar.getSource() != null) {
             paths.add(jar.getSource().getAbsolutePath());
         }
         for (Jar j : jars) {
             if (j.getSource() != null) {
                 paths.add(j.getSource().getAbsolutePath());
+                dependencies.add(j.getSource());
             }
         }
+        m_classpathFingerprint = Digests.fingerprint(dependencies);
         Classpath cp = new Classpath(paths);
         manipulateComponents(reporter, store, cache, cp.createClassLoader());
 
@@ -135,6 +161,10 @@ public class PojoizationPlugin implements Plugin, AnalyzerPlugin {
         if (m_useLocalSchemas) {
             pojoization.setUseLocalXSD();
         }
+        pojoization.setThreads(m_threads);
+        if (m_cacheDirectory != null) {
+            pojoization.setManipulationCache(new DirectoryManipulationCache(m_cacheDirectory, m_classpathFingerprint));
+        }
 
         pojoization.pojoization(store, cache, createVisitor(store, reporter), classLoader);
     }
@@ -99,6 +99,19 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
      */
     private Set<String> m_fields;
 
+    /**
+     * The slot of each field, i.e. its index in the (sorted) field set, passed
+     * to the instance manager with the field name on field accesses.
+     */
+    private Map<String, Integer> m_fieldSlots = new HashMap<String, Integer>();
+
+    /**
+     * The slot of each method, i.e. the index of its method id in the (sorted)
+     * set of method ids of the previous analysis, passed to the instance manager
+     * with the method id on method entries, exits and errors.
+     */
+    private Map<String, Integer> m_methodSlots = new HashMap<String, Integer>();
+
     /**
      * Set of final fields detected in the class
      */
@@ -144,8 +157,18 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         super(Opcodes.ASM9, visitor);
         m_manipulator = manipulator;
         m_fields = manipulator.getFields().keySet();
+        for (String field : m_fields) {
+            m_fieldSlots.put(field, m_fieldSlots.size());
+        }
         m_finalFields = manipulator.getFinalFields();
         m_visitedMethods = manipulator.getMethods();
+        Set<String> ids = new TreeSet<String>();
+        for (MethodDescriptor md : m_visitedMethods) {
+            ids.add(computeMethodId(md.getName(), md.getDescriptor()));
+        }
+        for (String id : ids) {
+            m_methodSlots.put(id, m_methodSlots.size());
+        }
     }
 
     /**
@@ -436,9 +459,10 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
         mv.visitVarInsn(ALOAD, 0);
         mv.visitLdcInsn(generateMethodId(name, desc));
+        pushMethodSlot(mv, generateMethodId(name, desc));
         mv.loadArgArray();
         mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", ENTRY,
-                "(Ljava/lang/Object;Ljava/lang/String;[Ljava/lang/Object;)V", false);
+                "(Ljava/lang/Object;Ljava/lang/String;I[Ljava/lang/Object;)V", false);
 
         mv.visitVarInsn(ALOAD, 0);
 
@@ -454,6 +478,7 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
         mv.visitVarInsn(ALOAD, 0);
         mv.visitLdcInsn(generateMethodId(name, desc));
+        pushMethodSlot(mv, generateMethodId(name, desc));
         if (returnType.getSort() != Type.VOID) {
             mv.visitVarInsn(returnType.getOpcode(ILOAD), result);
             mv.box(returnType);
@@ -461,7 +486,7 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
             mv.visitInsn(ACONST_NULL);
         }
         mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", EXIT,
-                "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/Object;)V", false);
+                "(Ljava/lang/Object;Ljava/lang/String;ILjava/lang/Object;)V", false);
 
         mv.visitLabel(l1);
         Label l7 = new Label();
@@ -473,9 +498,10 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
         mv.visitVarInsn(ALOAD, 0);
         mv.visitLdcInsn(generateMethodId(name, desc));
+        pushMethodSlot(mv, generateMethodId(name, desc));
         mv.visitVarInsn(ALOAD, exception);
         mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", ERROR,
-                "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/Throwable;)V", false);
+                "(Ljava/lang/Object;Ljava/lang/String;ILjava/lang/Throwable;)V", false);
         mv.visitVarInsn(ALOAD, exception);
         mv.visitInsn(ATHROW);
 
@@ -543,6 +569,21 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
      * @return  method ID
      */
     private String generateMethodId(String name, String desc) {
+        String id = computeMethodId(name, desc);
+        if (!m_methods.contains(id)) {
+            m_methods.add(id);
+        }
+        return id;
+    }
+
+    /**
+     * Computes the method id based on the given method name and method descriptor,
+     * without registering it.
+     * @param name : method name
+     * @param desc : method descriptor
+     * @return  method ID
+     */
+    private static String computeMethodId(String name, String desc) {
         StringBuilder id = new StringBuilder(name);
         Type[] args = Type.getArgumentTypes(desc);
         for (Type type : args) {
@@ -559,9 +600,6 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 id.append("$").append(arg.replace('.', '_'));
             }
         }
-        if (!m_methods.contains(id.toString())) {
-            m_methods.add(id.toString());
-        }
         return id.toString();
     }
 
@@ -782,6 +820,39 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitEnd();
     }
 
+    /**
+     * Pushes the slot of the given field on the stack,
+     * <code>-1</code> if the field was not visited by the previous analysis.
+     * @param mv : the method visitor
+     * @param name : field name
+     */
+    private void pushFieldSlot(MethodVisitor mv, String name) {
+        pushSlot(mv, m_fieldSlots.get(name));
+    }
+
+    /**
+     * Pushes the slot of the given method on the stack,
+     * <code>-1</code> if the method was not visited by the previous analysis.
+     * @param mv : the method visitor
+     * @param id : method id
+     */
+    private void pushMethodSlot(MethodVisitor mv, String id) {
+        pushSlot(mv, m_methodSlots.get(id));
+    }
+
+    private static void pushSlot(MethodVisitor mv, Integer index) {
+        int slot = index == null ? -1 : index;
+        if (slot <= 5) {
+            mv.visitInsn(ICONST_0 + slot);
+        } else if (slot <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, slot);
+        } else if (slot <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, slot);
+        } else {
+            mv.visitLdcInsn(slot);
+        }
+    }
+
     /**
      * Create a getter method for an array.
      * @param access
@@ -814,9 +885,10 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
         mv.visitVarInsn(ALOAD, 0);
         mv.visitLdcInsn(name);
+        pushFieldSlot(mv, name);
         mv.visitVarInsn(ALOAD, 1);
         mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", SET,
-                "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/Object;)V", false);
+                "(Ljava/lang/Object;Ljava/lang/String;ILjava/lang/Object;)V", false);
 
         mv.visitInsn(RETURN);
 
@@ -850,8 +922,9 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
         mv.visitVarInsn(ALOAD, 0);
         mv.visitLdcInsn(name);
+        pushFieldSlot(mv, name);
         mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", GET,
-                "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+                "(Ljava/lang/Object;Ljava/lang/String;I)Ljava/lang/Object;", false);
         mv.visitTypeInsn(CHECKCAST, internalType);
         mv.visitInsn(ARETURN);
 
@@ -899,8 +972,9 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                pushFieldSlot(mv, name);
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager",
-                        GET, "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+                        GET, "(Ljava/lang/Object;Ljava/lang/String;I)Ljava/lang/Object;", false);
                 mv.visitVarInsn(ASTORE, 1);
 
                 mv.visitVarInsn(ALOAD, 1);
@@ -932,8 +1006,9 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                pushFieldSlot(mv, name);
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager",
-                        GET, "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+                        GET, "(Ljava/lang/Object;Ljava/lang/String;I)Ljava/lang/Object;", false);
                 mv.visitVarInsn(ASTORE, 1);
 
                 mv.visitVarInsn(ALOAD, 1);
@@ -966,8 +1041,9 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                pushFieldSlot(mv, name);
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager",
-                        GET, "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+                        GET, "(Ljava/lang/Object;Ljava/lang/String;I)Ljava/lang/Object;", false);
                 mv.visitVarInsn(ASTORE, 1);
 
                 mv.visitVarInsn(ALOAD, 1);
@@ -1000,8 +1076,9 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                pushFieldSlot(mv, name);
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager",
-                        GET, "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+                        GET, "(Ljava/lang/Object;Ljava/lang/String;I)Ljava/lang/Object;", false);
                 mv.visitVarInsn(ASTORE, 1);
 
                 mv.visitVarInsn(ALOAD, 1);
@@ -1030,8 +1107,9 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                pushFieldSlot(mv, name);
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager",
-                        GET, "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+                        GET, "(Ljava/lang/Object;Ljava/lang/String;I)Ljava/lang/Object;", false);
                 mv.visitTypeInsn(CHECKCAST, type.getInternalName());
                 mv.visitInsn(ARETURN);
 
@@ -1097,9 +1175,10 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                pushFieldSlot(mv, name);
                 mv.visitVarInsn(ALOAD, 2);
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", SET,
-                        "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/Object;)V", false);
+                        "(Ljava/lang/Object;Ljava/lang/String;ILjava/lang/Object;)V", false);
 
                 Label l3 = new Label();
                 mv.visitLabel(l3);
@@ -1139,9 +1218,10 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                pushFieldSlot(mv, name);
                 mv.visitVarInsn(ALOAD, 3);
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager",
-                        SET, "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/Object;)V", false);
+                        SET, "(Ljava/lang/Object;Ljava/lang/String;ILjava/lang/Object;)V", false);
 
                 l3 = new Label();
                 mv.visitLabel(l3);
@@ -1166,9 +1246,10 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                pushFieldSlot(mv, name);
                 mv.visitVarInsn(ALOAD, 1);
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", SET,
-                        "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/Object;)V", false);
+                        "(Ljava/lang/Object;Ljava/lang/String;ILjava/lang/Object;)V", false);
 
                 mv.visitInsn(RETURN);
                 break;
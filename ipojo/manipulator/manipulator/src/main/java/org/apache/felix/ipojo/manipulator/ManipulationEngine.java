@@ -20,19 +20,45 @@
 package org.apache.felix.ipojo.manipulator;
 
 import org.apache.felix.ipojo.manipulation.Manipulator;
+import org.apache.felix.ipojo.manipulator.cache.CachedManipulation;
+import org.apache.felix.ipojo.manipulator.cache.ManipulationCache;
+import org.apache.felix.ipojo.manipulator.util.Constants;
+import org.apache.felix.ipojo.manipulator.util.Digests;
+import org.apache.felix.ipojo.metadata.Element;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A {@code ManipulationEngine} is responsible to drive the component's
  * classes manipulation.
+ * <p>
+ * The component classes are independent from each other, so they can be manipulated
+ * by several threads (see {@link #setThreads(int)}). The results are always given to the
+ * {@link ManipulationVisitor} in the order of the manipulation units, from the calling thread,
+ * so the visitors do not need to be thread safe.
+ * When a {@link ManipulationCache} is set, the classes whose bytecode and metadata did
+ * not change since they were cached are not manipulated again.
  *
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
 public class ManipulationEngine {
 
+    /**
+     * Version of the cache keys, to change when the cached content changes.
+     */
+    private static final String CACHE_KEY_VERSION = "1";
+
     /**
      * The classloader given to the manipulator to load classes.
      */
@@ -57,6 +83,16 @@ public class ManipulationEngine {
      */
     private ManipulationVisitor m_manipulationVisitor;
 
+    /**
+     * Number of threads manipulating the classes, 1 manipulates them in the calling thread.
+     */
+    private int m_threads = 1;
+
+    /**
+     * Cache of the manipulated classes, {@literal null} if the classes are always manipulated.
+     */
+    private ManipulationCache m_cache;
+
     public ManipulationEngine(ClassLoader classLoader) {
         m_classLoader = classLoader;
     }
@@ -89,6 +125,22 @@ public class ManipulationEngine {
         m_store = store;
     }
 
+    /**
+     * Sets the number of threads manipulating the classes. The class loader must support
+     * concurrent class loading, as the manipulator loads classes to compute the stack map frames.
+     * @param threads the number of threads, 1 (the default) manipulates the classes in the calling thread.
+     */
+    public void setThreads(int threads) {
+        m_threads = threads;
+    }
+
+    /**
+     * @param cache the cache of the manipulated classes, {@literal null} to always manipulate the classes.
+     */
+    public void setManipulationCache(ManipulationCache cache) {
+        m_cache = cache;
+    }
+
     /**
      * Manipulates classes of all the given component's.
      */
@@ -97,89 +149,230 @@ public class ManipulationEngine {
         // Iterates over the list of discovered components
         // Note that this list includes components from metadata.xml AND from annotations
 
-        for (ManipulationUnit info : m_manipulationUnits) {
-
-            byte[] bytecode;
-            try {
-                bytecode = m_store.read(info.getResourcePath());
-            } catch (IOException e) {
-                m_reporter.error("Cannot find bytecode for class '" + info.getClassName() + "': no bytecode found.");
-                return;
+        int threads = Math.min(m_threads, m_manipulationUnits.size());
+        if (threads <= 1) {
+            for (ManipulationUnit info : m_manipulationUnits) {
+                if (!visit(info, manipulate(info))) {
+                    return;
+                }
             }
+            return;
+        }
 
-            // Is the visitor interested in this component ?
-            ManipulationResultVisitor result = m_manipulationVisitor.visitManipulationResult(info.getComponentMetadata());
-
-            if (result != null) {
-                // Should always be the case
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ManipulatorThreadFactory());
+        try {
+            List<Future<Manipulation>> manipulations = new ArrayList<Future<Manipulation>>();
+            for (final ManipulationUnit info : m_manipulationUnits) {
+                manipulations.add(executor.submit(new Callable<Manipulation>() {
+                    public Manipulation call() {
+                        return manipulate(info);
+                    }
+                }));
+            }
 
-                // Manipulation preparation
-                Manipulator manipulator = new Manipulator(m_classLoader);
+            // Results are visited in order, as soon as they are available
+            for (int i = 0; i < m_manipulationUnits.size(); i++) {
+                ManipulationUnit info = m_manipulationUnits.get(i);
+                Manipulation manipulation;
                 try {
-                    manipulator.prepare(bytecode);
-                } catch (IOException e) {
-                    m_reporter.error("Cannot analyze the class " + info.getClassName() + " : " + e.getMessage());
+                    manipulation = manipulations.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    m_reporter.error("Interrupted while manipulating the class " + info.getClassName());
                     return;
-                }
-
-                // Inner class preparation
-                for (String inner : manipulator.getInnerClasses()) {
-                    // Get the bytecode and start manipulation
-                    String resourcePath = inner + ".class";
-                    String outerClassInternalName = info.getClassName().replace('.', '/');
-                    byte[] innerClassBytecode;
-                    try {
-                        innerClassBytecode = m_store.read(resourcePath);
-                        manipulator.prepareInnerClass(inner, innerClassBytecode);
-                    } catch (IOException e) {
-                        m_reporter.error("Cannot find or analyze inner class '" + resourcePath + "'");
-                        return;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
                     }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    m_reporter.error("Cannot manipulate the class " + info.getClassName() + " : " + cause);
+                    return;
                 }
-
-                // Now manipulate the classes.
-                try {
-                    byte[] out = manipulator.manipulate(bytecode);
-                    // Call the visitor
-                    result.visitManipulatedResource(info.getResourcePath(), out);
-                } catch (IOException e) {
-                    m_reporter.error("Cannot manipulate the class " + info.getClassName() + " : " + e.getMessage());
+                if (!visit(info, manipulation)) {
                     return;
                 }
+            }
+        } finally {
+            // Stops the pending manipulations after an error
+            executor.shutdownNow();
+        }
+    }
 
-                // Visit inner classes
-                for (String inner : manipulator.getInnerClasses()) {
-                    // Get the bytecode and start manipulation
-                    String resourcePath = inner + ".class";
-                    String outerClassInternalName = info.getClassName().replace('.', '/');
-                    byte[] innerClassBytecode;
-                    try {
-                        innerClassBytecode = m_store.read(resourcePath);
-                    } catch (IOException e) {
-                        m_reporter.error("Cannot find inner class '" + resourcePath + "'");
-                        return;
-                    }
+    /**
+     * Gives the result of a manipulation to the visitor.
+     * @param info the manipulated component
+     * @param manipulation the manipulation result
+     * @return {@literal false} if the manipulation failed and the generation must stop
+     */
+    private boolean visit(ManipulationUnit info, Manipulation manipulation) {
+        if (manipulation.m_error != null) {
+            m_reporter.error(manipulation.m_error);
+            return false;
+        }
 
-                    // Manipulate inner class
-                    // Notice that (for performance reason) re-use the class version information
-                    // discovered in the main class instead of re-parsing the inner class to find
-                    // its own class version
-                    try {
-                        byte[] manipulated = manipulator.manipulateInnerClass(inner, innerClassBytecode);
-                        // Propagate manipulated resource
-                        result.visitManipulatedResource(resourcePath, manipulated);
-                    } catch (IOException e) {
-                        m_reporter.error("Cannot manipulate inner class '" + resourcePath + "'");
-                        return;
-                    }
-                }
+        // Is the visitor interested in this component ?
+        ManipulationResultVisitor result = m_manipulationVisitor.visitManipulationResult(info.getComponentMetadata());
 
-                // Compute manipulation metadata
-                result.visitClassStructure(manipulator.getManipulationMetadata());
+        if (result != null) {
+            // Should always be the case
 
-                // All resources have been manipulated for this component
-                result.visitEnd();
+            // The component class first, then its inner classes
+            for (Map.Entry<String, byte[]> resource : manipulation.m_resources.entrySet()) {
+                result.visitManipulatedResource(resource.getKey(), resource.getValue());
             }
+
+            // Manipulation metadata
+            result.visitClassStructure(manipulation.m_classStructure);
+
+            // All resources have been manipulated for this component
+            result.visitEnd();
+        }
+        return true;
+    }
+
+    /**
+     * Manipulates a component class and its inner classes, or gets them from the cache.
+     * This method does not call the reporter nor the visitor, it may be called concurrently.
+     * @param info the component to manipulate
+     * @return the manipulation result
+     */
+    private Manipulation manipulate(ManipulationUnit info) {
+        byte[] bytecode;
+        try {
+            bytecode = read(info.getResourcePath());
+        } catch (IOException e) {
+            return new Manipulation("Cannot find bytecode for class '" + info.getClassName() + "': no bytecode found.");
+        }
+
+        String key = null;
+        if (m_cache != null) {
+            key = Digests.sha1(
+                    Digests.utf8(CACHE_KEY_VERSION),
+                    Digests.utf8(String.valueOf(Constants.getVersion())),
+                    Digests.utf8(info.getComponentMetadata().toXMLString()),
+                    bytecode);
+            CachedManipulation cached = m_cache.get(key);
+            if (cached != null && isUpToDate(cached)) {
+                return new Manipulation(cached.getResources(), cached.getClassStructure());
+            }
+        }
+
+        // Manipulation preparation
+        Manipulator manipulator = new Manipulator(m_classLoader);
+        try {
+            manipulator.prepare(bytecode);
+        } catch (IOException e) {
+            return new Manipulation("Cannot analyze the class " + info.getClassName() + " : " + e.getMessage());
+        }
+
+        // Inner class preparation
+        Map<String, byte[]> innerClasses = new LinkedHashMap<String, byte[]>();
+        for (String inner : manipulator.getInnerClasses()) {
+            // Get the bytecode and start manipulation
+            String resourcePath = inner + ".class";
+            try {
+                byte[] innerClassBytecode = read(resourcePath);
+                manipulator.prepareInnerClass(inner, innerClassBytecode);
+                innerClasses.put(inner, innerClassBytecode);
+            } catch (IOException e) {
+                return new Manipulation("Cannot find or analyze inner class '" + resourcePath + "'");
+            }
+        }
+
+        // Now manipulate the classes.
+        Map<String, byte[]> resources = new LinkedHashMap<String, byte[]>();
+        try {
+            resources.put(info.getResourcePath(), manipulator.manipulate(bytecode));
+        } catch (IOException e) {
+            return new Manipulation("Cannot manipulate the class " + info.getClassName() + " : " + e.getMessage());
+        }
+
+        // Manipulate inner classes
+        // Notice that (for performance reason) re-use the class version information
+        // discovered in the main class instead of re-parsing the inner class to find
+        // its own class version
+        Map<String, String> innerClassDigests = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, byte[]> inner : innerClasses.entrySet()) {
+            String resourcePath = inner.getKey() + ".class";
+            try {
+                resources.put(resourcePath, manipulator.manipulateInnerClass(inner.getKey(), inner.getValue()));
+            } catch (IOException e) {
+                return new Manipulation("Cannot manipulate inner class '" + resourcePath + "'");
+            }
+            if (m_cache != null) {
+                innerClassDigests.put(resourcePath, Digests.sha1(inner.getValue()));
+            }
+        }
+
+        // Compute manipulation metadata
+        Element classStructure = manipulator.getManipulationMetadata();
+
+        if (m_cache != null) {
+            m_cache.put(key, new CachedManipulation(resources, innerClassDigests, classStructure));
+        }
+        return new Manipulation(resources, classStructure);
+    }
+
+    /**
+     * Checks the inner classes of a cached manipulation did not change.
+     * The cache key only covers the component class.
+     */
+    private boolean isUpToDate(CachedManipulation cached) {
+        for (Map.Entry<String, String> inner : cached.getInnerClassDigests().entrySet()) {
+            try {
+                if (!inner.getValue().equals(Digests.sha1(read(inner.getKey())))) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a resource, the stores are not required to be thread safe.
+     */
+    private byte[] read(String path) throws IOException {
+        synchronized (m_store) {
+            return m_store.read(path);
+        }
+    }
+
+    /**
+     * The manipulated resources of a component, or the error that stopped its manipulation.
+     */
+    private static final class Manipulation {
+        private final Map<String, byte[]> m_resources;
+        private final Element m_classStructure;
+        private final String m_error;
+
+        Manipulation(Map<String, byte[]> resources, Element classStructure) {
+            m_resources = resources;
+            m_classStructure = classStructure;
+            m_error = null;
+        }
+
+        Manipulation(String error) {
+            m_resources = null;
+            m_classStructure = null;
+            m_error = error;
+        }
+    }
+
+    /**
+     * Manipulation threads are daemons, so an abandoned build does not hang the JVM.
+     */
+    private static final class ManipulatorThreadFactory implements ThreadFactory {
+        private final AtomicInteger m_count = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "iPOJO Manipulator #" + m_count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
     }
 }
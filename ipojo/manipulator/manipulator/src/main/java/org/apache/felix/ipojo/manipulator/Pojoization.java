@@ -19,6 +19,7 @@
 
 package org.apache.felix.ipojo.manipulator;
 
+import org.apache.felix.ipojo.manipulator.cache.ManipulationCache;
 import org.apache.felix.ipojo.manipulator.manifest.FileManifestProvider;
 import org.apache.felix.ipojo.manipulator.metadata.*;
 import org.apache.felix.ipojo.manipulator.render.MetadataRenderer;
@@ -70,6 +71,16 @@ public class Pojoization {
 
     private final ModuleProvider m_moduleProvider;
 
+    /**
+     * Number of threads manipulating the component classes.
+     */
+    private int m_threads = 1;
+
+    /**
+     * Cache of the manipulated classes, may be {@literal null}.
+     */
+    private ManipulationCache m_cache;
+
     public Pojoization() {
         this(new SystemReporter());
     }
@@ -103,6 +114,23 @@ public class Pojoization {
         m_useLocalXSD = true;
     }
 
+    /**
+     * Sets the number of threads manipulating the component classes.
+     * @param threads the number of threads, 1 (the default) manipulates the classes in the calling thread.
+     * @see ManipulationEngine#setThreads(int)
+     */
+    public void setThreads(int threads) {
+        m_threads = threads;
+    }
+
+    /**
+     * Sets the cache avoiding the manipulation of the classes that did not change since the previous build.
+     * @param cache the cache, {@literal null} to always manipulate the classes.
+     */
+    public void setManipulationCache(ManipulationCache cache) {
+        m_cache = cache;
+    }
+
     /**
      * @return all the errors (fatal) reported by the manipulation process.
      */
@@ -345,6 +373,8 @@ public class Pojoization {
         engine.setResourceStore(store);
         engine.setReporter(m_reporter);
         engine.setManipulationVisitor(visitor);
+        engine.setThreads(m_threads);
+        engine.setManipulationCache(m_cache);
 
         try {
 
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.manipulator.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.felix.ipojo.metadata.Element;
+
+/**
+ * The result of the manipulation of a component class, as kept by a {@link ManipulationCache}.
+ * <p>
+ * The manipulated resources are the component class followed by its inner classes.
+ * The cache key only covers the component class, so the digests of the original inner
+ * classes are kept to check they did not change either.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class CachedManipulation {
+
+    /**
+     * Manipulated bytecode, by resource path.
+     */
+    private final Map<String, byte[]> m_resources;
+
+    /**
+     * Digests of the original inner classes bytecode, by resource path.
+     */
+    private final Map<String, String> m_innerClassDigests;
+
+    /**
+     * The class structure computed by the manipulator.
+     */
+    private final Element m_classStructure;
+
+    public CachedManipulation(Map<String, byte[]> resources, Map<String, String> innerClassDigests, Element classStructure) {
+        m_resources = Collections.unmodifiableMap(new LinkedHashMap<String, byte[]>(resources));
+        m_innerClassDigests = Collections.unmodifiableMap(new LinkedHashMap<String, String>(innerClassDigests));
+        m_classStructure = classStructure;
+    }
+
+    /**
+     * @return the manipulated bytecode by resource path, the component class first
+     */
+    public Map<String, byte[]> getResources() {
+        return m_resources;
+    }
+
+    /**
+     * @return the digests of the original inner classes bytecode by resource path
+     */
+    public Map<String, String> getInnerClassDigests() {
+        return m_innerClassDigests;
+    }
+
+    /**
+     * @return the class structure computed by the manipulator
+     */
+    public Element getClassStructure() {
+        return m_classStructure;
+    }
+}
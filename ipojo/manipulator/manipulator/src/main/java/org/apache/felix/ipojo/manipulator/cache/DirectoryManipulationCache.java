@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.manipulator.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.felix.ipojo.manipulator.util.Digests;
+import org.apache.felix.ipojo.manipulator.util.Streams;
+import org.apache.felix.ipojo.metadata.Attribute;
+import org.apache.felix.ipojo.metadata.Element;
+
+/**
+ * A {@link ManipulationCache} keeping each manipulation result in its own file of a directory,
+ * so it survives between builds.
+ * <p>
+ * Files are written to a temporary file renamed once complete, so concurrent builds
+ * sharing the directory never read a partial entry. Unreadable entries are misses.
+ * The directory is never pruned: entries of classes that changed stay until the directory
+ * is deleted, usually when the build directory is cleaned.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class DirectoryManipulationCache implements ManipulationCache {
+
+    /**
+     * Identifies the cache files, the last byte is the format version.
+     */
+    private static final int MAGIC = 0x69504a01;
+
+    private static final String SUFFIX = ".manipulation";
+
+    /**
+     * The cache directory.
+     */
+    private final File m_directory;
+
+    /**
+     * Mixed into the keys, to separate the entries computed in different contexts.
+     */
+    private final String m_discriminator;
+
+    public DirectoryManipulationCache(File directory) {
+        this(directory, null);
+    }
+
+    /**
+     * @param directory the cache directory, created when needed
+     * @param discriminator mixed into the keys to separate the entries computed in different
+     *                      contexts, typically a fingerprint of the classpath used to compute the
+     *                      stack map frames of the manipulated classes. May be {@literal null}.
+     */
+    public DirectoryManipulationCache(File directory, String discriminator) {
+        m_directory = directory;
+        m_discriminator = discriminator;
+    }
+
+    public CachedManipulation get(String key) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            // No length read from the entry can exceed the file size
+            long size = file.length();
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            Map<String, byte[]> resources = new LinkedHashMap<String, byte[]>();
+            int count = readLength(in, size);
+            for (int i = 0; i < count; i++) {
+                String path = readString(in, size);
+                byte[] bytecode = new byte[readLength(in, size)];
+                in.readFully(bytecode);
+                resources.put(path, bytecode);
+            }
+            Map<String, String> digests = new LinkedHashMap<String, String>();
+            count = readLength(in, size);
+            for (int i = 0; i < count; i++) {
+                digests.put(readString(in, size), readString(in, size));
+            }
+            return new CachedManipulation(resources, digests, readElement(in, size));
+        } catch (IOException e) {
+            // Corrupted or truncated entry
+            return null;
+        } finally {
+            Streams.close(in);
+        }
+    }
+
+    public void put(String key, CachedManipulation manipulation) {
+        File file = getFile(key);
+        File temporary = null;
+        DataOutputStream out = null;
+        try {
+            if (!m_directory.isDirectory() && !m_directory.mkdirs() && !m_directory.isDirectory()) {
+                return;
+            }
+            temporary = File.createTempFile("ipojo", ".tmp", m_directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            out.writeInt(MAGIC);
+            out.writeInt(manipulation.getResources().size());
+            for (Map.Entry<String, byte[]> entry : manipulation.getResources().entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+            out.writeInt(manipulation.getInnerClassDigests().size());
+            for (Map.Entry<String, String> entry : manipulation.getInnerClassDigests().entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+            writeElement(out, manipulation.getClassStructure());
+            out.close();
+            out = null;
+            // On some platforms, a file cannot be renamed over an existing one
+            if (!temporary.renameTo(file) && (!file.delete() || !temporary.renameTo(file))) {
+                return;
+            }
+            temporary = null;
+        } catch (IOException e) {
+            // The entry is not stored, the class will be manipulated again next time
+        } finally {
+            Streams.close(out);
+            if (temporary != null) {
+                temporary.delete();
+            }
+        }
+    }
+
+    private File getFile(String key) {
+        String name = (m_discriminator == null) ? key : Digests.sha1(m_discriminator, key);
+        return new File(m_directory, name + SUFFIX);
+    }
+
+    private static void writeElement(DataOutputStream out, Element element) throws IOException {
+        writeString(out, element.getName());
+        writeString(out, element.getNameSpace());
+        Attribute[] attributes = element.getAttributes();
+        out.writeInt(attributes.length);
+        for (Attribute attribute : attributes) {
+            writeString(out, attribute.getName());
+            writeString(out, attribute.getNameSpace());
+            writeString(out, attribute.getValue());
+        }
+        Element[] elements = element.getElements();
+        out.writeInt(elements.length);
+        for (Element child : elements) {
+            writeElement(out, child);
+        }
+    }
+
+    private static Element readElement(DataInputStream in, long size) throws IOException {
+        Element element = new Element(readString(in, size), readString(in, size));
+        int count = readLength(in, size);
+        for (int i = 0; i < count; i++) {
+            element.addAttribute(new Attribute(readString(in, size), readString(in, size), readString(in, size)));
+        }
+        count = readLength(in, size);
+        for (int i = 0; i < count; i++) {
+            element.addElement(readElement(in, size));
+        }
+        return element;
+    }
+
+    /**
+     * Strings are not written with {@link DataOutputStream#writeUTF(String)},
+     * limited to 64k and not supporting {@literal null}.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = Digests.utf8(value);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in, long size) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[checkLength(length, size)];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Reads a length or a count, checking it is consistent with the size of the entry.
+     */
+    private static int readLength(DataInputStream in, long size) throws IOException {
+        return checkLength(in.readInt(), size);
+    }
+
+    private static int checkLength(int length, long size) throws IOException {
+        if (length < 0 || length > size) {
+            throw new IOException("Invalid length " + length + " in a cache entry of " + size + " bytes");
+        }
+        return length;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.manipulator.cache;
+
+/**
+ * A {@code ManipulationCache} keeps the result of the manipulation of the component
+ * classes, so the classes that did not change since the previous build are not
+ * manipulated again.
+ * <p>
+ * The keys are computed by the {@link org.apache.felix.ipojo.manipulator.ManipulationEngine}
+ * from the manipulator version, the component metadata and the original bytecode of the class.
+ * They do not cover the other classes of the bundle, which are loaded to compute the stack map
+ * frames of the manipulated class: a cache must be dropped when the class hierarchy changes.
+ * Implementations must be thread safe as the engine may manipulate several classes concurrently.
+ * A cache that cannot be read or written must behave as an empty cache and never fail the manipulation.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public interface ManipulationCache {
+
+    /**
+     * @param key the manipulation key
+     * @return the cached manipulation, {@literal null} if there is none
+     */
+    CachedManipulation get(String key);
+
+    /**
+     * Stores a manipulation result.
+     * @param key the manipulation key
+     * @param manipulation the manipulation result
+     */
+    void put(String key, CachedManipulation manipulation);
+}
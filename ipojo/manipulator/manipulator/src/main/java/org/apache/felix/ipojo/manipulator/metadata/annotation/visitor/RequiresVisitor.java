@@ -96,6 +96,11 @@ public class RequiresVisitor extends AnnotationVisitor {
      */
     private String m_proxy;
 
+    /**
+     * Snapshot attribute.
+     */
+    private String m_snapshot;
+
     /**
      * Timeout attribute.
      */
@@ -171,6 +176,9 @@ public class RequiresVisitor extends AnnotationVisitor {
         if (name.equals("proxy")) {
             m_proxy = value.toString();
         }
+        if (name.equals("snapshot")) {
+            m_snapshot = value.toString();
+        }
         if (name.equals("timeout")) {
             m_timeout = value.toString();
         }
@@ -234,6 +242,9 @@ public class RequiresVisitor extends AnnotationVisitor {
         if (m_proxy != null) {
             requires.addAttribute(new Attribute("proxy", m_proxy));
         }
+        if (m_snapshot != null) {
+            requires.addAttribute(new Attribute("snapshot", m_snapshot));
+        }
         if (m_timeout != null) {
             requires.addAttribute(new Attribute("timeout", m_timeout));
         }
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.manipulator.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * {@code Digests} is a utility class computing the SHA-1 digests
+ * used to identify the manipulated classes.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class Digests {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Utility class: no public constructor
+     */
+    private Digests() {}
+
+    /**
+     * Computes the digest of the given chunks. Each chunk is prefixed by its length,
+     * so different splits of the same bytes have different digests.
+     * @param chunks the content to digest
+     * @return the hexadecimal SHA-1 digest
+     */
+    public static String sha1(byte[]... chunks) {
+        MessageDigest digest = newDigest();
+        for (byte[] chunk : chunks) {
+            int length = chunk.length;
+            digest.update(new byte[] {(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+            digest.update(chunk);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the digest of the given strings, encoded in UTF-8.
+     * @param parts the strings to digest, {@literal null} parts are digested as empty strings
+     * @return the hexadecimal SHA-1 digest
+     */
+    public static String sha1(String... parts) {
+        byte[][] chunks = new byte[parts.length][];
+        for (int i = 0; i < parts.length; i++) {
+            chunks[i] = utf8(parts[i] == null ? "" : parts[i]);
+        }
+        return sha1(chunks);
+    }
+
+    /**
+     * Computes a fingerprint of the given files. Archives are identified from their paths, sizes
+     * and last modification dates, without reading them. The files of the directories are digested:
+     * an output directory keeps its size and last modification date when the classes it contains change.
+     * @param files the files and directories
+     * @return the hexadecimal SHA-1 digest
+     */
+    public static String fingerprint(Collection<File> files) {
+        StringBuilder builder = new StringBuilder();
+        for (File file : files) {
+            builder.append(file.getAbsolutePath());
+            if (file.isDirectory()) {
+                appendDirectory(builder, file, "");
+            } else {
+                builder.append('|').append(file.length())
+                        .append('|').append(file.lastModified());
+            }
+            builder.append('\n');
+        }
+        return sha1(builder.toString());
+    }
+
+    private static void appendDirectory(StringBuilder builder, File directory, String prefix) {
+        String[] names = directory.list();
+        if (names == null) {
+            return;
+        }
+        Arrays.sort(names);
+        for (String name : names) {
+            File file = new File(directory, name);
+            String path = prefix + name;
+            if (file.isDirectory()) {
+                appendDirectory(builder, file, path + "/");
+            } else {
+                builder.append('|').append(path).append('=');
+                try {
+                    builder.append(sha1(Streams.readBytes(new FileInputStream(file))));
+                } catch (IOException e) {
+                    // Fall back on the last modification date
+                    builder.append('?').append(file.lastModified());
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes the given string in UTF-8.
+     * @param value the string
+     * @return the UTF-8 bytes
+     */
+    public static byte[] utf8(String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 is available on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -36,6 +36,26 @@ public class InstanceManager {
         return null;
     }
 
+    public Object onGet(Object pojo, String fieldName, int slot) {
+        return null;
+    }
+
+    public void onSet(Object pojo, String fieldName, int slot, Object value) {
+
+    }
+
+    public void onEntry(Object pojo, String methodId, int slot, Object[] args) {
+
+    }
+
+    public void onExit(Object pojo, String methodId, int slot, Object result) {
+
+    }
+
+    public void onError(Object pojo, String methodId, int slot, Throwable error) {
+
+    }
+
     public void onEntry(Object pojo, String methodId, Object[] args) {
 
     }
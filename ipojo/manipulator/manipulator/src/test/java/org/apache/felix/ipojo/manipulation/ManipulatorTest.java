@@ -32,6 +32,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.HashSet;
 
 public class ManipulatorTest extends TestCase {
 
@@ -304,6 +305,62 @@ public class ManipulatorTest extends TestCase {
 
     }
 
+    public void testFieldAccessesUseSlots() throws Exception {
+        Manipulator manipulator = new Manipulator(this.getClass().getClassLoader());
+        byte[] origin = getBytesFromFile(new File("target/test-classes/test/PojoWithFields.class"));
+        manipulator.prepare(origin);
+        byte[] clazz = manipulator.manipulate(origin);
+
+        ManipulatedClassLoader classloader = new ManipulatedClassLoader("test.PojoWithFields", clazz);
+        Class cl = classloader.findClass("test.PojoWithFields");
+        Assert.assertNotNull(cl);
+
+        // Fields are monitored, except m_alpha
+        InstanceManager im = (InstanceManager) Mockito.mock(InstanceManager.class);
+        Mockito.when(im.getRegistredFields()).thenReturn(new HashSet<String>(Arrays.asList("m_beta", "m_gamma")));
+        // The slots follow the field name order
+        Mockito.when(im.onGet(Mockito.anyObject(), Mockito.eq("m_gamma"), Mockito.eq(2))).thenReturn("injected");
+
+        Constructor cst = cl.getDeclaredConstructor(new Class[]{InstanceManager.class});
+        cst.setAccessible(true);
+        Object pojo = cst.newInstance(new Object[]{im});
+
+        Assert.assertEquals("injected", cl.getMethod("getGamma", new Class[0]).invoke(pojo, new Object[0]));
+        cl.getMethod("setBeta", new Class[]{Integer.TYPE}).invoke(pojo, new Object[]{3});
+        Mockito.verify(im).onSet(pojo, "m_beta", 1, 3);
+
+        Assert.assertNull(cl.getMethod("getAlpha", new Class[0]).invoke(pojo, new Object[0]));
+        Mockito.verify(im, Mockito.never()).onGet(pojo, "m_alpha", 0);
+    }
+
+    public void testMethodInterceptionUsesSlots() throws Exception {
+        Manipulator manipulator = new Manipulator(this.getClass().getClassLoader());
+        byte[] origin = getBytesFromFile(new File("target/test-classes/test/PojoWithFields.class"));
+        manipulator.prepare(origin);
+        byte[] clazz = manipulator.manipulate(origin);
+
+        ManipulatedClassLoader classloader = new ManipulatedClassLoader("test.PojoWithFields", clazz);
+        Class cl = classloader.findClass("test.PojoWithFields");
+        Assert.assertNotNull(cl);
+
+        // Only getGamma is intercepted
+        InstanceManager im = (InstanceManager) Mockito.mock(InstanceManager.class);
+        Mockito.when(im.getRegistredMethods()).thenReturn(new HashSet<String>(Arrays.asList("getGamma")));
+
+        Constructor cst = cl.getDeclaredConstructor(new Class[]{InstanceManager.class});
+        cst.setAccessible(true);
+        Object pojo = cst.newInstance(new Object[]{im});
+
+        // The slots follow the method id order: $init, getAlpha, getGamma, setBeta$int
+        Assert.assertNull(cl.getMethod("getGamma", new Class[0]).invoke(pojo, new Object[0]));
+        Mockito.verify(im).onEntry(pojo, "getGamma", 2, new Object[0]);
+        Mockito.verify(im).onExit(pojo, "getGamma", 2, null);
+
+        // Methods without interceptors don't call the instance manager
+        cl.getMethod("setBeta", new Class[]{Integer.TYPE}).invoke(pojo, new Object[]{3});
+        Mockito.verify(im, Mockito.never()).onEntry(pojo, "setBeta$int", 3, new Object[]{3});
+    }
+
     public void testManipulatingWithConstructorModification() throws Exception {
         Manipulator manipulator = new Manipulator(this.getClass().getClassLoader());
         byte[] origin = getBytesFromFile(new File("target/test-classes/test/Child.class"));
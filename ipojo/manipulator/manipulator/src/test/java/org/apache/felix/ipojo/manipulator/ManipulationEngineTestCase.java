@@ -21,11 +21,18 @@ package org.apache.felix.ipojo.manipulator;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import junit.framework.TestCase;
+import org.apache.felix.ipojo.manipulator.cache.CachedManipulation;
+import org.apache.felix.ipojo.manipulator.cache.ManipulationCache;
 import org.apache.felix.ipojo.manipulator.util.Streams;
 import org.apache.felix.ipojo.manipulator.util.Strings;
+import org.apache.felix.ipojo.metadata.Attribute;
 import org.apache.felix.ipojo.metadata.Element;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -35,7 +42,9 @@ import test.PojoWithInner;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -105,6 +114,115 @@ public class ManipulationEngineTestCase extends TestCase {
 
     }
 
+    public void testParallelManipulationVisitsTheUnitsInOrder() throws Exception {
+
+        String path = Strings.asResourcePath(ClusterDaemon.class.getName());
+        String innerPath = Strings.asResourcePath(PojoWithInner.MyInner.class.getName());
+        String outerPath = Strings.asResourcePath(PojoWithInner.class.getName());
+        when(store.read(path)).thenReturn(from(ClusterDaemon.class));
+        when(store.read(innerPath)).thenReturn(from(PojoWithInner.MyInner.class));
+        when(store.read(outerPath)).thenReturn(from(PojoWithInner.class));
+        when(visitor.visitManipulationResult(any(Element.class))).thenReturn(result);
+
+        Element first = new Element("component", "");
+        Element second = new Element("component", "");
+        engine.addManipulationUnit(new ManipulationUnit(path, first));
+        engine.addManipulationUnit(new ManipulationUnit(outerPath, second));
+        engine.setThreads(4);
+
+        engine.generate();
+
+        InOrder order = inOrder(visitor, result);
+        order.verify(visitor).visitManipulationResult(first);
+        order.verify(result).visitManipulatedResource(eq(path), any(byte[].class));
+        order.verify(result).visitClassStructure(any(Element.class));
+        order.verify(result).visitEnd();
+        order.verify(visitor).visitManipulationResult(second);
+        order.verify(result).visitManipulatedResource(eq(outerPath), any(byte[].class));
+        order.verify(result).visitManipulatedResource(eq(innerPath), any(byte[].class));
+        order.verify(result).visitClassStructure(any(Element.class));
+        order.verify(result).visitEnd();
+
+    }
+
+    public void testParallelManipulationStopsAtTheFirstError() throws Exception {
+
+        String path = Strings.asResourcePath(ClusterDaemon.class.getName());
+        when(store.read(path)).thenReturn(from(ClusterDaemon.class));
+        when(store.read("missing/Component.class")).thenThrow(new IOException());
+        when(visitor.visitManipulationResult(any(Element.class))).thenReturn(result);
+
+        engine.addManipulationUnit(new ManipulationUnit("missing/Component.class", new Element("component", "")));
+        engine.addManipulationUnit(new ManipulationUnit(path, new Element("component", "")));
+        engine.setThreads(2);
+
+        engine.generate();
+
+        verify(reporter).error(anyString());
+        verify(visitor, never()).visitManipulationResult(any(Element.class));
+
+    }
+
+    public void testCachedManipulationIsReused() throws Exception {
+
+        MemoryCache cache = new MemoryCache();
+        engine.setManipulationCache(cache);
+
+        String innerPath = Strings.asResourcePath(PojoWithInner.MyInner.class.getName());
+        when(store.read(innerPath)).thenReturn(from(PojoWithInner.MyInner.class));
+        String path = Strings.asResourcePath(PojoWithInner.class.getName());
+        when(store.read(path)).thenReturn(from(PojoWithInner.class));
+        when(visitor.visitManipulationResult(any(Element.class))).thenReturn(result);
+
+        Element metadata = new Element("component", "");
+        engine.addManipulationUnit(new ManipulationUnit(path, metadata));
+        engine.generate();
+
+        assertEquals(1, cache.m_entries.size());
+        CachedManipulation cached = cache.m_entries.values().iterator().next();
+        assertEquals(2, cached.getResources().size());
+        assertTrue(cached.getInnerClassDigests().containsKey(innerPath));
+
+        // Same bytecode and metadata: the cached bytecode is visited
+        ManipulationResultVisitor second = mock(ManipulationResultVisitor.class);
+        when(visitor.visitManipulationResult(any(Element.class))).thenReturn(second);
+        engine.generate();
+
+        verify(second).visitManipulatedResource(path, cached.getResources().get(path));
+        verify(second).visitManipulatedResource(innerPath, cached.getResources().get(innerPath));
+        verify(second).visitClassStructure(cached.getClassStructure());
+        verify(second).visitEnd();
+        assertEquals(1, cache.m_puts);
+
+        // Other metadata: manipulated again
+        metadata.addAttribute(new Attribute("name", "other"));
+        engine.generate();
+        assertEquals(2, cache.m_puts);
+
+        // Changed inner class: manipulated again
+        for (Map.Entry<String, CachedManipulation> entry : cache.m_entries.entrySet()) {
+            entry.setValue(new CachedManipulation(entry.getValue().getResources(),
+                    Collections.singletonMap(innerPath, "stale"), entry.getValue().getClassStructure()));
+        }
+        engine.generate();
+        assertEquals(3, cache.m_puts);
+
+    }
+
+    private static class MemoryCache implements ManipulationCache {
+        private final Map<String, CachedManipulation> m_entries = new HashMap<String, CachedManipulation>();
+        private int m_puts;
+
+        public CachedManipulation get(String key) {
+            return m_entries.get(key);
+        }
+
+        public void put(String key, CachedManipulation manipulation) {
+            m_entries.put(key, manipulation);
+            m_puts++;
+        }
+    }
+
     private byte[] from(Class<?> type) throws IOException {
         ClassLoader loader = type.getClassLoader();
         InputStream is = loader.getResourceAsStream(Strings.asResourcePath(type.getName()));
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.manipulator.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.apache.felix.ipojo.metadata.Attribute;
+import org.apache.felix.ipojo.metadata.Element;
+
+public class DirectoryManipulationCacheTestCase extends TestCase {
+
+    private File directory;
+
+    @Override
+    public void setUp() throws Exception {
+        directory = new File("target/cache-" + getName());
+        delete(directory);
+    }
+
+    public void testEntriesAreRead() throws Exception {
+        DirectoryManipulationCache cache = new DirectoryManipulationCache(directory);
+        assertNull(cache.get("key"));
+
+        Element structure = new Element("manipulation", null);
+        structure.addAttribute(new Attribute("className", "test.Pojo"));
+        Element field = new Element("field", null);
+        field.addAttribute(new Attribute("name", "m_foo"));
+        field.addAttribute(new Attribute("type", "java.lang.String"));
+        structure.addElement(field);
+        structure.addElement(new Element("method", "org.apache.felix.ipojo"));
+
+        Map<String, byte[]> resources = new LinkedHashMap<String, byte[]>();
+        resources.put("test/Pojo.class", new byte[] {1, 2, 3});
+        resources.put("test/Pojo$Inner.class", new byte[] {4, 5});
+        cache.put("key", new CachedManipulation(resources,
+                Collections.singletonMap("test/Pojo$Inner.class", "digest"), structure));
+
+        CachedManipulation cached = new DirectoryManipulationCache(directory).get("key");
+        assertNotNull(cached);
+        assertEquals(Arrays.asList("test/Pojo.class", "test/Pojo$Inner.class"),
+                Arrays.asList(cached.getResources().keySet().toArray()));
+        assertTrue(Arrays.equals(new byte[] {1, 2, 3}, cached.getResources().get("test/Pojo.class")));
+        assertTrue(Arrays.equals(new byte[] {4, 5}, cached.getResources().get("test/Pojo$Inner.class")));
+        assertEquals("digest", cached.getInnerClassDigests().get("test/Pojo$Inner.class"));
+        assertEquals(structure.toXMLString(), cached.getClassStructure().toXMLString());
+    }
+
+    public void testDiscriminatorSeparatesTheEntries() throws Exception {
+        CachedManipulation manipulation = new CachedManipulation(Collections.<String, byte[]>emptyMap(),
+                Collections.<String, String>emptyMap(), new Element("manipulation", null));
+        new DirectoryManipulationCache(directory, "classpath-1").put("key", manipulation);
+
+        assertNotNull(new DirectoryManipulationCache(directory, "classpath-1").get("key"));
+        assertNull(new DirectoryManipulationCache(directory, "classpath-2").get("key"));
+        assertNull(new DirectoryManipulationCache(directory).get("key"));
+    }
+
+    public void testCorruptedEntryIsAMiss() throws Exception {
+        DirectoryManipulationCache cache = new DirectoryManipulationCache(directory);
+        cache.put("key", new CachedManipulation(Collections.singletonMap("test/Pojo.class", new byte[] {1}),
+                Collections.<String, String>emptyMap(), new Element("manipulation", null)));
+
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        FileOutputStream out = new FileOutputStream(files[0]);
+        out.write(new byte[] {0x69, 0x50, 0x4a, 0x01, 0, 0});
+        out.close();
+
+        assertNull(cache.get("key"));
+    }
+
+    public void testInvalidLengthIsAMiss() throws Exception {
+        DirectoryManipulationCache cache = new DirectoryManipulationCache(directory);
+        cache.put("key", new CachedManipulation(Collections.singletonMap("test/Pojo.class", new byte[] {1}),
+                Collections.<String, String>emptyMap(), new Element("manipulation", null)));
+
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        // A single resource whose path is 2GB long
+        FileOutputStream out = new FileOutputStream(files[0]);
+        out.write(new byte[] {0x69, 0x50, 0x4a, 0x01, 0, 0, 0, 1, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff});
+        out.close();
+
+        assertNull(cache.get("key"));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
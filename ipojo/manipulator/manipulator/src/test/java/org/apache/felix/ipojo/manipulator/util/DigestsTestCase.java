@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.manipulator.util;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+
+public class DigestsTestCase extends TestCase {
+
+    public void testDirectoryFingerprintFollowsTheContent() throws Exception {
+        File directory = new File("target/digests-" + getName());
+        File classFile = new File(directory, "test/Pojo.class");
+        classFile.getParentFile().mkdirs();
+
+        write(classFile, new byte[] {1, 2, 3});
+        long date = classFile.lastModified();
+        String fingerprint = Digests.fingerprint(Collections.singletonList(directory));
+        Assert.assertEquals(fingerprint, Digests.fingerprint(Collections.singletonList(directory)));
+
+        // Same size and date, different content
+        write(classFile, new byte[] {1, 2, 4});
+        classFile.setLastModified(date);
+        Assert.assertFalse(fingerprint.equals(Digests.fingerprint(Collections.singletonList(directory))));
+    }
+
+    private static void write(File file, byte[] content) throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+}
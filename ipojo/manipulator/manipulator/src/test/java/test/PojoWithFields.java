@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+/**
+ * A POJO with several fields, used to check the field slots.
+ */
+public class PojoWithFields {
+
+    private String m_gamma;
+
+    private int m_beta;
+
+    private String m_alpha;
+
+    public String getGamma() {
+        return m_gamma;
+    }
+
+    public void setBeta(int beta) {
+        m_beta = beta;
+    }
+
+    public String getAlpha() {
+        return m_alpha;
+    }
+
+}
@@ -20,7 +20,9 @@ package org.apache.felix.ipojo.plugin;
 
 import org.apache.felix.ipojo.manipulator.Pojoization;
 import org.apache.felix.ipojo.manipulator.Reporter;
+import org.apache.felix.ipojo.manipulator.cache.DirectoryManipulationCache;
 import org.apache.felix.ipojo.manipulator.util.Classpath;
+import org.apache.felix.ipojo.manipulator.util.Digests;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -30,6 +32,7 @@ import org.apache.maven.project.MavenProjectHelper;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -124,6 +127,32 @@ public class ManipulatorMojo extends AbstractMojo {
      */
     private boolean m_ignoreEmbeddedXSD;
 
+    /**
+     * Number of threads manipulating the component classes, 0 uses one thread per available processor.
+     * Classes are manipulated by a single thread by default.
+     *
+     * @parameter alias="threads" expression="${ipojo.threads}" default-value="1"
+     */
+    private int m_threads;
+
+    /**
+     * Keeps the manipulated classes between builds, so the classes that did not change are not manipulated again.
+     * Disabled by default: the stack map frames of a manipulated class may depend on the hierarchy of the other
+     * classes of the project, which is not part of the cache key. Clean the cache directory when a superclass
+     * or an interface of a component class changes.
+     *
+     * @parameter alias="useCache" expression="${ipojo.cache}" default-value="false"
+     */
+    private boolean m_useCache;
+
+    /**
+     * Directory of the manipulated classes kept between builds. The entries are separated by
+     * the project dependencies, used to compute the stack map frames of the manipulated classes.
+     *
+     * @parameter alias="cacheDirectory" expression="${ipojo.cache.directory}" default-value="${project.build.directory}/ipojo-cache"
+     */
+    private File m_cacheDirectory;
+
     private boolean isXML() {
         return m_metadata != null && (m_metadata.indexOf('<') > -1);
     }
@@ -155,6 +184,7 @@ public class ManipulatorMojo extends AbstractMojo {
         // Create the ClassPath and classloader.
         Set<Artifact> artifacts = m_project.getArtifacts();
         Set<String> urls = new LinkedHashSet<String>();
+        List<File> dependencies = new ArrayList<File>();
         File classes = new File(m_project.getBasedir(), "target/classes");
         if (classes.isDirectory()) {
             urls.add(classes.getAbsolutePath());
@@ -163,6 +193,7 @@ public class ManipulatorMojo extends AbstractMojo {
             File file = artifact.getFile();
             if (file != null && file.isFile()) {
                 urls.add(file.getAbsolutePath());
+                dependencies.add(file);
             }
         }
         getLog().debug("Compute classpath: " + urls);
@@ -258,6 +289,11 @@ public class ManipulatorMojo extends AbstractMojo {
         if (!m_ignoreEmbeddedXSD) {
             pojo.setUseLocalXSD();
         }
+        pojo.setThreads(m_threads > 0 ? m_threads : Runtime.getRuntime().availableProcessors());
+        if (m_useCache && m_cacheDirectory != null) {
+            getLog().debug("Manipulation cache directory : " + m_cacheDirectory.getAbsolutePath());
+            pojo.setManipulationCache(new DirectoryManipulationCache(m_cacheDirectory, Digests.fingerprint(dependencies)));
+        }
 
         // Executes the pojoization.
         if (is == null) {
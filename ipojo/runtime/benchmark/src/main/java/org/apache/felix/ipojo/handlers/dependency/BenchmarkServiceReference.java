@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.ipojo.handlers.dependency;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * A service reference with only an object class and a service id, so the
+ * service references used on the measured paths are plain objects rather
+ * than mocks.
+ */
+class BenchmarkServiceReference implements ServiceReference
+{
+    private final Map<String, Object> m_properties = new HashMap<String, Object>();
+
+    BenchmarkServiceReference(String objectClass, long id)
+    {
+        m_properties.put(Constants.OBJECTCLASS, new String[] { objectClass });
+        m_properties.put(Constants.SERVICE_ID, id);
+    }
+
+    public Object getProperty(String key)
+    {
+        return m_properties.get(key);
+    }
+
+    public String[] getPropertyKeys()
+    {
+        return m_properties.keySet().toArray(new String[m_properties.size()]);
+    }
+
+    public Bundle getBundle()
+    {
+        return null;
+    }
+
+    public Bundle[] getUsingBundles()
+    {
+        return null;
+    }
+
+    public boolean isAssignableTo(Bundle bundle, String className)
+    {
+        return true;
+    }
+
+    public int compareTo(Object reference)
+    {
+        long id = (Long) m_properties.get(Constants.SERVICE_ID);
+        long other = (Long) ((ServiceReference) reference).getProperty(Constants.SERVICE_ID);
+        // the lowest service id ranks first
+        return id < other ? 1 : (id == other ? 0 : -1);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.ipojo.handlers.dependency;
+
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.ipojo.ComponentFactory;
+import org.apache.felix.ipojo.InstanceManager;
+import org.apache.felix.ipojo.util.Logger;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Cost of a field access to a service dependency from component methods
+ * called concurrently, with the copy of the service objects kept per thread
+ * during the method flow, and with the snapshot mode where all threads read
+ * the same published snapshot.
+ * <p>
+ * Each invocation is a method body reading the dependency field a few
+ * times. Without the snapshot mode, the dependency is notified of the method
+ * entry and exit, as the instance manager does for the methods of the
+ * component.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class DependencyAccessBenchmark
+{
+    public interface Greeter
+    {
+        String greet();
+    }
+
+    static class GreeterImpl implements Greeter
+    {
+        public String greet()
+        {
+            return "hello";
+        }
+    }
+
+    /**
+     * Field accesses per method body.
+     */
+    static final int ACCESSES = 4;
+
+    private static final String FIELD = "m_greeter";
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    @Param({ "false", "true" })
+    public boolean snapshot;
+
+    @Param({ "1", "10" })
+    public int services;
+
+    private final Object m_pojo = new Object();
+    private Dependency m_scalar;
+    private Dependency m_aggregate;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        Bundle bundle = Mockito.mock(Bundle.class);
+        Mockito.when(bundle.getHeaders()).thenReturn(new Hashtable<String, String>());
+
+        BundleContext context = Mockito.mock(BundleContext.class);
+        Mockito.when(context.getBundle()).thenReturn(bundle);
+        ServiceReference[] refs = new ServiceReference[services];
+        final Greeter[] greeters = new Greeter[services];
+        for (int i = 0; i < services; i++)
+        {
+            refs[i] = new BenchmarkServiceReference(Greeter.class.getName(), i + 1);
+            greeters[i] = new GreeterImpl();
+        }
+        Mockito.when(context.getServiceReferences(Greeter.class.getName(), null)).thenReturn(refs);
+        Mockito.when(context.getService(Mockito.any(ServiceReference.class))).thenAnswer(new Answer<Object>()
+        {
+            public Object answer(InvocationOnMock invocation)
+            {
+                ServiceReference ref = (ServiceReference) invocation.getArguments()[0];
+                return greeters[((Long) ref.getProperty(Constants.SERVICE_ID)).intValue() - 1];
+            }
+        });
+
+        ComponentFactory factory = Mockito.mock(ComponentFactory.class);
+        Mockito.when(factory.getBundleClassLoader()).thenReturn(Dependency.class.getClassLoader());
+        InstanceManager im = Mockito.mock(InstanceManager.class);
+        Mockito.when(im.getContext()).thenReturn(context);
+        Mockito.when(im.getFactory()).thenReturn(factory);
+        DependencyHandler handler = Mockito.mock(DependencyHandler.class);
+        Mockito.when(handler.getInstanceManager()).thenReturn(im);
+        Mockito.when(handler.getLogger()).thenReturn(new Logger(context, "benchmark", Logger.WARNING));
+
+        m_scalar = new Dependency(handler, FIELD, Greeter.class, null, false, false, false, false, "scalar",
+            context, Dependency.DYNAMIC_BINDING_POLICY, null, null, null);
+        m_scalar.setSnapshot(snapshot);
+        m_scalar.start();
+
+        m_aggregate = new Dependency(handler, FIELD, Greeter.class, null, false, true, false, false, "aggregate",
+            context, Dependency.DYNAMIC_BINDING_POLICY, null, null, null);
+        m_aggregate.setAggregateType(AggregateDependencyInjectionType.LIST);
+        m_aggregate.setSnapshot(snapshot);
+        m_aggregate.start();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        m_scalar.stop();
+        m_aggregate.stop();
+    }
+
+    private void call(Dependency dependency, Blackhole blackhole)
+    {
+        // Snapshot dependencies are not registered as method interceptors.
+        if (!snapshot)
+        {
+            dependency.onEntry(m_pojo, null, NO_ARGS);
+        }
+        try
+        {
+            for (int i = 0; i < ACCESSES; i++)
+            {
+                blackhole.consume(dependency.onGet(m_pojo, FIELD, null));
+            }
+        }
+        finally
+        {
+            if (!snapshot)
+            {
+                dependency.onFinally(m_pojo, null);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public void scalarAccess(Blackhole blackhole)
+    {
+        call(m_scalar, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public void aggregateAccess(Blackhole blackhole)
+    {
+        call(m_aggregate, blackhole);
+    }
+}
@@ -23,12 +23,14 @@ import org.apache.felix.ipojo.extender.internal.linker.InstanceBundleContextAwar
 import org.apache.felix.ipojo.metadata.Element;
 import org.apache.felix.ipojo.parser.FieldMetadata;
 import org.apache.felix.ipojo.parser.MethodMetadata;
+import org.apache.felix.ipojo.parser.PojoMetadata;
 import org.apache.felix.ipojo.util.Logger;
 import org.apache.felix.ipojo.util.Property;
 import org.osgi.framework.BundleContext;
 
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * This class defines the container of primitive instances. It manages content initialization
@@ -139,9 +141,66 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
 
     /**
      * The map of [field, value], storing POJO managed
-     * field value.
+     * field value of the fields not declared in the manipulation metadata
+     * (and so without slot).
      */
-    private Map m_fields = new HashMap();
+    private final Map m_fields = new HashMap();
+
+    /**
+     * The names of the fields declared in the manipulation metadata, sorted
+     * the way the manipulator assigns field slots. The names are interned, so
+     * they can be compared by reference with the names given by the POJO.
+     * Once configured, this array can't change.
+     */
+    private String[] m_fieldNames = new String[0];
+
+    /**
+     * The map [field, slot] of the fields declared in the manipulation metadata.
+     * Once configured, this map can't change.
+     */
+    private Map m_fieldSlots = new HashMap();
+
+    /**
+     * The managed field values, by slot.
+     */
+    private AtomicReferenceArray m_fieldValues = new AtomicReferenceArray(0);
+
+    /**
+     * The {@link FieldInterceptor} lists, by slot.
+     * Updated on registration and read without lock on field accesses.
+     */
+    private AtomicReferenceArray m_fieldInterceptors = new AtomicReferenceArray(0);
+
+    /**
+     * The ids of the methods declared in the manipulation metadata, sorted
+     * the way the manipulator assigns method slots. The ids are interned, so
+     * they can be compared by reference with the ids given by the POJO.
+     * Once configured, this array can't change.
+     */
+    private String[] m_methodIds = new String[0];
+
+    /**
+     * The map [method id, slot] of the methods declared in the manipulation metadata.
+     * Once configured, this map can't change.
+     */
+    private Map m_methodSlots = new HashMap();
+
+    /**
+     * The {@link MethodInterceptor} lists, by slot.
+     * Updated on registration and read without lock on method entries, exits and errors.
+     */
+    private AtomicReferenceArray m_methodInterceptors = new AtomicReferenceArray(0);
+
+    /**
+     * The {@link Member} objects computed for the methods, by slot.
+     * {@link InstanceManager#NO_MEMBER} is stored for the methods without member object.
+     */
+    private AtomicReferenceArray m_methodMembers = new AtomicReferenceArray(0);
+
+    /**
+     * Marker of the methods for which no member object can be found.
+     */
+    private static final Object NO_MEMBER = new Object();
 
     /**
      * The Map storing the Method objects by ids.
@@ -222,6 +281,10 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
             m_instanceContext = (BundleContext) configuration.get("instance.bundle.context");
         }
 
+        // Assign the field and method slots before handlers register their interceptors
+        initFieldSlots();
+        initMethodSlots();
+
         // Create the standard handlers and add these handlers to the list
         for (HandlerManager handler : m_handlers) {
             handler.init(this, metadata, configuration);
@@ -242,6 +305,69 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
         }
     }
 
+    /**
+     * Assigns a slot to each field declared in the manipulation metadata.
+     * The manipulator assigns the same slots, following the field name order,
+     * and gives them on field accesses to avoid looking up the field by name.
+     */
+    private void initFieldSlots() {
+        PojoMetadata manipulation = m_factory.getPojoMetadata();
+        if (manipulation == null) {
+            return;
+        }
+        FieldMetadata[] fields = manipulation.getFields();
+        String[] names = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = fields[i].getFieldName().intern();
+        }
+        Arrays.sort(names);
+
+        Map slots = new HashMap();
+        AtomicReferenceArray interceptors = new AtomicReferenceArray(names.length);
+        for (int i = 0; i < names.length; i++) {
+            slots.put(names[i], i);
+            if (m_fieldRegistration != null) {
+                interceptors.set(i, m_fieldRegistration.get(names[i]));
+            }
+        }
+        m_fieldNames = names;
+        m_fieldSlots = slots;
+        m_fieldValues = new AtomicReferenceArray(names.length);
+        m_fieldInterceptors = interceptors;
+    }
+
+    /**
+     * Assigns a slot to each method declared in the manipulation metadata.
+     * The manipulator assigns the same slots, following the method id order,
+     * and gives them on method entries, exits and errors to avoid looking up
+     * the method by id.
+     */
+    private void initMethodSlots() {
+        PojoMetadata manipulation = m_factory.getPojoMetadata();
+        if (manipulation == null) {
+            return;
+        }
+        MethodMetadata[] methods = manipulation.getMethods();
+        Set set = new TreeSet();
+        for (int i = 0; i < methods.length; i++) {
+            set.add(methods[i].getMethodIdentifier().intern());
+        }
+        String[] ids = (String[]) set.toArray(new String[set.size()]);
+
+        Map slots = new HashMap();
+        AtomicReferenceArray interceptors = new AtomicReferenceArray(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            slots.put(ids[i], i);
+            if (m_methodRegistration != null) {
+                interceptors.set(i, m_methodRegistration.get(ids[i]));
+            }
+        }
+        m_methodIds = ids;
+        m_methodSlots = slots;
+        m_methodInterceptors = interceptors;
+        m_methodMembers = new AtomicReferenceArray(ids.length);
+    }
+
     /**
      * BundleContext injection is not registered with the InstanceManager.
      * We're iterating through factory's all constructors and register first
@@ -366,11 +492,7 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
      * @return the field value, <code>null</code> is returned if the value is managed and not already set.
      */
     public synchronized Object getFieldValue(String fieldName, Object pojo) {
-        Object setByContainer = null;
-
-        if (m_fields != null) {
-            setByContainer = m_fields.get(fieldName);
-        }
+        Object setByContainer = getManagedValue(fieldName, getFieldSlot(fieldName, -1));
 
         if (setByContainer == null && pojo != null) { // In the case of no given pojo, return null.
             // If null either the value was not already set or has the null value.
@@ -1079,6 +1201,10 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
                 m_fieldRegistration.put(field.getFieldName(), newList);
             }
         }
+        Integer slot = (Integer) m_fieldSlots.get(field.getFieldName());
+        if (slot != null) {
+            m_fieldInterceptors.set(slot.intValue(), m_fieldRegistration.get(field.getFieldName()));
+        }
     }
 
     /**
@@ -1109,6 +1235,10 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
                 m_methodRegistration.put(method.getMethodIdentifier(), newList);
             }
         }
+        Integer slot = (Integer) m_methodSlots.get(method.getMethodIdentifier());
+        if (slot != null) {
+            m_methodInterceptors.set(slot.intValue(), m_methodRegistration.get(method.getMethodIdentifier()));
+        }
     }
 
     /**
@@ -1180,14 +1310,26 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
      * @return the value decided by the last asked handler (throws a warning if two fields decide two different values)
      */
     public Object onGet(Object pojo, String fieldName) {
-        Object initialValue = null;
-        synchronized (this) { // Stack confinement.
-            initialValue = m_fields.get(fieldName);
-        }
+        return onGet(pojo, fieldName, -1);
+    }
+
+    /**
+     * This method is called by the manipulated class each time that a GETFIELD instruction is executed.
+     * It behaves as {@link InstanceManager#onGet(Object, String)}, but the field value and interceptors
+     * are found using the field slot assigned by the manipulator, without acquiring any lock.
+     *
+     * @param pojo      the pojo object on which the field was get
+     * @param fieldName the field name on which the GETFIELD instruction is called
+     * @param slot      the field slot, <code>-1</code> if unknown
+     * @return the value decided by the last asked handler (throws a warning if two fields decide two different values)
+     */
+    public Object onGet(Object pojo, String fieldName, int slot) {
+        slot = getFieldSlot(fieldName, slot);
+        Object initialValue = getManagedValue(fieldName, slot);
         Object result = initialValue;
         boolean hasChanged = false;
         // Get the list of registered handlers
-        FieldInterceptor[] list = (FieldInterceptor[]) m_fieldRegistration.get(fieldName); // Immutable list.
+        FieldInterceptor[] list = getFieldInterceptors(fieldName, slot); // Immutable list.
         for (int i = 0; list != null && i < list.length; i++) {
             // Call onGet outside of a synchronized block.
             Object handlerResult = list[i].onGet(pojo, fieldName, initialValue);
@@ -1210,10 +1352,7 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
         }
         if (hasChanged) {
             // A change occurs => notify the change
-            //TODO consider just changing the reference, however multiple thread can be an issue
-            synchronized (this) {
-                m_fields.put(fieldName, result);
-            }
+            setManagedValue(fieldName, slot, result);
             // Call onset outside of a synchronized block.
             for (int i = 0; list != null && i < list.length; i++) {
                 list[i].onSet(pojo, fieldName, result);
@@ -1232,16 +1371,29 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
      * @param args     the argument array
      */
     public void onEntry(Object pojo, String methodId, Object[] args) {
-        if (m_methodRegistration == null) { // Immutable field.
+        onEntry(pojo, methodId, -1, args);
+    }
+
+    /**
+     * Dispatches entry method events on registered method interceptors.
+     * It behaves as {@link InstanceManager#onEntry(Object, String, Object[])}, but the interceptors
+     * and the method object are found using the method slot assigned by the manipulator.
+     *
+     * @param pojo     the pojo object on which method is invoked.
+     * @param methodId the method id used to compute the {@link Method} object.
+     * @param slot     the method slot, <code>-1</code> if unknown
+     * @param args     the argument array
+     */
+    public void onEntry(Object pojo, String methodId, int slot, Object[] args) {
+        slot = getMethodSlot(methodId, slot);
+        MethodInterceptor[] list = getMethodInterceptors(methodId, slot);
+        // In case of a constructor, the method is null, and the list is null too.
+        if (list == null) {
             return;
         }
-
-        MethodInterceptor[] list = (MethodInterceptor[]) m_methodRegistration.get(methodId);
-        Member method = getMethodById(methodId);
         // We can't find the member object of anonymous methods.
-
-        // In case of a constructor, the method is null, and the list is null too.
-        for (int i = 0; list != null && i < list.length; i++) {
+        Member method = getMethod(methodId, slot);
+        for (int i = 0; i < list.length; i++) {
             list[i].onEntry(pojo, method, args); // Outside a synchronized block.
         }
     }
@@ -1260,15 +1412,30 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
      * @param result   the returned object.
      */
     public void onExit(Object pojo, String methodId, Object result) {
-        if (m_methodRegistration == null) {
+        onExit(pojo, methodId, -1, result);
+    }
+
+    /**
+     * Dispatches exit method events on registered method interceptors.
+     * It behaves as {@link InstanceManager#onExit(Object, String, Object)}, but the interceptors
+     * and the method object are found using the method slot assigned by the manipulator.
+     *
+     * @param pojo     the pojo object on which method was invoked.
+     * @param methodId the method id used to compute the {@link Method} object.
+     * @param slot     the method slot, <code>-1</code> if unknown
+     * @param result   the returned object.
+     */
+    public void onExit(Object pojo, String methodId, int slot, Object result) {
+        slot = getMethodSlot(methodId, slot);
+        MethodInterceptor[] list = getMethodInterceptors(methodId, slot);
+        if (list == null) {
             return;
         }
-        MethodInterceptor[] list = (MethodInterceptor[]) m_methodRegistration.get(methodId);
-        Member method = getMethodById(methodId);
-        for (int i = 0; list != null && i < list.length; i++) {
+        Member method = getMethod(methodId, slot);
+        for (int i = 0; i < list.length; i++) {
             list[i].onExit(pojo, method, result);
         }
-        for (int i = 0; list != null && i < list.length; i++) {
+        for (int i = 0; i < list.length; i++) {
             list[i].onFinally(pojo, method);
         }
     }
@@ -1285,19 +1452,84 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
      * @param error    the Throwable object.
      */
     public void onError(Object pojo, String methodId, Throwable error) {
-        if (m_methodRegistration == null) {
+        onError(pojo, methodId, -1, error);
+    }
+
+    /**
+     * Dispatches error method events on registered method interceptors.
+     * It behaves as {@link InstanceManager#onError(Object, String, Throwable)}, but the interceptors
+     * and the method object are found using the method slot assigned by the manipulator.
+     *
+     * @param pojo     the pojo object on which the method was invoked
+     * @param methodId the method id used to compute the {@link Method} object.
+     * @param slot     the method slot, <code>-1</code> if unknown
+     * @param error    the Throwable object.
+     */
+    public void onError(Object pojo, String methodId, int slot, Throwable error) {
+        slot = getMethodSlot(methodId, slot);
+        MethodInterceptor[] list = getMethodInterceptors(methodId, slot);
+        if (list == null) {
             return;
         }
-        MethodInterceptor[] list = (MethodInterceptor[]) m_methodRegistration.get(methodId);
-        Member method = getMethodById(methodId);
-        for (int i = 0; list != null && i < list.length; i++) {
+        Member method = getMethod(methodId, slot);
+        for (int i = 0; i < list.length; i++) {
             list[i].onError(pojo, method, error);
         }
-        for (int i = 0; list != null && i < list.length; i++) {
+        for (int i = 0; i < list.length; i++) {
             list[i].onFinally(pojo, method);
         }
     }
 
+    /**
+     * Checks the slot given for a method, or finds it if the given slot is not the one of the method,
+     * which happens for methods of parent and inner classes.
+     *
+     * @param methodId the method id
+     * @param slot     the slot given by the manipulated class, <code>-1</code> if unknown
+     * @return the method slot, <code>-1</code> if the method is not declared in the manipulation metadata
+     */
+    private int getMethodSlot(String methodId, int slot) {
+        String[] ids = m_methodIds;
+        if (slot >= 0 && slot < ids.length && (ids[slot] == methodId || ids[slot].equals(methodId))) {
+            return slot;
+        }
+        Integer index = (Integer) m_methodSlots.get(methodId);
+        return index == null ? -1 : index.intValue();
+    }
+
+    private MethodInterceptor[] getMethodInterceptors(String methodId, int slot) {
+        if (slot >= 0) {
+            return (MethodInterceptor[]) m_methodInterceptors.get(slot);
+        }
+        if (m_methodRegistration == null) { // Immutable field.
+            return null;
+        }
+        return (MethodInterceptor[]) m_methodRegistration.get(methodId);
+    }
+
+    /**
+     * Gets the {@link Member} object of the given method, caching it by slot once the
+     * implementation class is loaded.
+     *
+     * @param methodId the method id
+     * @param slot     the method slot, <code>-1</code> if unknown
+     * @return the method object or <code>null</code> if the method cannot be found.
+     */
+    private Member getMethod(String methodId, int slot) {
+        if (slot < 0) {
+            return getMethodById(methodId);
+        }
+        Object member = m_methodMembers.get(slot);
+        if (member == null) {
+            member = getMethodById(methodId);
+            if (m_clazz == null) {
+                return (Member) member;
+            }
+            m_methodMembers.set(slot, member == null ? NO_MEMBER : member);
+        }
+        return member == NO_MEMBER ? null : (Member) member;
+    }
+
     /**
      * Computes the {@link Method} object from the given id.
      * Once computes, a map is used as a cache to avoid to recompute for
@@ -1388,22 +1620,78 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
      * @param objectValue the new value of the field
      */
     public void onSet(final Object pojo, final String fieldName, final Object objectValue) {
-        synchronized (this) {
-            // First, store the new value.
-            // This must be done in a synchronized block to avoid
-            // concurrent modification
-            m_fields.put(fieldName, objectValue);
-        }
+        onSet(pojo, fieldName, -1, objectValue);
+    }
+
+    /**
+     * This method is called by the manipulated class each time that a PUTFIELD instruction is executed.
+     * It behaves as {@link InstanceManager#onSet(Object, String, Object)}, but the field value and interceptors
+     * are found using the field slot assigned by the manipulator, without acquiring any lock.
+     *
+     * @param pojo        the pojo object on which the field was set
+     * @param fieldName   the field name on which the PUTFIELD instruction is called
+     * @param slot        the field slot, <code>-1</code> if unknown
+     * @param objectValue the new value of the field
+     */
+    public void onSet(final Object pojo, final String fieldName, int slot, final Object objectValue) {
+        slot = getFieldSlot(fieldName, slot);
+        // First, store the new value.
+        setManagedValue(fieldName, slot, objectValue);
         // The registrations cannot be modified, so we can directly access
         // the interceptor list.
-        FieldInterceptor[] list = (FieldInterceptor[]) m_fieldRegistration
-                .get(fieldName);
+        FieldInterceptor[] list = getFieldInterceptors(fieldName, slot);
         for (int i = 0; list != null && i < list.length; i++) {
             // The callback must be call outside the synchronization block.
             list[i].onSet(pojo, fieldName, objectValue);
         }
     }
 
+    /**
+     * Checks the slot given for a field, or finds it if the given slot is not the one of the field,
+     * which happens when the field belongs to a parent class.
+     *
+     * @param fieldName the field name
+     * @param slot      the slot given by the manipulated class, <code>-1</code> if unknown
+     * @return the field slot, <code>-1</code> if the field is not declared in the manipulation metadata
+     */
+    private int getFieldSlot(String fieldName, int slot) {
+        String[] names = m_fieldNames;
+        if (slot >= 0 && slot < names.length && (names[slot] == fieldName || names[slot].equals(fieldName))) {
+            return slot;
+        }
+        Integer index = (Integer) m_fieldSlots.get(fieldName);
+        return index == null ? -1 : index.intValue();
+    }
+
+    private Object getManagedValue(String fieldName, int slot) {
+        if (slot >= 0) {
+            return m_fieldValues.get(slot);
+        }
+        synchronized (m_fields) {
+            return m_fields.get(fieldName);
+        }
+    }
+
+    private void setManagedValue(String fieldName, int slot, Object value) {
+        if (slot >= 0) {
+            m_fieldValues.set(slot, value);
+        } else {
+            synchronized (m_fields) {
+                m_fields.put(fieldName, value);
+            }
+        }
+    }
+
+    private FieldInterceptor[] getFieldInterceptors(String fieldName, int slot) {
+        if (slot >= 0) {
+            return (FieldInterceptor[]) m_fieldInterceptors.get(slot);
+        }
+        if (m_fieldRegistration == null) {
+            return null;
+        }
+        return (FieldInterceptor[]) m_fieldRegistration.get(fieldName);
+    }
+
 
     /**
      * Gets the bundle context used by this component instance.
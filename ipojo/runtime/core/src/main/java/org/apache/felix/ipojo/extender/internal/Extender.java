@@ -171,6 +171,8 @@ public class Extender implements BundleActivator {
             ExecutorQueueService async = new ExecutorQueueService(context,
                                                                   Integer.getInteger(ExecutorQueueService.THREADPOOL_SIZE_PROPERTY,
                                                                                      1), // default to 1 if no system property is set
+                                                                  Integer.getInteger(ExecutorQueueService.QUEUE_CAPACITY_PROPERTY,
+                                                                                     ExecutorQueueService.DEFAULT_QUEUE_CAPACITY),
                                                                   threadFactory);
             m_queueService = new PreferenceQueueService(new HeaderPreferenceSelection(), sync, async);
 
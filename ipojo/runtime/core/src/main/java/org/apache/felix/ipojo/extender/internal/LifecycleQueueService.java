@@ -19,11 +19,12 @@
 
 package org.apache.felix.ipojo.extender.internal;
 
+import org.apache.felix.ipojo.extender.queue.JobStatisticsProvider;
 import org.apache.felix.ipojo.extender.queue.QueueService;
 
 /**
- * An interface composing {@link QueueService} and {@link Lifecycle}.
+ * An interface composing {@link QueueService}, {@link JobStatisticsProvider} and {@link Lifecycle}.
  */
-public interface LifecycleQueueService extends QueueService, Lifecycle {
+public interface LifecycleQueueService extends QueueService, JobStatisticsProvider, Lifecycle {
 
 }
@@ -23,7 +23,9 @@ import org.apache.felix.ipojo.extender.internal.LifecycleQueueService;
 import org.apache.felix.ipojo.extender.queue.Callback;
 import org.apache.felix.ipojo.extender.queue.Job;
 import org.apache.felix.ipojo.extender.queue.JobInfo;
+import org.apache.felix.ipojo.extender.queue.JobStatistics;
 import org.apache.felix.ipojo.extender.queue.QueueService;
+import org.apache.felix.ipojo.util.Logger;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceRegistration;
@@ -32,9 +34,17 @@ import org.osgi.service.cm.ManagedService;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An asynchronous implementation of the queue service. This implementation relies on an executor service.
+ * <p>
+ * Waiting jobs are ordered by {@link JobPriority}, then by submission order. The number of waiting jobs
+ * is bounded: once the capacity is reached, submitting a job blocks the caller until a job starts, for at most
+ * {@link #MAX_SUBMISSION_WAIT} milliseconds. The caller is typically the thread delivering the bundle events,
+ * as the extender is a synchronous bundle listener: it must not be blocked for good, so the job is queued
+ * anyway (and a warning logged) when the wait times out. Jobs submitted by other jobs never block, as blocking
+ * the threads of the pool could block the queue forever.
  */
 public class ExecutorQueueService extends AbstractQueueService implements LifecycleQueueService, ManagedService {
 
@@ -43,6 +53,14 @@ public class ExecutorQueueService extends AbstractQueueService implements Lifecy
      */
     public static final String THREADPOOL_SIZE_PROPERTY = "org.apache.felix.ipojo.extender.ThreadPoolSize";
 
+    /**
+     * Property name used to configure the maximum number of waiting jobs (usable as System Property or ConfigAdmin
+     * property). A value lower or equal to 0 means unbounded.
+     * When the queue is full, submitting a job blocks the caller, often the framework thread delivering the
+     * bundle events, for up to {@link #MAX_SUBMISSION_WAIT} milliseconds.
+     */
+    public static final String QUEUE_CAPACITY_PROPERTY = "org.apache.felix.ipojo.extender.QueueCapacity";
+
     /**
      * Service PID used to identify service with ConfigAdmin.
      */
@@ -53,6 +71,22 @@ public class ExecutorQueueService extends AbstractQueueService implements Lifecy
      */
     private final static int DEFAULT_QUEUE_SIZE = 3;
 
+    /**
+     * The default maximum number of waiting jobs (512).
+     */
+    public final static int DEFAULT_QUEUE_CAPACITY = 512;
+
+    /**
+     * The maximum time a submission waits for room in a full queue, in milliseconds (1000).
+     * The job is queued over the capacity once this time elapsed.
+     */
+    public final static long MAX_SUBMISSION_WAIT = 1000;
+
+    /**
+     * Marks the threads executing jobs, whose submissions never block.
+     */
+    private static final ThreadLocal<Boolean> JOB_THREAD = new ThreadLocal<Boolean>();
+
     /**
      * The executor service.
      */
@@ -73,6 +107,31 @@ public class ExecutorQueueService extends AbstractQueueService implements Lifecy
      */
     private final int initialSize;
 
+    /**
+     * Initial maximum number of waiting jobs.
+     */
+    private final int initialCapacity;
+
+    /**
+     * Guards the number of waiting jobs and the capacity.
+     */
+    private final Object m_capacityLock = new Object();
+
+    /**
+     * Maximum number of waiting jobs, unbounded if lower or equal to 0.
+     */
+    private int m_capacity;
+
+    /**
+     * The number of jobs submitted and not started yet.
+     */
+    private int m_pending;
+
+    /**
+     * Orders the jobs of the same priority.
+     */
+    private final AtomicLong m_sequence = new AtomicLong();
+
     /**
      * Creates the queue service using the default pool size.
      *
@@ -89,7 +148,7 @@ public class ExecutorQueueService extends AbstractQueueService implements Lifecy
      * @param size          the thread pool size.
      */
     public ExecutorQueueService(BundleContext bundleContext, int size) {
-        this(bundleContext, (ThreadPoolExecutor) Executors.newFixedThreadPool(size));
+        this(bundleContext, size, Executors.defaultThreadFactory());
     }
 
     /**
@@ -100,7 +159,21 @@ public class ExecutorQueueService extends AbstractQueueService implements Lifecy
      * @param threadFactory the thread factory
      */
     public ExecutorQueueService(BundleContext bundleContext, int size, ThreadFactory threadFactory) {
-        this(bundleContext, (ThreadPoolExecutor) Executors.newFixedThreadPool(size, threadFactory));
+        this(bundleContext, size, DEFAULT_QUEUE_CAPACITY, threadFactory);
+    }
+
+    /**
+     * Creates the queue service.
+     *
+     * @param bundleContext the bundle context.
+     * @param size          the thread pool size
+     * @param capacity      the maximum number of waiting jobs, unbounded if lower or equal to 0
+     * @param threadFactory the thread factory
+     */
+    public ExecutorQueueService(BundleContext bundleContext, int size, int capacity, ThreadFactory threadFactory) {
+        this(bundleContext,
+             new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), threadFactory),
+             capacity);
     }
 
 
@@ -109,12 +182,15 @@ public class ExecutorQueueService extends AbstractQueueService implements Lifecy
      * All others constructors delegates to this one.
      *
      * @param bundleContext   the bundle context
-     * @param executorService the executor service we have to use
+     * @param executorService the executor service we have to use, its queue must accept the {@link PrioritizedJob}s
+     * @param capacity        the maximum number of waiting jobs
      */
-    private ExecutorQueueService(BundleContext bundleContext, ThreadPoolExecutor executorService) {
+    private ExecutorQueueService(BundleContext bundleContext, ThreadPoolExecutor executorService, int capacity) {
         super(bundleContext, QueueService.class);
         m_executorService = executorService;
         initialSize = executorService.getCorePoolSize();
+        initialCapacity = capacity;
+        m_capacity = capacity;
         m_properties = getDefaultProperties();
     }
 
@@ -131,6 +207,10 @@ public class ExecutorQueueService extends AbstractQueueService implements Lifecy
      */
     public void stop() {
         m_executorService.shutdown();
+        // Release the blocked submitters, the executor rejects their jobs
+        synchronized (m_capacityLock) {
+            m_capacityLock.notifyAll();
+        }
         // Wait for potential executed tasks to finish their executions
         try {
             m_executorService.awaitTermination(1, TimeUnit.SECONDS);
@@ -150,6 +230,7 @@ public class ExecutorQueueService extends AbstractQueueService implements Lifecy
         initial.put(Constants.SERVICE_PID, EXECUTOR_QUEUE_SERVICE_PID);
         initial.put(QueueService.QUEUE_MODE_PROPERTY, QueueService.ASYNCHRONOUS_QUEUE_MODE);
         initial.put(THREADPOOL_SIZE_PROPERTY, initialSize);
+        initial.put(QUEUE_CAPACITY_PROPERTY, initialCapacity);
         return initial;
     }
 
@@ -173,9 +254,23 @@ public class ExecutorQueueService extends AbstractQueueService implements Lifecy
         return Collections.unmodifiableList(snapshot);
     }
 
+    public Map<String, JobStatistics> getJobStatistics() {
+        return m_statistic.getJobStatistics();
+    }
+
+    /**
+     * @return the maximum number of waiting jobs, unbounded if lower or equal to 0.
+     */
+    public int getCapacity() {
+        synchronized (m_capacityLock) {
+            return m_capacity;
+        }
+    }
+
     /**
      * Submits a job to the queue. The submitted job is wrapped into a {@link JobInfoCallable} to collect the
-     * statistics.
+     * statistics. Blocks while the queue is full, for at most {@link #MAX_SUBMISSION_WAIT} milliseconds,
+     * unless called from a job.
      *
      * @param callable    the job
      * @param callback    callback called when the job is processed
@@ -183,8 +278,69 @@ public class ExecutorQueueService extends AbstractQueueService implements Lifecy
      * @return the reference on the submitted job
      */
     public <T> Future<T> submit(Job<T> callable, Callback<T> callback, String description) {
-        JobInfoCallable<T> task = new JobInfoCallable<T>(this, m_statistic, callable, callback, description);
-        return m_executorService.submit(task);
+        acquire();
+        PrioritizedJob<T> task;
+        try {
+            task = new PrioritizedJob<T>(new JobInfoCallable<T>(this, m_statistic, callable, callback, description),
+                                         JobPriority.of(callable.getJobType()),
+                                         m_sequence.getAndIncrement());
+            m_executorService.execute(task);
+        } catch (RuntimeException e) {
+            // Rejected: the job will never start
+            release();
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * Waits for room in the queue, and counts the new waiting job.
+     * Threads executing jobs never wait, other threads wait for at most {@link #MAX_SUBMISSION_WAIT} milliseconds.
+     */
+    private void acquire() {
+        boolean interrupted = false;
+        boolean timedOut = false;
+        int pending;
+        synchronized (m_capacityLock) {
+            if (JOB_THREAD.get() == null) {
+                long deadline = System.currentTimeMillis() + MAX_SUBMISSION_WAIT;
+                while (m_capacity > 0 && m_pending >= m_capacity && !m_executorService.isShutdown()) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        // Do not block the bundle events any longer, the job exceeds the capacity
+                        timedOut = true;
+                        break;
+                    }
+                    try {
+                        m_capacityLock.wait(remaining);
+                    } catch (InterruptedException e) {
+                        // Stop waiting, the job is queued anyway
+                        interrupted = true;
+                        break;
+                    }
+                }
+            }
+            pending = ++m_pending;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (timedOut) {
+            // Rare enough to create the logger on demand
+            new Logger(getBundleContext(), "IPOJO-Queue").log(Logger.WARNING,
+                    "The queue is still full after " + MAX_SUBMISSION_WAIT + " ms, " + pending + " jobs are now waiting"
+                    + " - consider increasing " + QUEUE_CAPACITY_PROPERTY);
+        }
+    }
+
+    /**
+     * A waiting job started (or was cancelled).
+     */
+    private void release() {
+        synchronized (m_capacityLock) {
+            m_pending--;
+            m_capacityLock.notifyAll();
+        }
     }
 
     public <T> Future<T> submit(Job<T> callable, String description) {
@@ -219,10 +375,23 @@ public class ExecutorQueueService extends AbstractQueueService implements Lifecy
             }
         }
 
+        o = properties.get(QUEUE_CAPACITY_PROPERTY);
+        if (o != null) {
+            Integer newCapacity = getIntegerProperty(o, DEFAULT_QUEUE_CAPACITY);
+            synchronized (m_capacityLock) {
+                if (newCapacity != m_capacity) {
+                    m_capacity = newCapacity;
+                    m_capacityLock.notifyAll();
+                    m_properties.put(QUEUE_CAPACITY_PROPERTY, newCapacity);
+                    changed = true;
+                }
+            }
+        }
+
         if (changed) {
             // Transfer unrecognized values in service properties as per spec. recommendation
             for (Object key : Collections.list(properties.keys())) {
-                if (!THREADPOOL_SIZE_PROPERTY.equals(key)) {
+                if (!THREADPOOL_SIZE_PROPERTY.equals(key) && !QUEUE_CAPACITY_PROPERTY.equals(key)) {
                     m_properties.put(key.toString(), properties.get(key));
                 }
             }
@@ -247,4 +416,40 @@ public class ExecutorQueueService extends AbstractQueueService implements Lifecy
         }
         return newSize;
     }
+
+    /**
+     * A job waiting in the executor queue, ordered by priority then by submission order.
+     */
+    private final class PrioritizedJob<T> extends FutureTask<T> implements Comparable<PrioritizedJob<?>> {
+
+        private final JobPriority m_priority;
+
+        private final long m_sequence;
+
+        PrioritizedJob(JobInfoCallable<T> callable, JobPriority priority, long sequence) {
+            super(callable);
+            m_priority = priority;
+            m_sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            // Also called for cancelled jobs, once taken from the queue
+            release();
+            JOB_THREAD.set(Boolean.TRUE);
+            try {
+                super.run();
+            } finally {
+                JOB_THREAD.remove();
+            }
+        }
+
+        public int compareTo(PrioritizedJob<?> other) {
+            int comparison = m_priority.compareTo(other.m_priority);
+            if (comparison != 0) {
+                return comparison;
+            }
+            return (m_sequence < other.m_sequence) ? -1 : ((m_sequence == other.m_sequence) ? 0 : 1);
+        }
+    }
 }
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.extender.internal.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.felix.ipojo.extender.queue.Histogram;
+
+/**
+ * Records durations into fixed buckets, without locking.
+ * {@link #snapshot()} may miss the durations recorded concurrently.
+ */
+public class HistogramRecorder {
+
+    /**
+     * The bucket bounds, in milliseconds.
+     */
+    static final long[] BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    /**
+     * The number of durations of each bucket.
+     */
+    private final AtomicLongArray m_counts = new AtomicLongArray(BOUNDS.length + 1);
+
+    /**
+     * The sum of the durations.
+     */
+    private final AtomicLong m_sum = new AtomicLong();
+
+    /**
+     * The greatest duration.
+     */
+    private final AtomicLong m_max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param duration the duration in milliseconds, negative durations are recorded as {@literal 0}
+     */
+    public void record(long duration) {
+        long value = Math.max(0, duration);
+        int bucket = 0;
+        while (bucket < BOUNDS.length && value > BOUNDS[bucket]) {
+            bucket++;
+        }
+        m_counts.incrementAndGet(bucket);
+        m_sum.addAndGet(value);
+        long max = m_max.get();
+        while (value > max && !m_max.compareAndSet(max, value)) {
+            max = m_max.get();
+        }
+    }
+
+    /**
+     * @return the recorded durations
+     */
+    public Histogram snapshot() {
+        long[] counts = new long[m_counts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = m_counts.get(i);
+        }
+        return new Histogram(BOUNDS, counts, m_sum.get(), m_max.get());
+    }
+}
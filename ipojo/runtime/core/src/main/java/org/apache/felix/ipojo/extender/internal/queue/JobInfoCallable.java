@@ -123,6 +123,8 @@ public class JobInfoCallable<T> implements Callable<T>, JobInfo {
             exception = e;
             throw e;
         } finally {
+            long end = (endTime == -1) ? System.currentTimeMillis() : endTime;
+            m_statistic.record(getJobType(), startTime - enlistmentTime, end - startTime);
             m_statistic.getCurrentsCounter().decrementAndGet();
             m_statistic.getFinishedCounter().incrementAndGet();
 
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.extender.internal.queue;
+
+import org.apache.felix.ipojo.extender.internal.linker.ManagedType;
+
+/**
+ * The priority of the jobs waiting in the {@link ExecutorQueueService}, computed from their job type.
+ * Factories (handlers included) are created before the remaining bundles are processed, and the
+ * instances are started last, once the factories they need are likely available.
+ * Jobs of the same priority run in submission order.
+ */
+public enum JobPriority {
+
+    /**
+     * Factory and handler creations.
+     */
+    HIGH,
+
+    /**
+     * Bundle activations, and the jobs of unknown types.
+     */
+    NORMAL,
+
+    /**
+     * Instance startups.
+     */
+    LOW;
+
+    /**
+     * @param jobType the job type, may be {@literal null}
+     * @return the priority of the jobs of this type
+     */
+    public static JobPriority of(String jobType) {
+        if (ManagedType.FACTORY_CREATION_JOB_TYPE.equals(jobType)) {
+            return HIGH;
+        }
+        if (ManagedType.INSTANCE_STARTUP_JOB_TYPE.equals(jobType)) {
+            return LOW;
+        }
+        // Including the bundle activations (QueuingActivationProcessor)
+        return NORMAL;
+    }
+}
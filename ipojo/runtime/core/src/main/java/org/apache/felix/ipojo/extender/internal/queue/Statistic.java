@@ -20,10 +20,16 @@
 package org.apache.felix.ipojo.extender.internal.queue;
 
 import org.apache.felix.ipojo.extender.queue.JobInfo;
+import org.apache.felix.ipojo.extender.queue.JobStatistics;
+import org.apache.felix.ipojo.extender.queue.JobStatisticsProvider;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -45,6 +51,11 @@ public class Statistic {
      */
     private final AtomicInteger m_currents = new AtomicInteger(0);
 
+    /**
+     * The wait and execution durations, by job type.
+     */
+    private final ConcurrentMap<String, JobTypeRecorder> m_recorders = new ConcurrentHashMap<String, JobTypeRecorder>();
+
     /**
      * @return the number of completed jobs.
      */
@@ -66,5 +77,62 @@ public class Statistic {
         return m_currents;
     }
 
+    /**
+     * Records the durations of an executed job.
+     *
+     * @param jobType   the job type, may be {@literal null}
+     * @param wait      the time spent in the waiting queue
+     * @param execution the execution time
+     */
+    public void record(String jobType, long wait, long execution) {
+        String type = (jobType == null) ? JobStatisticsProvider.UNKNOWN_JOB_TYPE : jobType;
+        JobTypeRecorder recorder = m_recorders.get(type);
+        if (recorder == null) {
+            JobTypeRecorder created = new JobTypeRecorder();
+            recorder = m_recorders.putIfAbsent(type, created);
+            if (recorder == null) {
+                recorder = created;
+            }
+        }
+        recorder.m_wait.record(wait);
+        recorder.m_execution.record(execution);
+    }
+
+    /**
+     * @return a snapshot of the durations of the executed jobs, by job type.
+     */
+    public Map<String, JobStatistics> getJobStatistics() {
+        Map<String, JobStatistics> statistics = new TreeMap<String, JobStatistics>();
+        for (Map.Entry<String, JobTypeRecorder> entry : m_recorders.entrySet()) {
+            statistics.put(entry.getKey(), new JobStatistics(entry.getKey(),
+                                                             entry.getValue().m_wait.snapshot(),
+                                                             entry.getValue().m_execution.snapshot()));
+        }
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * Adds the statistics of several queues.
+     *
+     * @param statistics the statistics of each queue, by job type
+     * @return the statistics of all the queues, by job type
+     */
+    public static Map<String, JobStatistics> merge(Map<String, JobStatistics>... statistics) {
+        Map<String, JobStatistics> merged = new TreeMap<String, JobStatistics>();
+        for (Map<String, JobStatistics> map : statistics) {
+            for (JobStatistics jobStatistics : map.values()) {
+                JobStatistics existing = merged.get(jobStatistics.getJobType());
+                merged.put(jobStatistics.getJobType(),
+                           (existing == null) ? jobStatistics : existing.merge(jobStatistics));
+            }
+        }
+        return Collections.unmodifiableMap(merged);
+    }
+
+    private static class JobTypeRecorder {
+        private final HistogramRecorder m_wait = new HistogramRecorder();
+        private final HistogramRecorder m_execution = new HistogramRecorder();
+    }
+
 
 }
@@ -24,6 +24,7 @@ import org.apache.felix.ipojo.extender.internal.LifecycleQueueService;
 import org.apache.felix.ipojo.extender.queue.Callback;
 import org.apache.felix.ipojo.extender.queue.Job;
 import org.apache.felix.ipojo.extender.queue.JobInfo;
+import org.apache.felix.ipojo.extender.queue.JobStatistics;
 import org.apache.felix.ipojo.extender.queue.QueueService;
 import org.osgi.framework.BundleContext;
 
@@ -32,6 +33,7 @@ import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 
 /**
@@ -68,6 +70,10 @@ public class SynchronousQueueService extends AbstractQueueService implements Lif
         return Collections.emptyList();
     }
 
+    public Map<String, JobStatistics> getJobStatistics() {
+        return m_statistic.getJobStatistics();
+    }
+
     public <T> Future<T> submit(Job<T> callable, Callback<T> callback, String description) {
         JobInfoCallable<T> exec = new JobInfoCallable<T>(this, m_statistic, callable, callback, description);
         try {
@@ -20,15 +20,18 @@
 package org.apache.felix.ipojo.extender.internal.queue.pref;
 
 import org.apache.felix.ipojo.extender.internal.LifecycleQueueService;
+import org.apache.felix.ipojo.extender.internal.queue.Statistic;
 import org.apache.felix.ipojo.extender.queue.Callback;
 import org.apache.felix.ipojo.extender.queue.Job;
 import org.apache.felix.ipojo.extender.queue.JobInfo;
+import org.apache.felix.ipojo.extender.queue.JobStatistics;
 import org.apache.felix.ipojo.extender.queue.QueueListener;
 import org.apache.felix.ipojo.extender.queue.QueueService;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleReference;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
@@ -121,6 +124,14 @@ public class PreferenceQueueService implements LifecycleQueueService {
         return m_asyncQueue.getWaitersInfo();
     }
 
+    /**
+     * @return the statistics of the jobs executed by both queues.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, JobStatistics> getJobStatistics() {
+        return Statistic.merge(m_syncQueue.getJobStatistics(), m_asyncQueue.getJobStatistics());
+    }
+
     /**
      * Submits a job to the right queue.
      * The queue selection works as follow:
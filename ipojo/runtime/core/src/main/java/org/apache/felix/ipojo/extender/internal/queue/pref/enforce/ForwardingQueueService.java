@@ -23,9 +23,11 @@ import org.apache.felix.ipojo.extender.internal.LifecycleQueueService;
 import org.apache.felix.ipojo.extender.queue.Callback;
 import org.apache.felix.ipojo.extender.queue.Job;
 import org.apache.felix.ipojo.extender.queue.JobInfo;
+import org.apache.felix.ipojo.extender.queue.JobStatistics;
 import org.apache.felix.ipojo.extender.queue.QueueListener;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
@@ -60,6 +62,10 @@ public abstract class ForwardingQueueService implements LifecycleQueueService {
         return delegate().getWaitersInfo();
     }
 
+    public Map<String, JobStatistics> getJobStatistics() {
+        return delegate().getJobStatistics();
+    }
+
     public <T> Future<T> submit(Job<T> callable, Callback<T> callback, String description) {
         return delegate().submit(callable, callback, description);
     }
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.extender.queue;
+
+import java.util.Arrays;
+
+/**
+ * An immutable histogram of job durations, in milliseconds.
+ * The histogram has one bucket per bound, counting the durations lower or equal to
+ * the bound (and greater than the previous one), and a last bucket for the durations
+ * greater than the last bound.
+ *
+ * @since 1.13.0
+ */
+public final class Histogram {
+
+    /**
+     * The upper bounds of the buckets, except the last unbounded one.
+     */
+    private final long[] m_bounds;
+
+    /**
+     * The number of durations of each bucket.
+     */
+    private final long[] m_counts;
+
+    /**
+     * The sum of the durations.
+     */
+    private final long m_sum;
+
+    /**
+     * The greatest duration.
+     */
+    private final long m_max;
+
+    /**
+     * Creates a histogram.
+     *
+     * @param bounds the upper bounds of the buckets, in increasing order
+     * @param counts the number of durations of each bucket, one more than the bounds
+     * @param sum    the sum of the durations
+     * @param max    the greatest duration
+     */
+    public Histogram(long[] bounds, long[] counts, long sum, long max) {
+        if (counts.length != bounds.length + 1) {
+            throw new IllegalArgumentException("Expected " + (bounds.length + 1) + " counts, got " + counts.length);
+        }
+        m_bounds = bounds.clone();
+        m_counts = counts.clone();
+        m_sum = sum;
+        m_max = max;
+    }
+
+    /**
+     * @return the upper bounds of the buckets, the last bucket is unbounded
+     */
+    public long[] getBounds() {
+        return m_bounds.clone();
+    }
+
+    /**
+     * @return the number of durations of each bucket
+     */
+    public long[] getCounts() {
+        return m_counts.clone();
+    }
+
+    /**
+     * @return the number of durations
+     */
+    public long getCount() {
+        long count = 0;
+        for (long c : m_counts) {
+            count += c;
+        }
+        return count;
+    }
+
+    /**
+     * @return the sum of the durations
+     */
+    public long getSum() {
+        return m_sum;
+    }
+
+    /**
+     * @return the greatest duration, {@literal 0} if there is none
+     */
+    public long getMax() {
+        return m_max;
+    }
+
+    /**
+     * @return the mean duration, {@literal 0} if there is none
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) m_sum / count;
+    }
+
+    /**
+     * Estimates a percentile of the durations from the buckets.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket of the percentile, or the greatest duration
+     *         when it is lower or the percentile is in the last bucket
+     */
+    public long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < m_bounds.length; i++) {
+            seen += m_counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(m_bounds[i], m_max);
+            }
+        }
+        return m_max;
+    }
+
+    /**
+     * Adds the durations of two histograms.
+     *
+     * @param other a histogram with the same bounds
+     * @return the histogram of the durations of both histograms
+     */
+    public Histogram merge(Histogram other) {
+        if (!Arrays.equals(m_bounds, other.m_bounds)) {
+            throw new IllegalArgumentException("Cannot merge histograms with different bounds");
+        }
+        long[] counts = new long[m_counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = m_counts[i] + other.m_counts[i];
+        }
+        return new Histogram(m_bounds, counts, m_sum + other.m_sum, Math.max(m_max, other.m_max));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("count=").append(getCount())
+                .append(", mean=").append(Math.round(getMean()))
+                .append(", p50=").append(getPercentile(50))
+                .append(", p99=").append(getPercentile(99))
+                .append(", max=").append(m_max)
+                .append(" (ms)");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.extender.queue;
+
+/**
+ * The durations of the jobs of a given type executed by a {@link QueueService}.
+ *
+ * @since 1.13.0
+ */
+public final class JobStatistics {
+
+    /**
+     * The job type.
+     */
+    private final String m_jobType;
+
+    /**
+     * The time spent by the jobs in the waiting queue.
+     */
+    private final Histogram m_waitDurations;
+
+    /**
+     * The execution time of the jobs.
+     */
+    private final Histogram m_executionDurations;
+
+    /**
+     * Creates the statistics of a job type.
+     *
+     * @param jobType            the job type
+     * @param waitDurations      the time spent by the jobs in the waiting queue
+     * @param executionDurations the execution time of the jobs
+     */
+    public JobStatistics(String jobType, Histogram waitDurations, Histogram executionDurations) {
+        m_jobType = jobType;
+        m_waitDurations = waitDurations;
+        m_executionDurations = executionDurations;
+    }
+
+    /**
+     * @return the job type
+     * @see Job#getJobType()
+     */
+    public String getJobType() {
+        return m_jobType;
+    }
+
+    /**
+     * @return the number of executed jobs
+     */
+    public long getCount() {
+        return m_executionDurations.getCount();
+    }
+
+    /**
+     * @return the time spent by the jobs in the waiting queue
+     */
+    public Histogram getWaitDurations() {
+        return m_waitDurations;
+    }
+
+    /**
+     * @return the execution time of the jobs
+     */
+    public Histogram getExecutionDurations() {
+        return m_executionDurations;
+    }
+
+    /**
+     * Adds the statistics of the same job type.
+     *
+     * @param other statistics of the same job type
+     * @return the statistics of the jobs of both statistics
+     */
+    public JobStatistics merge(JobStatistics other) {
+        return new JobStatistics(m_jobType,
+                                 m_waitDurations.merge(other.m_waitDurations),
+                                 m_executionDurations.merge(other.m_executionDurations));
+    }
+
+    @Override
+    public String toString() {
+        return m_jobType + ": wait [" + m_waitDurations + "], execution [" + m_executionDurations + "]";
+    }
+}
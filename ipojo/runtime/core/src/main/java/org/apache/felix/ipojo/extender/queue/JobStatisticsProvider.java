@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.ipojo.extender.queue;
+
+import java.util.Map;
+
+/**
+ * A {@link QueueService} collecting the durations of the jobs it executes.
+ * The queue services of the iPOJO extender implement this interface:
+ * check the {@link QueueService} object with {@code instanceof} to get the statistics.
+ *
+ * @since 1.13.0
+ */
+public interface JobStatisticsProvider {
+
+    /**
+     * The job type of the statistics of the jobs without type.
+     */
+    String UNKNOWN_JOB_TYPE = "unknown";
+
+    /**
+     * Gets the time spent in the waiting queue and the execution time of the executed jobs,
+     * by job type (see {@link Job#getJobType()}). Jobs without type are reported under
+     * {@link #UNKNOWN_JOB_TYPE}.
+     *
+     * @return a snapshot of the statistics of the executed jobs, by job type.
+     */
+    Map<String, JobStatistics> getJobStatistics();
+}
@@ -50,6 +50,12 @@ public class ConfigurationHandler extends PrimitiveHandler implements ManagedSer
      * List of the configurable fields.
      */
     private List<Property> m_configurableProperties = new ArrayList<Property>(1);
+    /**
+     * The configurable fields indexed by name.
+     * Each property resolves its converter and its setter method once,
+     * the reconfigurations only look them up by name.
+     */
+    private Map<String, Property> m_propertiesByName = new HashMap<String, Property>();
     /**
      * ProvidedServiceHandler of the component. It is useful to propagate
      * properties to service registrations.
@@ -410,6 +416,7 @@ public class ConfigurationHandler extends PrimitiveHandler implements ManagedSer
      */
     protected void addProperty(Property prop) {
         m_configurableProperties.add(prop);
+        m_propertiesByName.put(prop.getName(), prop);
     }
 
     /**
@@ -467,11 +474,13 @@ public class ConfigurationHandler extends PrimitiveHandler implements ManagedSer
             // Do we have a property.
             Property p = getPropertyByName(name);
             if (p != null) {
-                // Change detection based on the value.
-                if (p.getValue() == null) {
-                    return true;
-                } else if (! p.getValue().equals(value)) {
-                    return true;
+                // Change detection based on the value, converted to the property type.
+                try {
+                    if (! Property.isSameValue(p.getValue(), p.convert(value))) {
+                        return true;
+                    }
+                } catch (ClassCastException e) {
+                    return true; // The reconfiguration reports the error.
                 }
             } else {
                 // Was it propagated ?
@@ -514,12 +523,7 @@ public class ConfigurationHandler extends PrimitiveHandler implements ManagedSer
     }
 
     private Property getPropertyByName(String name) {
-        for (Property p : m_configurableProperties) {
-            if (p.getName().equals(name)) {
-                return p;
-            }
-        }
-        return null;
+        return m_propertiesByName.get(name);
     }
 
     /**
@@ -535,20 +539,14 @@ public class ConfigurationHandler extends PrimitiveHandler implements ManagedSer
         while (keysEnumeration.hasMoreElements()) {
             String name = (String) keysEnumeration.nextElement();
             Object value = configuration.get(name);
-            boolean found = false;
             // Check if the name is a configurable property
-            for (Property prop : m_configurableProperties) {
-                if (prop.getName().equals(name)) {
-                    Object v = reconfigureProperty(prop, value);
-                    found = true;
-                    if (m_mustPropagate && ! excluded(name)) {
-                        toPropagate.put(name, v);
-                    }
-                    break; // Exit the search loop
+            Property prop = getPropertyByName(name);
+            if (prop != null) {
+                Object v = reconfigureProperty(prop, value);
+                if (m_mustPropagate && ! excluded(name)) {
+                    toPropagate.put(name, v);
                 }
-            }
-
-            if (!found && m_mustPropagate && ! excluded(name)) {
+            } else if (m_mustPropagate && ! excluded(name)) {
                 toPropagate.put(name, value);
             }
         }
@@ -579,15 +577,18 @@ public class ConfigurationHandler extends PrimitiveHandler implements ManagedSer
      * Reconfigures the given property with the given value.
      * This methods handles {@link org.apache.felix.ipojo.InstanceManager#onSet(Object, String, Object)}
      * call and the callback invocation.
-     * The reconfiguration occurs only if the value changes.
+     * The reconfiguration occurs only if the value changes, once converted to
+     * the property type: the field and the setter method of the unchanged
+     * properties are not touched.
      *
      * @param prop  the property object to reconfigure
      * @param value the new value.
      * @return the new property value
      */
     public Object reconfigureProperty(Property prop, Object value) {
-        if (prop.getValue() == null || !prop.getValue().equals(value)) {
-            prop.setValue(value);
+        Object converted = prop.convert(value);
+        if (! Property.isSameValue(prop.getValue(), converted)) {
+            prop.setValue(converted);
             if (prop.hasField()) {
                 getInstanceManager().onSet(null, prop.getField(), prop.getValue()); // Notify other handler of the field value change.
             }
@@ -608,10 +609,6 @@ public class ConfigurationHandler extends PrimitiveHandler implements ManagedSer
      */
     private void propagate(Dictionary newProps, Dictionary oldProps) {
         if (m_mustPropagate && m_providedServiceHandler != null) {
-            if (oldProps != null) {
-                m_providedServiceHandler.removeProperties(oldProps);
-            }
-
             if (newProps != null) {
                 // Remove the name, the pid and the managed service pid props
                 newProps.remove(Factory.INSTANCE_NAME_PROPERTY);
@@ -631,6 +628,17 @@ public class ConfigurationHandler extends PrimitiveHandler implements ManagedSer
                     newProps.remove(k);
                 }
 
+                // The service registrations are not updated if the propagated properties did not change.
+                if (newProps.equals(oldProps)) {
+                    return;
+                }
+            }
+
+            if (oldProps != null) {
+                m_providedServiceHandler.removeProperties(oldProps);
+            }
+
+            if (newProps != null) {
                 // Propagation of the properties to service registrations :
                 m_providedServiceHandler.addProperties(newProps);
             }
@@ -29,6 +29,8 @@ import org.osgi.framework.ServiceReference;
 
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Represent a service dependency of the component instance.
@@ -115,6 +117,23 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
      */
     private int m_timeout;
 
+    /**
+     * Is the snapshot mode enabled?
+     * In this mode, field accesses return a snapshot of the service objects
+     * shared by all threads instead of the copy kept in the thread local
+     * during the method flow.
+     * Immutable once set.
+     */
+    private boolean m_isSnapshot;
+    /**
+     * The published snapshot, {@code null} if it has to be (re)computed.
+     */
+    private final AtomicReference<Snapshot> m_snapshot = new AtomicReference<Snapshot>();
+    /**
+     * Version of the set of bound services, incremented on every change.
+     */
+    private final AtomicInteger m_snapshotVersion = new AtomicInteger();
+
     /**
      * Dependency constructor. After the creation the dependency is not started.
      *
@@ -214,7 +233,7 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
         m_isStarted = false;
         super.stop();
         releaseWriteLockIfHeld();
-
+        invalidateSnapshot();
     }
 
     public DependencyHandler getHandler() {
@@ -534,6 +553,7 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
         }
         m_isStarted = true;
         releaseWriteLockIfHeld();
+        invalidateSnapshot();
     }
 
     protected DependencyCallback[] getCallbacks() {
@@ -565,6 +585,7 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
      * @see org.apache.felix.ipojo.util.DependencyModel#onServiceArrival(org.osgi.framework.ServiceReference)
      */
     public void onServiceArrival(ServiceReference reference) {
+        invalidateSnapshot();
         callBindMethod(reference);
         //The method is only called when a new service arrives, or when the used one is replaced.
     }
@@ -576,6 +597,7 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
      * @see org.apache.felix.ipojo.util.DependencyModel#onServiceModification(org.osgi.framework.ServiceReference)
      */
     public void onServiceModification(ServiceReference reference) {
+        invalidateSnapshot();
         callModifyMethod(reference);
     }
 
@@ -586,6 +608,7 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
      * @see org.apache.felix.ipojo.util.DependencyModel#onServiceDeparture(org.osgi.framework.ServiceReference)
      */
     public void onServiceDeparture(ServiceReference ref) {
+        invalidateSnapshot();
         callUnbindMethod(ref);
     }
 
@@ -599,6 +622,7 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
      * @see org.apache.felix.ipojo.util.DependencyModel#onDependencyReconfiguration(org.osgi.framework.ServiceReference[], org.osgi.framework.ServiceReference[])
      */
     public void onDependencyReconfiguration(ServiceReference[] departs, ServiceReference[] arrivals) {
+        invalidateSnapshot();
         for (int i = 0; departs != null && i < departs.length; i++) {
             callUnbindMethod(departs[i]);
         }
@@ -613,7 +637,9 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
      * For testing purpose only.
      */
     public void resetLocalCache() {
-        if (m_usage != null) {
+        if (m_isSnapshot) {
+            invalidateSnapshot();
+        } else if (m_usage != null) {
             Usage usage = (Usage) m_usage.get();
             if (usage.m_stack > 0) {
                 createServiceObject(usage);
@@ -658,6 +684,14 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
             throw new IllegalStateException("The dependency has not enabled the `proxy` mode.");
         }
 
+        if (m_isSnapshot) {
+            Object obj = getSnapshot();
+            if (obj instanceof Set) {
+                return new ArrayList<Object>((Set) obj);
+            }
+            return obj;
+        }
+
         Usage usage = (Usage) m_usage.get();
         if (usage.m_stack == 0) { // uninitialized usage.
             if (usage.m_componentStack > 0) {
@@ -735,6 +769,15 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
      */
     public Object onGet(Object pojo, String fieldName, Object value) {
 
+        if (m_isSnapshot) {
+            // No per-thread state, the field returns the published snapshot.
+            if (!m_isProxy) {
+                return getSnapshot();
+            } else {
+                return m_proxyObject;
+            }
+        }
+
         // Initialize the thread local object is not already touched.
         Usage usage = m_usage.get();
         if (usage.m_stack == 0) { // uninitialized usage.
@@ -750,6 +793,52 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
 
     }
 
+    /**
+     * Gets the snapshot of the service objects, computing and publishing it
+     * if the bound services changed since the last one.
+     * Collections are wrapped to be unmodifiable; arrays and vectors are
+     * shared between threads and must not be modified by the component.
+     *
+     * @return the service object or a nullable / default implementation if defined,
+     *         the array or the collection of service objects for aggregate dependencies.
+     */
+    private Object getSnapshot() {
+        Snapshot snapshot = m_snapshot.get();
+        if (snapshot != null) {
+            return snapshot.m_object;
+        }
+
+        int version = m_snapshotVersion.get();
+        Usage usage = new Usage();
+        createServiceObject(usage);
+        Object obj = usage.m_object;
+        if (obj instanceof List && !(obj instanceof Vector)) {
+            obj = Collections.unmodifiableList((List) obj);
+        } else if (obj instanceof Set) {
+            obj = Collections.unmodifiableSet((Set) obj);
+        }
+        snapshot = new Snapshot(version, obj);
+
+        // The 'no service' result is not kept when a timeout is set, the next access must wait again.
+        if (m_timeout == 0 || getServiceReference() != null) {
+            if (m_snapshot.compareAndSet(null, snapshot) && m_snapshotVersion.get() != snapshot.m_version) {
+                // The bound services changed while computing the snapshot, drop it.
+                m_snapshot.compareAndSet(snapshot, null);
+            }
+        }
+        return obj;
+    }
+
+    /**
+     * Drops the published snapshot, the next access computes a new one.
+     */
+    private void invalidateSnapshot() {
+        if (m_isSnapshot) {
+            m_snapshotVersion.incrementAndGet();
+            m_snapshot.set(null);
+        }
+    }
+
     /**
      * Creates the object to store in the given Thread Local.
      * This object will be injected inside the POJO field.
@@ -887,7 +976,7 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
      * @see org.apache.felix.ipojo.MethodInterceptor#onEntry(java.lang.Object, java.lang.reflect.Member, java.lang.Object[])
      */
     public void onEntry(Object pojo, Member method, Object[] args) {
-        if (m_usage != null) {
+        if (m_usage != null && !m_isSnapshot) {
             Usage usage = m_usage.get();
             usage.incComponentStack(); // Increment the number of component access.
             if (usage.m_stack > 0) {
@@ -930,7 +1019,7 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
      * @see org.apache.felix.ipojo.MethodInterceptor#onFinally(java.lang.Object, java.lang.reflect.Member)
      */
     public void onFinally(Object pojo, Member method) {
-        if (m_usage != null) {
+        if (m_usage != null && !m_isSnapshot) {
             Usage usage = m_usage.get();
             usage.decComponentStack();
             if (usage.m_stack > 0) {
@@ -967,6 +1056,21 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
         m_isProxy = proxy;
     }
 
+    public boolean isSnapshot() {
+        return m_isSnapshot;
+    }
+
+    /**
+     * Enables or disables the snapshot mode.
+     * This method is called during the configuration.
+     *
+     * @param snapshot {@code true} to inject a snapshot of the service objects shared
+     *                 by all threads instead of a copy tracked per thread.
+     */
+    public void setSnapshot(boolean snapshot) {
+        m_isSnapshot = snapshot;
+    }
+
     /**
      * Set the type to inject.
      * This method set the dependency as aggregate.
@@ -1051,6 +1155,26 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
         return m_type;
     }
 
+    /**
+     * Service objects injected in snapshot mode, for a given version of the
+     * bound services.
+     */
+    private static final class Snapshot {
+        /**
+         * Version of the bound services used to compute the snapshot.
+         */
+        final int m_version;
+        /**
+         * Object to inject.
+         */
+        final Object m_object;
+
+        Snapshot(int version, Object object) {
+            m_version = version;
+            m_object = object;
+        }
+    }
+
     /**
      * Classloader for nullable objects.
      */
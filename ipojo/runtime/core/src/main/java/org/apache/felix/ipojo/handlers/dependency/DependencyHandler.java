@@ -227,6 +227,9 @@ public class DependencyHandler extends PrimitiveHandler implements DependencySta
 
             boolean isProxy = isProxy(dependencyElement);
 
+            String snap = dependencyElement.getAttribute("snapshot");
+            boolean snapshot = snap != null && snap.equalsIgnoreCase("true");
+
             BundleContext context = getFacetedBundleContext(dependencyElement);
 
             String filter = computeFilter(dependencyElement, filtersConfiguration, fromConfiguration, aggregate, identity);
@@ -243,6 +246,7 @@ public class DependencyHandler extends PrimitiveHandler implements DependencySta
             Dependency dep = new Dependency(this, field, spec, fil, optional, aggregate, nullable, isProxy, identity,
                     context, policy, cmp, defaultImpl, exception);
             dep.setTimeout(timeout);
+            dep.setSnapshot(snapshot);
 
             // Look for dependency callback :
             addCallbacksToDependency(dependencyElement, dep);
@@ -268,7 +272,10 @@ public class DependencyHandler extends PrimitiveHandler implements DependencySta
             MethodMetadata[] methods = manipulation.getMethods();
             for (MethodMetadata method : methods) {
                 for (Dependency dep : m_dependencies) {
-                    getInstanceManager().register(method, dep);
+                    // Snapshot dependencies don't track the method flow.
+                    if (!dep.isSnapshot()) {
+                        getInstanceManager().register(method, dep);
+                    }
                 }
             }
 
@@ -278,7 +285,9 @@ public class DependencyHandler extends PrimitiveHandler implements DependencySta
                 if (meths != null) {
                     for (MethodMetadata method : meths) {
                         for (Dependency dep : m_dependencies) {
-                            getInstanceManager().register(method, inner, dep);
+                            if (!dep.isSnapshot()) {
+                                getInstanceManager().register(method, inner, dep);
+                            }
                         }
                     }
                 }
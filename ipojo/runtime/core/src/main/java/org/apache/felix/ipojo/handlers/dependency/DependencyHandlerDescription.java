@@ -111,6 +111,10 @@ public class DependencyHandlerDescription extends HandlerDescription {
                 dep.addAttribute(new Attribute("Proxy", "false"));
             }
 
+            if (dependency.isSnapshot()) {
+                dep.addAttribute(new Attribute("Snapshot", "true"));
+            }
+
             String policy = "dynamic";
             if (dependency.getPolicy() == DependencyModel.STATIC_BINDING_POLICY) {
                 policy = "static";
@@ -22,6 +22,7 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 
 import org.apache.felix.ipojo.ComponentInstance;
 import org.apache.felix.ipojo.ConfigurationException;
@@ -95,6 +96,12 @@ public class Property implements FieldInterceptor, ConstructorInjector {
      */
     private final Class m_type;
 
+    /**
+     * The converter creating the values of the property
+     * from their String form.
+     */
+    private final Converter m_converter;
+
     /**
      * The handler object to get the logger.
      */
@@ -134,8 +141,9 @@ public class Property implements FieldInterceptor, ConstructorInjector {
         }
 
         m_type = computeType(type, manager.getGlobalContext());
+        m_converter = new Converter(m_type);
         if (value != null) {
-            m_value = create(m_type, value);
+            m_value = m_converter.convert(value);
             m_defaultValue = m_value;
         }
 
@@ -178,6 +186,7 @@ public class Property implements FieldInterceptor, ConstructorInjector {
         }
 
         m_type = value.getClass();
+        m_converter = new Converter(m_type);
         m_value = value;
         m_defaultValue = m_value;
 
@@ -379,27 +388,57 @@ public class Property implements FieldInterceptor, ConstructorInjector {
      */
     public void setValue(Object value) {
         synchronized (this) {
-            // Is the object is directly assignable to the property, affect it.
-            if (isAssignable(m_type, value)) {
-                m_value = value;
-            } else {
-                // If the object is a String, we must recreate the object from the String form
-                if (value instanceof String) {
-                    try {
-                        m_value = create(m_type, (String) value);
-                    } catch (ConfigurationException e) {
-                        throw new ClassCastException("Incompatible type for the property " + m_name + " : " + e.getMessage());
-                    }
-                } else {
-                    // Error, the given property cannot be injected.
-                    throw new ClassCastException("Incompatible type for the property " + m_name + " " + m_type.getName() + " expected, "
-                                                 + value.getClass() + " found");
-                }
-            }
+            m_value = convert(value);
             m_invoked = false;
         }
     }
 
+    /**
+     * Converts the given value to the type of the property.
+     * Values directly assignable to the property are returned as they are,
+     * String values are converted with the converter resolved for the property type.
+     * @param value the value to convert
+     * @return the value to assign to the property
+     * @throws ClassCastException if the value cannot be assigned to the property
+     */
+    public Object convert(Object value) {
+        // Is the object is directly assignable to the property, affect it.
+        if (isAssignable(m_type, value)) {
+            return value;
+        }
+        // If the object is a String, we must recreate the object from the String form
+        if (value instanceof String) {
+            try {
+                return m_converter.convert((String) value);
+            } catch (ConfigurationException e) {
+                throw new ClassCastException("Incompatible type for the property " + m_name + " : " + e.getMessage());
+            }
+        }
+        // Error, the given property cannot be injected.
+        throw new ClassCastException("Incompatible type for the property " + m_name + " " + m_type.getName() + " expected, "
+                                     + value.getClass() + " found");
+    }
+
+    /**
+     * Checks whether two property values are equal.
+     * Arrays are compared by content.
+     * @param value1 the first value (may be <code>null</code>)
+     * @param value2 the second value (may be <code>null</code>)
+     * @return <code>true</code> if both values are equal
+     */
+    public static boolean isSameValue(Object value1, Object value2) {
+        if (value1 == value2) {
+            return true;
+        }
+        if (value1 == null || value2 == null) {
+            return false;
+        }
+        if (value1.getClass().isArray() && value2.getClass().isArray()) {
+            return Arrays.deepEquals(new Object[] { value1 }, new Object[] { value2 });
+        }
+        return value1.equals(value2);
+    }
+
     /**
      * Checks if the given value is assignable to the given type.
      * @param type the class of the type
@@ -434,60 +473,7 @@ public class Property implements FieldInterceptor, ConstructorInjector {
      * @throws ConfigurationException if the object cannot be created.
      */
     public static Object create(Class type, String strValue) throws ConfigurationException {
-        if (Boolean.TYPE.equals(type)) {
-            return Boolean.valueOf(strValue);
-        }
-        if (Byte.TYPE.equals(type)) { return new Byte(strValue); }
-        if (Short.TYPE.equals(type)) { return new Short(strValue); }
-        if (Integer.TYPE.equals(type)) { return new Integer(strValue); }
-        if (Long.TYPE.equals(type)) { return new Long(strValue); }
-        if (Float.TYPE.equals(type)) { return new Float(strValue); }
-        if (Double.TYPE.equals(type)) { return new Double(strValue); }
-        // Character is a bit tricky, it's a boxing type, but there is not creator taking a String as parameter.
-        if (Character.TYPE.equals(type)  || Character.class.equals(type)) { return strValue.charAt(0); }
-
-        // Array :
-        if (type.isArray()) {
-            return createArrayObject(type.getComponentType(), ParseUtils.parseArrays(strValue));
-        }
-
-        // Enum :
-        if (type.getSuperclass() != null  && type.getSuperclass().getName().equals("java.lang.Enum")) {
-            try {
-                Method valueOf = type.getMethod("valueOf", new Class[] {String.class});
-                if (! valueOf.isAccessible()) {
-                    valueOf.setAccessible(true);
-                }
-                 // Invoke the static method
-                return valueOf.invoke(null, new String[] {strValue});
-            } catch (InvocationTargetException e) {
-                throw new ConfigurationException("Cannot create an enumerated value for " + type
-                        + " with " + strValue, e.getTargetException());
-            } catch (Exception e) {
-                throw new ConfigurationException("Cannot create an enumerated value for " + type
-                        + " with " + strValue, e);
-            }
-        }
-
-        // Else it is a neither a primitive type neither a String -> create
-        // the object by calling a constructor with a string in argument.
-        try {
-            Constructor cst = type.getConstructor(new Class[] { String.class });
-            return cst.newInstance(new Object[] { strValue });
-        } catch (SecurityException e) {
-            throw new ConfigurationException("Security exception during the creation of " + type, e);
-        } catch (NoSuchMethodException e) {
-            throw new ConfigurationException("Constructor not found exception during the creation of " + type, e);
-        } catch (IllegalArgumentException e) {
-            throw new ConfigurationException("Argument issue when calling the constructor of the type " + type, e);
-        } catch (InstantiationException e) {
-            throw new ConfigurationException("Instantiation problem  " + type, e);
-        } catch (IllegalAccessException e) {
-            throw new ConfigurationException("Illegal Access " + type, e);
-        } catch (InvocationTargetException e) {
-            throw new ConfigurationException("Invocation problem during the creation of " + type, e.getTargetException());
-        }
-
+        return new Converter(type).convert(strValue);
     }
 
     /**
@@ -686,4 +672,133 @@ public class Property implements FieldInterceptor, ConstructorInjector {
     public Handler getHandler() {
         return m_handler;
     }
+
+    /**
+     * Creates the values of a given type from their String form.
+     * The reflective lookups (<code>valueOf</code> method of the
+     * enumerations, constructor taking a String) are done once, when the
+     * converter is created, so the properties reconfigured many times do not
+     * pay them on every reconfiguration.
+     */
+    private static final class Converter {
+
+        /**
+         * The type of the created values.
+         */
+        private final Class m_type;
+
+        /**
+         * The <code>valueOf</code> method of an enumerated type.
+         */
+        private final Method m_valueOf;
+
+        /**
+         * The constructor taking a String.
+         */
+        private final Constructor m_constructor;
+
+        /**
+         * The error raised when looking up the method or the constructor.
+         */
+        private final Exception m_error;
+
+        /**
+         * Creates the converter of the given type.
+         * @param type the type of the created values
+         */
+        Converter(Class type) {
+            m_type = type;
+            Method valueOf = null;
+            Constructor constructor = null;
+            Exception error = null;
+            if (! type.isPrimitive() && ! Character.class.equals(type) && ! type.isArray()) {
+                if (type.getSuperclass() != null  && type.getSuperclass().getName().equals("java.lang.Enum")) {
+                    try {
+                        valueOf = type.getMethod("valueOf", new Class[] {String.class});
+                        if (! valueOf.isAccessible()) {
+                            valueOf.setAccessible(true);
+                        }
+                    } catch (Exception e) {
+                        error = e;
+                    }
+                } else {
+                    try {
+                        constructor = type.getConstructor(new Class[] { String.class });
+                    } catch (SecurityException e) {
+                        error = e;
+                    } catch (NoSuchMethodException e) {
+                        error = e;
+                    }
+                }
+            }
+            m_valueOf = valueOf;
+            m_constructor = constructor;
+            m_error = error;
+        }
+
+        /**
+         * Creates an object of the converter type with the given String value.
+         * @param strValue the String value.
+         * @return the object created from the String 'value'
+         * @throws ConfigurationException if the object cannot be created.
+         */
+        Object convert(String strValue) throws ConfigurationException {
+            Class type = m_type;
+            if (Boolean.TYPE.equals(type)) {
+                return Boolean.valueOf(strValue);
+            }
+            if (Byte.TYPE.equals(type)) { return new Byte(strValue); }
+            if (Short.TYPE.equals(type)) { return new Short(strValue); }
+            if (Integer.TYPE.equals(type)) { return new Integer(strValue); }
+            if (Long.TYPE.equals(type)) { return new Long(strValue); }
+            if (Float.TYPE.equals(type)) { return new Float(strValue); }
+            if (Double.TYPE.equals(type)) { return new Double(strValue); }
+            // Character is a bit tricky, it's a boxing type, but there is not creator taking a String as parameter.
+            if (Character.TYPE.equals(type)  || Character.class.equals(type)) { return strValue.charAt(0); }
+
+            // Array :
+            if (type.isArray()) {
+                return createArrayObject(type.getComponentType(), ParseUtils.parseArrays(strValue));
+            }
+
+            // Enum :
+            if (m_valueOf != null) {
+                try {
+                    // Invoke the static method
+                    return m_valueOf.invoke(null, new String[] {strValue});
+                } catch (InvocationTargetException e) {
+                    throw new ConfigurationException("Cannot create an enumerated value for " + type
+                            + " with " + strValue, e.getTargetException());
+                } catch (Exception e) {
+                    throw new ConfigurationException("Cannot create an enumerated value for " + type
+                            + " with " + strValue, e);
+                }
+            }
+
+            if (m_constructor == null) {
+                if (m_error instanceof SecurityException) {
+                    throw new ConfigurationException("Security exception during the creation of " + type, m_error);
+                } else if (m_error instanceof NoSuchMethodException) {
+                    throw new ConfigurationException("Constructor not found exception during the creation of " + type, m_error);
+                } else {
+                    throw new ConfigurationException("Cannot create an enumerated value for " + type
+                            + " with " + strValue, m_error);
+                }
+            }
+
+            // Else it is a neither a primitive type neither a String -> create
+            // the object by calling a constructor with a string in argument.
+            try {
+                return m_constructor.newInstance(new Object[] { strValue });
+            } catch (IllegalArgumentException e) {
+                throw new ConfigurationException("Argument issue when calling the constructor of the type " + type, e);
+            } catch (InstantiationException e) {
+                throw new ConfigurationException("Instantiation problem  " + type, e);
+            } catch (IllegalAccessException e) {
+                throw new ConfigurationException("Illegal Access " + type, e);
+            } catch (InvocationTargetException e) {
+                throw new ConfigurationException("Invocation problem during the creation of " + type, e.getTargetException());
+            }
+        }
+    }
 }
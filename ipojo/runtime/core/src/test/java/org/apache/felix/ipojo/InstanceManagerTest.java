@@ -20,7 +20,9 @@ package org.apache.felix.ipojo;
 
 import org.apache.felix.ipojo.metadata.Attribute;
 import org.apache.felix.ipojo.metadata.Element;
+import org.apache.felix.ipojo.parser.FieldMetadata;
 import org.apache.felix.ipojo.parser.MethodMetadata;
+import org.apache.felix.ipojo.parser.PojoMetadata;
 import org.junit.Test;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -125,6 +127,115 @@ public class InstanceManagerTest {
         assertThat(error.get()).isEqualTo(0);
     }
 
+    @Test
+    public void testFieldSlots() throws ConfigurationException {
+        Element manipulation = new Element("manipulation", "");
+        manipulation.addAttribute(new Attribute("classname", MyComponent.class.getName()));
+        for (String name : new String[] {"m_b", "m_a"}) {
+            Element field = new Element("field", "");
+            field.addAttribute(new Attribute("name", name));
+            field.addAttribute(new Attribute("type", String.class.getName()));
+            manipulation.addElement(field);
+        }
+        InstanceManager manager = createConfiguredManager(manipulation);
+
+        final AtomicInteger sets = new AtomicInteger();
+        manager.register(new FieldMetadata("m_b", String.class.getName()), new FieldInterceptor() {
+            public void onSet(Object pojo, String fieldName, Object value) {
+                sets.incrementAndGet();
+            }
+
+            public Object onGet(Object pojo, String fieldName, Object value) {
+                return "injected";
+            }
+        });
+
+        // Slots follow the field name order: m_a is 0, m_b is 1
+        Object pojo = new MyComponent();
+        assertThat(manager.onGet(pojo, "m_b", 1)).isEqualTo("injected");
+        assertThat(sets.get()).isEqualTo(1);
+        manager.onSet(pojo, "m_a", 0, "value");
+        assertThat(manager.onGet(pojo, "m_a")).isEqualTo("value");
+        assertThat(manager.getFieldValue("m_a", null)).isEqualTo("value");
+
+        // A field of a parent class, given with the slot of its own class
+        manager.onSet(pojo, "m_parent", 0, "parent");
+        assertThat(manager.onGet(pojo, "m_parent", 0)).isEqualTo("parent");
+        assertThat(manager.onGet(pojo, "m_a", 0)).isEqualTo("value");
+    }
+
+    @Test
+    public void testMethodSlots() throws ConfigurationException {
+        Element manipulation = new Element("manipulation", "");
+        manipulation.addAttribute(new Attribute("classname", MyComponent.class.getName()));
+        for (String name : new String[] {"foo", "bar"}) {
+            Element method = new Element("method", "");
+            method.addAttribute(new Attribute("name", name));
+            method.addAttribute(new Attribute("arguments", "{java.lang.String}"));
+            method.addAttribute(new Attribute("names", "{name}"));
+            manipulation.addElement(method);
+        }
+        InstanceManager manager = createConfiguredManager(manipulation);
+
+        final AtomicInteger entries = new AtomicInteger();
+        final AtomicInteger exits = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        manager.register(new MethodMetadata(manipulation.getElements("method")[1]), new MethodInterceptor() {
+            public void onEntry(Object pojo, Member method, Object[] args) {
+                entries.incrementAndGet();
+            }
+
+            public void onExit(Object pojo, Member method, Object returnedObj) {
+                exits.incrementAndGet();
+            }
+
+            public void onError(Object pojo, Member method, Throwable throwable) {
+                errors.incrementAndGet();
+            }
+
+            public void onFinally(Object pojo, Member method) {
+            }
+        });
+        assertThat(manager.getRegistredMethods()).containsOnly("bar$java_lang_String");
+
+        // Slots follow the method id order: bar is 0, foo is 1
+        Object pojo = new MyComponent();
+        manager.onEntry(pojo, "bar$java_lang_String", 0, new Object[] {"name"});
+        manager.onExit(pojo, "bar$java_lang_String", 0, null);
+        manager.onError(pojo, "bar$java_lang_String", 0, new Exception());
+        assertThat(entries.get()).isEqualTo(1);
+        assertThat(exits.get()).isEqualTo(1);
+        assertThat(errors.get()).isEqualTo(1);
+
+        // Not intercepted
+        manager.onEntry(pojo, "foo$java_lang_String", 1, new Object[] {"name"});
+        // A method of another class, given with the slot of its own class
+        manager.onEntry(pojo, "baz$java_lang_String", 0, new Object[] {"name"});
+        assertThat(entries.get()).isEqualTo(1);
+
+        // Without slot
+        manager.onEntry(pojo, "bar$java_lang_String", new Object[] {"name"});
+        assertThat(entries.get()).isEqualTo(2);
+    }
+
+    private InstanceManager createConfiguredManager(Element manipulation) throws ConfigurationException {
+        Element metadata = new Element("component", "");
+        metadata.addAttribute(new Attribute("classname", MyComponent.class.getName()));
+        metadata.addElement(manipulation);
+
+        ComponentFactory factory = mock(ComponentFactory.class);
+        when(factory.getPojoMetadata()).thenReturn(new PojoMetadata(metadata));
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getHeaders()).thenReturn(new Hashtable<String, String>());
+        BundleContext context = mock(BundleContext.class);
+        when(context.getBundle()).thenReturn(bundle);
+        InstanceManager manager = new InstanceManager(factory, context, new HandlerManager[0]);
+        Hashtable<String, Object> configuration = new Hashtable<String, Object>();
+        configuration.put(Factory.INSTANCE_NAME_PROPERTY, "instance");
+        manager.configure(metadata, configuration);
+        return manager;
+    }
+
     private class Caller implements Runnable {
 
         private final CountDownLatch startSignal;
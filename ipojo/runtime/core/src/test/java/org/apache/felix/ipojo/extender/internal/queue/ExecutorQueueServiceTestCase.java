@@ -21,25 +21,41 @@ package org.apache.felix.ipojo.extender.internal.queue;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.felix.ipojo.extender.internal.linker.ManagedType;
+import org.apache.felix.ipojo.extender.internal.processor.QueuingActivationProcessor;
+import org.apache.felix.ipojo.extender.internal.queue.callable.EmptyJob;
 import org.apache.felix.ipojo.extender.internal.queue.callable.SleepingCallable;
 import org.apache.felix.ipojo.extender.internal.queue.callable.StringCallable;
 import org.apache.felix.ipojo.extender.queue.Callback;
 import org.apache.felix.ipojo.extender.queue.JobInfo;
+import org.apache.felix.ipojo.extender.queue.JobStatistics;
+import org.apache.felix.ipojo.extender.queue.JobStatisticsProvider;
 import org.apache.felix.ipojo.extender.queue.QueueService;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
 
@@ -200,6 +216,178 @@ public class ExecutorQueueServiceTestCase extends TestCase {
 
         verifyZeroInteractions(m_registration);
     }
-}
 
+    public void testWaitingJobsAreOrderedByPriority() throws Exception {
+        ExecutorQueueService queueService = new ExecutorQueueService(m_bundleContext, 1);
+        queueService.start();
+
+        // Occupy the only thread while the other jobs are queued
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queueService.submit(new BlockingJob(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        queueService.submit(new RecordingJob(ManagedType.INSTANCE_STARTUP_JOB_TYPE, "instance-1", order));
+        queueService.submit(new RecordingJob(QueuingActivationProcessor.BUNDLE_ACTIVATION_JOB_TYPE, "bundle", order));
+        queueService.submit(new RecordingJob(ManagedType.INSTANCE_STARTUP_JOB_TYPE, "instance-2", order));
+        Future<String> last = queueService.submit(new RecordingJob(ManagedType.FACTORY_CREATION_JOB_TYPE, "factory", order));
+        assertEquals(4, queueService.getWaiters());
+
+        release.countDown();
+        last.get();
+        queueService.stop();
+
+        assertEquals(Arrays.asList("factory", "bundle", "instance-1", "instance-2"), order);
+    }
+
+    public void testSubmissionBlocksWhenTheQueueIsFull() throws Exception {
+        final ExecutorQueueService queueService = new ExecutorQueueService(m_bundleContext, 1, 1,
+                                                                           Executors.defaultThreadFactory());
+        queueService.start();
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queueService.submit(new BlockingJob(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Fills the queue
+        queueService.submit(new StringCallable());
+
+        final CountDownLatch submitted = new CountDownLatch(1);
+        Thread submitter = new Thread() {
+            public void run() {
+                queueService.submit(new StringCallable());
+                submitted.countDown();
+            }
+        };
+        submitter.start();
+        assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, queueService.getWaiters());
+
+        release.countDown();
+        assertTrue(submitted.await(5, TimeUnit.SECONDS));
+        submitter.join();
+        queueService.stop();
+    }
+
+    public void testSubmissionWaitIsBounded() throws Exception {
+        // The time out is logged
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getHeaders()).thenReturn(new Hashtable<String, String>());
+        when(m_bundleContext.getBundle()).thenReturn(bundle);
+
+        ExecutorQueueService queueService = new ExecutorQueueService(m_bundleContext, 1, 1,
+                                                                     Executors.defaultThreadFactory());
+        queueService.start();
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queueService.submit(new BlockingJob(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Fills the queue, the next submission times out and exceeds the capacity
+        queueService.submit(new StringCallable());
+        long begin = System.currentTimeMillis();
+        Future<String> overflow = queueService.submit(new StringCallable());
+        assertTrue(System.currentTimeMillis() - begin >= ExecutorQueueService.MAX_SUBMISSION_WAIT);
+        assertEquals(2, queueService.getWaiters());
+
+        release.countDown();
+        assertEquals("hello", overflow.get(5, TimeUnit.SECONDS));
+        queueService.stop();
+    }
+
+    public void testJobsSubmittingJobsDoNotBlock() throws Exception {
+        final ExecutorQueueService queueService = new ExecutorQueueService(m_bundleContext, 1, 1,
+                                                                           Executors.defaultThreadFactory());
+        queueService.start();
+
+        final List<Future<String>> children = new ArrayList<Future<String>>();
+        Future<String> parent = queueService.submit(new EmptyJob<String>() {
+            public String call() throws Exception {
+                for (int i = 0; i < 3; i++) {
+                    children.add(queueService.submit(new StringCallable()));
+                }
+                return "parent";
+            }
+        });
+
+        assertEquals("parent", parent.get(5, TimeUnit.SECONDS));
+        for (Future<String> child : children) {
+            assertEquals("hello", child.get(5, TimeUnit.SECONDS));
+        }
+        queueService.stop();
+    }
+
+    public void testJobStatistics() throws Exception {
+        ExecutorQueueService queueService = new ExecutorQueueService(m_bundleContext, 1);
+        queueService.start();
+
+        queueService.submit(new SleepingCallable(20, "1")).get();
+        queueService.submit(new EmptyJob<String>(null, null)).get();
 
+        Map<String, JobStatistics> statistics = queueService.getJobStatistics();
+        assertEquals(2, statistics.size());
+        JobStatistics test = statistics.get("test");
+        assertEquals(1, test.getCount());
+        assertTrue(test.getExecutionDurations().getMax() >= 10);
+        assertEquals(1, test.getWaitDurations().getCount());
+        assertEquals(1, statistics.get(JobStatisticsProvider.UNKNOWN_JOB_TYPE).getCount());
+
+        queueService.stop();
+    }
+
+    public void testCapacityUpdate() throws Exception {
+        ExecutorQueueService queueService = new ExecutorQueueService(m_bundleContext, 1);
+
+        Mockito.<ServiceRegistration<?>>when(m_bundleContext.registerService(any(String[].class),
+                                                                             eq(queueService),
+                                                                             any(Dictionary.class)))
+               .thenReturn(m_registration);
+
+        queueService.start();
+        assertEquals(ExecutorQueueService.DEFAULT_QUEUE_CAPACITY, queueService.getCapacity());
+
+        Dictionary<String, Object> update = new Hashtable<String, Object>();
+        update.put(ExecutorQueueService.QUEUE_CAPACITY_PROPERTY, "10");
+        queueService.updated(update);
+
+        assertEquals(10, queueService.getCapacity());
+        verify(m_registration).setProperties(m_captor.capture());
+        assertEquals(10, m_captor.getValue().get(ExecutorQueueService.QUEUE_CAPACITY_PROPERTY));
+        queueService.stop();
+    }
+
+    private static class BlockingJob extends EmptyJob<String> {
+        private final CountDownLatch m_started;
+        private final CountDownLatch m_release;
+
+        public BlockingJob(CountDownLatch started, CountDownLatch release) {
+            m_started = started;
+            m_release = release;
+        }
+
+        public String call() throws Exception {
+            m_started.countDown();
+            m_release.await();
+            return "blocking";
+        }
+    }
+
+    private static class RecordingJob extends EmptyJob<String> {
+        private final String m_name;
+        private final List<String> m_order;
+
+        public RecordingJob(String type, String name, List<String> order) {
+            super(null, type);
+            m_name = name;
+            m_order = order;
+        }
+
+        public String call() throws Exception {
+            m_order.add(m_name);
+            return m_name;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.extender.internal.queue;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import org.apache.felix.ipojo.extender.queue.Histogram;
+
+/**
+ * Checks the histograms of the job durations.
+ */
+public class HistogramRecorderTestCase extends TestCase {
+
+    public void testDurationsAreCountedInTheirBucket() throws Exception {
+        HistogramRecorder recorder = new HistogramRecorder();
+        recorder.record(0);
+        recorder.record(1);
+        recorder.record(3);
+        recorder.record(-5);
+        recorder.record(20000);
+
+        Histogram histogram = recorder.snapshot();
+        long[] counts = histogram.getCounts();
+        assertEquals(HistogramRecorder.BOUNDS.length + 1, counts.length);
+        // 0, 1 and the negative duration are in the first bucket (<= 1ms)
+        assertEquals(3, counts[0]);
+        // 3 is in the (2, 5] bucket
+        assertEquals(1, counts[2]);
+        // 20000 is in the unbounded bucket
+        assertEquals(1, counts[counts.length - 1]);
+        assertEquals(5, histogram.getCount());
+        assertEquals(20004, histogram.getSum());
+        assertEquals(20000, histogram.getMax());
+    }
+
+    public void testPercentiles() throws Exception {
+        HistogramRecorder recorder = new HistogramRecorder();
+        for (int i = 0; i < 99; i++) {
+            recorder.record(3);
+        }
+        recorder.record(700);
+
+        Histogram histogram = recorder.snapshot();
+        assertEquals(5, histogram.getPercentile(50));
+        assertEquals(5, histogram.getPercentile(99));
+        assertEquals(700, histogram.getPercentile(100));
+        assertEquals(0, new HistogramRecorder().snapshot().getPercentile(50));
+    }
+
+    public void testMerge() throws Exception {
+        HistogramRecorder one = new HistogramRecorder();
+        one.record(1);
+        HistogramRecorder two = new HistogramRecorder();
+        two.record(1);
+        two.record(50);
+
+        Histogram merged = one.snapshot().merge(two.snapshot());
+        assertEquals(3, merged.getCount());
+        assertEquals(52, merged.getSum());
+        assertEquals(50, merged.getMax());
+        assertTrue(Arrays.equals(HistogramRecorder.BOUNDS, merged.getBounds()));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.handlers.configuration;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.apache.felix.ipojo.ComponentFactory;
+import org.apache.felix.ipojo.ComponentInstance;
+import org.apache.felix.ipojo.InstanceManager;
+import org.apache.felix.ipojo.PrimitiveHandler;
+import org.apache.felix.ipojo.test.MockBundle;
+import org.apache.felix.ipojo.util.Logger;
+import org.apache.felix.ipojo.util.Property;
+import org.mockito.Mockito;
+import org.osgi.framework.BundleContext;
+
+import java.lang.reflect.Method;
+import java.util.Hashtable;
+
+/**
+ * Checks that the reconfigurations only touch the changed properties.
+ */
+public class ConfigurationHandlerTest extends TestCase {
+
+    private InstanceManager m_im;
+    private ConfigurationHandler m_handler;
+
+    public void setUp() throws Exception {
+        BundleContext context = Mockito.mock(BundleContext.class);
+        Mockito.when(context.getProperty(Logger.IPOJO_LOG_LEVEL_PROP)).thenReturn(null);
+        Mockito.when(context.getBundle()).thenReturn(new MockBundle(this.getClass().getClassLoader()));
+
+        ComponentFactory factory = Mockito.mock(ComponentFactory.class);
+        Mockito.when(factory.getBundleClassLoader()).thenReturn(ConfigurationHandler.class.getClassLoader());
+        Mockito.when(factory.getLogger()).thenReturn(new Logger(context, "TEST", Logger.WARNING));
+
+        m_im = Mockito.mock(InstanceManager.class);
+        Mockito.when(m_im.getContext()).thenReturn(context);
+        Mockito.when(m_im.getGlobalContext()).thenReturn(context);
+        Mockito.when(m_im.getFactory()).thenReturn(factory);
+        Mockito.when(m_im.getInstanceName()).thenReturn("an.instance");
+
+        m_handler = new ConfigurationHandler();
+        m_handler.setFactory(factory);
+
+        // Attach the handler
+        Method method = PrimitiveHandler.class.getDeclaredMethod("attach", new Class[]{ComponentInstance.class});
+        method.setAccessible(true);
+        method.invoke(m_handler, new Object[]{m_im});
+    }
+
+    private Property addProperty(String name, String value, String type) throws Exception {
+        Property property = new Property(name, "m_" + name, null, value, type, m_im, m_handler);
+        m_handler.addProperty(property);
+        return property;
+    }
+
+    public void testOnlyChangedPropertiesAreInjected() throws Exception {
+        Property count = addProperty("count", "1", "int");
+        Property label = addProperty("label", "a", "java.lang.String");
+
+        Hashtable<String, Object> configuration = new Hashtable<String, Object>();
+        configuration.put("count", "1");
+        configuration.put("label", "b");
+        m_handler.reconfigure(configuration);
+
+        Mockito.verify(m_im, Mockito.never()).onSet(Mockito.any(), Mockito.eq("m_count"), Mockito.any());
+        Mockito.verify(m_im).onSet(null, "m_label", "b");
+        Assert.assertEquals(1, count.getValue());
+        Assert.assertEquals("b", label.getValue());
+
+        // The same configuration, with a typed value
+        configuration.put("count", 1);
+        m_handler.reconfigure(configuration);
+        Mockito.verify(m_im, Mockito.never()).onSet(Mockito.any(), Mockito.eq("m_count"), Mockito.any());
+        Mockito.verify(m_im, Mockito.times(1)).onSet(null, "m_label", "b");
+
+        configuration.put("count", "2");
+        m_handler.reconfigure(configuration);
+        Mockito.verify(m_im).onSet(null, "m_count", 2);
+        Mockito.verify(m_im, Mockito.times(1)).onSet(null, "m_label", "b");
+    }
+
+    public void testArraysAreComparedByContent() throws Exception {
+        Property ports = addProperty("ports", "{1, 2}", "int[]");
+
+        Hashtable<String, Object> configuration = new Hashtable<String, Object>();
+        configuration.put("ports", "{1, 2}");
+        m_handler.reconfigure(configuration);
+        configuration.put("ports", new int[] {1, 2});
+        m_handler.reconfigure(configuration);
+        Mockito.verify(m_im, Mockito.never()).onSet(Mockito.any(), Mockito.eq("m_ports"), Mockito.any());
+
+        configuration.put("ports", new int[] {3});
+        m_handler.reconfigure(configuration);
+        Mockito.verify(m_im).onSet(Mockito.isNull(), Mockito.eq("m_ports"), Mockito.any());
+        Assert.assertTrue(Property.isSameValue(new int[] {3}, ports.getValue()));
+    }
+
+    public void testRemovedPropertiesAreResetToTheirDefaultValue() throws Exception {
+        Property count = addProperty("count", "1", "int");
+
+        Hashtable<String, Object> configuration = new Hashtable<String, Object>();
+        configuration.put("count", "5");
+        m_handler.updated(configuration);
+        Assert.assertEquals(5, count.getValue());
+
+        m_handler.updated(new Hashtable<String, Object>());
+        Assert.assertEquals(1, count.getValue());
+        Mockito.verify(m_im).onSet(null, "m_count", 5);
+        Mockito.verify(m_im).onSet(null, "m_count", 1);
+
+        // Pushing the default value again does not touch the field
+        configuration.put("count", "1");
+        m_handler.updated(configuration);
+        Mockito.verify(m_im, Mockito.times(1)).onSet(null, "m_count", 1);
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.handlers.dependency;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.apache.felix.ipojo.ComponentFactory;
+import org.apache.felix.ipojo.InstanceManager;
+import org.apache.felix.ipojo.test.MockBundle;
+import org.apache.felix.ipojo.util.Logger;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks the snapshot mode of service dependencies.
+ */
+public class SnapshotTest extends TestCase {
+
+    private BundleContext m_context;
+    private DependencyHandler m_handler;
+    private ServiceReference m_ref1;
+    private ServiceReference m_ref2;
+    private TestSpecification m_svc1;
+    private TestSpecification m_svc2;
+
+    public void setUp() throws Exception {
+        Bundle bundle = new MockBundle(Dependency.class.getClassLoader());
+
+        m_context = Mockito.mock(BundleContext.class);
+        Mockito.when(m_context.getProperty(DependencyHandler.PROXY_TYPE_PROPERTY)).thenReturn(null);
+        Mockito.when(m_context.getProperty(Logger.IPOJO_LOG_LEVEL_PROP)).thenReturn(null);
+        Mockito.when(m_context.getBundle()).thenReturn(bundle);
+
+        ComponentFactory factory = Mockito.mock(ComponentFactory.class);
+        Mockito.when(factory.getBundleClassLoader()).thenReturn(Dependency.class.getClassLoader());
+
+        InstanceManager im = Mockito.mock(InstanceManager.class);
+        Mockito.when(im.getContext()).thenReturn(m_context);
+        Mockito.when(im.getFactory()).thenReturn(factory);
+
+        m_handler = Mockito.mock(DependencyHandler.class);
+        Mockito.when(m_handler.getInstanceManager()).thenReturn(im);
+        Mockito.when(m_handler.getLogger()).thenReturn(new Logger(m_context, "test", Logger.INFO));
+
+        m_svc1 = Mockito.mock(TestSpecification.class);
+        m_svc2 = Mockito.mock(TestSpecification.class);
+        m_ref1 = createReference(1L);
+        m_ref2 = createReference(2L);
+        Mockito.when(m_context.getServiceReferences(TestSpecification.class.getName(), null))
+                .thenReturn(new ServiceReference[]{m_ref1, m_ref2});
+        Mockito.when(m_context.getService(Mockito.any(ServiceReference.class))).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ServiceReference ref = (ServiceReference) invocation.getArguments()[0];
+                return Long.valueOf(1L).equals(ref.getProperty(Constants.SERVICE_ID)) ? m_svc1 : m_svc2;
+            }
+        });
+    }
+
+    private ServiceReference createReference(long id) {
+        ServiceReference ref = Mockito.mock(ServiceReference.class);
+        Mockito.when(ref.getPropertyKeys()).thenReturn(new String[]{Constants.OBJECTCLASS, Constants.SERVICE_ID});
+        Mockito.when(ref.getProperty(Constants.OBJECTCLASS)).thenReturn(new String[]{TestSpecification.class.getName()});
+        Mockito.when(ref.getProperty(Constants.SERVICE_ID)).thenReturn(id);
+        return ref;
+    }
+
+    private Dependency createAggregateDependency(boolean snapshot) {
+        Dependency dependency = new Dependency(m_handler, "a_field", TestSpecification.class, null, false, true, false,
+                false, "dep", m_context, Dependency.DYNAMIC_BINDING_POLICY, null, null, null);
+        dependency.setAggregateType(AggregateDependencyInjectionType.LIST);
+        dependency.setSnapshot(snapshot);
+        dependency.start();
+        return dependency;
+    }
+
+    private Object getFromAnotherThread(final Dependency dependency) throws InterruptedException {
+        final AtomicReference<Object> result = new AtomicReference<Object>();
+        Thread thread = new Thread() {
+            public void run() {
+                result.set(dependency.onGet(new Object(), "a_field", null));
+            }
+        };
+        thread.start();
+        thread.join();
+        return result.get();
+    }
+
+    /**
+     * Check that the snapshot is shared by all accesses and threads, and republished when the services change.
+     */
+    public void testSnapshotIsSharedUntilTheServicesChange() throws Exception {
+        Dependency dependency = createAggregateDependency(true);
+
+        List services = (List) dependency.onGet(new Object(), "a_field", null);
+        Assert.assertEquals(2, services.size());
+        Assert.assertTrue(services.contains(m_svc1));
+        Assert.assertTrue(services.contains(m_svc2));
+
+        Assert.assertSame(services, dependency.onGet(new Object(), "a_field", null));
+        Assert.assertSame(services, getFromAnotherThread(dependency));
+
+        try {
+            services.add(m_svc1);
+            fail("The snapshot must not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // Ok.
+        }
+
+        // Unregister the second service, the departure goes through the tracker
+        ArgumentCaptor<ServiceListener> listener = ArgumentCaptor.forClass(ServiceListener.class);
+        Mockito.verify(m_context, Mockito.atLeastOnce()).addServiceListener(listener.capture(), (String) Mockito.any());
+        Mockito.when(m_context.getServiceReferences(TestSpecification.class.getName(), null))
+                .thenReturn(new ServiceReference[]{m_ref1});
+        for (ServiceListener l : listener.getAllValues()) {
+            l.serviceChanged(new ServiceEvent(ServiceEvent.UNREGISTERING, m_ref2));
+        }
+
+        Object republished = dependency.onGet(new Object(), "a_field", null);
+        Assert.assertNotSame(services, republished);
+        Assert.assertEquals(Collections.singletonList(m_svc1), republished);
+        Assert.assertSame(republished, dependency.onGet(new Object(), "a_field", null));
+
+        dependency.stop();
+    }
+
+    /**
+     * Check that, without the snapshot mode, each thread gets its own copy.
+     */
+    public void testThreadLocalCopyWithoutSnapshot() throws Exception {
+        Dependency dependency = createAggregateDependency(false);
+
+        List services = (List) dependency.onGet(new Object(), "a_field", null);
+        Assert.assertEquals(2, services.size());
+        Assert.assertNotSame(services, getFromAnotherThread(dependency));
+
+        dependency.stop();
+    }
+
+    /**
+     * Check that the method flow does not change the injected object of a scalar snapshot dependency.
+     */
+    public void testScalarSnapshotIgnoresTheMethodFlow() throws Exception {
+        Dependency dependency = new Dependency(m_handler, "a_field", TestSpecification.class, null, false, false, false,
+                false, "dep", m_context, Dependency.DYNAMIC_BINDING_POLICY, null, null, null);
+        dependency.setSnapshot(true);
+        dependency.start();
+
+        Object pojo = new Object();
+        dependency.onEntry(pojo, null, new Object[0]);
+        Assert.assertSame(m_svc1, dependency.onGet(pojo, "a_field", null));
+        dependency.onFinally(pojo, null);
+        Assert.assertSame(m_svc1, dependency.onGet(pojo, "a_field", null));
+        Assert.assertSame(m_svc1, getFromAnotherThread(dependency));
+
+        dependency.stop();
+    }
+
+}
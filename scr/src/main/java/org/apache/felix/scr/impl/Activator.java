@@ -18,24 +18,15 @@
  */
 package org.apache.felix.scr.impl;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -47,8 +38,6 @@ import org.apache.felix.scr.impl.logger.ScrLoggerFactory;
 import org.apache.felix.scr.impl.logger.ScrLogger;
 import org.apache.felix.scr.impl.manager.ComponentHolder;
 import org.apache.felix.scr.impl.metadata.ComponentMetadata;
-import org.apache.felix.scr.impl.metadata.MetadataStoreHelper.MetaDataReader;
-import org.apache.felix.scr.impl.metadata.MetadataStoreHelper.MetaDataWriter;
 import org.apache.felix.scr.impl.metadata.ReferenceMetadata;
 import org.apache.felix.scr.impl.runtime.ServiceComponentRuntimeImpl;
 import org.osgi.framework.Bundle;
@@ -96,14 +85,20 @@ public class Activator extends AbstractExtender
     // registry of managed component
     private ComponentRegistry m_componentRegistry;
 
-    //  thread acting upon configurations
-    private ComponentActorThread m_componentActor;
+    //  threads acting upon configurations
+    private ComponentActor m_componentActor;
+
+    // threads parsing descriptors and activating components in parallel
+    private StartupExecutor m_startupExecutor;
+
+    // descriptors of bundles already active on startup being parsed in the background
+    private final ConcurrentMap<Long, Future<List<ComponentMetadata>>> m_preparsedMetadata = new ConcurrentHashMap<>();
 
     private ServiceRegistration<ServiceComponentRuntime> m_runtime_reg;
 
     private ComponentCommands m_componentCommands;
 
-    private ConcurrentMap<Long, List<ComponentMetadata>> m_componentMetadataStore;
+    private ComponentMetadataStore m_componentMetadataStore;
 
     public Activator()
     {
@@ -158,7 +153,12 @@ public class Activator extends AbstractExtender
 
     public void restart(boolean globalExtender, boolean initialStart)
     {
-        m_componentMetadataStore = load(m_context, logger,
+        if (m_componentMetadataStore != null)
+        {
+            // everything stored so far is in the journal and is read again below
+            m_componentMetadataStore.closeJournal();
+        }
+        m_componentMetadataStore = ComponentMetadataStore.load(m_context, logger,
             m_configuration.cacheMetadata());
         BundleContext context = m_globalContext;
         if ( globalExtender )
@@ -223,12 +223,29 @@ public class Activator extends AbstractExtender
             null, m_bundle.getVersion().toString() );
 
         // create and start the component actor
-        m_componentActor = new ComponentActorThread( this.logger );
-        Thread t = new Thread( m_componentActor, "SCR Component Actor" );
-        t.setDaemon( true );
-        t.start();
+        m_componentActor = new ComponentActor( this.logger );
+        m_componentActor.start( m_configuration.actorThreads(), m_configuration.actorVirtualThreads() );
+        m_componentRegistry.setComponentActor( m_componentActor );
 
-        super.doStart();
+        m_startupExecutor = new StartupExecutor();
+        if ( m_configuration.parallelParsing() )
+        {
+            preparseComponents();
+        }
+
+        try
+        {
+            super.doStart();
+        }
+        finally
+        {
+            // whatever was not picked up while opening the tracker is not extended
+            for ( Future<List<ComponentMetadata>> future : m_preparsedMetadata.values() )
+            {
+                future.cancel( false );
+            }
+            m_preparsedMetadata.clear();
+        }
 
         m_componentCommands = new ComponentCommands(m_context, runtime, m_configuration);
         m_componentCommands.register();
@@ -241,7 +258,7 @@ public class Activator extends AbstractExtender
     {
         super.stop( context );
         m_configuration.stop();
-        store(m_componentMetadataStore, context, logger, m_configuration.cacheMetadata());
+        m_componentMetadataStore.close();
         logger.close();
     }
 
@@ -260,6 +277,7 @@ public class Activator extends AbstractExtender
             || eType == BundleEvent.UNRESOLVED)
         {
             m_componentMetadataStore.remove(event.getBundle().getBundleId());
+            m_preparsedMetadata.remove(event.getBundle().getBundleId());
         }
         if (eType == BundleEvent.RESOLVED)
         {
@@ -280,130 +298,6 @@ public class Activator extends AbstractExtender
         }
     }
 
-    private static ConcurrentMap<Long, List<ComponentMetadata>> load(
-        BundleContext context,
-        ScrLogger logger, boolean loadFromCache)
-    {
-        try
-        {
-            ConcurrentMap<Long, List<ComponentMetadata>> result = new ConcurrentHashMap<>();
-            if (!loadFromCache)
-            {
-                return result;
-            }
-            BundleContext systemContext = context.getBundle(
-                Constants.SYSTEM_BUNDLE_LOCATION).getBundleContext();
-
-            File store = context.getDataFile("componentMetadataStore");
-            if (store.isFile())
-            {
-                try (DataInputStream in = new DataInputStream(
-                    new BufferedInputStream(new FileInputStream(store))))
-                {
-                    MetaDataReader metaDataReader = new MetaDataReader();
-                    if (!metaDataReader.isVersionSupported(in))
-                    {
-                        // the stored version is not compatible
-                        return result;
-                    }
-                    int numStrings = in.readInt();
-                    for (int i = 0; i < numStrings; i++)
-                    {
-                        metaDataReader.readIndexedString(in);
-                    }
-                    int numBundles = in.readInt();
-                    for (int i = 0; i < numBundles; i++)
-                    {
-                        // Read all the components for the ID even if the bundle does not exist;
-                        long bundleId = in.readLong();
-                        int numComponents = in.readInt();
-                        long lastModified = in.readLong();
-                        List<ComponentMetadata> components = new ArrayList<>(
-                            numComponents);
-                        for (int j = 0; j < numComponents; j++)
-                        {
-                            components.add(ComponentMetadata.load(in, metaDataReader));
-                        }
-                        // Check with system context by ID to avoid hooks hiding;
-                        Bundle b = systemContext.getBundle(bundleId);
-                        if (b != null)
-                        {
-                            if (lastModified == b.getLastModified())
-                            {
-                                result.put(bundleId, components);
-                            }
-                        }
-                    }
-                }
-                catch (IOException e)
-                {
-                    logger.log(Level.WARN,
-                        "Error loading component metadata cache.", e);
-                }
-            }
-            return result;
-        }
-        catch (RuntimeException re)
-        {
-            // avoid failing all of SCR start on cache load bug
-            logger.log(Level.ERROR,
-                "Error loading component metadata cache.", re);
-            return new ConcurrentHashMap<>();
-        }
-
-    }
-
-    private static void store(Map<Long, List<ComponentMetadata>> componentsMap,
-        BundleContext context, ScrLogger logger, boolean storeCache)
-    {
-        if (!storeCache)
-        {
-            return;
-        }
-        BundleContext systemContext = context.getBundle(
-            Constants.SYSTEM_BUNDLE_LOCATION).getBundleContext();
-        File store = context.getDataFile("componentMetadataStore");
-        try (DataOutputStream out = new DataOutputStream(
-            new BufferedOutputStream(new FileOutputStream(store))))
-        {
-            MetaDataWriter metaDataWriter = new MetaDataWriter();
-            metaDataWriter.writeVersion(out);
-
-            Set<String> allStrings = new HashSet<>();
-            for (List<ComponentMetadata> components : componentsMap.values())
-            {
-                for (ComponentMetadata component : components)
-                {
-                    component.collectStrings(allStrings);
-                }
-            }
-            // remove possible null
-            allStrings.remove(null);
-            out.writeInt(allStrings.size());
-            for (String s : allStrings)
-            {
-                metaDataWriter.writeIndexedString(s, out);
-            }
-            out.writeInt(componentsMap.size());
-            for (Entry<Long, List<ComponentMetadata>> entry : componentsMap.entrySet())
-            {
-                out.writeLong(entry.getKey());
-                out.writeInt(entry.getValue().size());
-                Bundle b = systemContext.getBundle(entry.getKey());
-                out.writeLong(b == null ? -1 : b.getLastModified());
-                for (ComponentMetadata component : entry.getValue())
-                {
-                    component.store(out, metaDataWriter);
-                }
-            }
-        }
-        catch (IOException e)
-        {
-            logger.log(Level.WARN, "Error storing component metadata cache.",
-                e);
-        }
-    }
-
     /**
      * Unregisters this instance as a bundle listener and unloads all components
      * which have been registered during the active life time of the SCR
@@ -427,21 +321,86 @@ public class Activator extends AbstractExtender
         // dispose component registry
         if ( m_componentRegistry != null )
         {
+            m_componentRegistry.setComponentActor( null );
             m_componentRegistry.shutdown();
             m_componentRegistry = null;
         }
 
-        // terminate the actor thread
+        // terminate the actor threads
         if ( m_componentActor != null )
         {
             m_componentActor.terminate();
             m_componentActor = null;
         }
+
+        if ( m_startupExecutor != null )
+        {
+            m_startupExecutor.shutdown();
+            m_startupExecutor = null;
+        }
         ClassUtils.setFrameworkWiring(null);
     }
 
     //---------- Component Management -----------------------------------------
 
+    /**
+     * Starts parsing the component descriptors of all bundles which are
+     * already active and have no cached metadata. The bundles are then
+     * extended one by one while the tracker is opened, each picking up its
+     * parsed descriptors from {@link #m_preparsedMetadata} instead of parsing
+     * them on the extender thread.
+     */
+    private void preparseComponents()
+    {
+        for ( final Bundle bundle : m_globalContext.getBundles() )
+        {
+            final long bundleId = bundle.getBundleId();
+            if ( bundle.getState() != Bundle.ACTIVE
+                || m_componentMetadataStore.containsKey( bundleId )
+                || bundle.getHeaders( "" ).get( ComponentConstants.SERVICE_COMPONENT ) == null )
+            {
+                continue;
+            }
+            m_preparsedMetadata.put( bundleId, m_startupExecutor.submit( new Callable<List<ComponentMetadata>>()
+            {
+                @Override
+                public List<ComponentMetadata> call()
+                {
+                    return BundleComponentActivator.readDescriptors( bundle, logger.bundle( bundle ),
+                        m_configuration, getTrueCondition(), null );
+                }
+            } ) );
+        }
+    }
+
+    /**
+     * Returns the component metadata parsed for the bundle by
+     * {@link #preparseComponents()} or <code>null</code> if the bundle has
+     * not been parsed or parsing failed.
+     */
+    private List<ComponentMetadata> takePreparsedComponents(final long bundleId)
+    {
+        final Future<List<ComponentMetadata>> future = m_preparsedMetadata.remove( bundleId );
+        if ( future == null )
+        {
+            return null;
+        }
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch ( Exception e )
+        {
+            logger.log(Level.DEBUG, "Parsing components of bundle {0} in the background failed", e,
+                bundleId);
+        }
+        return null;
+    }
+
     @Override
     protected ScrExtension doCreateExtension(final Bundle bundle) throws Exception
     {
@@ -608,8 +567,9 @@ public class Activator extends AbstractExtender
 
         try
         {
+            List<ComponentMetadata> metadata = cached != null ? cached : takePreparsedComponents( bundleId );
             BundleComponentActivator ga = new BundleComponentActivator( this.logger, m_componentRegistry, m_componentActor,
-                context, m_configuration, cached, getTrueCondition());
+                m_startupExecutor, context, m_configuration, metadata, getTrueCondition());
             ga.initialEnable();
             if (cached == null)
             {
@@ -26,10 +26,14 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -80,8 +84,8 @@ public class BundleComponentActivator implements ComponentActivator
     // This is a list of component holders that belong to a particular bundle
     private final List<ComponentHolder<?>> m_holders = new ArrayList<>();
 
-    // thread acting upon configurations
-    private final ComponentActorThread m_componentActor;
+    // threads acting upon configurations
+    private final ComponentActor m_componentActor;
 
     // true as long as the dispose method is not called
     private final AtomicBoolean m_active = new AtomicBoolean( true );
@@ -98,10 +102,27 @@ public class BundleComponentActivator implements ComponentActivator
 
     private final ServiceReference<?> m_trueCondition;
 
-    private static class ListenerInfo implements ServiceListener
+    // runs parallel descriptor parsing and immediate component activation, may be null
+    private final StartupExecutor m_startupExecutor;
+
+    /**
+     * The single framework service listener registered for a filter string.
+     * All dependency managers of this bundle whose reference filter (service
+     * interface and target) is the same share this listener: the framework
+     * evaluates the filter once per service event, the event is forwarded to
+     * all trackers, and the set of currently matching services is kept here
+     * so that trackers opened later need not query the service registry.
+     */
+    static class ListenerInfo implements ServiceListener
     {
         List<ExtendedServiceListener<ExtendedServiceEvent>> listeners = new ArrayList<>();
 
+        // the services currently matching the filter
+        private final Set<ServiceReference<?>> references = new LinkedHashSet<>();
+
+        // services with events received while the initial references are loaded, null once loaded
+        private Set<ServiceReference<?>> changedWhileLoading = new HashSet<>();
+
         @Override
         public void serviceChanged(ServiceEvent event)
         {
@@ -109,6 +130,20 @@ public class BundleComponentActivator implements ComponentActivator
             List<ExtendedServiceListener<ExtendedServiceEvent>> listeners;
             synchronized ( this )
             {
+                final ServiceReference<?> reference = event.getServiceReference();
+                switch ( event.getType() )
+                {
+                    case ServiceEvent.REGISTERED:
+                    case ServiceEvent.MODIFIED:
+                        references.add( reference );
+                        break;
+                    default:
+                        references.remove( reference );
+                }
+                if ( changedWhileLoading != null )
+                {
+                    changedWhileLoading.add( reference );
+                }
                 listeners = this.listeners;
             }
 
@@ -123,10 +158,28 @@ public class BundleComponentActivator implements ComponentActivator
             }
         }
 
-        public synchronized void add(ExtendedServiceListener<ExtendedServiceEvent> listener)
+        // merges the result of the registry query done after registering this listener
+        synchronized void setInitial(ServiceReference<?>[] initial)
+        {
+            if ( initial != null )
+            {
+                for ( ServiceReference<?> reference : initial )
+                {
+                    // an event received in the meantime is more recent than the query
+                    if ( !changedWhileLoading.contains( reference ) )
+                    {
+                        references.add( reference );
+                    }
+                }
+            }
+            changedWhileLoading = null;
+        }
+
+        public synchronized ServiceReference<?>[] add(ExtendedServiceListener<ExtendedServiceEvent> listener)
         {
             listeners = new ArrayList<>(listeners);
             listeners.add(listener);
+            return references.isEmpty() ? null : references.toArray( new ServiceReference<?>[references.size()] );
         }
 
         public synchronized boolean remove(ExtendedServiceListener<ExtendedServiceEvent> listener)
@@ -138,7 +191,7 @@ public class BundleComponentActivator implements ComponentActivator
     }
 
     @Override
-    public void addServiceListener(String serviceFilterString,
+    public ServiceReference<?>[] addServiceListener(String serviceFilterString,
         ExtendedServiceListener<ExtendedServiceEvent> listener)
     {
         ListenerInfo listenerInfo;
@@ -150,18 +203,20 @@ public class BundleComponentActivator implements ComponentActivator
             if ( listenerInfo == null )
             {
                 listenerInfo = new ListenerInfo();
-                listenerMap.put( serviceFilterString, listenerInfo );
                 try
                 {
                     m_context.addServiceListener( listenerInfo, serviceFilterString );
+                    listenerInfo.setInitial( m_context.getServiceReferences( (String) null, serviceFilterString ) );
                 }
                 catch ( InvalidSyntaxException e )
                 {
+                    m_context.removeServiceListener( listenerInfo );
                     throw (IllegalArgumentException) new IllegalArgumentException(
                         "invalid class name filter" ).initCause( e );
                 }
+                listenerMap.put( serviceFilterString, listenerInfo );
             }
-            listenerInfo.add(listener);
+            return listenerInfo.add(listener);
         }
     }
 
@@ -196,7 +251,8 @@ public class BundleComponentActivator implements ComponentActivator
      */
     public BundleComponentActivator(final ScrLogger scrLogger,
             final ComponentRegistry componentRegistry,
-            final ComponentActorThread componentActor,
+            final ComponentActor componentActor,
+            final StartupExecutor startupExecutor,
             final BundleContext context,
             final ScrConfiguration configuration,
             final List<ComponentMetadata> cachedComponentMetadata,
@@ -208,6 +264,7 @@ public class BundleComponentActivator implements ComponentActivator
         // keep the parameters for later
         m_componentRegistry = componentRegistry;
         m_componentActor = componentActor;
+        m_startupExecutor = startupExecutor;
         m_context = context;
         m_bundle = context.getBundle();
 
@@ -238,65 +295,128 @@ public class BundleComponentActivator implements ComponentActivator
      */
     protected void initialize(List<ComponentMetadata> cachedComponentMetadata)
     {
-        if (cachedComponentMetadata != null)
+        if (cachedComponentMetadata == null)
         {
-            for (ComponentMetadata metadata : cachedComponentMetadata)
-            {
-                validateAndRegister(metadata);
-            }
+            cachedComponentMetadata = readDescriptors(m_bundle, logger, m_configuration,
+                m_trueCondition, m_startupExecutor);
         }
-        else
+        for (ComponentMetadata metadata : cachedComponentMetadata)
         {
-            // Get the Metadata-Location value from the manifest
-            String descriptorLocations = m_bundle.getHeaders("").get("Service-Component");
-            if (descriptorLocations == null)
+            validateAndRegister(metadata);
+        }
+    }
+
+    /**
+     * Parses all component descriptors declared by the <i>Service-Component</i>
+     * header of the given bundle and returns the (not yet validated) metadata
+     * of all components in descriptor order. If the executor is not
+     * <code>null</code> and parallel parsing is configured, the descriptors
+     * are parsed concurrently.
+     *
+     * @throws ComponentException if the bundle has no <i>Service-Component</i> header
+     * @throws IllegalStateException If the bundle has already been uninstalled.
+     */
+    static List<ComponentMetadata> readDescriptors(final Bundle bundle,
+        final BundleLogger logger, final ScrConfiguration configuration,
+        final ServiceReference<?> trueCondition, final StartupExecutor executor)
+    {
+        // Get the Metadata-Location value from the manifest
+        String descriptorLocations = bundle.getHeaders("").get("Service-Component");
+        if (descriptorLocations == null)
+        {
+            throw new ComponentException(
+                "Service-Component entry not found in the manifest");
+        }
+
+        logger.log(Level.DEBUG,
+            "BundleComponentActivator : Descriptor locations {0}", null,
+            descriptorLocations);
+
+        // 112.4.1: The value of the the header is a comma separated list of XML entries within the Bundle
+        StringTokenizer st = new StringTokenizer(descriptorLocations, ", ");
+        // Tolerate wildcard overlap with explicit entries in list by remembering the URLs that have been loaded so
+        // that duplicates can be skipped before attempting to re-parse the descriptors they resolve to.
+        HashSet<String> haveBeenLoaded = new HashSet<>();
+        List<URL> toLoad = new ArrayList<>();
+        while (st.hasMoreTokens())
+        {
+            String descriptorLocation = st.nextToken();
+            URL[] descriptorURLs = findDescriptors(bundle, descriptorLocation);
+            if (descriptorURLs.length == 0)
             {
-                throw new ComponentException(
-                    "Service-Component entry not found in the manifest");
+                // 112.4.1 If an XML document specified by the header cannot be located in the bundle and its attached
+                // fragments, SCR must log an error message with the Log Service, if present, and continue.
+                logger.log(Level.ERROR,
+                    "Component descriptor entry ''{0}'' not found", null,
+                    descriptorLocation);
+                continue;
             }
 
-            logger.log(Level.DEBUG,
-                "BundleComponentActivator : Descriptor locations {0}", null,
-                descriptorLocations);
-
-            // 112.4.1: The value of the the header is a comma separated list of XML entries within the Bundle
-            StringTokenizer st = new StringTokenizer(descriptorLocations, ", ");
-            // Tolerate wildcard overlap with explicit entries in list by remembering the URLs that have been loaded so
-            // that duplicates can be skipped before attempting to re-parse the descriptors they resolve to.
-            HashSet<String> haveBeenLoaded = new HashSet<>();
-            while (st.hasMoreTokens())
-            {
-                String descriptorLocation = st.nextToken();
-                URL[] descriptorURLs = findDescriptors(m_bundle, descriptorLocation);
-                if (descriptorURLs.length == 0)
+
+            // load from the descriptors
+            for (URL descriptorURL : descriptorURLs)
+            {
+                String externalForm = descriptorURL.toExternalForm();
+                if (!haveBeenLoaded.contains(externalForm))
                 {
-                    // 112.4.1 If an XML document specified by the header cannot be located in the bundle and its attached
-                    // fragments, SCR must log an error message with the Log Service, if present, and continue.
-                    logger.log(Level.ERROR,
-                        "Component descriptor entry ''{0}'' not found", null,
-                        descriptorLocation);
-                    continue;
+                    toLoad.add(descriptorURL);
+                    haveBeenLoaded.add(externalForm);
                 }
+                else
+                {
+                    logger.log(Level.DEBUG,
+                            "Component descriptor entry ''{0}'' (matched by ''{1}'') has already been loaded",
+                            null, descriptorURL.getPath(), descriptorLocation);
+                }
+            }
+        }
 
-
-                // load from the descriptors
-                for (URL descriptorURL : descriptorURLs)
+        // parsers are only pooled when parsing in parallel
+        final StartupExecutor parsers = executor != null && configuration.parallelParsing() ? executor : null;
+        List<ComponentMetadata> metadatas = new ArrayList<>();
+        if (parsers != null && toLoad.size() > 1)
+        {
+            List<Callable<List<ComponentMetadata>>> tasks = new ArrayList<>(toLoad.size());
+            for (final URL descriptorURL : toLoad)
+            {
+                tasks.add(new Callable<List<ComponentMetadata>>()
                 {
-                    String externalForm = descriptorURL.toExternalForm();
-                    if (!haveBeenLoaded.contains(externalForm))
+                    @Override
+                    public List<ComponentMetadata> call()
                     {
-                        loadDescriptor(descriptorURL);
-                        haveBeenLoaded.add(externalForm);
-                    }
-                    else
-                    {
-                        logger.log(Level.DEBUG,
-                                "Component descriptor entry ''{0}'' (matched by ''{1}'') has already been loaded",
-                                null, descriptorURL.getPath(), descriptorLocation);
+                        return loadDescriptor(descriptorURL, bundle, logger,
+                            configuration, trueCondition, parsers);
                     }
+                });
+            }
+            try
+            {
+                for (List<ComponentMetadata> loaded : executor.invokeAll(tasks))
+                {
+                    metadatas.addAll(loaded);
                 }
+                return metadatas;
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                logger.log(Level.WARN,
+                    "Interrupted while parsing descriptors in parallel, parsing sequentially", e);
+            }
+            catch (ExecutionException e)
+            {
+                logger.log(Level.WARN,
+                    "Failure parsing descriptors in parallel, parsing sequentially", e.getCause());
             }
+            metadatas.clear();
         }
+
+        for (URL descriptorURL : toLoad)
+        {
+            metadatas.addAll(loadDescriptor(descriptorURL, bundle, logger,
+                configuration, trueCondition, parsers));
+        }
+        return metadatas;
     }
 
     /**
@@ -305,8 +425,9 @@ public class BundleComponentActivator implements ComponentActivator
      */
     void initialEnable()
     {
+        List<Callable<Void>> immediate = null;
         //enable all the enabled components
-        for ( ComponentHolder<?> componentHolder : m_holders )
+        for ( final ComponentHolder<?> componentHolder : m_holders )
         {
             logger.log(Level.DEBUG,
                 "BundleComponentActivator : May enable component holder {0}", null,
@@ -314,31 +435,28 @@ public class BundleComponentActivator implements ComponentActivator
 
             if ( componentHolder.getComponentMetadata().isEnabled() )
             {
-                logger.log(Level.DEBUG,
-                    "BundleComponentActivator :Enabling component holder {0}", null,
-                    componentHolder.getComponentMetadata().getName() );
-
-                try
+                if ( m_startupExecutor != null && m_configuration.parallelActivation()
+                    && componentHolder.getComponentMetadata().isImmediate() )
                 {
-                    componentHolder.enableComponents( false );
-                }
-                catch ( Throwable t )
-                {
-                    // caught on unhandled RuntimeException or Error
-                    // (e.g. ClassDefNotFoundError)
-
-                    // make sure the component is properly disabled, just in case
-                    try
+                    // immediate components are enabled concurrently once all
+                    // other components of the bundle have been enabled
+                    if ( immediate == null )
                     {
-                        componentHolder.disableComponents( false );
+                        immediate = new ArrayList<>();
                     }
-                    catch ( Throwable ignore )
+                    immediate.add( new Callable<Void>()
                     {
-                    }
-
-                    logger.log(Level.ERROR,
-                        "BundleComponentActivator : Unexpected failure enabling component holder {0}", t,
-                        componentHolder.getComponentMetadata().getName() );
+                        @Override
+                        public Void call()
+                        {
+                            enableHolder( componentHolder );
+                            return null;
+                        }
+                    } );
+                }
+                else
+                {
+                    enableHolder( componentHolder );
                 }
             }
             else
@@ -348,6 +466,56 @@ public class BundleComponentActivator implements ComponentActivator
                     componentHolder.getComponentMetadata().getName() );
             }
         }
+
+        if ( immediate != null )
+        {
+            try
+            {
+                m_startupExecutor.invokeAll( immediate );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                logger.log(Level.WARN,
+                    "BundleComponentActivator : Interrupted while waiting for immediate components to be enabled", e );
+            }
+            catch ( ExecutionException e )
+            {
+                // not expected, enableHolder handles all failures
+                logger.log(Level.ERROR,
+                    "BundleComponentActivator : Unexpected failure enabling immediate components", e.getCause() );
+            }
+        }
+    }
+
+    private void enableHolder(final ComponentHolder<?> componentHolder)
+    {
+        logger.log(Level.DEBUG,
+            "BundleComponentActivator :Enabling component holder {0}", null,
+            componentHolder.getComponentMetadata().getName() );
+
+        try
+        {
+            componentHolder.enableComponents( false );
+        }
+        catch ( Throwable t )
+        {
+            // caught on unhandled RuntimeException or Error
+            // (e.g. ClassDefNotFoundError)
+
+            // make sure the component is properly disabled, just in case
+            try
+            {
+                componentHolder.disableComponents( false );
+            }
+            catch ( Throwable ignore )
+            {
+            }
+
+            logger.log(Level.ERROR,
+                "BundleComponentActivator : Unexpected failure enabling component holder {0}", t,
+                componentHolder.getComponentMetadata().getName() );
+        }
     }
 
     /**
@@ -395,30 +563,35 @@ public class BundleComponentActivator implements ComponentActivator
         return urls.toArray( new URL[urls.size()] );
     }
 
-    private void loadDescriptor(final URL descriptorURL)
+    private static List<ComponentMetadata> loadDescriptor(final URL descriptorURL,
+        final Bundle bundle, final BundleLogger logger,
+        final ScrConfiguration configuration, final ServiceReference<?> trueCondition,
+        final StartupExecutor parsers)
     {
         // simple path for log messages
         final String descriptorLocation = descriptorURL.getPath();
 
         InputStream stream = null;
+        SAXParser parser = null;
         try
         {
             stream = descriptorURL.openStream();
 
-            XmlHandler handler = new XmlHandler( m_bundle, this.logger, getConfiguration().isFactoryEnabled(),
-                getConfiguration().keepInstances(), m_trueCondition);
-            final SAXParserFactory factory = SAXParserFactory.newInstance();
-            factory.setNamespaceAware(true);
-            final SAXParser parser = factory.newSAXParser();
+            XmlHandler handler = new XmlHandler( bundle, logger, configuration.isFactoryEnabled(),
+                configuration.keepInstances(), trueCondition);
+            parser = parsers != null ? parsers.pollParser() : null;
+            if ( parser == null )
+            {
+                final SAXParserFactory factory = SAXParserFactory.newInstance();
+                factory.setNamespaceAware(true);
+                parser = factory.newSAXParser();
+            }
 
             parser.parse( stream, handler );
 
             // 112.4.2 Component descriptors may contain a single, root component element
             // or one or more component elements embedded in a larger document
-            for ( ComponentMetadata metadata : handler.getComponentMetadataList() )
-            {
-                validateAndRegister(metadata);
-            }
+            return handler.getComponentMetadataList();
         }
         catch ( IOException ex )
         {
@@ -435,6 +608,19 @@ public class BundleComponentActivator implements ComponentActivator
         }
         finally
         {
+            if ( parser != null && parsers != null )
+            {
+                // keep the parser for the next descriptor parsed in parallel
+                try
+                {
+                    parser.reset();
+                    parsers.releaseParser( parser );
+                }
+                catch ( UnsupportedOperationException uoe )
+                {
+                    // not reusable
+                }
+            }
             if ( stream != null )
             {
                 try
@@ -446,6 +632,7 @@ public class BundleComponentActivator implements ComponentActivator
                 }
             }
         }
+        return Collections.emptyList();
     }
 
     void validateAndRegister(ComponentMetadata metadata)
@@ -683,26 +870,28 @@ public class BundleComponentActivator implements ComponentActivator
     //---------- Asynchronous Component Handling ------------------------------
 
     /**
-     * Schedules the given <code>task</code> for asynchrounous execution or
-     * synchronously runs the task if the thread is not running. If this instance
+     * Schedules the given <code>task</code> for asynchrounous execution after
+     * all tasks previously scheduled with the same <code>key</code> or
+     * synchronously runs the task if the actor is not running. If this instance
      * is {@link #isActive() not active}, the task is not executed.
      *
+     * @param key The key of the tasks to order this task with
      * @param task The component task to execute
      */
     @Override
-    public void schedule(Runnable task)
+    public void schedule(Object key, Runnable task)
     {
         if ( isActive() )
         {
-            ComponentActorThread cat = m_componentActor;
+            ComponentActor cat = m_componentActor;
             if ( cat != null )
             {
-                cat.schedule( task );
+                cat.schedule( key, ComponentActor.PRIORITY_NORMAL, task );
             }
             else
             {
                 logger.log(Level.DEBUG,
-                    "Component Actor Thread not running, calling synchronously", null);
+                    "Component Actor not running, calling synchronously", null);
                 try
                 {
                     synchronized ( this )
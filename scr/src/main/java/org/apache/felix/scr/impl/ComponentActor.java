@@ -0,0 +1,440 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.scr.impl.logger.InternalLogger.Level;
+import org.apache.felix.scr.impl.logger.ScrLogger;
+
+
+/**
+ * The <code>ComponentActor</code> executes the asynchronous work of the
+ * service component runtime, such as deferred enabling and disabling of
+ * components and late binding of services, on a bounded number of worker
+ * threads.
+ * <p>
+ * Tasks are scheduled with a key: tasks with the same key are run one after
+ * the other in the order they were scheduled, while tasks with different keys
+ * may run concurrently if more than one worker thread is configured. Among
+ * the keys ready to run, the one whose next task was scheduled first is run
+ * first, so with a single worker thread all tasks run in scheduling order, as
+ * the former single component actor thread did, as long as no
+ * {@link #PRIORITY_HIGH high priority} tasks are scheduled, which are run
+ * ahead of normal priority tasks of other keys. With more than one worker
+ * thread, tasks of different keys are only ordered by the time they start.
+ * <p>
+ * The worker threads are platform threads by default. If virtual threads are
+ * requested and the Java runtime supports them, virtual threads are used
+ * instead.
+ */
+class ComponentActor
+{
+
+    static final int PRIORITY_NORMAL = 0;
+
+    static final int PRIORITY_HIGH = 1;
+
+    private static final String THREAD_NAME = "SCR Component Actor";
+
+    private final ScrLogger logger;
+
+    // the lock guarding all the state below
+    private final Object lock = new Object();
+
+    // the queues of the keys with scheduled tasks
+    private final Map<Object, KeyQueue> queues = new HashMap<>();
+
+    // orders the ready queues by the scheduling order of their next task
+    private static final Comparator<KeyQueue> SCHEDULING_ORDER = new Comparator<KeyQueue>()
+    {
+        @Override
+        public int compare( final KeyQueue q1, final KeyQueue q2 )
+        {
+            return Long.compare( q1.tasks.getFirst().sequence, q2.tasks.getFirst().sequence );
+        }
+    };
+
+    // the queues ready to run, indexed by priority
+    @SuppressWarnings("unchecked")
+    private final PriorityQueue<KeyQueue>[] ready = new PriorityQueue[] {
+        new PriorityQueue<KeyQueue>( 11, SCHEDULING_ORDER ), new PriorityQueue<KeyQueue>( 11, SCHEDULING_ORDER ) };
+
+    // the scheduling sequence number of the next task
+    private long sequence;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private boolean terminated;
+
+    // statistics
+    private int queued;
+
+    private int queuedMax;
+
+    private int running;
+
+    private long completed;
+
+    private long waitTimeTotal;
+
+    private long waitTimeMax;
+
+    private long execTimeTotal;
+
+    private long execTimeMax;
+
+
+    ComponentActor( final ScrLogger log )
+    {
+        logger = log;
+    }
+
+
+    /**
+     * Starts the given number of worker threads, which are virtual threads
+     * if <code>virtual</code> is <code>true</code> and the Java runtime
+     * supports them.
+     */
+    void start( final int threads, final boolean virtual )
+    {
+        ThreadFactory factory = virtual ? virtualThreadFactory() : null;
+        if ( virtual && factory == null )
+        {
+            logger.log(Level.WARN,
+                "Virtual threads are not supported by this Java runtime, using platform threads", null);
+        }
+
+        final int count = Math.max( 1, threads );
+        synchronized ( lock )
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                final Runnable worker = new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        work();
+                    }
+                };
+                final Thread t;
+                if ( factory != null )
+                {
+                    t = factory.newThread( worker );
+                }
+                else
+                {
+                    t = new Thread( worker, count == 1 ? THREAD_NAME : THREAD_NAME + " " + ( i + 1 ) );
+                    t.setDaemon( true );
+                }
+                workers.add( t );
+                t.start();
+            }
+        }
+    }
+
+
+    // waits on tasks coming into the ready queues. As tasks come in, this
+    // method calls the Runnable.run method, logs any exception happening and
+    // keeps on waiting for the next task until this actor is terminated.
+    private void work()
+    {
+        logger.log(Level.DEBUG, "Starting ComponentActor worker", null);
+
+        for ( ;; )
+        {
+            final KeyQueue queue;
+            final Task task;
+            synchronized ( lock )
+            {
+                while ( ready[PRIORITY_HIGH].isEmpty() && ready[PRIORITY_NORMAL].isEmpty() )
+                {
+                    if ( terminated )
+                    {
+                        logger.log(Level.DEBUG, "Shutting down ComponentActor worker",
+                            null);
+                        return;
+                    }
+                    boolean interrupted = Thread.interrupted();
+                    try
+                    {
+                        lock.wait();
+                    }
+                    catch ( InterruptedException ie )
+                    {
+                        interrupted = true;
+                        // don't care
+                    }
+                    finally
+                    {
+                        if (interrupted)
+                        { // restore interrupt status
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+
+                queue = ready[PRIORITY_HIGH].isEmpty() ? ready[PRIORITY_NORMAL].poll()
+                    : ready[PRIORITY_HIGH].poll();
+                queue.readyPriority = -1;
+                queue.running = true;
+                task = queue.tasks.removeFirst();
+                queued--;
+                running++;
+            }
+
+            final long start = System.nanoTime();
+            try
+            {
+                // execute the task, log any issues
+                logger.log(Level.DEBUG, "Running task: " + task.runnable, null);
+                task.runnable.run();
+            }
+            catch ( Throwable t )
+            {
+                logger.log(Level.ERROR, "Unexpected problem executing task " + task.runnable,
+                    t);
+            }
+            finally
+            {
+                final long end = System.nanoTime();
+                synchronized ( lock )
+                {
+                    running--;
+                    completed++;
+                    final long wait = start - task.scheduled;
+                    waitTimeTotal += wait;
+                    waitTimeMax = Math.max( waitTimeMax, wait );
+                    final long exec = end - start;
+                    execTimeTotal += exec;
+                    execTimeMax = Math.max( execTimeMax, exec );
+
+                    queue.running = false;
+                    if ( queue.tasks.isEmpty() )
+                    {
+                        queues.remove( queue.key );
+                    }
+                    else
+                    {
+                        makeReady( queue, queue.priority() );
+                    }
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+
+    // waits for all scheduled tasks to be run and terminates the workers
+    void terminate()
+    {
+        synchronized ( lock )
+        {
+            while ( queued > 0 || running > 0 )
+            {
+                boolean interrupted = Thread.interrupted();
+                try
+                {
+                    lock.wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                    logger.log(Level.ERROR,
+                        "Interrupted exception waiting for queue to empty", e);
+                }
+                finally
+                {
+                    if (interrupted)
+                    { // restore interrupt status
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            terminated = true;
+            lock.notifyAll();
+        }
+    }
+
+
+    // queue the given runnable to be run as soon as possible
+    void schedule( Runnable task )
+    {
+        schedule( null, PRIORITY_NORMAL, task );
+    }
+
+
+    /**
+     * Queues the given runnable to be run after all tasks previously
+     * scheduled with the same key. A <code>null</code> key imposes no ordering
+     * with respect to other tasks.
+     */
+    void schedule( final Object key, final int priority, final Runnable task )
+    {
+        synchronized ( lock )
+        {
+            if ( terminated )
+            {
+                logger.log(Level.DEBUG, "ComponentActor terminated, not running task [{0}]", null,
+                    task);
+                return;
+            }
+
+            final Object queueKey = key != null ? key : task;
+            KeyQueue queue = queues.get( queueKey );
+            if ( queue == null )
+            {
+                queue = new KeyQueue( queueKey );
+                queues.put( queueKey, queue );
+            }
+            queue.tasks.add( new Task( task, priority, sequence++ ) );
+            queued++;
+            queuedMax = Math.max( queuedMax, queued );
+
+            if ( !queue.running )
+            {
+                makeReady( queue, queue.priority() );
+            }
+
+            logger.log(Level.DEBUG, "Adding task [{0}] as #{1} in the queue", null,
+                    task, queued);
+
+            // notify the waiting threads
+            lock.notifyAll();
+        }
+    }
+
+
+    /**
+     * Returns a snapshot of the current queue depth and of the task wait
+     * (time from scheduling to start) and execution latencies.
+     */
+    Map<String, Long> getStatistics()
+    {
+        final Map<String, Long> stats = new LinkedHashMap<>();
+        synchronized ( lock )
+        {
+            stats.put( "threads", (long) workers.size() );
+            stats.put( "queued", (long) queued );
+            stats.put( "queuedMax", (long) queuedMax );
+            stats.put( "running", (long) running );
+            stats.put( "completed", completed );
+            stats.put( "waitTimeAvgMicros", completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros( waitTimeTotal / completed ) );
+            stats.put( "waitTimeMaxMicros", TimeUnit.NANOSECONDS.toMicros( waitTimeMax ) );
+            stats.put( "execTimeAvgMicros", completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros( execTimeTotal / completed ) );
+            stats.put( "execTimeMaxMicros", TimeUnit.NANOSECONDS.toMicros( execTimeMax ) );
+        }
+        return stats;
+    }
+
+
+    // called with the lock held; (re)places the queue in the ready list of the given priority
+    private void makeReady( final KeyQueue queue, final int priority )
+    {
+        if ( queue.readyPriority == priority )
+        {
+            return;
+        }
+        if ( queue.readyPriority >= 0 )
+        {
+            ready[queue.readyPriority].remove( queue );
+        }
+        ready[priority].add( queue );
+        queue.readyPriority = priority;
+    }
+
+
+    private static ThreadFactory virtualThreadFactory()
+    {
+        try
+        {
+            // Thread.ofVirtual().name(THREAD_NAME + " ", 1).factory() without requiring Java 21 to compile
+            final Object builder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+            final Class<?> builderClass = Class.forName( "java.lang.Thread$Builder" );
+            final Object named = builderClass.getMethod( "name", String.class, long.class ).invoke( builder,
+                THREAD_NAME + " ", 1L );
+            return (ThreadFactory) builderClass.getMethod( "factory" ).invoke( named );
+        }
+        catch ( Exception e )
+        {
+            // not supported
+            return null;
+        }
+    }
+
+
+    private static final class Task
+    {
+        final Runnable runnable;
+
+        final int priority;
+
+        final long sequence;
+
+        final long scheduled = System.nanoTime();
+
+        Task( final Runnable runnable, final int priority, final long sequence )
+        {
+            this.runnable = runnable;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+
+
+    private static final class KeyQueue
+    {
+        final Object key;
+
+        final LinkedList<Task> tasks = new LinkedList<>();
+
+        // whether a task of this queue is currently running
+        boolean running;
+
+        // the ready list this queue is in, -1 if none
+        int readyPriority = -1;
+
+        KeyQueue( final Object key )
+        {
+            this.key = key;
+        }
+
+        // the highest priority of the pending tasks
+        int priority()
+        {
+            int priority = PRIORITY_NORMAL;
+            for ( Task task : tasks )
+            {
+                priority = Math.max( priority, task.priority );
+            }
+            return priority;
+        }
+    }
+}
@@ -39,6 +39,7 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 
 import org.apache.felix.scr.impl.manager.ScrConfiguration;
+import org.apache.felix.scr.impl.runtime.ServiceComponentRuntimeImpl;
 import org.apache.felix.scr.info.ScrInfo;
 import org.apache.felix.service.command.Converter;
 import org.apache.felix.service.command.Descriptor;
@@ -100,6 +101,7 @@ public class ComponentCommands implements ServiceTrackerCustomizer<Object, Servi
         svcProps = new Hashtable<>();
         svcProps.put("osgi.command.scope", "scr");
         svcProps.put("osgi.command.function", new String[] {
+                "actor",
                 "config",
                 "disable",
                 "enable",
@@ -234,12 +236,28 @@ public class ComponentCommands implements ServiceTrackerCustomizer<Object, Servi
         out.put("Stop timeout ms", Long.toString(scrConfig.stopTimeout()));
         out.put("Global extender", Boolean.toString(scrConfig.globalExtender()));
         out.put("Info Service registered", scrConfig.infoAsService() ? "Supported" : "Unsupported");
+        out.put("Component actor threads", Integer.toString(scrConfig.actorThreads()) + (scrConfig.actorVirtualThreads() ? " (virtual)" : ""));
 
         StringBuilder builder = new StringBuilder();
         printColumnsAligned("SCR Configuration", out, '=', builder);
         return builder.toString();
     }
 
+    @Descriptor("Show the queue depth and task latencies of the SCR component actor")
+    public String actor() {
+        Map<String,String> out = new LinkedHashMap<>();
+        if (!(scr instanceof ServiceComponentRuntimeImpl)) {
+            return "Component actor statistics are not available";
+        }
+        for (Map.Entry<String, Long> entry : ((ServiceComponentRuntimeImpl) scr).getComponentActorStatistics().entrySet()) {
+            out.put(entry.getKey(), Long.toString(entry.getValue()));
+        }
+
+        StringBuilder builder = new StringBuilder();
+        printColumnsAligned("SCR Component Actor", out, '=', builder);
+        return builder.toString();
+    }
+
     public Object convert(Class<?> desiredType, Object in) throws Exception {
         return null;
     }
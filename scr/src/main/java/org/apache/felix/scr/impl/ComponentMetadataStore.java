@@ -0,0 +1,517 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+import org.apache.felix.scr.impl.logger.InternalLogger.Level;
+import org.apache.felix.scr.impl.logger.ScrLogger;
+import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.apache.felix.scr.impl.metadata.MetadataStoreHelper.MetaDataReader;
+import org.apache.felix.scr.impl.metadata.MetadataStoreHelper.MetaDataWriter;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+
+/**
+ * The <code>ComponentMetadataStore</code> caches the component metadata of
+ * the extended bundles across restarts of SCR.
+ * <p>
+ * The cache consists of a sequence of self contained records, one per
+ * bundle, each keyed by the bundle id and the last modification time of the
+ * bundle and protected by a checksum. Records are appended to a journal file
+ * as bundles are processed; on {@link #close()} the current content is
+ * compacted into the snapshot file and the journal is removed. On load the
+ * snapshot and then the journal are read, a later record for a bundle
+ * replacing an earlier one. Records of bundles which are gone or have been
+ * modified, records failing their checksum and a truncated last record left
+ * behind by a crash are dropped individually without affecting the other
+ * bundles. A journal with a truncated or garbled tail is cut back to its last
+ * complete record, and a journal of an unsupported version is discarded,
+ * before anything is appended to it.
+ * <p>
+ * Records are decoded lazily: loading only reads the record headers and the
+ * component metadata of a bundle is decoded the first time it is requested.
+ */
+class ComponentMetadataStore
+{
+
+    static final String SNAPSHOT_FILE = "componentMetadataStore";
+
+    static final String JOURNAL_FILE = "componentMetadataStore.journal";
+
+    private static final byte RECORD_BUNDLE = 1;
+
+    private static final byte RECORD_REMOVED = 2;
+
+    // record type, bundle id, last modified, payload length, checksum
+    private static final int RECORD_HEADER_LENGTH = 1 + 8 + 8 + 4 + 4;
+
+    private final ConcurrentMap<Long, Entry> m_entries = new ConcurrentHashMap<>();
+
+    private final BundleContext m_systemContext;
+
+    private final ScrLogger m_logger;
+
+    // the data files or null if metadata is only kept in memory
+    private final File m_snapshot;
+
+    private final File m_journal;
+
+    private DataOutputStream m_journalOut;
+
+    private ComponentMetadataStore(BundleContext systemContext, ScrLogger logger,
+        File snapshot, File journal)
+    {
+        m_systemContext = systemContext;
+        m_logger = logger;
+        m_snapshot = snapshot;
+        m_journal = journal;
+    }
+
+    /**
+     * Loads the store from the data area of the SCR bundle. If
+     * <code>persistent</code> is <code>false</code> an empty store is returned
+     * which keeps the metadata in memory only.
+     */
+    static ComponentMetadataStore load(BundleContext context, ScrLogger logger,
+        boolean persistent)
+    {
+        BundleContext systemContext = context.getBundle(
+            Constants.SYSTEM_BUNDLE_LOCATION).getBundleContext();
+        if (!persistent)
+        {
+            return new ComponentMetadataStore(systemContext, logger, null, null);
+        }
+
+        ComponentMetadataStore store = new ComponentMetadataStore(systemContext,
+            logger, context.getDataFile(SNAPSHOT_FILE),
+            context.getDataFile(JOURNAL_FILE));
+        try
+        {
+            store.read(store.m_snapshot);
+            store.truncateJournal(store.read(store.m_journal));
+        }
+        catch (RuntimeException re)
+        {
+            // avoid failing all of SCR start on cache load bug
+            logger.log(Level.ERROR, "Error loading component metadata cache.", re);
+            store.m_entries.clear();
+        }
+        return store;
+    }
+
+    /**
+     * Returns the component metadata cached for the bundle, an empty list if
+     * the bundle is known to have no components or <code>null</code> if
+     * nothing is cached.
+     */
+    List<ComponentMetadata> get(long bundleId)
+    {
+        Entry entry = m_entries.get(bundleId);
+        if (entry == null)
+        {
+            return null;
+        }
+        try
+        {
+            return entry.getComponents();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            m_logger.log(Level.WARN,
+                "Error loading cached component metadata of bundle {0}, ignoring cache entry.",
+                e, bundleId);
+            m_entries.remove(bundleId, entry);
+            return null;
+        }
+    }
+
+    boolean containsKey(long bundleId)
+    {
+        return m_entries.containsKey(bundleId);
+    }
+
+    /**
+     * Caches the component metadata of the bundle and appends it to the
+     * journal. The cache and the journal are updated under the same lock, so
+     * the journal records concurrent updates in the order they are applied.
+     */
+    void put(long bundleId, List<ComponentMetadata> components)
+    {
+        Bundle b = m_systemContext.getBundle(bundleId);
+        long lastModified = b == null ? -1 : b.getLastModified();
+        byte[] payload = null;
+        if (m_journal != null)
+        {
+            try
+            {
+                payload = encode(components);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                m_logger.log(Level.WARN,
+                    "Error storing component metadata of bundle {0} in cache.", e,
+                    bundleId);
+            }
+        }
+        synchronized (this)
+        {
+            m_entries.put(bundleId, new Entry(lastModified, components, payload));
+            if (payload != null)
+            {
+                append(RECORD_BUNDLE, bundleId, lastModified, payload);
+            }
+        }
+    }
+
+    /**
+     * Drops the cached component metadata of the bundle.
+     */
+    synchronized void remove(long bundleId)
+    {
+        if (m_entries.remove(bundleId) != null && m_journal != null)
+        {
+            append(RECORD_REMOVED, bundleId, -1, new byte[0]);
+        }
+    }
+
+    /**
+     * Compacts the current content of the store into the snapshot file and
+     * removes the journal.
+     */
+    synchronized void close()
+    {
+        closeJournal();
+        if (m_snapshot == null)
+        {
+            return;
+        }
+
+        File tmp = new File(m_snapshot.getPath() + ".tmp");
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp))))
+            {
+                new MetaDataWriter().writeVersion(out);
+                for (Map.Entry<Long, Entry> e : m_entries.entrySet())
+                {
+                    byte[] payload = e.getValue().payload;
+                    if (payload != null)
+                    {
+                        writeRecord(out, RECORD_BUNDLE, e.getKey(),
+                            e.getValue().lastModified, payload);
+                    }
+                }
+            }
+            if (m_snapshot.exists() && !m_snapshot.delete())
+            {
+                throw new IOException("Cannot replace " + m_snapshot);
+            }
+            if (!tmp.renameTo(m_snapshot))
+            {
+                throw new IOException("Cannot rename " + tmp + " to " + m_snapshot);
+            }
+            m_journal.delete();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // keep the journal, it still holds everything not in the snapshot
+            m_logger.log(Level.WARN, "Error storing component metadata cache.", e);
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Releases the journal without compacting it, for example when SCR
+     * restarts the extender and loads the store again.
+     */
+    synchronized void closeJournal()
+    {
+        if (m_journalOut != null)
+        {
+            try
+            {
+                m_journalOut.close();
+            }
+            catch (IOException ignore)
+            {
+            }
+            m_journalOut = null;
+        }
+    }
+
+    private synchronized void append(byte type, long bundleId, long lastModified,
+        byte[] payload)
+    {
+        try
+        {
+            if (m_journalOut == null)
+            {
+                boolean exists = m_journal.isFile() && m_journal.length() > 0;
+                m_journalOut = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(m_journal, true)));
+                if (!exists)
+                {
+                    new MetaDataWriter().writeVersion(m_journalOut);
+                }
+            }
+            writeRecord(m_journalOut, type, bundleId, lastModified, payload);
+            m_journalOut.flush();
+        }
+        catch (IOException e)
+        {
+            m_logger.log(Level.WARN, "Error appending to component metadata cache.", e);
+            closeJournal();
+        }
+    }
+
+    /**
+     * Cuts the journal back to the given length, the length of its valid
+     * content as returned by {@link #read(File)}, so that records appended
+     * later are not lost behind a garbled tail. A journal without valid
+     * content is removed and restarted with a new version header.
+     */
+    private void truncateJournal(long validLength)
+    {
+        if (!m_journal.isFile() || m_journal.length() <= validLength)
+        {
+            return;
+        }
+        try
+        {
+            if (validLength == 0)
+            {
+                Files.delete(m_journal.toPath());
+            }
+            else
+            {
+                try (FileChannel channel = FileChannel.open(m_journal.toPath(),
+                    StandardOpenOption.WRITE))
+                {
+                    channel.truncate(validLength);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            m_logger.log(Level.WARN, "Error repairing component metadata cache journal.", e);
+            m_journal.delete();
+        }
+    }
+
+    /**
+     * Reads the records of the given file and returns the length of its valid
+     * content: <code>0</code> if the file does not exist, cannot be read or
+     * has an unsupported version, otherwise the offset after the last complete
+     * record.
+     */
+    private long read(File file)
+    {
+        if (!file.isFile())
+        {
+            return 0;
+        }
+        try
+        {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (buf.remaining() < 4 || !new MetaDataReader().isVersionSupported(
+                new DataInputStream(new ByteArrayInputStream(buf.array(), 0, 4))))
+            {
+                // the stored version is not compatible
+                return 0;
+            }
+            buf.position(4);
+            while (buf.remaining() >= RECORD_HEADER_LENGTH)
+            {
+                int start = buf.position();
+                byte type = buf.get();
+                long bundleId = buf.getLong();
+                long lastModified = buf.getLong();
+                int length = buf.getInt();
+                int checksum = buf.getInt();
+                if ((type != RECORD_BUNDLE && type != RECORD_REMOVED) || length < 0
+                    || length > buf.remaining())
+                {
+                    // truncated or garbled; nothing after this point can be trusted
+                    m_logger.log(Level.DEBUG,
+                        "Ignoring incomplete component metadata cache record in {0}", null,
+                        file);
+                    return start;
+                }
+                byte[] payload = new byte[length];
+                buf.get(payload);
+                if (checksum(payload) != checksum)
+                {
+                    m_logger.log(Level.WARN,
+                        "Ignoring corrupt component metadata cache record of bundle {0}",
+                        null, bundleId);
+                    m_entries.remove(bundleId);
+                    continue;
+                }
+                if (type == RECORD_REMOVED)
+                {
+                    m_entries.remove(bundleId);
+                    continue;
+                }
+                // Check with system context by ID to avoid hooks hiding;
+                Bundle b = m_systemContext.getBundle(bundleId);
+                if (b != null && lastModified == b.getLastModified())
+                {
+                    m_entries.put(bundleId, new Entry(lastModified, null, payload));
+                }
+                else
+                {
+                    m_entries.remove(bundleId);
+                }
+            }
+            return buf.position();
+        }
+        catch (IOException e)
+        {
+            m_logger.log(Level.WARN, "Error loading component metadata cache.", e);
+            return 0;
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, byte type, long bundleId,
+        long lastModified, byte[] payload) throws IOException
+    {
+        out.writeByte(type);
+        out.writeLong(bundleId);
+        out.writeLong(lastModified);
+        out.writeInt(payload.length);
+        out.writeInt(checksum(payload));
+        out.write(payload);
+    }
+
+    private static int checksum(byte[] payload)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    static byte[] encode(List<ComponentMetadata> components) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        MetaDataWriter metaDataWriter = new MetaDataWriter();
+
+        Set<String> allStrings = new HashSet<>();
+        for (ComponentMetadata component : components)
+        {
+            component.collectStrings(allStrings);
+        }
+        // remove possible null
+        allStrings.remove(null);
+        out.writeInt(allStrings.size());
+        for (String s : allStrings)
+        {
+            metaDataWriter.writeIndexedString(s, out);
+        }
+        out.writeInt(components.size());
+        for (ComponentMetadata component : components)
+        {
+            component.store(out, metaDataWriter);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static List<ComponentMetadata> decode(byte[] payload) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        MetaDataReader metaDataReader = new MetaDataReader();
+        int numStrings = in.readInt();
+        for (int i = 0; i < numStrings; i++)
+        {
+            metaDataReader.readIndexedString(in);
+        }
+        int numComponents = in.readInt();
+        if (numComponents == 0)
+        {
+            return Collections.emptyList();
+        }
+        List<ComponentMetadata> components = new ArrayList<>(numComponents);
+        for (int j = 0; j < numComponents; j++)
+        {
+            components.add(ComponentMetadata.load(in, metaDataReader));
+        }
+        return components;
+    }
+
+    /**
+     * The cached metadata of one bundle, either decoded, encoded or both.
+     */
+    private static class Entry
+    {
+        final long lastModified;
+
+        final byte[] payload;
+
+        private volatile List<ComponentMetadata> components;
+
+        Entry(long lastModified, List<ComponentMetadata> components, byte[] payload)
+        {
+            this.lastModified = lastModified;
+            this.components = components;
+            this.payload = payload;
+        }
+
+        List<ComponentMetadata> getComponents() throws IOException
+        {
+            List<ComponentMetadata> result = components;
+            if (result == null)
+            {
+                synchronized (this)
+                {
+                    result = components;
+                    if (result == null)
+                    {
+                        result = decode(payload);
+                        components = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -21,10 +21,12 @@ package org.apache.felix.scr.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -130,6 +132,9 @@ public class ComponentRegistry
 
     private final ScrConfiguration m_configuration;
 
+    // the actor running asynchronous component work, set while SCR is active
+    private volatile ComponentActor m_componentActor;
+
     public ComponentRegistry( final ScrConfiguration scrConfiguration, final ScrLogger logger )
     {
         m_configuration = scrConfiguration;
@@ -560,12 +565,30 @@ public class ComponentRegistry
      * @param serviceReference
      * @param actor
      */
-    public synchronized <T> void missingServicePresent( final ServiceReference<T> serviceReference, ComponentActorThread actor )
+    public synchronized <T> void missingServicePresent( final ServiceReference<T> serviceReference, ComponentActor actor )
     {
-        final List<Entry<?, ?>> dependencyManagers = m_missingDependencies.remove( serviceReference );
-        if ( dependencyManagers != null )
+        final List<Entry<?, ?>> entries = m_missingDependencies.remove( serviceReference );
+        if ( entries == null )
         {
-
+            return;
+        }
+        // schedule the late binding with the key of the component, so that it is
+        // ordered with the enabling and disabling of that component
+        final Map<AbstractComponentManager<?>, List<Entry<?, ?>>> byComponent = new LinkedHashMap<>();
+        for ( Entry<?, ?> entry : entries )
+        {
+            final AbstractComponentManager<?> componentManager = entry.getDm().getComponentManager();
+            List<Entry<?, ?>> list = byComponent.get( componentManager );
+            if ( list == null )
+            {
+                list = new ArrayList<>();
+                byComponent.put( componentManager, list );
+            }
+            list.add( entry );
+        }
+        for ( Map.Entry<AbstractComponentManager<?>, List<Entry<?, ?>>> component : byComponent.entrySet() )
+        {
+            final List<Entry<?, ?>> dependencyManagers = component.getValue();
             Runnable runnable = new Runnable()
             {
 
@@ -590,7 +613,8 @@ public class ComponentRegistry
             } ;
             m_logger.log(Level.DEBUG,
                 "Scheduling runnable {0} asynchronously", null, runnable);
-            actor.schedule( runnable );
+            // a service get is waiting for this binding, so do not queue it behind bulk work
+            actor.schedule( component.getKey(), ComponentActor.PRIORITY_HIGH, runnable );
         }
     }
 
@@ -775,6 +799,25 @@ public class ComponentRegistry
         }
     }
 
+    void setComponentActor(final ComponentActor componentActor)
+    {
+        m_componentActor = componentActor;
+    }
+
+    /**
+     * Returns the queue depth and task latency statistics of the component
+     * actor or an empty map if the actor is not running.
+     */
+    public Map<String, Long> getComponentActorStatistics()
+    {
+        final ComponentActor actor = m_componentActor;
+        if ( actor == null )
+        {
+            return Collections.emptyMap();
+        }
+        return actor.getStatistics();
+    }
+
     public void shutdown() {
         final Timer timer = changeCountTimer;
         if (timer != null) {
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.SAXParser;
+
+
+/**
+ * The <code>StartupExecutor</code> runs the parsing of component descriptors
+ * and the activation of immediate components on a small pool of daemon
+ * threads. Threads are only created on demand and terminate when idle, so
+ * an instance costs nothing as long as parallel startup is not configured.
+ * <p>
+ * Tasks submitted from one of the pool threads themselves (for example a
+ * component activator starting another bundle) are run on the calling
+ * thread to prevent the pool from waiting on itself.
+ * <p>
+ * The executor also keeps a small pool of SAX parsers for the parallel
+ * parsing of descriptors, since parsers are expensive to create. The pool
+ * is owned by the executor and emptied on {@link #shutdown()}, so no parser
+ * (and no class loader it references) outlives the SCR bundle.
+ */
+class StartupExecutor
+{
+
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private final ThreadPoolExecutor m_executor;
+
+    private final ThreadLocal<Boolean> m_worker = new ThreadLocal<>();
+
+    private final ConcurrentLinkedQueue<SAXParser> m_parsers = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger m_pooledParsers = new AtomicInteger();
+
+    private final int m_maxParsers;
+
+    private volatile boolean m_shutdown;
+
+    StartupExecutor()
+    {
+        final int threads = Math.max( 2, Runtime.getRuntime().availableProcessors() );
+        m_maxParsers = threads;
+        m_executor = new ThreadPoolExecutor( threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r)
+                {
+                    final Thread t = new Thread( new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            m_worker.set( Boolean.TRUE );
+                            r.run();
+                        }
+                    }, "SCR Component Starter " + count.incrementAndGet() );
+                    t.setDaemon( true );
+                    return t;
+                }
+            } );
+        m_executor.allowCoreThreadTimeOut( true );
+    }
+
+    /**
+     * Schedules the given task for asynchronous execution and returns its
+     * future. If this executor has been shut down or is called from one of its
+     * own threads the task is run synchronously and a completed future is
+     * returned.
+     */
+    <T> Future<T> submit(final Callable<T> task)
+    {
+        if ( !isWorkerThread() )
+        {
+            try
+            {
+                return m_executor.submit( task );
+            }
+            catch ( RejectedExecutionException ree )
+            {
+                // shut down; run on the calling thread below
+            }
+        }
+        final FutureTask<T> future = new FutureTask<>( task );
+        future.run();
+        return future;
+    }
+
+    /**
+     * Runs all tasks, concurrently if more than one is given, and returns
+     * their results in the order of the tasks.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while
+     *      waiting for the tasks to complete
+     * @throws ExecutionException if any of the tasks failed
+     */
+    <T> List<T> invokeAll(final List<Callable<T>> tasks) throws InterruptedException, ExecutionException
+    {
+        final List<Future<T>> futures = new ArrayList<>( tasks.size() );
+        if ( tasks.size() == 1 )
+        {
+            final FutureTask<T> future = new FutureTask<>( tasks.get( 0 ) );
+            future.run();
+            futures.add( future );
+        }
+        else
+        {
+            for ( Callable<T> task : tasks )
+            {
+                futures.add( submit( task ) );
+            }
+        }
+
+        final List<T> results = new ArrayList<>( futures.size() );
+        try
+        {
+            for ( Future<T> future : futures )
+            {
+                results.add( future.get() );
+            }
+        }
+        finally
+        {
+            if ( results.size() < futures.size() )
+            {
+                for ( Future<T> future : futures )
+                {
+                    future.cancel( false );
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns a pooled SAX parser or <code>null</code> if none is available,
+     * in which case the caller creates a new one.
+     */
+    SAXParser pollParser()
+    {
+        final SAXParser parser = m_parsers.poll();
+        if ( parser != null )
+        {
+            m_pooledParsers.decrementAndGet();
+        }
+        return parser;
+    }
+
+    /**
+     * Returns the given parser to the pool, unless the pool is full or this
+     * executor has been shut down. The parser must have been reset.
+     */
+    void releaseParser(final SAXParser parser)
+    {
+        if ( !m_shutdown && m_pooledParsers.incrementAndGet() <= m_maxParsers )
+        {
+            m_parsers.offer( parser );
+            if ( m_shutdown )
+            {
+                m_parsers.clear();
+            }
+        }
+        else
+        {
+            m_pooledParsers.decrementAndGet();
+        }
+    }
+
+    void shutdown()
+    {
+        m_shutdown = true;
+        m_executor.shutdownNow();
+        m_parsers.clear();
+    }
+
+    private boolean isWorkerThread()
+    {
+        return m_worker.get() != null;
+    }
+}
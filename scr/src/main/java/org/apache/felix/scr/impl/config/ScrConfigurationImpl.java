@@ -83,6 +83,14 @@ public class ScrConfigurationImpl implements ScrConfiguration
 
     private boolean cacheMetadata;
 
+    private boolean parallelParsing;
+
+    private boolean parallelActivation;
+
+    private int actorThreads = DEFAULT_ACTOR_THREADS;
+
+    private boolean actorVirtualThreads;
+
     private boolean isLogEnabled;
 
     private boolean isLogExtensionEnabled;
@@ -182,6 +190,10 @@ public class ScrConfigurationImpl implements ScrConfiguration
                         serviceChangecountTimeout = DEFAULT_SERVICE_CHANGECOUNT_TIMEOUT_MILLISECONDS;
                         newGlobalExtender = false;
                         cacheMetadata = false;
+                        parallelParsing = false;
+                        parallelActivation = false;
+                        actorThreads = DEFAULT_ACTOR_THREADS;
+                        actorVirtualThreads = false;
                         isLogEnabled = true;
                         isLogExtensionEnabled = false;
                     }
@@ -196,6 +208,10 @@ public class ScrConfigurationImpl implements ScrConfiguration
                         serviceChangecountTimeout = getServiceChangecountTimeout();
                         newGlobalExtender = getDefaultGlobalExtender();
                         cacheMetadata = getDefaultCacheMetadata();
+                        parallelParsing = getDefaultParallelParsing();
+                        parallelActivation = getDefaultParallelActivation();
+                        actorThreads = getDefaultActorThreads();
+                        actorVirtualThreads = getDefaultActorVirtualThreads();
                         isLogEnabled = getDefaultLogEnabled();
                         isLogExtensionEnabled = getDefaultLogExtension();
                     }
@@ -218,6 +234,14 @@ public class ScrConfigurationImpl implements ScrConfiguration
                 newGlobalExtender = VALUE_TRUE.equalsIgnoreCase( String.valueOf( config.get( PROP_GLOBAL_EXTENDER) ) );
                 cacheMetadata = VALUE_TRUE.equalsIgnoreCase(
                     String.valueOf(config.get(PROP_CACHE_METADATA)));
+                parallelParsing = VALUE_TRUE.equalsIgnoreCase(
+                    String.valueOf(config.get(PROP_PARALLEL_PARSING)));
+                parallelActivation = VALUE_TRUE.equalsIgnoreCase(
+                    String.valueOf(config.get(PROP_PARALLEL_ACTIVATION)));
+                Object threads = config.get(PROP_ACTOR_THREADS);
+                actorThreads = threads == null ? DEFAULT_ACTOR_THREADS : Integer.parseInt(threads.toString());
+                actorVirtualThreads = VALUE_TRUE.equalsIgnoreCase(
+                    String.valueOf(config.get(PROP_ACTOR_VIRTUAL_THREADS)));
                 isLogEnabled = checkIfLogEnabled(config);
                 isLogExtensionEnabled = VALUE_TRUE.equalsIgnoreCase(String.valueOf(config.get(PROP_LOG_EXTENSION)));
             }
@@ -290,6 +314,30 @@ public class ScrConfigurationImpl implements ScrConfiguration
         return cacheMetadata;
     }
 
+    @Override
+    public boolean parallelParsing()
+    {
+        return parallelParsing;
+    }
+
+    @Override
+    public boolean parallelActivation()
+    {
+        return parallelActivation;
+    }
+
+    @Override
+    public int actorThreads()
+    {
+        return actorThreads;
+    }
+
+    @Override
+    public boolean actorVirtualThreads()
+    {
+        return actorVirtualThreads;
+    }
+
     @Override
     public long serviceChangecountTimeout()
     {
@@ -359,6 +407,34 @@ public class ScrConfigurationImpl implements ScrConfiguration
             bundleContext.getProperty(PROP_CACHE_METADATA));
     }
 
+    private boolean getDefaultParallelParsing()
+    {
+        return VALUE_TRUE.equalsIgnoreCase(
+            bundleContext.getProperty(PROP_PARALLEL_PARSING));
+    }
+
+    private boolean getDefaultParallelActivation()
+    {
+        return VALUE_TRUE.equalsIgnoreCase(
+            bundleContext.getProperty(PROP_PARALLEL_ACTIVATION));
+    }
+
+    private int getDefaultActorThreads()
+    {
+        String val = bundleContext.getProperty(PROP_ACTOR_THREADS);
+        if ( val == null)
+        {
+            return DEFAULT_ACTOR_THREADS;
+        }
+        return Integer.parseInt( val );
+    }
+
+    private boolean getDefaultActorVirtualThreads()
+    {
+        return VALUE_TRUE.equalsIgnoreCase(
+            bundleContext.getProperty(PROP_ACTOR_VIRTUAL_THREADS));
+    }
+
     private Level getLogLevel(final Object levelObject)
     {
         if ( levelObject != null )
@@ -123,6 +123,38 @@ class ScrMetaTypeProvider implements MetaTypeProvider
                 "Whether to extend all bundles whether or not visible to this bundle.",
                 false ) );
 
+        adList.add( new AttributeDefinitionImpl(
+                ScrConfiguration.PROP_PARALLEL_PARSING,
+                "Parallel Descriptor Parsing",
+                "Whether to parse the component descriptors of bundles concurrently. When enabled the descriptors "
+                    + "of all bundles already active when SCR starts are parsed in the background and the descriptors "
+                    + "of a bundle declaring more than one descriptor are parsed in parallel. The default is false.",
+                this.configuration.parallelParsing() ) );
+
+        adList.add( new AttributeDefinitionImpl(
+                ScrConfiguration.PROP_PARALLEL_ACTIVATION,
+                "Parallel Immediate Activation",
+                "Whether to enable and activate the immediate components of a starting bundle concurrently. "
+                    + "Each component still activates under its own activation lock. The default is false.",
+                this.configuration.parallelActivation() ) );
+
+        adList.add( new AttributeDefinitionImpl(
+                ScrConfiguration.PROP_ACTOR_THREADS,
+                "Component Actor Threads",
+                "Number of threads running asynchronous component work such as deferred enabling and disabling of "
+                    + "components. Work for the same component is always run in order. Changes take effect when SCR "
+                    + "is restarted. The default is 1.",
+                AttributeDefinition.INTEGER,
+                new String[] { String.valueOf(this.configuration.actorThreads())},
+                0, null, null) );
+
+        adList.add( new AttributeDefinitionImpl(
+                ScrConfiguration.PROP_ACTOR_VIRTUAL_THREADS,
+                "Component Actor Virtual Threads",
+                "Whether to run asynchronous component work on virtual threads if the Java runtime supports them. "
+                    + "Changes take effect when SCR is restarted. The default is false.",
+                this.configuration.actorVirtualThreads() ) );
+
         return new ObjectClassDefinition()
         {
 
@@ -448,7 +448,7 @@ public abstract class AbstractComponentManager<S> implements ComponentManager<S>
         if (async)
         {
             final Deferred<Void> latch = enableLatch;
-            m_container.getActivator().schedule(new Runnable()
+            m_container.getActivator().schedule(this, new Runnable()
             {
 
                 long count = taskCounter.incrementAndGet();
@@ -540,7 +540,7 @@ public abstract class AbstractComponentManager<S> implements ComponentManager<S>
         if (async)
         {
             final Deferred<Void> latch = enableLatch;
-            m_container.getActivator().schedule(new Runnable()
+            m_container.getActivator().schedule(this, new Runnable()
             {
 
                 long count = taskCounter.incrementAndGet();
@@ -34,7 +34,11 @@ public interface ComponentActivator extends ExtendedServiceListenerContext<Exten
 
     ScrConfiguration getConfiguration();
 
-    void schedule(Runnable runnable);
+    /**
+     * Schedules the runnable for asynchronous execution after all runnables
+     * previously scheduled with the same key.
+     */
+    void schedule(Object key, Runnable runnable);
 
     long registerComponentId(AbstractComponentManager<?> sAbstractComponentManager);
 
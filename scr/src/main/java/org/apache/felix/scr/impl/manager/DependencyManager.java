@@ -1810,6 +1810,14 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
         return m_dependencyMetadata;
     }
 
+    /**
+     * Returns the component manager this dependency manager belongs to.
+     */
+    public AbstractComponentManager<S> getComponentManager()
+    {
+        return m_componentManager;
+    }
+
     /**
      * Returns <code>true</code> if this dependency manager is satisfied, that
      * is if either the dependency is optional or the number of services
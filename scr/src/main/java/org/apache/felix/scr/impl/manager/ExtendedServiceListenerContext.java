@@ -19,11 +19,20 @@
 package org.apache.felix.scr.impl.manager;
 
 import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceReference;
 
 public interface ExtendedServiceListenerContext<U extends ServiceEvent>
 {
 
-    void addServiceListener(String serviceFilterString,
+    /**
+     * Adds the listener for services matching the filter. Listeners for the
+     * same filter share a single framework service listener.
+     *
+     * @return the references of the services currently matching the filter,
+     *         as seen before any event is forwarded to the listener, or
+     *         <code>null</code> if there are none.
+     */
+    ServiceReference<?>[] addServiceListener(String serviceFilterString,
         ExtendedServiceListener<U> listener);
 
     void removeServiceListener(String serviceFilterString,
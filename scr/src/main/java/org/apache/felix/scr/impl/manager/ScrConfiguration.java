@@ -68,7 +68,17 @@ public interface ScrConfiguration extends LogConfiguration
     String PROP_SERVICE_CHANGECOUNT_TIMEOUT = "ds.service.changecount.timeout";
 
     String PROP_CACHE_METADATA = "ds.cache.metadata";
-    
+
+    String PROP_PARALLEL_PARSING = "ds.parallel.parsing";
+
+    String PROP_PARALLEL_ACTIVATION = "ds.parallel.activation";
+
+    String PROP_ACTOR_THREADS = "ds.actor.threads";
+
+    String PROP_ACTOR_VIRTUAL_THREADS = "ds.actor.virtual";
+
+    int DEFAULT_ACTOR_THREADS = 1;
+
 
     boolean isFactoryEnabled();
 
@@ -94,4 +104,30 @@ public interface ScrConfiguration extends LogConfiguration
 
     boolean cacheMetadata();
 
+    /**
+     * Returns <code>true</code> if component descriptors may be parsed
+     * concurrently, both across the bundles found when SCR starts and
+     * across the descriptors of a single bundle.
+     */
+    boolean parallelParsing();
+
+    /**
+     * Returns <code>true</code> if the immediate components of a bundle may
+     * be enabled and activated concurrently when the bundle is started.
+     */
+    boolean parallelActivation();
+
+    /**
+     * Returns the number of threads running asynchronous component work such
+     * as deferred enabling and disabling of components. Tasks of the same
+     * component are always run in order.
+     */
+    int actorThreads();
+
+    /**
+     * Returns <code>true</code> if the threads running asynchronous component
+     * work should be virtual threads, if the Java runtime supports them.
+     */
+    boolean actorVirtualThreads();
+
 }
@@ -28,7 +28,6 @@ import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceReference;
 
@@ -202,29 +201,29 @@ public class ServiceTracker<S, T, U extends ServiceEvent> {
 			}
 			t = new Tracked( trackingCount );
 			synchronized (t) {
-				try {
-					extendedServiceListenerContext.addServiceListener(initialReferenceFilterString, t);
-                    ServiceReference<S>[] references = null;
-                    if (trackReference != null)
+				// the initial references are the shared snapshot of the services
+				// matching the filter, consistent with the events forwarded to t
+				final ServiceReference<?>[] shared = extendedServiceListenerContext.addServiceListener(
+				    initialReferenceFilterString, t);
+                ServiceReference<S>[] references = null;
+                if (trackReference != null)
+                {
+                    if (trackReference.getBundle() != null)
                     {
-                        if (trackReference.getBundle() != null)
-                        {
-                            @SuppressWarnings("unchecked")
-                            ServiceReference<S>[] single = new ServiceReference[] {
-                                    trackReference };
-                            references = single;
-                        }
-                    }
-                    else
-                    {
-                        references = getInitialReferences(null,
-                            initialReferenceFilterString);
+                        @SuppressWarnings("unchecked")
+                        ServiceReference<S>[] single = new ServiceReference[] {
+                                trackReference };
+                        references = single;
                     }
-					/* set tracked with the initial references */
-					t.setInitial(references);
-				} catch (InvalidSyntaxException e) {
-					throw new RuntimeException("unexpected InvalidSyntaxException: " + e.getMessage(), e);
-				}
+                }
+                else
+                {
+                    @SuppressWarnings("unchecked")
+                    ServiceReference<S>[] matching = (ServiceReference<S>[]) shared;
+                    references = matching;
+                }
+				/* set tracked with the initial references */
+				t.setInitial(references);
 			}
 			tracked = t;
 		}
@@ -232,24 +231,6 @@ public class ServiceTracker<S, T, U extends ServiceEvent> {
 		t.trackInitial(); /* process the initial references */
 	}
 
-	/**
-	 * Returns the list of initial {@code ServiceReference}s that will be
-	 * tracked by this {@code ServiceTracker}.
-	 * @param className The class name with which the service was registered, or
-	 *        {@code null} for all services.
-	 * @param filterString The filter criteria or {@code null} for all services.
-	 * 
-	 * @return The list of initial {@code ServiceReference}s.
-	 * @throws InvalidSyntaxException If the specified filterString has an
-	 *         invalid syntax.
-	 */
-	private ServiceReference<S>[] getInitialReferences(String className, String filterString) throws InvalidSyntaxException {
-        @SuppressWarnings("unchecked")
-        ServiceReference<S>[] result = (ServiceReference<S>[]) context.getServiceReferences(
-            className, filterString);
-		return result;
-	}
-
 	/**
 	 * Close this {@code ServiceTracker}.
 	 * 
@@ -211,6 +211,18 @@ public class ServiceComponentRuntimeImpl implements ServiceComponentRuntime
         }
     }
 
+    /**
+     * Returns the statistics of the component actor running the asynchronous
+     * work of SCR: the number of worker threads, the number of queued and
+     * running tasks, the highest number of queued tasks seen, the number of
+     * completed tasks as well as the average and maximum time tasks waited in
+     * the queue and took to execute, in microseconds.
+     */
+    public Map<String, Long> getComponentActorStatistics()
+    {
+        return componentRegistry.getComponentActorStatistics();
+    }
+
     private ComponentConfigurationDTO managerToConfiguration(final ComponentManager<?> manager, final ComponentDescriptionDTO description)
     {
         final ComponentConfigurationDTO dto = new ComponentConfigurationDTO();
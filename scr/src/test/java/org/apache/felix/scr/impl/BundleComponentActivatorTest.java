@@ -20,12 +20,18 @@ package org.apache.felix.scr.impl;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Vector;
 
+import org.apache.felix.scr.impl.manager.ExtendedServiceEvent;
+import org.apache.felix.scr.impl.manager.ExtendedServiceListener;
 import org.mockito.Mockito;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceReference;
 
 import junit.framework.TestCase;
 
@@ -180,4 +186,45 @@ public class BundleComponentActivatorTest extends TestCase
         assertEquals( "Descriptor length", 0, actualUrls.length );
     }
 
-}
\ No newline at end of file
+    /**
+     * Test that a listener added later gets the services currently matching
+     * the shared filter, and that events received while the initial
+     * references are loaded win over the result of the registry query.
+     */
+    public void test_listenerInfo_sharedReferences()
+    {
+        final ServiceReference<?> ref1 = Mockito.mock( ServiceReference.class );
+        final ServiceReference<?> ref2 = Mockito.mock( ServiceReference.class );
+        final ServiceReference<?> ref3 = Mockito.mock( ServiceReference.class );
+
+        final BundleComponentActivator.ListenerInfo info = new BundleComponentActivator.ListenerInfo();
+        // ref2 goes away while the registry is queried
+        info.serviceChanged( new ServiceEvent( ServiceEvent.UNREGISTERING, ref2 ) );
+        info.setInitial( new ServiceReference<?>[] { ref1, ref2 } );
+
+        final List<ServiceEvent> events = new ArrayList<>();
+        final ServiceReference<?>[] initial = info.add( new ExtendedServiceListener<ExtendedServiceEvent>()
+        {
+            @Override
+            public void serviceChanged(ExtendedServiceEvent event)
+            {
+                events.add( event );
+            }
+        } );
+        assertEquals( Arrays.asList( ref1 ), Arrays.asList( initial ) );
+
+        info.serviceChanged( new ServiceEvent( ServiceEvent.REGISTERED, ref3 ) );
+        info.serviceChanged( new ServiceEvent( ServiceEvent.MODIFIED_ENDMATCH, ref1 ) );
+        assertEquals( 2, events.size() );
+
+        final ServiceReference<?>[] later = info.add( new ExtendedServiceListener<ExtendedServiceEvent>()
+        {
+            @Override
+            public void serviceChanged(ExtendedServiceEvent event)
+            {
+            }
+        } );
+        assertEquals( Arrays.asList( ref3 ), Arrays.asList( later ) );
+    }
+
+}
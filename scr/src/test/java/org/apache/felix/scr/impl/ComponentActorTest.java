@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.felix.scr.impl.logger.ScrLogger;
+import org.mockito.Mockito;
+
+import junit.framework.TestCase;
+
+public class ComponentActorTest extends TestCase
+{
+
+    private ComponentActor actor;
+
+    @Override
+    protected void setUp()
+    {
+        actor = new ComponentActor( Mockito.mock( ScrLogger.class ) );
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        actor.terminate();
+    }
+
+    public void test_sameKey_runsInOrder() throws Exception
+    {
+        actor.start( 4, false );
+
+        final int keys = 8;
+        final int tasksPerKey = 200;
+        final List<List<Integer>> seen = new ArrayList<>();
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger overlap = new AtomicInteger();
+        for ( int k = 0; k < keys; k++ )
+        {
+            seen.add( Collections.synchronizedList( new ArrayList<Integer>() ) );
+        }
+        for ( int i = 0; i < tasksPerKey; i++ )
+        {
+            for ( int k = 0; k < keys; k++ )
+            {
+                final int key = k;
+                final int value = i;
+                actor.schedule( "key" + key, ComponentActor.PRIORITY_NORMAL, new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        seen.get( key ).add( value );
+                    }
+                } );
+            }
+            actor.schedule( "exclusive", ComponentActor.PRIORITY_NORMAL, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if ( concurrent.incrementAndGet() > 1 )
+                    {
+                        overlap.incrementAndGet();
+                    }
+                    concurrent.decrementAndGet();
+                }
+            } );
+        }
+        actor.terminate();
+
+        assertEquals( 0, overlap.get() );
+        for ( List<Integer> values : seen )
+        {
+            assertEquals( tasksPerKey, values.size() );
+            for ( int i = 0; i < tasksPerKey; i++ )
+            {
+                assertEquals( Integer.valueOf( i ), values.get( i ) );
+            }
+        }
+    }
+
+    public void test_singleThread_runsInSchedulingOrder() throws Exception
+    {
+        final List<String> order = Collections.synchronizedList( new ArrayList<String>() );
+        for ( String task : new String[] { "a1", "a2", "b1", "a3", "c1", "b2" } )
+        {
+            final String name = task;
+            actor.schedule( name.substring( 0, 1 ), ComponentActor.PRIORITY_NORMAL, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    order.add( name );
+                }
+            } );
+        }
+        actor.start( 1, false );
+        actor.terminate();
+
+        assertEquals( Arrays.asList( "a1", "a2", "b1", "a3", "c1", "b2" ), order );
+    }
+
+    public void test_highPriority_runsFirst() throws Exception
+    {
+        actor.start( 1, false );
+
+        final CountDownLatch blocker = new CountDownLatch( 1 );
+        final List<String> order = Collections.synchronizedList( new ArrayList<String>() );
+        actor.schedule( "block", ComponentActor.PRIORITY_NORMAL, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    blocker.await( 5, TimeUnit.SECONDS );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } );
+        for ( final String name : new String[] { "bulk1", "bulk2" } )
+        {
+            actor.schedule( name, ComponentActor.PRIORITY_NORMAL, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    order.add( name );
+                }
+            } );
+        }
+        actor.schedule( "urgent", ComponentActor.PRIORITY_HIGH, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                order.add( "urgent" );
+            }
+        } );
+        blocker.countDown();
+        actor.terminate();
+
+        assertEquals( "urgent", order.get( 0 ) );
+        assertEquals( 3, order.size() );
+    }
+
+    public void test_statistics() throws Exception
+    {
+        actor.start( 2, false );
+        for ( int i = 0; i < 10; i++ )
+        {
+            actor.schedule( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    throw new IllegalStateException( "ignored" );
+                }
+            } );
+        }
+        actor.terminate();
+
+        final Map<String, Long> stats = actor.getStatistics();
+        assertEquals( Long.valueOf( 2 ), stats.get( "threads" ) );
+        assertEquals( Long.valueOf( 0 ), stats.get( "queued" ) );
+        assertEquals( Long.valueOf( 0 ), stats.get( "running" ) );
+        assertEquals( Long.valueOf( 10 ), stats.get( "completed" ) );
+        assertTrue( stats.get( "queuedMax" ) >= 1 );
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.felix.scr.impl.logger.ScrLogger;
+import org.apache.felix.scr.impl.metadata.ComponentBase;
+import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.mockito.Mockito;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+
+public class ComponentMetadataStoreTest extends ComponentBase
+{
+
+    private File dataDir;
+
+    private BundleContext context;
+
+    private Bundle bundle1;
+
+    private Bundle bundle2;
+
+    private ScrLogger logger;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        dataDir = Files.createTempDirectory("scr-store").toFile();
+
+        bundle1 = Mockito.mock(Bundle.class);
+        Mockito.when(bundle1.getLastModified()).thenReturn(1000L);
+        bundle2 = Mockito.mock(Bundle.class);
+        Mockito.when(bundle2.getLastModified()).thenReturn(2000L);
+
+        context = Mockito.mock(BundleContext.class);
+        Bundle systemBundle = Mockito.mock(Bundle.class);
+        Mockito.when(context.getBundle(Constants.SYSTEM_BUNDLE_LOCATION)).thenReturn(systemBundle);
+        Mockito.when(systemBundle.getBundleContext()).thenReturn(context);
+        Mockito.when(context.getBundle(1L)).thenReturn(bundle1);
+        Mockito.when(context.getBundle(2L)).thenReturn(bundle2);
+        Mockito.when(context.getDataFile(Mockito.anyString())).thenAnswer(
+            invocation -> new File(dataDir, (String) invocation.getArguments()[0]));
+
+        logger = Mockito.mock(ScrLogger.class);
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        for (File f : dataDir.listFiles())
+        {
+            f.delete();
+        }
+        dataDir.delete();
+        super.tearDown();
+    }
+
+    private List<ComponentMetadata> components() throws Exception
+    {
+        List<ComponentMetadata> components = readMetadata("/components_13.xml");
+        for (ComponentMetadata cm : components)
+        {
+            cm.validate();
+        }
+        return components;
+    }
+
+    public void test_close_writesSnapshot() throws Exception
+    {
+        ComponentMetadataStore store = ComponentMetadataStore.load(context, logger, true);
+        store.put(1L, components());
+        store.put(2L, Collections.<ComponentMetadata> emptyList());
+        store.close();
+
+        assertTrue(new File(dataDir, ComponentMetadataStore.SNAPSHOT_FILE).isFile());
+        assertFalse(new File(dataDir, ComponentMetadataStore.JOURNAL_FILE).exists());
+
+        store = ComponentMetadataStore.load(context, logger, true);
+        List<ComponentMetadata> cached = store.get(1L);
+        assertNotNull(cached);
+        assertEquals(1, cached.size());
+        assertEquals(components().get(0).getName(), cached.get(0).getName());
+        assertTrue(store.get(2L).isEmpty());
+    }
+
+    public void test_journal_survivesCrash() throws Exception
+    {
+        ComponentMetadataStore store = ComponentMetadataStore.load(context, logger, true);
+        store.put(1L, components());
+        // no close: records must already be on disk
+        store.closeJournal();
+
+        assertFalse(new File(dataDir, ComponentMetadataStore.SNAPSHOT_FILE).exists());
+        store = ComponentMetadataStore.load(context, logger, true);
+        assertEquals(1, store.get(1L).size());
+    }
+
+    public void test_journal_truncatedRecordIgnored() throws Exception
+    {
+        ComponentMetadataStore store = ComponentMetadataStore.load(context, logger, true);
+        store.put(2L, Collections.<ComponentMetadata> emptyList());
+        store.put(1L, components());
+        store.closeJournal();
+
+        File journal = new File(dataDir, ComponentMetadataStore.JOURNAL_FILE);
+        try (RandomAccessFile raf = new RandomAccessFile(journal, "rw"))
+        {
+            raf.setLength(raf.length() - 10);
+        }
+
+        store = ComponentMetadataStore.load(context, logger, true);
+        assertNull(store.get(1L));
+        assertNotNull(store.get(2L));
+    }
+
+    public void test_journal_truncatedBeforeAppend() throws Exception
+    {
+        ComponentMetadataStore store = ComponentMetadataStore.load(context, logger, true);
+        store.put(2L, Collections.<ComponentMetadata> emptyList());
+        store.put(1L, components());
+        store.closeJournal();
+
+        File journal = new File(dataDir, ComponentMetadataStore.JOURNAL_FILE);
+        try (RandomAccessFile raf = new RandomAccessFile(journal, "rw"))
+        {
+            raf.setLength(raf.length() - 10);
+        }
+
+        // records appended after a torn tail must be readable on the next load
+        store = ComponentMetadataStore.load(context, logger, true);
+        store.put(1L, components());
+        store.closeJournal();
+
+        store = ComponentMetadataStore.load(context, logger, true);
+        assertEquals(1, store.get(1L).size());
+        assertNotNull(store.get(2L));
+    }
+
+    public void test_journal_unsupportedVersionDiscarded() throws Exception
+    {
+        File journal = new File(dataDir, ComponentMetadataStore.JOURNAL_FILE);
+        Files.write(journal.toPath(), new byte[] { 0, 0, 0, 0, 1, 2, 3 });
+
+        ComponentMetadataStore store = ComponentMetadataStore.load(context, logger, true);
+        store.put(1L, components());
+        store.closeJournal();
+
+        store = ComponentMetadataStore.load(context, logger, true);
+        assertEquals(1, store.get(1L).size());
+    }
+
+    public void test_corruptRecordIgnored() throws Exception
+    {
+        ComponentMetadataStore store = ComponentMetadataStore.load(context, logger, true);
+        store.put(1L, components());
+        store.put(2L, Collections.<ComponentMetadata> emptyList());
+        store.closeJournal();
+
+        File journal = new File(dataDir, ComponentMetadataStore.JOURNAL_FILE);
+        try (RandomAccessFile raf = new RandomAccessFile(journal, "rw"))
+        {
+            // flip a byte in the payload of the first record
+            raf.seek(4 + 25 + 8);
+            int b = raf.read();
+            raf.seek(4 + 25 + 8);
+            raf.write(b ^ 0xff);
+        }
+
+        store = ComponentMetadataStore.load(context, logger, true);
+        assertNull(store.get(1L));
+        assertNotNull(store.get(2L));
+    }
+
+    public void test_modifiedBundleDropped() throws Exception
+    {
+        ComponentMetadataStore store = ComponentMetadataStore.load(context, logger, true);
+        store.put(1L, components());
+        store.put(2L, components());
+        store.close();
+
+        Mockito.when(bundle1.getLastModified()).thenReturn(1001L);
+        store = ComponentMetadataStore.load(context, logger, true);
+        assertNull(store.get(1L));
+        assertNotNull(store.get(2L));
+    }
+
+    public void test_remove_isJournaled() throws Exception
+    {
+        ComponentMetadataStore store = ComponentMetadataStore.load(context, logger, true);
+        store.put(1L, components());
+        store.close();
+
+        store = ComponentMetadataStore.load(context, logger, true);
+        store.remove(1L);
+        store.closeJournal();
+
+        store = ComponentMetadataStore.load(context, logger, true);
+        assertNull(store.get(1L));
+    }
+
+    public void test_notPersistent() throws Exception
+    {
+        ComponentMetadataStore store = ComponentMetadataStore.load(context, logger, false);
+        store.put(1L, components());
+        assertEquals(1, store.get(1L).size());
+        store.close();
+
+        assertEquals(0, dataDir.listFiles().length);
+    }
+}
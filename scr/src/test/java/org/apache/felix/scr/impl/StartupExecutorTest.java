@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.TestCase;
+
+public class StartupExecutorTest extends TestCase
+{
+
+    private StartupExecutor executor;
+
+    @Override
+    protected void setUp()
+    {
+        executor = new StartupExecutor();
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        executor.shutdown();
+    }
+
+    public void test_invokeAll_keepsTaskOrder() throws Exception
+    {
+        final List<Callable<Integer>> tasks = new ArrayList<>();
+        for ( int i = 0; i < 50; i++ )
+        {
+            final int value = i;
+            tasks.add( new Callable<Integer>()
+            {
+                @Override
+                public Integer call() throws Exception
+                {
+                    Thread.sleep( ( 50 - value ) % 5 );
+                    return value;
+                }
+            } );
+        }
+
+        final List<Integer> results = executor.invokeAll( tasks );
+        assertEquals( 50, results.size() );
+        for ( int i = 0; i < 50; i++ )
+        {
+            assertEquals( Integer.valueOf( i ), results.get( i ) );
+        }
+    }
+
+    public void test_invokeAll_nestedRunsOnCallingThread() throws Exception
+    {
+        final List<Callable<String>> tasks = new ArrayList<>();
+        for ( int i = 0; i < 20; i++ )
+        {
+            tasks.add( new Callable<String>()
+            {
+                @Override
+                public String call() throws Exception
+                {
+                    final Thread outer = Thread.currentThread();
+                    // a nested batch must not wait on the pool it is running on
+                    final List<Thread> inner = executor.invokeAll( Collections.<Callable<Thread>> nCopies( 2,
+                        new Callable<Thread>()
+                        {
+                            @Override
+                            public Thread call()
+                            {
+                                return Thread.currentThread();
+                            }
+                        } ) );
+                    assertSame( outer, inner.get( 0 ) );
+                    assertSame( outer, inner.get( 1 ) );
+                    return outer.getName();
+                }
+            } );
+        }
+
+        for ( String name : executor.invokeAll( tasks ) )
+        {
+            assertTrue( name, name.startsWith( "SCR Component Starter" ) );
+        }
+    }
+
+    public void test_invokeAll_failure() throws Exception
+    {
+        final List<Callable<Object>> tasks = new ArrayList<>();
+        tasks.add( new Callable<Object>()
+        {
+            @Override
+            public Object call()
+            {
+                return "ok";
+            }
+        } );
+        tasks.add( new Callable<Object>()
+        {
+            @Override
+            public Object call()
+            {
+                throw new IllegalStateException( "failed" );
+            }
+        } );
+
+        try
+        {
+            executor.invokeAll( tasks );
+            fail( "Expected ExecutionException" );
+        }
+        catch ( ExecutionException ee )
+        {
+            assertTrue( ee.getCause() instanceof IllegalStateException );
+        }
+    }
+
+    public void test_submit_afterShutdown() throws Exception
+    {
+        executor.shutdown();
+        assertEquals( "done", executor.submit( new Callable<String>()
+        {
+            @Override
+            public String call()
+            {
+                return "done";
+            }
+        } ).get() );
+    }
+
+    public void test_parsers_pooledUntilShutdown() throws Exception
+    {
+        final SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+        assertNull( executor.pollParser() );
+        executor.releaseParser( parser );
+        assertSame( parser, executor.pollParser() );
+        assertNull( executor.pollParser() );
+
+        executor.releaseParser( parser );
+        executor.shutdown();
+        assertNull( executor.pollParser() );
+        executor.releaseParser( parser );
+        assertNull( executor.pollParser() );
+    }
+}
@@ -50,11 +50,11 @@ public class SingleComponentManagerTest
     private ComponentActivator componentActivator = new ComponentActivator() {
 
         @Override
-        public void addServiceListener(String serviceFilterString,
+        public ServiceReference<?>[] addServiceListener(String serviceFilterString,
             ExtendedServiceListener<ExtendedServiceEvent> listener)
         {
             // TODO Auto-generated method stub
-
+            return null;
         }
 
         @Override
@@ -87,7 +87,7 @@ public class SingleComponentManagerTest
         }
 
         @Override
-        public void schedule(Runnable runnable)
+        public void schedule(Object key, Runnable runnable)
         {
             // TODO Auto-generated method stub
 